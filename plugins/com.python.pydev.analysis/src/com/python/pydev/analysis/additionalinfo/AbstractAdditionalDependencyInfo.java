@@ -16,6 +16,7 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -51,6 +52,7 @@ import org.python.pydev.parser.jython.ast.stmtType;
 import org.python.pydev.parser.jython.ast.factory.AdapterPrefs;
 import org.python.pydev.parser.jython.ast.factory.PyAstFactory;
 import org.python.pydev.shared_core.callbacks.CallbackWithListeners;
+import org.python.pydev.shared_core.callbacks.ICallback;
 import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.python.pydev.shared_core.string.StringUtils;
@@ -160,6 +162,18 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
 
     public final Object updateKeysLock = new Object(); // Calls to updateKeysIfNeededAndSave should be synchronized.
 
+    /**
+     * Number of threads used to index the new modules in updateKeysIfNeededAndSave (if 1, the modules are indexed
+     * sequentially in the calling thread).
+     */
+    public static final int INDEXING_THREADS = Integer.getInteger("pydev.indexing.threads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+    /**
+     * Below this number of new modules, the indexing is always sequential.
+     */
+    private static final int MIN_MODULES_TO_INDEX_IN_PARALLEL = 50;
+
     /**
      * If info == null we're dealing with project info (otherwise we're dealing with interpreter info).
      *
@@ -218,7 +232,7 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
         boolean hasRemoved = removedKeys.size() != 0;
         modulesAddedAndRemoved.call(new Tuple(newKeys, removedKeys));
 
-        Set<File> ignoreFiles = new HashSet<File>();
+        final Set<File> ignoreFiles = new HashSet<File>();
 
         // Remove first!
         if (hasRemoved) {
@@ -230,45 +244,53 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
 
         // Add last (a module could be removed/added).
         if (hasNew) {
-            FastStringBuffer buffer = new FastStringBuffer();
-            int currI = 0;
-            int total = newKeys.size();
-            for (ModulesKey newKey : newKeys) {
-                currI += 1;
-                if (monitor.isCanceled()) {
+            if (INDEXING_THREADS > 1 && newKeys.size() >= MIN_MODULES_TO_INDEX_IN_PARALLEL) {
+                List<ModulesKey> sourceKeys = new ArrayList<ModulesKey>();
+                List<ModulesKey> compiledKeys = new ArrayList<ModulesKey>();
+                for (ModulesKey newKey : newKeys) {
+                    if (PythonPathHelper.canAddAstInfoForSourceModule(newKey)) {
+                        sourceKeys.add(newKey);
+                    } else if (info != null) {
+                        compiledKeys.add(newKey);
+                    }
+                }
+                final Map<CompleteIndexKey, CompleteIndexKey> finalKeys = keys;
+                final InterpreterInfo finalInfo = info;
+                final boolean finalIsJython = isJython;
+                ICallback<Object, ModulesKey> compiledModuleIndexer = new ICallback<Object, ModulesKey>() {
+
+                    @Override
+                    public Object call(ModulesKey newKey) {
+                        indexCompiledModule(newKey, finalInfo, finalIsJython, ignoreFiles, finalKeys);
+                        return null;
+                    }
+                };
+                ParallelModulesIndexer indexer = new ParallelModulesIndexer(this, INDEXING_THREADS);
+                if (!indexer.index(sourceKeys, compiledKeys, compiledModuleIndexer, monitor)) {
                     return;
                 }
-                if (PythonPathHelper.canAddAstInfoForSourceModule(newKey)) {
-                    buffer.clear().append("Indexing ").append(currI).append(" of ").append(total)
-                            .append(" (source module): ").append(newKey.name).append("  (")
-                            .append(currI).append(" of ").append(total).append(")");
-                    try {
-                        // Don't generate deltas (we'll save it in the end).
-                        this.addAstInfo(newKey, false);
-                    } catch (Exception e) {
-                        Log.log(e);
+            } else {
+                FastStringBuffer buffer = new FastStringBuffer();
+                int currI = 0;
+                int total = newKeys.size();
+                for (ModulesKey newKey : newKeys) {
+                    currI += 1;
+                    if (monitor.isCanceled()) {
+                        return;
                     }
-                } else {
-                    if (info != null) {
-                        if (isJython && ignoreFiles.contains(newKey.file)) {
-                            continue;
+                    if (PythonPathHelper.canAddAstInfoForSourceModule(newKey)) {
+                        try {
+                            // Don't generate deltas (we'll save it in the end).
+                            this.addAstInfo(newKey, false);
+                        } catch (Exception e) {
+                            Log.log(e);
                         }
-                        buffer.clear().append("Indexing ").append(currI).append(" of ").append(total)
-                                .append(" (builtin module): ").append(newKey.name);
-                        monitor.setTaskName(buffer.toString());
-                        IModule builtinModule = info.getModulesManager().getModule(newKey.name,
-                                info.getModulesManager().getNature(), true);
-                        if (builtinModule != null) {
-                            if (builtinModule instanceof IAbstractJavaClassModule) {
-                                if (newKey.file != null) {
-                                    ignoreFiles.add(newKey.file);
-                                } else {
-                                    Log.log("Not expecting null file for java class module: " + newKey);
-                                }
-                                continue;
-                            }
-                            boolean removeFirst = keys.containsKey(new CompleteIndexKey(newKey));
-                            addAstForCompiledModule(builtinModule, info, newKey, removeFirst);
+                    } else {
+                        if (info != null) {
+                            buffer.clear().append("Indexing ").append(currI).append(" of ").append(total)
+                                    .append(" (builtin module): ").append(newKey.name);
+                            monitor.setTaskName(buffer.toString());
+                            indexCompiledModule(newKey, info, isJython, ignoreFiles, keys);
                         }
                     }
                 }
@@ -285,6 +307,32 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
         }
     }
 
+    /**
+     * Indexes a builtin module (its tokens are gotten from the interpreter shell).
+     *
+     * @param ignoreFiles (in/out) files of java class modules (which are not indexed).
+     */
+    private void indexCompiledModule(ModulesKey newKey, InterpreterInfo info, boolean isJython, Set<File> ignoreFiles,
+            Map<CompleteIndexKey, CompleteIndexKey> keys) {
+        if (isJython && ignoreFiles.contains(newKey.file)) {
+            return;
+        }
+        IModule builtinModule = info.getModulesManager().getModule(newKey.name,
+                info.getModulesManager().getNature(), true);
+        if (builtinModule != null) {
+            if (builtinModule instanceof IAbstractJavaClassModule) {
+                if (newKey.file != null) {
+                    ignoreFiles.add(newKey.file);
+                } else {
+                    Log.log("Not expecting null file for java class module: " + newKey);
+                }
+                return;
+            }
+            boolean removeFirst = keys.containsKey(new CompleteIndexKey(newKey));
+            addAstForCompiledModule(builtinModule, info, newKey, removeFirst);
+        }
+    }
+
     private void addAstForCompiledModule(IModule module, InterpreterInfo info, ModulesKey newKey, boolean removeFirst) {
         TokensList globalTokens = module.getGlobalTokens();
         PyAstFactory astFactory = new PyAstFactory(new AdapterPrefs("\n", info.getModulesManager().getNature()));
@@ -331,30 +379,44 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
             return addAstInfo;
         }
         try {
-            synchronized (lock) {
-                addAstInfo = super.addAstInfo(node, key, generateDelta);
-
-                CompleteIndexKey completeIndexKey = new CompleteIndexKey(key);
-                if (key.file != null) {
-                    completeIndexKey.lastModified = FileUtils.lastModified(key.file);
-                }
-                completeIndex.add(completeIndexKey);
-
+            //Note: the tokens are created without holding the lock (which is only held to publish them).
+            ModuleTokens moduleTokens = createModuleTokens(node, key);
+            if (moduleTokens == null) {
+                //Still add it to the complete index (even if we couldn't get its tokens).
+                moduleTokens = new ModuleTokens(key);
             }
+            addModulesTokens(Collections.singletonList(moduleTokens));
+            addAstInfo = moduleTokens.all;
         } catch (Exception e) {
             Log.log(e);
         }
         return addAstInfo;
     }
 
+    /**
+     * The modules are added to the complete index in the same critical section where their tokens are published
+     * (and before them, so, whenever the tokens of a module are found, the module is also in the complete index).
+     */
+    @Override
+    protected void onAddingModulesTokens(List<ModuleTokens> modules) {
+        for (ModuleTokens moduleTokens : modules) {
+            CompleteIndexKey completeIndexKey = new CompleteIndexKey(moduleTokens.key);
+            if (moduleTokens.key.file != null) {
+                completeIndexKey.lastModified = FileUtils.lastModified(moduleTokens.key.file);
+            }
+            completeIndex.add(completeIndexKey);
+        }
+    }
+
     @Override
     public void removeInfoFromModule(String moduleName, boolean generateDelta) {
         synchronized (lock) {
             if (moduleName == null) {
                 throw new AssertionError("The module name may not be null.");
             }
-            completeIndex.remove(new CompleteIndexKey(moduleName));
+            //Tokens are removed first (the inverse order of the addition).
             super.removeInfoFromModule(moduleName, generateDelta);
+            completeIndex.remove(new CompleteIndexKey(moduleName));
         }
     }
 
@@ -432,12 +494,15 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
         return false;
     }
 
+    private static final String TOKENS_FILE_LINE = "-- START TOKENS_FILE ";
+
     private Object loadContentsFromFile(File file, IPythonNature nature)
             throws FileNotFoundException, IOException, MisconfigurationException {
         FileInputStream fileInputStream = new FileInputStream(file);
         try {
             //            Timer timer = new Timer();
             String expected = "-- VERSION_" + AbstractAdditionalTokensInfo.version; //X is the version
+            String expectedTextTrees = "-- VERSION_" + AbstractAdditionalTokensInfo.TEXT_TREES_VERSION;
             InputStreamReader reader = new InputStreamReader(fileInputStream);
             FastBufferedReader bufferedReader = new FastBufferedReader(reader);
             FastStringBuffer string = bufferedReader.readLine();
@@ -449,7 +514,9 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                         null);
                 Tuple3<Object, Object, Object> superTupWithResults = tupWithResults.o1;
                 //tupWithResults.o2 = DiskCache
-                if (string.toString().equals(expected)) {
+                String versionLine = string.toString();
+                boolean migrateFromTextTrees = versionLine.equals(expectedTextTrees);
+                if (versionLine.equals(expected) || migrateFromTextTrees) {
                     //OK, proceed with new I/O format!
                     try {
                         try {
@@ -467,6 +534,14 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                                         superTupWithResults.o2 = TreeIO.loadTreeFrom(bufferedReader, dictionary,
                                                 tempBuf.clear(), objectsPoolMap, nature);
 
+                                    } else if (line.startsWith(TOKENS_FILE_LINE)) {
+                                        long stamp = Long.parseLong(
+                                                line.toString().substring(TOKENS_FILE_LINE.length()).trim());
+                                        TokensSegment[] segments = TokensFileIO.load(
+                                                TokensFileIO.getTokensFile(file, stamp), stamp);
+                                        superTupWithResults.o1 = segments[0];
+                                        superTupWithResults.o2 = segments[1];
+
                                     } else if (line.startsWith("-- START DICTIONARY")) {
                                         dictionary = TreeIO.loadDictFrom(bufferedReader, tempBuf.clear(),
                                                 objectsPoolMap);
@@ -478,7 +553,7 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                                         tupWithResults.o2 = DiskCache.loadFrom(bufferedReader, objectsPoolMap);
 
                                     } else if (line.startsWith("-- VERSION_")) {
-                                        if (!line.endsWith(String.valueOf(AbstractAdditionalTokensInfo.version))) {
+                                        if (!line.toString().equals(versionLine)) {
                                             throw new RuntimeException("Expected the version to be: "
                                                     + AbstractAdditionalTokensInfo.version + " Found: " + line);
                                         }
@@ -498,6 +573,9 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
 
                     restoreSavedInfo(tupWithResults);
                     //                    timer.printDiff("Time taken");
+                    if (migrateFromTextTrees) {
+                        save(); //Save in new format!
+                    }
                     return tupWithResults;
                 } else {
                     throw new RuntimeException("Version does not match. Found: " + string + ". Expected: " + expected);
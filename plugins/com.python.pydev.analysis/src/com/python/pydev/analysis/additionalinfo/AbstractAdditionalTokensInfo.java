@@ -19,17 +19,15 @@ import java.io.ObjectInputStream;
 import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 
 import org.eclipse.jface.text.IDocument;
-import org.python.pydev.ast.codecompletion.revisited.PyPublicTreeMap;
 import org.python.pydev.core.FileUtilsFileBuffer;
 import org.python.pydev.core.IInfo;
 import org.python.pydev.core.IPythonNature;
@@ -47,6 +45,7 @@ import org.python.pydev.parser.jython.ast.NameTok;
 import org.python.pydev.parser.visitors.NodeUtils;
 import org.python.pydev.parser.visitors.scope.ASTEntry;
 import org.python.pydev.parser.visitors.scope.DefinitionsASTIteratorVisitor;
+import org.python.pydev.shared_core.callbacks.ICallback0;
 import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.python.pydev.shared_core.string.FullRepIterable;
 import org.python.pydev.shared_core.string.StringUtils;
@@ -106,31 +105,51 @@ public abstract class AbstractAdditionalTokensInfo {
     public final static int INNER = 2;
 
     /**
-     * indexes used so that we can access the information faster - it is ordered through a tree map, and should be
-     * very fast to access given its initials.
-     *
-     * It contains only top/level information for a module
+     * If true, the segments created for the tokens are memory-mapped from temporary files (so, they're kept
+     * outside of the java heap).
+     */
+    public static final boolean USE_MAPPED_TOKENS_SEGMENTS = Boolean.getBoolean("pydev.tokens.offheap");
+
+    /**
+     * If true, the tokens are kept in on-heap trees (as was done before SegmentTokensStorage became the default).
      *
-     * This map is persisted.
+     * This is only kept as a fallback: TreeMapTokensStorage is fully synchronized, so, with it, queries wait while
+     * a change is being applied.
      */
-    protected SortedMap<String, Set<IInfo>> topLevelInitialsToInfo = new PyPublicTreeMap<String, Set<IInfo>>();
+    public static final boolean USE_TREE_MAP_TOKENS_STORAGE = Boolean.getBoolean("pydev.tokens.treemap");
 
     /**
-     * indexes so that we can get 'inner information' from classes, such as methods or inner classes from a class
+     * Keeps the top level and inner tokens (this is what's persisted).
+     *
+     * Queries don't hold the lock (the storage is thread-safe). With the default SegmentTokensStorage readers get a
+     * snapshot without locking (with the TreeMapTokensStorage fallback they synchronize on the storage).
+     *
+     * Changes are done holding the lock (along with the related changes in subclasses, see
+     * onAddingModulesTokens).
      */
-    protected SortedMap<String, Set<IInfo>> innerInitialsToInfo = new PyPublicTreeMap<String, Set<IInfo>>();
+    protected final ITokensStorage tokensStorage = createTokensStorage();
+
+    protected ITokensStorage createTokensStorage() {
+        if (USE_TREE_MAP_TOKENS_STORAGE) {
+            return new TreeMapTokensStorage();
+        }
+        SegmentTokensStorage storage = new SegmentTokensStorage(new ICallback0<IPythonNature>() {
+
+            @Override
+            public IPythonNature call() {
+                return getNature();
+            }
+        });
+        storage.setUseMappedFiles(USE_MAPPED_TOKENS_SEGMENTS);
+        return storage;
+    }
 
     /**
      * Should be used before re-creating the info, so that we have enough memory.
      */
     public void clearAllInfo() {
         synchronized (lock) {
-            if (topLevelInitialsToInfo != null) {
-                topLevelInitialsToInfo.clear();
-            }
-            if (innerInitialsToInfo != null) {
-                innerInitialsToInfo.clear();
-            }
+            tokensStorage.clear();
         }
     }
 
@@ -145,6 +164,25 @@ public abstract class AbstractAdditionalTokensInfo {
         boolean doCompare(String lowerCaseQual, String infoName);
     }
 
+    /**
+     * The tokens created for a module (see createModuleTokens), which are added later on to the info.
+     */
+    public static final class ModuleTokens {
+
+        public final ModulesKey key;
+        public final List<IInfo> topLevel = new ArrayList<IInfo>();
+        public final List<IInfo> inner = new ArrayList<IInfo>();
+
+        /**
+         * All the tokens (in the order they were created).
+         */
+        public final List<IInfo> all = new ArrayList<IInfo>();
+
+        public ModuleTokens(ModulesKey key) {
+            this.key = key;
+        }
+    }
+
     /**
      * A filter that checks if tokens are equal
      */
@@ -182,8 +220,19 @@ public abstract class AbstractAdditionalTokensInfo {
      * 3: Changed from string-> list to string->set
      * 4: Keeping file, line and column for entries
      * 5: Fix when restoring information
+     * 6: Tokens saved in a binary file which is memory-mapped on load (see TokensFileIO)
+     */
+    protected static final int version = 6;
+
+    /**
+     * The last version where the tokens were saved as text trees in the main file (still loaded to migrate).
+     */
+    protected static final int TEXT_TREES_VERSION = 5;
+
+    /**
+     * The stamp of the tokens file written in the last save.
      */
-    protected static final int version = 5;
+    private long savedTokensStamp = -1;
 
     public AbstractAdditionalTokensInfo() {
     }
@@ -195,59 +244,34 @@ public abstract class AbstractAdditionalTokensInfo {
      */
     protected void add(IInfo info, int doOn) {
         synchronized (lock) {
-            String name = info.getName();
-            String initials = getInitials(name);
-            SortedMap<String, Set<IInfo>> initialsToInfo;
-
-            if (doOn == TOP_LEVEL) {
-                if (info.getPath() != null && info.getPath().length() > 0) {
-                    throw new RuntimeException(
-                            "Error: the info being added is added as an 'top level' info, but has path. Info:" + info);
-                }
-                initialsToInfo = topLevelInitialsToInfo;
+            checkCanAdd(info, doOn);
+            tokensStorage.add(info, doOn);
+        }
+    }
 
-            } else if (doOn == INNER) {
-                if (info.getPath() == null || info.getPath().length() == 0) {
-                    throw new RuntimeException(
-                            "Error: the info being added is added as an 'inner' info, but does not have a path. Info: "
-                                    + info);
-                }
-                initialsToInfo = innerInitialsToInfo;
+    private void checkCanAdd(IInfo info, int doOn) {
+        if (doOn == TOP_LEVEL) {
+            if (info.getPath() != null && info.getPath().length() > 0) {
+                throw new RuntimeException(
+                        "Error: the info being added is added as an 'top level' info, but has path. Info:" + info);
+            }
 
-            } else {
-                throw new RuntimeException("List to add is invalid: " + doOn);
+        } else if (doOn == INNER) {
+            if (info.getPath() == null || info.getPath().length() == 0) {
+                throw new RuntimeException(
+                        "Error: the info being added is added as an 'inner' info, but does not have a path. Info: "
+                                + info);
             }
-            Set<IInfo> listForInitials = getAndCreateListForInitials(initials, initialsToInfo);
-            listForInitials.add(info);
-        }
-    }
 
-    /**
-     * @param name the name from where we want to get the initials
-     * @return the initials for the name
-     */
-    protected String getInitials(String name) {
-        if (name.length() < NUMBER_OF_INITIALS_TO_INDEX) {
-            return name;
+        } else {
+            throw new RuntimeException("List to add is invalid: " + doOn);
         }
-        return name.substring(0, NUMBER_OF_INITIALS_TO_INDEX).toLowerCase();
     }
 
     /**
-     * @param initials the initials we are looking for
-     * @param initialsToInfo this is the list we should use (top level or inner)
-     * @return the list of tokens with the specified initials (must be exact match)
+     * @return the info for the assign (it's not added to the storage).
      */
-    protected Set<IInfo> getAndCreateListForInitials(String initials, SortedMap<String, Set<IInfo>> initialsToInfo) {
-        Set<IInfo> lInfo = initialsToInfo.get(initials);
-        if (lInfo == null) {
-            lInfo = new HashSet<IInfo>();
-            initialsToInfo.put(initials, lInfo);
-        }
-        return lInfo;
-    }
-
-    private IInfo addAssignTargets(ASTEntry entry, String moduleName, int doOn, String path, boolean lastIsMethod,
+    private IInfo createAssignTargetsInfo(ASTEntry entry, String moduleName, String path, boolean lastIsMethod,
             String file) {
         String rep = NodeUtils.getFullRepresentationString(entry.node);
         if (lastIsMethod) {
@@ -260,7 +284,6 @@ public abstract class AbstractAdditionalTokensInfo {
                     AttrInfo info = new AttrInfo(ObjectsInternPool.internUnsynched(rep), moduleName,
                             ObjectsInternPool.internUnsynched(path), false, getNature(), file,
                             entry.node.beginLine, entry.node.beginColumn);
-                    add(info, doOn);
                     return info;
                 }
             }
@@ -270,7 +293,6 @@ public abstract class AbstractAdditionalTokensInfo {
                     moduleName,
                     ObjectsInternPool.internUnsynched(path), false, getNature(), file,
                     entry.node.beginLine, entry.node.beginColumn);
-            add(info, doOn);
             return info;
         }
         return null;
@@ -279,6 +301,21 @@ public abstract class AbstractAdditionalTokensInfo {
     protected abstract IPythonNature getNature();
 
     public List<IInfo> addAstInfo(ModulesKey key, boolean generateDelta) throws Exception {
+        SimpleNode node = parseDefinitions(key);
+        if (node == null) {
+            return null;
+        }
+
+        return addAstInfo(node, key, generateDelta);
+    }
+
+    /**
+     * Reads the contents of the given module and parses it with the FastDefinitionsParser (may be called from
+     * multiple threads).
+     *
+     * @return the node with the definitions found (or null if it couldn't be parsed).
+     */
+    public static SimpleNode parseDefinitions(ModulesKey key) throws Exception {
         boolean isZipModule = key instanceof ModulesKeyForZip;
         ModulesKeyForZip modulesKeyForZip = null;
         if (isZipModule) {
@@ -320,12 +357,7 @@ public abstract class AbstractAdditionalTokensInfo {
             throw new RuntimeException("Don't know how to handle: " + doc + " -- " + doc.getClass());
         }
 
-        SimpleNode node = FastDefinitionsParser.parse(charArray, key.file.getName(), len, key.file);
-        if (node == null) {
-            return null;
-        }
-
-        return addAstInfo(node, key, generateDelta);
+        return FastDefinitionsParser.parse(charArray, key.file.getName(), len, key.file);
     }
 
     /**
@@ -334,10 +366,48 @@ public abstract class AbstractAdditionalTokensInfo {
      * @param m the module we want to add to the info
      */
     public List<IInfo> addAstInfo(SimpleNode node, ModulesKey key, boolean generateDelta) {
-        List<IInfo> createdInfos = new ArrayList<IInfo>();
+        ModuleTokens moduleTokens = createModuleTokens(node, key);
+        if (moduleTokens == null) {
+            return new ArrayList<IInfo>();
+        }
+        addModulesTokens(Collections.singletonList(moduleTokens));
+        return moduleTokens.all;
+    }
+
+    /**
+     * Adds the tokens of the given modules (see createModuleTokens) as a single change.
+     */
+    public void addModulesTokens(List<ModuleTokens> modules) {
+        List<IInfo> topLevelInfos = new ArrayList<IInfo>();
+        List<IInfo> innerInfos = new ArrayList<IInfo>();
+        for (ModuleTokens moduleTokens : modules) {
+            topLevelInfos.addAll(moduleTokens.topLevel);
+            innerInfos.addAll(moduleTokens.inner);
+        }
+        synchronized (this.lock) {
+            onAddingModulesTokens(modules);
+            tokensStorage.addAll(topLevelInfos, innerInfos);
+        }
+    }
+
+    /**
+     * Called holding the lock right before the tokens of the given modules are published in the storage (so,
+     * subclasses may publish information related to those modules in the same critical section).
+     */
+    protected void onAddingModulesTokens(List<ModuleTokens> modules) {
+    }
+
+    /**
+     * Creates the tokens for a module without adding them to this info (only the intern pool lock is held while
+     * creating them, so, it may be called from multiple threads).
+     *
+     * @return the tokens created or null if they couldn't be created.
+     */
+    public ModuleTokens createModuleTokens(SimpleNode node, ModulesKey key) {
         if (node == null || key.name == null) {
-            return createdInfos;
+            return null;
         }
+        ModuleTokens moduleTokens = new ModuleTokens(key);
         try {
             Tuple<DefinitionsASTIteratorVisitor, Iterator<ASTEntry>> tup = getInnerEntriesForAST(node);
             if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
@@ -349,101 +419,106 @@ public abstract class AbstractAdditionalTokensInfo {
 
                 FastStack<SimpleNode> tempStack = new FastStack<SimpleNode>(10);
 
-                synchronized (this.lock) {
-                    synchronized (ObjectsInternPool.lock) {
-                        final String file = key.file != null ? ObjectsInternPool.internUnsynched(key.file.toString())
-                                : null;
-                        key.name = ObjectsInternPool.internUnsynched(key.name);
-
-                        while (entries.hasNext()) {
-                            ASTEntry entry = entries.next();
-                            IInfo infoCreated = null;
-
-                            if (entry.parent == null) { //we only want those that are in the global scope
-                                if (entry.node instanceof ClassDef) {
-                                    //no intern construct (locked in this loop)
-                                    NameTok name = (NameTok) ((ClassDef) entry.node).name;
-                                    ClassInfo info = new ClassInfo(
-                                            ObjectsInternPool.internUnsynched(name.id),
-                                            key.name, null, false, getNature(), file, name.beginLine,
-                                            name.beginColumn);
-                                    add(info, TOP_LEVEL);
-                                    infoCreated = info;
-
-                                } else if (entry.node instanceof FunctionDef) {
-                                    //no intern construct (locked in this loop)
-                                    NameTok name = (NameTok) ((FunctionDef) entry.node).name;
-                                    FuncInfo info2 = new FuncInfo(
-                                            ObjectsInternPool.internUnsynched(name.id),
-                                            key.name, null, false, getNature(), file, name.beginLine,
-                                            name.beginColumn);
-                                    add(info2, TOP_LEVEL);
-                                    infoCreated = info2;
-
-                                } else {
-                                    //it is an assign
-                                    infoCreated = this.addAssignTargets(entry, key.name, TOP_LEVEL, null, false, file);
+                //The infos are created holding only the intern pool lock and are added to the storage in a single
+                //change afterwards (so, the lock of this info is only held to publish them).
+                synchronized (ObjectsInternPool.lock) {
+                    final String file = key.file != null ? ObjectsInternPool.internUnsynched(key.file.toString())
+                            : null;
+                    key.name = ObjectsInternPool.internUnsynched(key.name);
+
+                    while (entries.hasNext()) {
+                        ASTEntry entry = entries.next();
+                        IInfo infoCreated = null;
+                        int doOn = TOP_LEVEL;
+
+                        if (entry.parent == null) { //we only want those that are in the global scope
+                            if (entry.node instanceof ClassDef) {
+                                //no intern construct (locked in this loop)
+                                NameTok name = (NameTok) ((ClassDef) entry.node).name;
+                                ClassInfo info = new ClassInfo(
+                                        ObjectsInternPool.internUnsynched(name.id),
+                                        key.name, null, false, getNature(), file, name.beginLine,
+                                        name.beginColumn);
+                                infoCreated = info;
+
+                            } else if (entry.node instanceof FunctionDef) {
+                                //no intern construct (locked in this loop)
+                                NameTok name = (NameTok) ((FunctionDef) entry.node).name;
+                                FuncInfo info2 = new FuncInfo(
+                                        ObjectsInternPool.internUnsynched(name.id),
+                                        key.name, null, false, getNature(), file, name.beginLine,
+                                        name.beginColumn);
+                                infoCreated = info2;
 
-                                }
                             } else {
-                                if (entry.node instanceof ClassDef || entry.node instanceof FunctionDef) {
-                                    //ok, it has a parent, so, let's check to see if the path we got only has class definitions
-                                    //as the parent (and get that path)
-                                    Tuple<String, Boolean> pathToRoot = this.getPathToRoot(entry, false, false,
-                                            tempStack);
-                                    if (pathToRoot != null && pathToRoot.o1 != null && pathToRoot.o1.length() > 0) {
-                                        //if the root is not valid, it is not only classes in the path (could be a method inside
-                                        //a method, or something similar).
-
-                                        if (entry.node instanceof ClassDef) {
-                                            NameTok name = ((NameTok) ((ClassDef) entry.node).name);
-                                            ClassInfo info = new ClassInfo(
-                                                    ObjectsInternPool.internUnsynched(name.id),
-                                                    key.name, ObjectsInternPool.internUnsynched(pathToRoot.o1), false,
-                                                    getNature(), file, name.beginLine, name.beginColumn);
-                                            add(info, INNER);
-                                            infoCreated = info;
-
-                                        } else {
-                                            //FunctionDef
-                                            NameTok name = ((NameTok) ((FunctionDef) entry.node).name);
-                                            FuncInfo info2 = new FuncInfo(
-                                                    ObjectsInternPool.internUnsynched(name.id),
-                                                    key.name, ObjectsInternPool.internUnsynched(pathToRoot.o1), false,
-                                                    getNature(), file, name.beginLine, name.beginColumn);
-                                            add(info2, INNER);
-                                            infoCreated = info2;
-
-                                        }
-                                    }
-                                } else {
-                                    //it is an assign
-                                    Tuple<String, Boolean> pathToRoot = this.getPathToRoot(entry, true, false,
-                                            tempStack);
-                                    if (pathToRoot != null && pathToRoot.o1 != null && pathToRoot.o1.length() > 0) {
-                                        infoCreated = this.addAssignTargets(entry, key.name, INNER, pathToRoot.o1,
-                                                pathToRoot.o2, file);
+                                //it is an assign
+                                infoCreated = this.createAssignTargetsInfo(entry, key.name, null, false, file);
+
+                            }
+                        } else {
+                            doOn = INNER;
+                            if (entry.node instanceof ClassDef || entry.node instanceof FunctionDef) {
+                                //ok, it has a parent, so, let's check to see if the path we got only has class definitions
+                                //as the parent (and get that path)
+                                Tuple<String, Boolean> pathToRoot = this.getPathToRoot(entry, false, false,
+                                        tempStack);
+                                if (pathToRoot != null && pathToRoot.o1 != null && pathToRoot.o1.length() > 0) {
+                                    //if the root is not valid, it is not only classes in the path (could be a method inside
+                                    //a method, or something similar).
+
+                                    if (entry.node instanceof ClassDef) {
+                                        NameTok name = ((NameTok) ((ClassDef) entry.node).name);
+                                        ClassInfo info = new ClassInfo(
+                                                ObjectsInternPool.internUnsynched(name.id),
+                                                key.name, ObjectsInternPool.internUnsynched(pathToRoot.o1), false,
+                                                getNature(), file, name.beginLine, name.beginColumn);
+                                        infoCreated = info;
+
+                                    } else {
+                                        //FunctionDef
+                                        NameTok name = ((NameTok) ((FunctionDef) entry.node).name);
+                                        FuncInfo info2 = new FuncInfo(
+                                                ObjectsInternPool.internUnsynched(name.id),
+                                                key.name, ObjectsInternPool.internUnsynched(pathToRoot.o1), false,
+                                                getNature(), file, name.beginLine, name.beginColumn);
+                                        infoCreated = info2;
+
                                     }
                                 }
+                            } else {
+                                //it is an assign
+                                Tuple<String, Boolean> pathToRoot = this.getPathToRoot(entry, true, false,
+                                        tempStack);
+                                if (pathToRoot != null && pathToRoot.o1 != null && pathToRoot.o1.length() > 0) {
+                                    infoCreated = this.createAssignTargetsInfo(entry, key.name, pathToRoot.o1,
+                                            pathToRoot.o2, file);
+                                }
                             }
+                        }
 
-                            if (infoCreated != null) {
-                                createdInfos.add(infoCreated);
+                        if (infoCreated != null) {
+                            checkCanAdd(infoCreated, doOn);
+                            if (doOn == TOP_LEVEL) {
+                                moduleTokens.topLevel.add(infoCreated);
+                            } else {
+                                moduleTokens.inner.add(infoCreated);
                             }
+                            moduleTokens.all.add(infoCreated);
+                        }
 
-                        } //end while
-
-                    } //end lock ObjectsPool.lock
+                    } //end while
 
-                } //end this.lock
+                } //end lock ObjectsPool.lock
 
             } catch (Exception e) {
                 Log.log(e);
+                return null;
             }
         } catch (Exception e) {
             Log.log(e);
+            return null;
         }
-        return createdInfos;
+        return moduleTokens;
     }
 
     /**
@@ -462,23 +537,7 @@ public abstract class AbstractAdditionalTokensInfo {
      */
     public Set<String> getAllModulesWithTokens() {
         HashSet<String> ret = new HashSet<String>();
-        synchronized (lock) {
-            Set<Entry<String, Set<IInfo>>> entrySet = this.topLevelInitialsToInfo.entrySet();
-            for (Entry<String, Set<IInfo>> entry : entrySet) {
-                Set<IInfo> value = entry.getValue();
-                for (IInfo info : value) {
-                    ret.add(info.getDeclaringModuleName());
-                }
-            }
-
-            entrySet = this.innerInitialsToInfo.entrySet();
-            for (Entry<String, Set<IInfo>> entry : entrySet) {
-                Set<IInfo> value = entry.getValue();
-                for (IInfo info : value) {
-                    ret.add(info.getDeclaringModuleName());
-                }
-            }
-        }
+        tokensStorage.getAllModulesWithTokens(ret);
         return ret;
 
     }
@@ -560,33 +619,11 @@ public abstract class AbstractAdditionalTokensInfo {
             org.python.pydev.shared_core.log.ToLogFile.toLogFile(this, "Removing ast info from: " + moduleName);
         }
         synchronized (lock) {
-            removeInfoFromMap(moduleName, topLevelInitialsToInfo);
-            removeInfoFromMap(moduleName, innerInitialsToInfo);
+            tokensStorage.removeInfoFromModule(moduleName);
         }
 
     }
 
-    /**
-     * @param moduleName
-     * @param initialsToInfo
-     */
-    private void removeInfoFromMap(String moduleName, SortedMap<String, Set<IInfo>> initialsToInfo) {
-        Iterator<Set<IInfo>> itListOfInfo = initialsToInfo.values().iterator();
-        while (itListOfInfo.hasNext()) {
-
-            Iterator<IInfo> it = itListOfInfo.next().iterator();
-            while (it.hasNext()) {
-
-                IInfo info = it.next();
-                if (info != null && info.getDeclaringModuleName() != null) {
-                    if (info.getDeclaringModuleName().equals(moduleName)) {
-                        it.remove();
-                    }
-                }
-            }
-        }
-    }
-
     /**
      * This is the function for which we are most optimized!
      *
@@ -594,95 +631,56 @@ public abstract class AbstractAdditionalTokensInfo {
      * @return a list of info, all starting with the given qualifier
      */
     public Collection<IInfo> getTokensStartingWith(String qualifier, int getWhat) {
-        synchronized (lock) {
-            return getWithFilter(qualifier, getWhat, startingWithFilter, true, null);
-        }
+        return getWithFilter(qualifier, getWhat, startingWithFilter, true, null);
     }
 
     public Collection<IInfo> getTokensStartingWith(String qualifier, int getWhat, Collection<IInfo> result) {
-        synchronized (lock) {
-            return getWithFilter(qualifier, getWhat, startingWithFilter, true, result);
-        }
+        return getWithFilter(qualifier, getWhat, startingWithFilter, true, result);
     }
 
     public Collection<IInfo> getTokensEqualTo(String qualifier, int getWhat) {
-        synchronized (lock) {
-            return getWithFilter(qualifier, getWhat, equalsFilter, false, null);
-        }
+        return getWithFilter(qualifier, getWhat, equalsFilter, false, null);
     }
 
     public Collection<IInfo> getTokensEqualTo(String qualifier, int getWhat, Collection<IInfo> result) {
-        synchronized (lock) {
-            return getWithFilter(qualifier, getWhat, equalsFilter, false, result);
-        }
+        return getWithFilter(qualifier, getWhat, equalsFilter, false, result);
     }
 
     protected Collection<IInfo> getWithFilter(String qualifier, int getWhat, Filter filter, boolean useLowerCaseQual,
             Collection<IInfo> result) {
-        synchronized (lock) {
-            if (result == null) {
-                result = new ArrayList<IInfo>();
-            }
-
-            if ((getWhat & TOP_LEVEL) != 0) {
-                getWithFilter(qualifier, topLevelInitialsToInfo, result, filter, useLowerCaseQual);
-            }
-            if ((getWhat & INNER) != 0) {
-                getWithFilter(qualifier, innerInitialsToInfo, result, filter, useLowerCaseQual);
-            }
-            return result;
+        if (result == null) {
+            result = new ArrayList<IInfo>();
         }
+        tokensStorage.getWithFilter(qualifier, getWhat, filter, useLowerCaseQual, result);
+        return result;
     }
 
     /**
-     * @param qualifier
-     * @param initialsToInfo this is where we are going to get the info from (currently: inner or top level list)
-     * @param toks (out) the tokens will be added to this list
-     * @return
+     * Adds to the result the tokens matching the given matcher (i.e.: camel-case/fuzzy or substring matching).
+     * Only the best matches are kept in the result, so, it's much cheaper than getting all the tokens to filter
+     * them afterwards.
      */
-    protected void getWithFilter(String qualifier, SortedMap<String, Set<IInfo>> initialsToInfo,
-            Collection<IInfo> toks, Filter filter, boolean useLowerCaseQual) {
-        String initials = getInitials(qualifier);
-        String qualToCompare = qualifier;
-        if (useLowerCaseQual) {
-            qualToCompare = qualifier.toLowerCase();
-        }
-
-        //get until the end of the alphabet
-        SortedMap<String, Set<IInfo>> subMap = initialsToInfo.subMap(initials, initials + "\uffff\uffff\uffff\uffff");
-
-        for (Set<IInfo> listForInitials : subMap.values()) {
+    public void getBestMatches(TokenMatcher matcher, int getWhat, TopMatches<IInfo> result) {
+        tokensStorage.getBestMatches(matcher, getWhat, result);
+    }
 
-            for (IInfo info : listForInitials) {
-                if (filter.doCompare(qualToCompare, info)) {
-                    toks.add(info);
-                }
-            }
-        }
+    /**
+     * @param mode TokenMatcher.FUZZY, TokenMatcher.SUBSTRING or TokenMatcher.SUBSTRING_OR_FUZZY
+     * @return up to maxResults tokens matching the given query (best matches first).
+     */
+    public List<IInfo> getBestMatches(String query, int getWhat, int mode, int maxResults) {
+        TopMatches<IInfo> result = new TopMatches<IInfo>(maxResults);
+        getBestMatches(new TokenMatcher(query, mode), getWhat, result);
+        return result.getItems();
     }
 
     /**
      * @return all the tokens that are in this info (top level or inner)
      */
     public Collection<IInfo> getAllTokens() {
-        synchronized (lock) {
-            Collection<Set<IInfo>> lInfo = this.topLevelInitialsToInfo.values();
-
-            ArrayList<IInfo> toks = new ArrayList<IInfo>();
-            for (Set<IInfo> list : lInfo) {
-                for (IInfo info : list) {
-                    toks.add(info);
-                }
-            }
-
-            lInfo = this.innerInitialsToInfo.values();
-            for (Set<IInfo> list : lInfo) {
-                for (IInfo info : list) {
-                    toks.add(info);
-                }
-            }
-            return toks;
-        }
+        ArrayList<IInfo> toks = new ArrayList<IInfo>();
+        tokensStorage.getAllTokens(toks);
+        return toks;
     }
 
     /**
@@ -725,6 +723,9 @@ public abstract class AbstractAdditionalTokensInfo {
                     stream.close();
                 }
             }
+            if (savedTokensStamp != -1) {
+                TokensFileIO.removeOldTokensFiles(persistingLocation, savedTokensStamp);
+            }
         } catch (Exception e) {
             Log.log(e);
         }
@@ -749,23 +750,16 @@ public abstract class AbstractAdditionalTokensInfo {
                         + getAllTokens().size() + ") " + pathToSave);
             }
 
-            Map<String, Integer> dictionary = new HashMap<String, Integer>();
-            tempBuf.append("-- START TREE 1\n");
-            TreeIO.dumpTreeToBuffer(this.topLevelInitialsToInfo, tempBuf, dictionary);
-
-            tempBuf.append("-- START TREE 2\n");
-            TreeIO.dumpTreeToBuffer(this.innerInitialsToInfo, tempBuf, dictionary);
-
-            FastStringBuffer buf2 = new FastStringBuffer(50 * (dictionary.size() + 4));
-            TreeIO.dumpDictToBuffer(dictionary, buf2);
+            //The tokens are written to a separate binary file (which is memory-mapped when loaded) and the
+            //main file just references it.
+            long stamp = Math.max(System.currentTimeMillis(), savedTokensStamp + 1);
+            TokensFileIO.save(TokensFileIO.getTokensFile(pathToSave, stamp), stamp,
+                    tokensStorage.toSegment(TOP_LEVEL), tokensStorage.toSegment(INNER));
+            savedTokensStamp = stamp;
 
-            //Write the dictionary before the actual trees.
-            writer.write(buf2.getInternalCharsArray(), 0, buf2.length());
-            buf2 = null;
-
-            //Note: tried LZFFileInputStream from https://github.com/ning/compress
-            //and Snappy from https://github.com/dain/snappy checking to see if by writing less we'd
-            //get a better time but it got a bit slower (gzip was slowest, then snappy and the faster was LZFFileInputStream)
+            tempBuf.append("-- START TOKENS_FILE ");
+            tempBuf.append(stamp);
+            tempBuf.append('\n');
             writer.write(tempBuf.getInternalCharsArray(), 0, tempBuf.length());
         }
     }
@@ -779,17 +773,21 @@ public abstract class AbstractAdditionalTokensInfo {
     protected void restoreSavedInfo(Object o) throws MisconfigurationException {
         synchronized (lock) {
             Tuple3<Object, Object, Object> readFromFile = (Tuple3<Object, Object, Object>) o;
-            SortedMap<String, Set<IInfo>> o1 = (SortedMap<String, Set<IInfo>>) readFromFile.o1;
-            SortedMap<String, Set<IInfo>> o2 = (SortedMap<String, Set<IInfo>>) readFromFile.o2;
-
-            if (o1 == null) {
+            if (readFromFile.o1 == null) {
                 throw new RuntimeException("Error in I/O (topLevelInitialsToInfo is null). Rebuilding internal info.");
             }
-            if (o2 == null) {
+            if (readFromFile.o2 == null) {
                 throw new RuntimeException("Error in I/O (innerInitialsToInfo is null). Rebuilding internal info.");
             }
-            this.topLevelInitialsToInfo = o1;
-            this.innerInitialsToInfo = o2;
+            if (readFromFile.o1 instanceof TokensSegment) {
+                //current format: segments mapped from the tokens file.
+                tokensStorage.restore((TokensSegment) readFromFile.o1, (TokensSegment) readFromFile.o2,
+                        getNature());
+            } else {
+                //text trees (version 5 or older).
+                tokensStorage.restore((SortedMap<String, Set<IInfo>>) readFromFile.o1,
+                        (SortedMap<String, Set<IInfo>>) readFromFile.o2);
+            }
             if (readFromFile.o3 != null) {
                 //may be null in new format (where that's checked during load time).
                 if (AbstractAdditionalTokensInfo.version != (Integer) readFromFile.o3) {
@@ -806,10 +804,10 @@ public abstract class AbstractAdditionalTokensInfo {
             buffer.append("AdditionalInfo{");
 
             buffer.append("topLevel=[");
-            entrySetToString(buffer, this.topLevelInitialsToInfo.entrySet());
+            entrySetToString(buffer, tokensStorage.toTree(TOP_LEVEL).entrySet());
             buffer.append("]\n");
             buffer.append("inner=[");
-            entrySetToString(buffer, this.innerInitialsToInfo.entrySet());
+            entrySetToString(buffer, tokensStorage.toTree(INNER).entrySet());
             buffer.append("]");
 
             buffer.append("}");
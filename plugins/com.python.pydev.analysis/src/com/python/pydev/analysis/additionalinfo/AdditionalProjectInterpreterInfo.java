@@ -295,6 +295,21 @@ public class AdditionalProjectInterpreterInfo extends AbstractAdditionalInfoWith
         return ret;
     }
 
+    /**
+     * @param mode TokenMatcher.FUZZY, TokenMatcher.SUBSTRING or TokenMatcher.SUBSTRING_OR_FUZZY
+     * @return up to maxResults tokens (from all the related infos) matching the given query (best matches first).
+     */
+    public static List<IInfo> getBestMatches(String query, IPythonNature nature, int getWhat, int mode,
+            int maxResults) throws MisconfigurationException {
+        TokenMatcher matcher = new TokenMatcher(query, mode);
+        TopMatches<IInfo> result = new TopMatches<IInfo>(maxResults);
+        List<AbstractAdditionalTokensInfo> additionalInfo = getAdditionalInfo(nature);
+        for (AbstractAdditionalTokensInfo info : additionalInfo) {
+            info.getBestMatches(matcher, getWhat, result);
+        }
+        return result.getItems();
+    }
+
     /**
      * @param project the project we want to get info on
      * @return a list of the additional info for the project + referencing projects
@@ -7,6 +7,7 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.python.pydev.core.ModulesKey;
+import org.python.pydev.shared_core.callbacks.ICallback;
 import org.python.pydev.shared_core.index.IFields;
 import org.python.pydev.shared_core.structure.OrderedMap;
 
@@ -23,4 +24,28 @@ public interface IReferenceSearches {
     List<ModulesKey> search(IProject project, OrderedMap<String, Set<String>> fieldNameToValues,
             IProgressMonitor monitor) throws OperationCanceledException;
 
+    /**
+     * @param waitForIndexing if false and the index is still being updated, the search is done in the
+     * contents currently available in the index (which may not have all the latest changes).
+     */
+    List<ModulesKey> search(IProject project, OrderedMap<String, Set<String>> fieldNameToValues,
+            IProgressMonitor monitor, boolean waitForIndexing) throws OperationCanceledException;
+
+    /**
+     * Same as search, but also provides the contents of the module and the offsets of the matched tokens
+     * as they were when indexed (so that the matches may be gotten without reading the module again).
+     */
+    List<IndexedModuleMatch> searchWithContents(IProject project,
+            OrderedMap<String, Set<String>> fieldNameToValues, IProgressMonitor monitor, boolean waitForIndexing)
+            throws OperationCanceledException;
+
+    /**
+     * Same as searchWithContents, but each match is passed to the given callback as soon as it's found (so,
+     * the first results may be shown before the search finishes). If the callback returns false the search
+     * is stopped.
+     */
+    void searchWithContents(IProject project, OrderedMap<String, Set<String>> fieldNameToValues,
+            IProgressMonitor monitor, boolean waitForIndexing, ICallback<Boolean, IndexedModuleMatch> onMatch)
+            throws OperationCanceledException;
+
 }
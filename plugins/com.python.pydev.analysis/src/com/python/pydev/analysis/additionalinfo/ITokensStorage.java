@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.SortedMap;
+
+import org.python.pydev.core.IInfo;
+import org.python.pydev.core.IPythonNature;
+
+import com.python.pydev.analysis.additionalinfo.AbstractAdditionalTokensInfo.Filter;
+
+/**
+ * Storage engine for the tokens in the additional info (top level and inner tokens).
+ *
+ * Implementations must be thread-safe: queries are done without holding the lock of the additional info
+ * (so, they may be done concurrently with changes).
+ */
+public interface ITokensStorage {
+
+    /**
+     * @param doOn AbstractAdditionalTokensInfo.TOP_LEVEL or AbstractAdditionalTokensInfo.INNER
+     */
+    void add(IInfo info, int doOn);
+
+    /**
+     * Adds the given tokens as a single change (i.e.: all the tokens of a module).
+     */
+    void addAll(Collection<IInfo> topLevel, Collection<IInfo> inner);
+
+    void removeInfoFromModule(String moduleName);
+
+    /**
+     * Adds to the result the tokens whose (lowercase) name starts with the (lowercase) qualifier
+     * and which are accepted by the filter.
+     *
+     * @param getWhat AbstractAdditionalTokensInfo.TOP_LEVEL and/or AbstractAdditionalTokensInfo.INNER
+     */
+    void getWithFilter(String qualifier, int getWhat, Filter filter, boolean useLowerCaseQual,
+            Collection<IInfo> result);
+
+    /**
+     * Adds to the result the tokens whose name matches the given matcher (the result only keeps the best matches,
+     * so, tokens which surely wouldn't be kept may be skipped without creating the related IInfo).
+     *
+     * @param getWhat AbstractAdditionalTokensInfo.TOP_LEVEL and/or AbstractAdditionalTokensInfo.INNER
+     */
+    void getBestMatches(TokenMatcher matcher, int getWhat, TopMatches<IInfo> result);
+
+    void getAllTokens(Collection<IInfo> result);
+
+    void getAllModulesWithTokens(Set<String> result);
+
+    void clear();
+
+    /**
+     * @return a tree with the initials to the tokens (as used for persisting).
+     */
+    SortedMap<String, Set<IInfo>> toTree(int doOn);
+
+    /**
+     * Sets the contents of the storage to the given trees (as loaded from the disk).
+     */
+    void restore(SortedMap<String, Set<IInfo>> topLevelInitialsToInfo,
+            SortedMap<String, Set<IInfo>> innerInitialsToInfo);
+
+    /**
+     * @return a segment with the current tokens (as used for persisting -- see TokensFileIO).
+     */
+    TokensSegment toSegment(int doOn);
+
+    /**
+     * Sets the contents of the storage to the given segments (as loaded from the disk).
+     *
+     * @param nature used to create the IInfo objects if the storage doesn't keep the segments.
+     */
+    void restore(TokensSegment topLevelSegment, TokensSegment innerSegment, IPythonNature nature);
+
+}
@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import org.python.pydev.core.ModulesKey;
+
+/**
+ * A module found in a reference search along with what the index has for it.
+ */
+public class IndexedModuleMatch {
+
+    public final ModulesKey key;
+
+    /**
+     * The modified time of the module when it was indexed.
+     */
+    public final long indexedModifiedTime;
+
+    /**
+     * The contents of the module when it was indexed (may be null if not available).
+     */
+    public final String contents;
+
+    /**
+     * Start (inclusive) and end (exclusive) offsets, in pairs, of the tokens which matched the searched
+     * contents (may be null if not available).
+     */
+    public final int[] tokenOffsets;
+
+    public IndexedModuleMatch(ModulesKey key, long indexedModifiedTime, String contents, int[] tokenOffsets) {
+        this.key = key;
+        this.indexedModifiedTime = indexedModifiedTime;
+        this.contents = contents;
+        this.tokenOffsets = tokenOffsets;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedModuleMatch[" + key + "]";
+    }
+}
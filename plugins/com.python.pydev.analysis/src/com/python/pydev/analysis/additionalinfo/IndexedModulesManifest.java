@@ -0,0 +1,217 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.index.IndexApi;
+import org.python.pydev.shared_core.index.IndexApi.DocumentInfo;
+import org.python.pydev.shared_core.index.IndexApi.ICommitListener;
+import org.python.pydev.shared_core.index.IndexApi.IDocumentsVisitor;
+
+/**
+ * Keeps the modules which are in the references index (modules key in the IO format to the modified time
+ * used when it was indexed) so that it's not needed to visit all the docs in the index to know what's
+ * there.
+ *
+ * It's persisted in a side file when the index is committed (the commit user data has the generation of
+ * the manifest, so, if the manifest file and the index don't match, the manifest is recreated from the
+ * docs in the index).
+ */
+public class IndexedModulesManifest implements ICommitListener {
+
+    private static final boolean DEBUG = false;
+
+    private static final String HEADER = "-- INDEXED_MODULES_MANIFEST_1 ";
+    private static final String COMMIT_DATA_GENERATION = "pydev_manifest_generation";
+
+    private final Object lock = new Object();
+    private final File manifestFile;
+    private final IndexApi indexApi;
+
+    /**
+     * Modules key (IO format) to the modified time of the indexed module.
+     */
+    private Map<String, Long> keyIOToModifiedTime;
+
+    private long generation;
+
+    public IndexedModulesManifest(IndexApi indexApi, File manifestFile) {
+        this.indexApi = indexApi;
+        this.manifestFile = manifestFile;
+        indexApi.setCommitListener(this);
+    }
+
+    /**
+     * @return a copy of the modules key (IO format) to the modified time of the indexed modules.
+     */
+    public Map<String, Long> getIndexedModules() {
+        synchronized (lock) {
+            if (keyIOToModifiedTime == null) {
+                load();
+            }
+            return new HashMap<>(keyIOToModifiedTime);
+        }
+    }
+
+    public void added(String keyIO, long modifiedTime) {
+        synchronized (lock) {
+            if (keyIOToModifiedTime == null) {
+                load();
+            }
+            keyIOToModifiedTime.put(keyIO, modifiedTime);
+        }
+    }
+
+    public void removed(Iterable<String> keysIO) {
+        synchronized (lock) {
+            if (keyIOToModifiedTime == null) {
+                load();
+            }
+            for (String keyIO : keysIO) {
+                keyIOToModifiedTime.remove(keyIO);
+            }
+        }
+    }
+
+    private void load() {
+        String expectedGeneration = null;
+        Map<String, String> commitData = indexApi.getCommitData();
+        if (commitData != null) {
+            expectedGeneration = commitData.get(COMMIT_DATA_GENERATION);
+        }
+        if (expectedGeneration != null && manifestFile.exists()) {
+            try {
+                if (loadFromFile(expectedGeneration)) {
+                    return;
+                }
+            } catch (Exception e) {
+                Log.log(e);
+            }
+        }
+        if (DEBUG) {
+            System.out.println("Recreating manifest from index docs: " + manifestFile);
+        }
+        final Map<String, Long> map = new HashMap<>();
+        IDocumentsVisitor visitor = new IDocumentsVisitor() {
+
+            @Override
+            public void visit(DocumentInfo documentInfo) {
+                String keyIO = documentInfo.get(IReferenceSearches.FIELD_MODULES_KEY_IO);
+                String modifiedTime = documentInfo.get(IReferenceSearches.FIELD_MODIFIED_TIME);
+                if (keyIO != null && modifiedTime != null) {
+                    map.put(keyIO, Long.parseLong(modifiedTime));
+                }
+            }
+        };
+        try {
+            indexApi.visitAllDocs(visitor, IReferenceSearches.FIELD_MODULES_KEY_IO,
+                    IReferenceSearches.FIELD_MODIFIED_TIME);
+        } catch (IOException e) {
+            Log.log(e);
+        }
+        keyIOToModifiedTime = map;
+        if (expectedGeneration != null) {
+            try {
+                generation = Long.parseLong(expectedGeneration);
+            } catch (NumberFormatException e) {
+                Log.log(e);
+            }
+        }
+    }
+
+    /**
+     * @return true if the manifest was loaded and false if it's not in sync with the index.
+     */
+    private boolean loadFromFile(String expectedGeneration) throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(manifestFile), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            if (line == null || !line.startsWith(HEADER)) {
+                return false;
+            }
+            String fileGeneration = line.substring(HEADER.length()).trim();
+            if (!fileGeneration.equals(expectedGeneration)) {
+                if (DEBUG) {
+                    System.out.println("Manifest generation: " + fileGeneration + " index generation: "
+                            + expectedGeneration);
+                }
+                return false;
+            }
+            Map<String, Long> map = new HashMap<>();
+            while ((line = reader.readLine()) != null) {
+                int i = line.indexOf('|');
+                if (i <= 0) {
+                    return false;
+                }
+                map.put(line.substring(i + 1), Long.parseLong(line.substring(0, i)));
+            }
+            keyIOToModifiedTime = map;
+            generation = Long.parseLong(fileGeneration);
+            return true;
+        }
+    }
+
+    /**
+     * Saves the manifest with a new generation (which is set in the commit user data).
+     */
+    @Override
+    public Map<String, String> beforeCommit() {
+        synchronized (lock) {
+            if (keyIOToModifiedTime == null) {
+                // Not loaded (so, no changes): keep the current user data.
+                return null;
+            }
+            long newGeneration = generation + 1;
+            File tempFile = new File(manifestFile.getPath() + ".tmp");
+            try (BufferedWriter writer = new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
+                writer.write(HEADER);
+                writer.write(String.valueOf(newGeneration));
+                writer.write('\n');
+                for (Entry<String, Long> entry : keyIOToModifiedTime.entrySet()) {
+                    writer.write(String.valueOf(entry.getValue()));
+                    writer.write('|');
+                    writer.write(entry.getKey());
+                    writer.write('\n');
+                }
+            } catch (IOException e) {
+                Log.log(e);
+                return null;
+            }
+            try {
+                Files.move(tempFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                Log.log(e);
+                return null;
+            }
+            generation = newGeneration;
+
+            Map<String, String> commitData = new HashMap<>();
+            commitData.put(COMMIT_DATA_GENERATION, String.valueOf(newGeneration));
+            return commitData;
+        }
+    }
+
+    @Override
+    public void afterCommit(Map<String, String> commitData) {
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.shared_core.callbacks.ICallback;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+import com.python.pydev.analysis.additionalinfo.AbstractAdditionalTokensInfo.ModuleTokens;
+
+/**
+ * Indexes modules in the additional info using multiple threads:
+ *
+ * - source modules are read, parsed (with the FastDefinitionsParser) and have their tokens created in a fork-join
+ * pool;
+ * - the tokens created are added to the additional info in batches by the calling thread (which also reports the
+ * progress and checks for cancellation);
+ * - compiled modules are indexed in a separate thread, one at a time, as they need the interpreter shell.
+ */
+public final class ParallelModulesIndexer {
+
+    /**
+     * Number of modules added to the additional info in each change.
+     */
+    public static final int BATCH_SIZE = 250;
+
+    /**
+     * Number of modules each fork-join task handles without splitting.
+     */
+    private static final int TASK_SIZE = 16;
+
+    private static final ModuleTokens SKIPPED = new ModuleTokens(null);
+
+    private final AbstractAdditionalTokensInfo additionalInfo;
+    private final int parallelism;
+
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    /**
+     * The tokens created by the workers (each source module gives exactly one entry: SKIPPED if it couldn't be
+     * indexed). Bounded so that the workers wait if the tokens can't be added as fast as they're created.
+     */
+    private final BlockingQueue<ModuleTokens> results = new ArrayBlockingQueue<ModuleTokens>(BATCH_SIZE * 4);
+
+    private final AtomicInteger compiledModulesIndexed = new AtomicInteger();
+
+    /**
+     * @param parallelism the number of threads used to index the source modules.
+     */
+    public ParallelModulesIndexer(AbstractAdditionalTokensInfo additionalInfo, int parallelism) {
+        this.additionalInfo = additionalInfo;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Indexes the given modules (blocks until finished or cancelled).
+     *
+     * @param compiledModuleIndexer called (in a separate thread) for each of the compiled modules.
+     * @return false if it was cancelled.
+     */
+    public boolean index(final List<ModulesKey> sourceKeys, final List<ModulesKey> compiledKeys,
+            final ICallback<Object, ModulesKey> compiledModuleIndexer, IProgressMonitor monitor) {
+        Thread compiledModulesThread = null;
+        if (compiledKeys.size() > 0) {
+            compiledModulesThread = new Thread() {
+                @Override
+                public void run() {
+                    for (ModulesKey key : compiledKeys) {
+                        if (cancelled.get()) {
+                            return;
+                        }
+                        try {
+                            compiledModuleIndexer.call(key);
+                        } catch (Throwable e) {
+                            Log.log(e);
+                        }
+                        compiledModulesIndexed.incrementAndGet();
+                    }
+                }
+            };
+            compiledModulesThread.setName("PyDev compiled modules indexer");
+            compiledModulesThread.setDaemon(true);
+            compiledModulesThread.setPriority(Thread.MIN_PRIORITY + 1);
+            compiledModulesThread.start();
+        }
+
+        ForkJoinPool pool = createPool();
+        try {
+            if (sourceKeys.size() > 0) {
+                pool.execute(new IndexTask(sourceKeys, 0, sourceKeys.size()));
+            }
+            addResults(sourceKeys.size(), compiledKeys.size(), monitor);
+
+            if (compiledModulesThread != null) {
+                while (compiledModulesThread.isAlive()) {
+                    checkCancelled(monitor);
+                    updateProgress(monitor, sourceKeys.size(), sourceKeys.size(), compiledKeys.size());
+                    compiledModulesThread.join(100);
+                }
+            }
+        } catch (InterruptedException e) {
+            cancelled.set(true);
+            Thread.currentThread().interrupt();
+        } finally {
+            if (cancelled.get()) {
+                pool.shutdownNow();
+            } else {
+                pool.shutdown();
+            }
+        }
+        return !cancelled.get();
+    }
+
+    /**
+     * Adds the tokens created by the workers to the additional info (in batches).
+     */
+    private void addResults(int sourceCount, int compiledCount, IProgressMonitor monitor)
+            throws InterruptedException {
+        List<ModuleTokens> batch = new ArrayList<ModuleTokens>(BATCH_SIZE);
+        int received = 0;
+        while (received < sourceCount) {
+            ModuleTokens moduleTokens = results.poll(100, TimeUnit.MILLISECONDS);
+            checkCancelled(monitor);
+            if (moduleTokens == null) {
+                continue;
+            }
+            received++;
+            if (moduleTokens != SKIPPED && !cancelled.get()) {
+                batch.add(moduleTokens);
+                if (batch.size() >= BATCH_SIZE) {
+                    additionalInfo.addModulesTokens(batch);
+                    batch.clear();
+                    updateProgress(monitor, received, sourceCount, compiledCount);
+                }
+            }
+        }
+        if (batch.size() > 0 && !cancelled.get()) {
+            additionalInfo.addModulesTokens(batch);
+        }
+    }
+
+    private void checkCancelled(IProgressMonitor monitor) {
+        if (monitor.isCanceled()) {
+            cancelled.set(true);
+        }
+    }
+
+    private void updateProgress(IProgressMonitor monitor, int sourceIndexed, int sourceCount, int compiledCount) {
+        FastStringBuffer buffer = new FastStringBuffer();
+        buffer.append("Indexing ").append(sourceIndexed).append(" of ").append(sourceCount)
+                .append(" (source modules)");
+        if (compiledCount > 0) {
+            buffer.append(" and ").append(compiledModulesIndexed.get()).append(" of ").append(compiledCount)
+                    .append(" (builtin modules)");
+        }
+        monitor.setTaskName(buffer.toString());
+    }
+
+    private ForkJoinPool createPool() {
+        return new ForkJoinPool(parallelism, new ForkJoinWorkerThreadFactory() {
+
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {
+                };
+                thread.setName("PyDev modules indexer " + thread.getPoolIndex());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY + 1);
+                return thread;
+            }
+        }, null, false);
+    }
+
+    /**
+     * @return the tokens for the given source module or SKIPPED if it couldn't be indexed.
+     */
+    private ModuleTokens createModuleTokens(ModulesKey key) {
+        if (cancelled.get()) {
+            return SKIPPED;
+        }
+        try {
+            SimpleNode node = AbstractAdditionalTokensInfo.parseDefinitions(key);
+            if (node != null) {
+                ModuleTokens moduleTokens = additionalInfo.createModuleTokens(node, key);
+                if (moduleTokens != null) {
+                    return moduleTokens;
+                }
+            }
+        } catch (Throwable e) {
+            Log.log(e);
+        }
+        return SKIPPED;
+    }
+
+    /**
+     * Indexes the source modules in the given range (split among the threads of the pool).
+     */
+    private final class IndexTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<ModulesKey> keys;
+        private final int start;
+        private final int end;
+
+        private IndexTask(List<ModulesKey> keys, int start, int end) {
+            this.keys = keys;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= TASK_SIZE) {
+                for (int i = start; i < end; i++) {
+                    ModuleTokens moduleTokens = createModuleTokens(keys.get(i));
+                    try {
+                        results.put(moduleTokens);
+                    } catch (InterruptedException e) {
+                        return; // Pool shutdown (cancelled).
+                    }
+                }
+                return;
+            }
+            int mid = (start + end) >>> 1;
+            invokeAll(new IndexTask(keys, start, mid), new IndexTask(keys, mid, end));
+        }
+    }
+}
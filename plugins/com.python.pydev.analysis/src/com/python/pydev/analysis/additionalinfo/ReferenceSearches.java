@@ -34,6 +34,7 @@ import org.python.pydev.core.ModulesKey;
 import org.python.pydev.core.ModulesKeyForZip;
 import org.python.pydev.core.docutils.PySelection;
 import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.callbacks.ICallback;
 import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.out_of_memory.OnExpectedOutOfMemory;
 import org.python.pydev.shared_core.string.FastStringBuffer;
@@ -200,6 +201,36 @@ public class ReferenceSearches implements IReferenceSearches {
         FileUtils.fillBufferWithStream(stream, null, new NullProgressMonitor(), bufFileContents);
     }
 
+    @Override
+    public List<ModulesKey> search(IProject project, OrderedMap<String, Set<String>> fieldNameToValues,
+            IProgressMonitor monitor, boolean waitForIndexing) {
+        return search(project, fieldNameToValues, monitor);
+    }
+
+    @Override
+    public List<IndexedModuleMatch> searchWithContents(IProject project,
+            OrderedMap<String, Set<String>> fieldNameToValues, IProgressMonitor monitor, boolean waitForIndexing) {
+        List<ModulesKey> found = search(project, fieldNameToValues, monitor);
+        List<IndexedModuleMatch> ret = new ArrayList<>(found.size());
+        for (ModulesKey modulesKey : found) {
+            // Contents aren't available (the module must be read to get the matches).
+            ret.add(new IndexedModuleMatch(modulesKey, -1, null, null));
+        }
+        return ret;
+    }
+
+    @Override
+    public void searchWithContents(IProject project, OrderedMap<String, Set<String>> fieldNameToValues,
+            IProgressMonitor monitor, boolean waitForIndexing, ICallback<Boolean, IndexedModuleMatch> onMatch) {
+        for (IndexedModuleMatch indexedModuleMatch : searchWithContents(project, fieldNameToValues, monitor,
+                waitForIndexing)) {
+            Boolean ok = onMatch.call(indexedModuleMatch);
+            if (ok != null && !ok) {
+                break;
+            }
+        }
+    }
+
     @Override
     public List<ModulesKey> search(IProject project, OrderedMap<String, Set<String>> fieldNameToValues,
             IProgressMonitor monitor) {
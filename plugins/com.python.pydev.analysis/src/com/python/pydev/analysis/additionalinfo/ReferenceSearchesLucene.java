@@ -6,14 +6,9 @@
  */
 package com.python.pydev.analysis.additionalinfo;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.lang.ref.WeakReference;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -23,7 +18,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.zip.ZipFile;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -35,24 +29,35 @@ import org.python.pydev.core.cache.CompleteIndexKey;
 import org.python.pydev.core.cache.DiskCache;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.plugin.nature.PythonNature;
+import org.python.pydev.shared_core.callbacks.ICallback;
 import org.python.pydev.shared_core.index.IndexApi;
 import org.python.pydev.shared_core.index.IndexApi.DocumentInfo;
-import org.python.pydev.shared_core.index.IndexApi.IDocumentsVisitor;
+import org.python.pydev.shared_core.index.IndexApi.IStoppableDocumentsVisitor;
+import org.python.pydev.shared_core.index.IndexApi.WildcardTermsMatcher;
+import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.progress.AsynchronousProgressMonitorWrapper;
 import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.python.pydev.shared_core.structure.OrderedMap;
 import org.python.pydev.shared_core.utils.Timer;
 
+import com.python.pydev.analysis.additionalinfo.ReferenceSearchesLuceneIndexer.IndexingBatches;
 import com.python.pydev.analysis.system_info_builder.InterpreterInfoBuilder;
 
 public class ReferenceSearchesLucene implements IReferenceSearches {
 
     private static final Object lock = new Object();
     private static final Map<File, IndexApi> indexDirToApi = new HashMap<File, IndexApi>();
+    private static final Map<IndexApi, ReferenceSearchesLuceneIndexer> apiToIndexer = new HashMap<IndexApi, ReferenceSearchesLuceneIndexer>();
 
     public static void disposeAll() {
         synchronized (lock) {
             try {
+                for (ReferenceSearchesLuceneIndexer indexer : apiToIndexer.values()) {
+                    IndexingBatches current = indexer.getCurrent();
+                    if (current != null) {
+                        current.cancel();
+                    }
+                }
                 Set<Entry<File, IndexApi>> entrySet = indexDirToApi.entrySet();
                 for (Entry<File, IndexApi> entry : entrySet) {
                     try {
@@ -63,6 +68,7 @@ public class ReferenceSearchesLucene implements IReferenceSearches {
                 }
             } finally {
                 indexDirToApi.clear();
+                apiToIndexer.clear();
             }
         }
 
@@ -71,6 +77,7 @@ public class ReferenceSearchesLucene implements IReferenceSearches {
     private static final boolean DEBUG = false;
     private WeakReference<AbstractAdditionalDependencyInfo> abstractAdditionalDependencyInfo;
     private IndexApi indexApi;
+    private ReferenceSearchesLuceneIndexer indexer;
 
     public ReferenceSearchesLucene(AbstractAdditionalDependencyInfo abstractAdditionalDependencyInfo) {
         this.abstractAdditionalDependencyInfo = new WeakReference<>(abstractAdditionalDependencyInfo);
@@ -80,41 +87,116 @@ public class ReferenceSearchesLucene implements IReferenceSearches {
     public void dispose() {
         if (indexApi != null) {
             indexApi = null;
+            indexer = null;
         }
     }
 
     @Override
-    public synchronized List<ModulesKey> search(IProject project,
+    public List<ModulesKey> search(IProject project,
             final OrderedMap<String, Set<String>> fieldNameToValues, IProgressMonitor monitor)
             throws OperationCanceledException {
+        return search(project, fieldNameToValues, monitor, true);
+    }
+
+    @Override
+    public synchronized List<ModulesKey> search(IProject project,
+            final OrderedMap<String, Set<String>> fieldNameToValues, IProgressMonitor monitor,
+            boolean waitForIndexing) throws OperationCanceledException {
+        List<IndexedModuleMatch> found = searchWithContents(project, fieldNameToValues, monitor, waitForIndexing,
+                false);
+        List<ModulesKey> ret = new ArrayList<ModulesKey>(found.size());
+        for (IndexedModuleMatch indexedModuleMatch : found) {
+            ret.add(indexedModuleMatch.key);
+        }
+        return ret;
+    }
+
+    @Override
+    public synchronized List<IndexedModuleMatch> searchWithContents(IProject project,
+            final OrderedMap<String, Set<String>> fieldNameToValues, IProgressMonitor monitor,
+            boolean waitForIndexing) throws OperationCanceledException {
+        return searchWithContents(project, fieldNameToValues, monitor, waitForIndexing, true);
+    }
+
+    @Override
+    public synchronized void searchWithContents(IProject project,
+            OrderedMap<String, Set<String>> fieldNameToValues, IProgressMonitor monitor, boolean waitForIndexing,
+            ICallback<Boolean, IndexedModuleMatch> onMatch) throws OperationCanceledException {
         try {
             if (!(monitor instanceof AsynchronousProgressMonitorWrapper)) {
                 monitor = new AsynchronousProgressMonitorWrapper(monitor);
             }
-            return internalSearch(project, fieldNameToValues, monitor);
+            internalSearch(project, fieldNameToValues, monitor, waitForIndexing, true, onMatch);
         } finally {
             monitor.done();
         }
     }
 
+    private List<IndexedModuleMatch> searchWithContents(IProject project,
+            final OrderedMap<String, Set<String>> fieldNameToValues, IProgressMonitor monitor,
+            boolean waitForIndexing, boolean withContents) throws OperationCanceledException {
+        final List<IndexedModuleMatch> ret = new ArrayList<IndexedModuleMatch>();
+        try {
+            if (!(monitor instanceof AsynchronousProgressMonitorWrapper)) {
+                monitor = new AsynchronousProgressMonitorWrapper(monitor);
+            }
+            internalSearch(project, fieldNameToValues, monitor, waitForIndexing, withContents,
+                    new ICallback<Boolean, IndexedModuleMatch>() {
+
+                        @Override
+                        public Boolean call(IndexedModuleMatch arg) {
+                            ret.add(arg);
+                            return true;
+                        }
+                    });
+        } finally {
+            monitor.done();
+        }
+        return ret;
+    }
+
     private final Map<IProject, Long> projectToLastMtime = new HashMap<>();
 
-    private synchronized List<ModulesKey> internalSearch(IProject project,
-            final OrderedMap<String, Set<String>> fieldNameToValues, IProgressMonitor monitor)
+    /**
+     * The modification stamp of the DiskCache when the index was last updated (only set after all the
+     * modules for that stamp were committed to the index).
+     */
+    private long lastUpdateModificationStamp = -1;
+
+    /**
+     * The last batches scheduled by this instance and the modification stamp of the DiskCache they're
+     * related to.
+     */
+    private IndexingBatches scheduled;
+    private long scheduledModificationStamp = -1;
+
+    /**
+     * Used in tests to index without a project.
+     */
+    /*default*/ void setIndex(IndexApi indexApi, ReferenceSearchesLuceneIndexer indexer) {
+        this.indexApi = indexApi;
+        this.indexer = indexer;
+    }
+
+    /**
+     * @param onMatch called for each match as it's found in the index (the search stops if it returns false).
+     */
+    private synchronized void internalSearch(IProject project,
+            final OrderedMap<String, Set<String>> fieldNameToValues, IProgressMonitor monitor,
+            boolean waitForIndexing, final boolean withContents, final ICallback<Boolean, IndexedModuleMatch> onMatch)
             throws OperationCanceledException {
 
-        final List<ModulesKey> ret = new ArrayList<ModulesKey>();
         PythonNature nature = PythonNature.getPythonNature(project);
         if (nature == null) {
             Log.log("Project :" + project + " does not have Python nature configured.");
-            return ret;
+            return;
         }
 
         // Make sure that its information is synchronized.
         AbstractAdditionalDependencyInfo abstractAdditionalDependencyInfo = this.abstractAdditionalDependencyInfo.get();
         if (abstractAdditionalDependencyInfo == null) {
             Log.log("AbstractAdditionalDependencyInfo already collected!");
-            return ret;
+            return;
         }
 
         Long lastMtime = projectToLastMtime.get(project);
@@ -136,234 +218,310 @@ public class ReferenceSearchesLucene implements IReferenceSearches {
             }
         }
 
-        boolean mustCommitChange = false;
-
         final String name = "Search modules with token in: " + abstractAdditionalDependencyInfo.getUIRepresentation();
         monitor.beginTask(name, 7);
         monitor.setTaskName(name);
 
         DiskCache completeIndex = abstractAdditionalDependencyInfo.completeIndex;
 
-        // Note: we should be able to deal with entries already deleted!
-        boolean applyAllDeletes = false;
+        // Note: we should be able to deal with entries already deleted in the search, but the shared
+        // near-real-time searcher applies them so that visiting all the docs gives the actual index contents.
+        boolean applyAllDeletes = true;
 
         if (indexApi == null) {
             String folderToPersist = completeIndex.getFolderToPersist();
             synchronized (lock) {
-                File indexDir = new File(folderToPersist, "lc");
+                // Note: "lc2" because the contents are now stored with the offsets (the old "lc" index
+                // is no longer used).
+                File indexDir = new File(folderToPersist, "lc2");
                 indexApi = indexDirToApi.get(indexDir);
                 if (indexApi == null) {
+                    removeOldIndex(folderToPersist);
                     try {
                         indexApi = new IndexApi(indexDir, applyAllDeletes);
                         indexDirToApi.put(indexDir, indexApi);
                     } catch (Exception e) {
                         Log.log(e);
-                        return ret;
+                        return;
                     }
                 }
+                indexer = apiToIndexer.get(indexApi);
+                if (indexer == null) {
+                    IndexedModulesManifest manifest = new IndexedModulesManifest(indexApi,
+                            new File(folderToPersist, "lc2_manifest"));
+                    indexer = new ReferenceSearchesLuceneIndexer(indexApi, manifest);
+                    apiToIndexer.put(indexApi, indexer);
+                }
             }
         }
 
         synchronized (indexApi.getLock()) {
-            final Map<ModulesKey, CompleteIndexKey> indexMap = new HashMap<>(); // Key to CompleteIndexKey (has modified time).
-
-            IDocumentsVisitor visitor = new IDocumentsVisitor() {
-
-                @Override
-                public void visit(DocumentInfo documentInfo) {
-                    ModulesKey keyFromIO = ModulesKey.fromIO(documentInfo.get(FIELD_MODULES_KEY_IO));
-                    String modifiedTime = documentInfo.get(FIELD_MODIFIED_TIME);
-                    indexMap.put(keyFromIO, new CompleteIndexKey(keyFromIO, Long.parseLong(modifiedTime)));
-                }
-            };
-            try {
-                indexApi.visitAllDocs(visitor, FIELD_MODULES_KEY_IO, FIELD_MODIFIED_TIME);
-            } catch (IOException e) {
-                Log.log(e);
-            }
-
-            incrementAndCheckProgress("Visited current index", monitor);
-
-            Set<CompleteIndexKey> docsToRemove = new HashSet<>();
-            Set<CompleteIndexKey> modulesToAdd = new HashSet<>();
-            Map<File, Set<CompleteIndexKey>> zipModulesToAdd = new HashMap<>();
-
             // Wait for the integrity check before getting the keys!
             abstractAdditionalDependencyInfo.waitForIntegrityCheck();
 
+            // Note: get the stamp before the keys (so, if it's the same in the next search we know that
+            // the keys are still the same).
+            long modificationStamp = completeIndex.getModificationStamp();
             final Map<CompleteIndexKey, CompleteIndexKey> currentKeys = completeIndex.keys();
 
-            // Step 1: remove entries which were in the index but are already removed
-            // from the modules (or have a different time).
-            for (Entry<ModulesKey, CompleteIndexKey> entryInIndex : indexMap.entrySet()) {
-                CompleteIndexKey indexModule = entryInIndex.getValue();
+            updateIndexIfNeeded(modificationStamp, currentKeys, waitForIndexing, monitor);
+            incrementAndCheckProgress("Index updated", monitor);
 
-                CompleteIndexKey currentModule = currentKeys.get(indexModule);
-                if (currentModule == null || currentModule.key == null || currentModule.key.file == null) {
-                    docsToRemove.add(indexModule);
+            // Ok, things should be in-place at this point... let's actually do the search now
+            incrementAndCheckProgress("Searching index", monitor);
 
-                } else {
-                    // exists, but we also need to check the modified time
-                    boolean changed = currentModule.lastModified != indexModule.lastModified;
-                    if (!changed) {
-                        ModulesKey keyCurrentModule = currentModule.key;
-                        ModulesKey keyIndexModule = indexModule.key;
-                        boolean currentIsZip = keyCurrentModule instanceof ModulesKeyForZip;
-                        boolean indexIsZip = keyIndexModule instanceof ModulesKeyForZip;
-                        changed = currentIsZip != indexIsZip;
-
-                        if (!changed) {
-                            changed = !currentModule.key.file.equals(indexModule.key.file);
-                        }
-                    }
+            try {
+                if (DEBUG) {
+                    System.out.println("Searching: " + fieldNameToValues);
+                }
+                final Set<String> contentsPatterns = fieldNameToValues.get(FIELD_CONTENTS);
+                // Compiled once for all the documents found.
+                final WildcardTermsMatcher contentsMatcher = withContents && contentsPatterns != null
+                        ? new WildcardTermsMatcher(contentsPatterns)
+                        : null;
+                IStoppableDocumentsVisitor visitor = new IStoppableDocumentsVisitor() {
 
-                    if (changed) {
-                        // remove and add
-                        docsToRemove.add(indexModule);
+                    private boolean shouldContinue = true;
 
-                        add(modulesToAdd, zipModulesToAdd, currentModule);
-                    }
-                }
-            }
-            // --- Progress
-            incrementAndCheckProgress("Updating for removal", monitor);
-
-            // Step 2: add new entries in current and not in the index
-            for (Entry<CompleteIndexKey, CompleteIndexKey> currentEntry : currentKeys.entrySet()) {
-                CompleteIndexKey completeIndexKey = currentEntry.getValue();
-                if (!indexMap.containsKey(completeIndexKey.key)) {
-                    ModulesKey modulesKey = completeIndexKey.key;
-                    if (modulesKey instanceof IModulesKeyForJava || modulesKey.file == null
-                            || !modulesKey.file.isFile()) {
-                        //ignore this one (we can't do anything with it).
-                        continue;
+                    @Override
+                    public boolean shouldContinue() {
+                        return shouldContinue;
                     }
 
-                    if (modulesKey instanceof ModulesKeyForZip) {
-                        ModulesKeyForZip modulesKeyForZip = (ModulesKeyForZip) modulesKey;
-                        if (!modulesKeyForZip.isFile) {
-                            continue; // Ignore folders in zips (happens for jython folders which may not have an __init__.py)
+                    @Override
+                    public void visit(DocumentInfo documentInfo) {
+                        try {
+                            String modKey = documentInfo.get(FIELD_MODULES_KEY_IO);
+                            String modTime = documentInfo.get(FIELD_MODIFIED_TIME);
+                            if (modKey != null && modTime != null) {
+                                ModulesKey fromIO = ModulesKey.fromIO(modKey);
+                                CompleteIndexKey existing = currentKeys.get(new CompleteIndexKey(fromIO));
+                                // Deal with deleted entries still hanging around.
+                                long indexedModifiedTime = Long.parseLong(modTime);
+                                if (existing != null && existing.lastModified == indexedModifiedTime) {
+                                    // Ok, we have a match!
+                                    String contents = null;
+                                    int[] tokenOffsets = null;
+                                    if (withContents) {
+                                        contents = documentInfo.get(FIELD_CONTENTS);
+                                        if (contents != null && contentsMatcher != null) {
+                                            tokenOffsets = documentInfo.getTermOffsets(FIELD_CONTENTS,
+                                                    contentsMatcher);
+                                        }
+                                    }
+                                    Boolean ok = onMatch.call(new IndexedModuleMatch(existing.key,
+                                            indexedModifiedTime, contents, tokenOffsets));
+                                    if (ok != null && !ok) {
+                                        shouldContinue = false;
+                                    }
+                                }
+                            }
+                        } catch (Exception e) {
+                            Log.log(e);
                         }
                     }
-
-                    add(modulesToAdd, zipModulesToAdd, completeIndexKey);
+                };
+                // Streaming: matches are reported as found and the search stops if the monitor is cancelled.
+                if (withContents) {
+                    indexApi.searchWildcardStreaming(fieldNameToValues, applyAllDeletes, visitor, null,
+                            Integer.MAX_VALUE, monitor, FIELD_MODULES_KEY_IO, FIELD_MODIFIED_TIME,
+                            FIELD_CONTENTS);
+                } else {
+                    indexApi.searchWildcardStreaming(fieldNameToValues, applyAllDeletes, visitor, null,
+                            Integer.MAX_VALUE, monitor, FIELD_MODULES_KEY_IO, FIELD_MODIFIED_TIME);
                 }
+            } catch (Exception e) {
+                Log.log(e);
             }
-            // --- Progress
-            incrementAndCheckProgress("Updating for addition", monitor);
-
-            Map<String, Collection<String>> fieldToValuesToRemove = new HashMap<>();
-            Collection<String> lstToRemove = new ArrayList<>(docsToRemove.size());
+            if (monitor.isCanceled()) {
+                throw new OperationCanceledException();
+            }
+        }
+    }
 
-            FastStringBuffer tempBuf = new FastStringBuffer();
-            for (Iterator<CompleteIndexKey> it = docsToRemove.iterator(); it.hasNext();) {
-                it.next().key.toIO(tempBuf.clear());
-                lstToRemove.add(tempBuf.toString());
+    /**
+     * Makes sure that the index has the given keys.
+     *
+     * Note: if an indexing is still running (and we shouldn't wait for it), the index isn't updated and the
+     * search is done on what's available right now.
+     *
+     * @return the batches still being indexed (if not waiting for the indexing) or null.
+     */
+    /*default*/ synchronized IndexingBatches updateIndexIfNeeded(long modificationStamp,
+            Map<CompleteIndexKey, CompleteIndexKey> currentKeys, boolean waitForIndexing, IProgressMonitor monitor)
+            throws OperationCanceledException {
+        IndexingBatches running = indexer.getCurrent();
+        if (running != null && waitForIndexing) {
+            if (!running.waitForCompletion(monitor)) {
+                throw new OperationCanceledException();
             }
+            running = null;
+        }
+        checkScheduledFinished();
 
-            incrementAndCheckProgress("Removing outdated entries", monitor);
-            if (lstToRemove.size() > 0) {
-                fieldToValuesToRemove.put(FIELD_MODULES_KEY_IO, lstToRemove);
-                try {
-                    mustCommitChange = true;
-                    if (DEBUG) {
-                        System.out.println("Removing: " + fieldToValuesToRemove);
+        if (running == null && modificationStamp != lastUpdateModificationStamp) {
+            // If the keys didn't change since the last update, we know the index is up to date.
+            try {
+                running = updateIndex(indexer.getManifest(), currentKeys, monitor);
+            } catch (IOException e) {
+                // Unable to remove the outdated entries: keep the stamp so that it's tried again later on.
+                Log.log(e);
+                return null;
+            }
+            if (running == null) {
+                lastUpdateModificationStamp = modificationStamp;
+            } else {
+                scheduled = running;
+                scheduledModificationStamp = modificationStamp;
+                if (waitForIndexing) {
+                    if (!running.waitForCompletion(monitor)) {
+                        throw new OperationCanceledException();
                     }
-                    indexApi.removeDocs(fieldToValuesToRemove);
-                } catch (IOException e) {
-                    Log.log(e);
+                    checkScheduledFinished();
+                    running = null;
                 }
             }
+        } else {
+            monitor.worked(5);
+        }
+        return running;
+    }
+
+    /**
+     * The stamp of the scheduled batches is only considered indexed if all of those were committed (a
+     * failed or cancelled indexing is scheduled again in the next search).
+     */
+    private void checkScheduledFinished() {
+        if (scheduled != null && scheduled.isDone()) {
+            if (scheduled.isSuccessful()) {
+                lastUpdateModificationStamp = scheduledModificationStamp;
+            }
+            scheduled = null;
+        }
+    }
 
-            incrementAndCheckProgress("Indexing new entries", monitor);
-            if (modulesToAdd.size() > 0) {
-                mustCommitChange = true;
-                for (CompleteIndexKey key : modulesToAdd) {
-                    File f = key.key.file;
-                    if (f.exists()) {
-                        if (DEBUG) {
-                            System.out.println("Indexing: " + f);
-                        }
-                        try (BufferedReader reader = new BufferedReader(new FileReader(f));) {
-                            indexApi.index(createFieldsToIndex(key, tempBuf), reader, FIELD_CONTENTS);
-                        } catch (Exception e) {
-                            Log.log(e);
-                        }
+    /**
+     * Removes the outdated entries from the index and schedules the new/changed entries to be indexed.
+     *
+     * @return the batches being indexed or null if there's nothing to index.
+     */
+    private IndexingBatches updateIndex(IndexedModulesManifest manifest,
+            final Map<CompleteIndexKey, CompleteIndexKey> currentKeys, IProgressMonitor monitor)
+            throws IOException {
+        final Map<ModulesKey, CompleteIndexKey> indexMap = new HashMap<>(); // Key to CompleteIndexKey (has modified time).
+
+        for (Entry<String, Long> entry : manifest.getIndexedModules().entrySet()) {
+            ModulesKey keyFromIO = ModulesKey.fromIO(entry.getKey());
+            indexMap.put(keyFromIO, new CompleteIndexKey(keyFromIO, entry.getValue()));
+        }
+
+        incrementAndCheckProgress("Loaded indexed modules", monitor);
+
+        Set<CompleteIndexKey> docsToRemove = new HashSet<>();
+        Set<CompleteIndexKey> modulesToAdd = new HashSet<>();
+        Map<File, Set<CompleteIndexKey>> zipModulesToAdd = new HashMap<>();
+
+        // Step 1: remove entries which were in the index but are already removed
+        // from the modules (or have a different time).
+        for (Entry<ModulesKey, CompleteIndexKey> entryInIndex : indexMap.entrySet()) {
+            CompleteIndexKey indexModule = entryInIndex.getValue();
+
+            CompleteIndexKey currentModule = currentKeys.get(indexModule);
+            if (currentModule == null || currentModule.key == null || currentModule.key.file == null) {
+                docsToRemove.add(indexModule);
+
+            } else {
+                // exists, but we also need to check the modified time
+                boolean changed = currentModule.lastModified != indexModule.lastModified;
+                if (!changed) {
+                    ModulesKey keyCurrentModule = currentModule.key;
+                    ModulesKey keyIndexModule = indexModule.key;
+                    boolean currentIsZip = keyCurrentModule instanceof ModulesKeyForZip;
+                    boolean indexIsZip = keyIndexModule instanceof ModulesKeyForZip;
+                    changed = currentIsZip != indexIsZip;
+
+                    if (!changed) {
+                        changed = !currentModule.key.file.equals(indexModule.key.file);
                     }
                 }
+
+                if (changed) {
+                    // remove and add
+                    docsToRemove.add(indexModule);
+
+                    add(modulesToAdd, zipModulesToAdd, currentModule);
+                }
             }
+        }
+        // --- Progress
+        incrementAndCheckProgress("Updating for removal", monitor);
+
+        // Step 2: add new entries in current and not in the index
+        for (Entry<CompleteIndexKey, CompleteIndexKey> currentEntry : currentKeys.entrySet()) {
+            CompleteIndexKey completeIndexKey = currentEntry.getValue();
+            if (!indexMap.containsKey(completeIndexKey.key)) {
+                ModulesKey modulesKey = completeIndexKey.key;
+                if (modulesKey instanceof IModulesKeyForJava || modulesKey.file == null
+                        || !modulesKey.file.isFile()) {
+                    //ignore this one (we can't do anything with it).
+                    continue;
+                }
 
-            Set<Entry<File, Set<CompleteIndexKey>>> entrySet = zipModulesToAdd.entrySet();
-            for (Entry<File, Set<CompleteIndexKey>> entry : entrySet) {
-                File f = entry.getKey();
-                if (f.exists()) {
-                    try (ZipFile zipFile = new ZipFile(f, ZipFile.OPEN_READ);) {
-                        Set<CompleteIndexKey> value = entry.getValue();
-                        for (CompleteIndexKey completeIndexKey2 : value) {
-                            ModulesKeyForZip forZip = (ModulesKeyForZip) completeIndexKey2.key;
-                            try (InputStream inputStream = zipFile
-                                    .getInputStream(zipFile.getEntry(forZip.zipModulePath));) {
-                                InputStreamReader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
-                                mustCommitChange = true;
-                                if (DEBUG) {
-                                    System.out.println("Indexing: " + completeIndexKey2);
-                                }
-                                indexApi.index(createFieldsToIndex(completeIndexKey2, tempBuf), reader, FIELD_CONTENTS);
-                            }
-                        }
-                    } catch (Exception e) {
-                        Log.log(e);
+                if (modulesKey instanceof ModulesKeyForZip) {
+                    ModulesKeyForZip modulesKeyForZip = (ModulesKeyForZip) modulesKey;
+                    if (!modulesKeyForZip.isFile) {
+                        continue; // Ignore folders in zips (happens for jython folders which may not have an __init__.py)
                     }
                 }
+
+                // The manifest may miss some module which is actually in the index (if it was committed
+                // after the manifest was saved), so, make sure it's removed before adding it again.
+                docsToRemove.add(completeIndexKey);
+                add(modulesToAdd, zipModulesToAdd, completeIndexKey);
             }
+        }
+        // --- Progress
+        incrementAndCheckProgress("Updating for addition", monitor);
 
-            incrementAndCheckProgress("Committing result", monitor);
-            if (mustCommitChange) {
-                if (DEBUG) {
-                    System.out.println("Commit result");
-                }
-                try {
-                    indexApi.commit();
-                } catch (IOException e) {
-                    Log.log(e);
-                }
+        Map<String, Collection<String>> fieldToValuesToRemove = new HashMap<>();
+        Collection<String> lstToRemove = new ArrayList<>(docsToRemove.size());
+
+        FastStringBuffer tempBuf = new FastStringBuffer();
+        for (Iterator<CompleteIndexKey> it = docsToRemove.iterator(); it.hasNext();) {
+            it.next().key.toIO(tempBuf.clear());
+            lstToRemove.add(tempBuf.toString());
+        }
+
+        incrementAndCheckProgress("Removing outdated entries", monitor);
+        if (lstToRemove.size() > 0) {
+            fieldToValuesToRemove.put(FIELD_MODULES_KEY_IO, lstToRemove);
+            if (DEBUG) {
+                System.out.println("Removing: " + fieldToValuesToRemove);
             }
+            indexApi.removeDocs(fieldToValuesToRemove);
+            manifest.removed(lstToRemove);
+        }
 
-            // Ok, things should be in-place at this point... let's actually do the search now
-            incrementAndCheckProgress("Searching index", monitor);
+        incrementAndCheckProgress("Indexing new entries", monitor);
+        if (modulesToAdd.size() == 0 && zipModulesToAdd.size() == 0) {
+            return null;
+        }
+        return indexer.schedule(modulesToAdd, zipModulesToAdd);
+    }
 
+    /**
+     * Removes the index (and manifest) from before the contents were stored with the offsets.
+     */
+    private static void removeOldIndex(String folderToPersist) {
+        File oldIndexDir = new File(folderToPersist, "lc");
+        if (oldIndexDir.exists()) {
             try {
-                if (DEBUG) {
-                    System.out.println("Searching: " + fieldNameToValues);
-                }
-                visitor = new IDocumentsVisitor() {
-
-                    @Override
-                    public void visit(DocumentInfo documentInfo) {
-                        try {
-                            String modKey = documentInfo.get(FIELD_MODULES_KEY_IO);
-                            String modTime = documentInfo.get(FIELD_MODIFIED_TIME);
-                            if (modKey != null && modTime != null) {
-                                ModulesKey fromIO = ModulesKey.fromIO(modKey);
-                                CompleteIndexKey existing = currentKeys.get(new CompleteIndexKey(fromIO));
-                                // Deal with deleted entries still hanging around.
-                                if (existing != null && existing.lastModified == Long.parseLong(modTime)) {
-                                    // Ok, we have a match!
-                                    ret.add(existing.key);
-                                }
-                            }
-                        } catch (Exception e) {
-                            Log.log(e);
-                        }
-                    }
-                };
-                indexApi.searchWildcard(fieldNameToValues, applyAllDeletes, visitor, null, FIELD_MODULES_KEY_IO,
-                        FIELD_MODIFIED_TIME);
-            } catch (Exception e) {
+                FileUtils.deleteDirectoryTree(oldIndexDir);
+            } catch (IOException e) {
                 Log.log(e);
             }
         }
-        return ret;
+        new File(folderToPersist, "lc_manifest").delete();
     }
 
     private void incrementAndCheckProgress(String msg, IProgressMonitor monitor) throws OperationCanceledException {
@@ -374,7 +532,7 @@ public class ReferenceSearchesLucene implements IReferenceSearches {
         }
     }
 
-    public Map<String, String> createFieldsToIndex(CompleteIndexKey key, FastStringBuffer buf) {
+    public static Map<String, String> createFieldsToIndex(CompleteIndexKey key, FastStringBuffer buf) {
         key.key.toIO(buf.clear());
         Map<String, String> fieldsToIndex = new HashMap<>();
         fieldsToIndex.put(FIELD_MODULES_KEY_IO, buf.toString());
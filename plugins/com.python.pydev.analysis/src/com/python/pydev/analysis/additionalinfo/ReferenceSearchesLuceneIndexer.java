@@ -0,0 +1,382 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.python.pydev.core.ModulesKeyForZip;
+import org.python.pydev.core.cache.CompleteIndexKey;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.index.IndexApi;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.io.PyUnsupportedEncodingException;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+/**
+ * Indexes the contents of modules for the ReferenceSearchesLucene.
+ *
+ * The modules are split in batches which are read and tokenized in a bounded pool of workers and
+ * sent to the IndexWriter a batch at a time (the IndexWriter is thread-safe). Each zip is opened only
+ * once per batch.
+ *
+ * While the indexing is running, searches may use the current (near-real-time) contents of the index or
+ * wait for the indexing to finish.
+ */
+public class ReferenceSearchesLuceneIndexer {
+
+    private static final boolean DEBUG = false;
+
+    /**
+     * Number of modules indexed in each batch.
+     */
+    public static final int BATCH_SIZE = 100;
+
+    private static ThreadPoolExecutor pool;
+
+    /**
+     * @return the pool shared by all the indexers (with up to the number of processors threads, which are
+     * stopped when idle).
+     */
+    private static synchronized ThreadPoolExecutor getPool() {
+        if (pool == null) {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+            pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+                        private final AtomicInteger count = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "PyDev references indexer " + count.incrementAndGet());
+                            t.setDaemon(true);
+                            t.setPriority(Thread.MIN_PRIORITY + 1);
+                            return t;
+                        }
+                    });
+            pool.allowCoreThreadTimeOut(true);
+        }
+        return pool;
+    }
+
+    /**
+     * Handle for the batches scheduled in a given call to schedule().
+     */
+    public static class IndexingBatches {
+
+        private final CountDownLatch latch;
+        private final int totalBatches;
+        private volatile boolean cancelled = false;
+        private volatile boolean failed = false;
+
+        private IndexingBatches(int totalBatches) {
+            this.totalBatches = totalBatches;
+            this.latch = new CountDownLatch(totalBatches);
+        }
+
+        public boolean isDone() {
+            return latch.getCount() == 0;
+        }
+
+        /**
+         * Batches which still didn't start won't be indexed (note that the related modules will be
+         * considered missing in the next search and will be indexed again).
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * @return true if all the batches finished and were committed to the index (if false, the modules
+         * which weren't indexed are still missing from the manifest and should be scheduled again).
+         */
+        public boolean isSuccessful() {
+            return isDone() && !cancelled && !failed;
+        }
+
+        /**
+         * Waits for all the batches to be indexed.
+         *
+         * @return false if the monitor was cancelled before all the batches were indexed (in which case
+         * the indexing still goes on in the background).
+         */
+        public boolean waitForCompletion(IProgressMonitor monitor) {
+            long reported = 0;
+            while (true) {
+                try {
+                    if (latch.await(50, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                } catch (InterruptedException e) {
+                    //Just check again.
+                }
+                long finished = totalBatches - latch.getCount();
+                if (finished != reported) {
+                    reported = finished;
+                    monitor.setTaskName("Indexing modules (" + finished + " of " + totalBatches + " batches)");
+                }
+                if (monitor.isCanceled()) {
+                    return false;
+                }
+            }
+        }
+
+        private void batchFailed() {
+            failed = true;
+        }
+
+        private void batchFinished() {
+            latch.countDown();
+        }
+    }
+
+    private final IndexApi indexApi;
+    private final IndexedModulesManifest manifest;
+    private volatile IndexingBatches current;
+
+    public ReferenceSearchesLuceneIndexer(IndexApi indexApi, IndexedModulesManifest manifest) {
+        this.indexApi = indexApi;
+        this.manifest = manifest;
+    }
+
+    public IndexedModulesManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * @return the batches currently being indexed or null if there's no indexing in progress.
+     */
+    public IndexingBatches getCurrent() {
+        IndexingBatches c = current;
+        if (c != null && c.isDone()) {
+            return null;
+        }
+        return c;
+    }
+
+    /**
+     * Schedules the given modules to be indexed.
+     *
+     * Note: callers must make sure that a new schedule is only done after the previous one finished
+     * (otherwise the same module could be indexed twice).
+     */
+    public IndexingBatches schedule(Set<CompleteIndexKey> modulesToAdd,
+            Map<File, Set<CompleteIndexKey>> zipModulesToAdd) {
+        List<AbstractBatch> batches = new ArrayList<>();
+
+        List<CompleteIndexKey> batch = new ArrayList<>(BATCH_SIZE);
+        for (CompleteIndexKey key : modulesToAdd) {
+            batch.add(key);
+            if (batch.size() == BATCH_SIZE) {
+                batches.add(new FilesBatch(batch));
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        if (batch.size() > 0) {
+            batches.add(new FilesBatch(batch));
+        }
+
+        for (Entry<File, Set<CompleteIndexKey>> entry : zipModulesToAdd.entrySet()) {
+            batch = new ArrayList<>(BATCH_SIZE);
+            for (CompleteIndexKey key : entry.getValue()) {
+                batch.add(key);
+                if (batch.size() == BATCH_SIZE) {
+                    batches.add(new ZipBatch(entry.getKey(), batch));
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (batch.size() > 0) {
+                batches.add(new ZipBatch(entry.getKey(), batch));
+            }
+        }
+
+        final IndexingBatches indexingBatches = new IndexingBatches(batches.size());
+        current = indexingBatches;
+        ThreadPoolExecutor executor = getPool();
+        for (final AbstractBatch indexingBatch : batches) {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        if (!indexingBatches.isCancelled() && !indexingBatch.index()) {
+                            indexingBatches.batchFailed();
+                        }
+                    } catch (Throwable e) {
+                        indexingBatches.batchFailed();
+                        Log.log(e);
+                    } finally {
+                        indexingBatches.batchFinished();
+                    }
+                }
+            });
+        }
+        return indexingBatches;
+    }
+
+    /**
+     * @return the encoding declared in the given python contents (PEP 263) or utf-8 if no (supported) encoding is
+     * declared.
+     */
+    public static String getPythonEncoding(String contents, String location) {
+        try {
+            String encoding = FileUtils.getPythonFileEncoding(contents, location);
+            if (encoding != null) {
+                return encoding;
+            }
+        } catch (PyUnsupportedEncodingException e) {
+            // Use the default.
+        }
+        return "utf-8";
+    }
+
+    /**
+     * Decodes the contents of a python module with its encoding (see getPythonEncoding), so that the offsets
+     * stored in the index match the contents shown in the editor.
+     */
+    public static String decodePythonContents(byte[] bytes, String location) {
+        // The declaration must be in the first 2 lines (and is ascii).
+        String start = new String(bytes, 0, Math.min(bytes.length, 4096), StandardCharsets.ISO_8859_1);
+        return new String(bytes, Charset.forName(getPythonEncoding(start, location)));
+    }
+
+    private static byte[] readBytes(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buf)) != -1) {
+            out.write(buf, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private abstract class AbstractBatch {
+
+        protected final List<CompleteIndexKey> keys;
+        protected final List<CompleteIndexKey> addedKeys;
+        protected final List<Map<String, String>> fieldsToIndex;
+        protected final List<String> contents;
+        protected final FastStringBuffer tempBuf = new FastStringBuffer();
+
+        public AbstractBatch(List<CompleteIndexKey> keys) {
+            this.keys = keys;
+            this.addedKeys = new ArrayList<>(keys.size());
+            this.fieldsToIndex = new ArrayList<>(keys.size());
+            this.contents = new ArrayList<>(keys.size());
+        }
+
+        protected void add(CompleteIndexKey key, String fileContents) {
+            addedKeys.add(key);
+            fieldsToIndex.add(ReferenceSearchesLucene.createFieldsToIndex(key, tempBuf));
+            contents.add(fileContents);
+        }
+
+        /**
+         * Reads the contents of the modules and sends them to the index.
+         *
+         * @return false if the batch couldn't be committed to the index.
+         */
+        public abstract boolean index();
+
+        protected boolean commitBatch() {
+            try {
+                indexApi.index(fieldsToIndex, contents, IReferenceSearches.FIELD_CONTENTS, true);
+            } catch (Exception e) {
+                Log.log(e);
+                return false;
+            }
+            // Only add to the manifest after it's actually in the index.
+            for (CompleteIndexKey key : addedKeys) {
+                key.key.toIO(tempBuf.clear());
+                manifest.added(tempBuf.toString(), key.lastModified);
+            }
+            return true;
+        }
+    }
+
+    private class FilesBatch extends AbstractBatch {
+
+        public FilesBatch(List<CompleteIndexKey> keys) {
+            super(keys);
+        }
+
+        @Override
+        public boolean index() {
+            for (CompleteIndexKey key : keys) {
+                File f = key.key.file;
+                if (f.exists()) {
+                    if (DEBUG) {
+                        System.out.println("Indexing: " + f);
+                    }
+                    try {
+                        add(key, decodePythonContents(FileUtils.getFileContentsBytes(f), f.toString()));
+                    } catch (Exception e) {
+                        Log.log(e);
+                    }
+                }
+            }
+            return commitBatch();
+        }
+    }
+
+    private class ZipBatch extends AbstractBatch {
+
+        private final File zip;
+
+        public ZipBatch(File zip, List<CompleteIndexKey> keys) {
+            super(keys);
+            this.zip = zip;
+        }
+
+        @Override
+        public boolean index() {
+            if (!zip.exists()) {
+                return true; // Nothing to index (the zip was removed).
+            }
+            try (ZipFile zipFile = new ZipFile(zip, ZipFile.OPEN_READ);) {
+                for (CompleteIndexKey key : keys) {
+                    ModulesKeyForZip forZip = (ModulesKeyForZip) key.key;
+                    ZipEntry zipEntry = zipFile.getEntry(forZip.zipModulePath);
+                    if (zipEntry == null) {
+                        continue;
+                    }
+                    if (DEBUG) {
+                        System.out.println("Indexing: " + key);
+                    }
+                    try (InputStream inputStream = zipFile.getInputStream(zipEntry);) {
+                        add(key, decodePythonContents(readBytes(inputStream), key.toString()));
+                    }
+                }
+            } catch (Exception e) {
+                Log.log(e);
+            }
+            return commitBatch();
+        }
+    }
+}
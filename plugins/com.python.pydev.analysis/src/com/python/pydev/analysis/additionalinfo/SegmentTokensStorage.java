@@ -0,0 +1,541 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+
+import org.python.pydev.core.IInfo;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.callbacks.ICallback0;
+
+import com.python.pydev.analysis.additionalinfo.AbstractAdditionalTokensInfo.Filter;
+
+/**
+ * Keeps the tokens in immutable sorted segments (see TokensSegment) along with a small append-only delta with the
+ * tokens added after the segments were created.
+ *
+ * Readers get an immutable snapshot of the contents without any locking. Writers are serialized and publish each
+ * change as a new snapshot (so, readers see either all or nothing of a change):
+ *
+ * - new tokens are appended to the delta (entries are only written after the count of the published snapshots, so,
+ * the delta arrays may be shared among snapshots);
+ * - when a module is removed its tokens in the segments (and the ones in the delta added before the removal) are
+ * masked.
+ *
+ * When the delta becomes big, it's merged with the segments in a background thread (which is done from a snapshot,
+ * so, reads and writes go on while merging and the changes done in the meanwhile are kept when it finishes).
+ */
+public class SegmentTokensStorage implements ITokensStorage {
+
+    private static final boolean DEBUG = false;
+
+    /**
+     * After this number of tokens in the delta (or modules masked), the segments are recreated.
+     */
+    public static final int MERGE_THRESHOLD = 10000;
+
+    /**
+     * The tokens added after the segments were created.
+     */
+    private static final class Delta {
+
+        private final IInfo[] infos;
+        private final String[] lowerNames;
+        private final int[] doOn;
+
+        private Delta(int capacity) {
+            infos = new IInfo[capacity];
+            lowerNames = new String[capacity];
+            doOn = new int[capacity];
+        }
+
+        /**
+         * @return this delta or a copy with the first count entries if it can't hold the required entries.
+         */
+        private Delta ensureCapacity(int count, int required) {
+            if (required <= infos.length) {
+                return this;
+            }
+            Delta delta = new Delta(Math.max(required, infos.length * 2));
+            System.arraycopy(infos, 0, delta.infos, 0, count);
+            System.arraycopy(lowerNames, 0, delta.lowerNames, 0, count);
+            System.arraycopy(doOn, 0, delta.doOn, 0, count);
+            return delta;
+        }
+
+        private void set(int i, IInfo info, String lowerName, int doOn) {
+            this.infos[i] = info;
+            this.lowerNames[i] = lowerName;
+            this.doOn[i] = doOn;
+        }
+    }
+
+    /**
+     * An immutable view of the contents of the storage.
+     */
+    private static final class Snapshot {
+
+        /**
+         * Changed whenever the contents are reset (so that a merge started before is discarded).
+         */
+        private final int generation;
+
+        private final TokensSegment topLevelSegment;
+        private final TokensSegment innerSegment;
+
+        private final Delta delta;
+        private final int deltaCount;
+
+        /**
+         * Module name to the delta count when it was removed: its tokens in the segments and the tokens
+         * in the delta before that position are masked.
+         */
+        private final Map<String, Integer> removedModules;
+
+        private Snapshot(int generation, TokensSegment topLevelSegment, TokensSegment innerSegment, Delta delta,
+                int deltaCount, Map<String, Integer> removedModules) {
+            this.generation = generation;
+            this.topLevelSegment = topLevelSegment;
+            this.innerSegment = innerSegment;
+            this.delta = delta;
+            this.deltaCount = deltaCount;
+            this.removedModules = removedModules;
+        }
+
+        private boolean isRemovedFromSegments(String module) {
+            return removedModules.containsKey(module);
+        }
+
+        private boolean isDeltaEntryVisible(int i) {
+            Integer removedAt = removedModules.get(delta.infos[i].getDeclaringModuleName());
+            return removedAt == null || i >= removedAt;
+        }
+
+        private TokensSegment getSegment(int doOn) {
+            if (doOn == AbstractAdditionalTokensInfo.TOP_LEVEL) {
+                return topLevelSegment;
+            }
+            if (doOn == AbstractAdditionalTokensInfo.INNER) {
+                return innerSegment;
+            }
+            throw new RuntimeException("Invalid: " + doOn);
+        }
+    }
+
+    private final ICallback0<IPythonNature> natureProvider;
+
+    /**
+     * Serializes the writers (readers just use the current snapshot).
+     */
+    private final Object writeLock = new Object();
+
+    private volatile Snapshot snapshot = createEmptySnapshot(0, TokensSegment.EMPTY, TokensSegment.EMPTY);
+
+    /**
+     * Guarded by the write lock.
+     */
+    private boolean merging;
+
+    private volatile boolean useMappedFiles;
+
+    public SegmentTokensStorage(ICallback0<IPythonNature> natureProvider) {
+        this.natureProvider = natureProvider;
+    }
+
+    private static Snapshot createEmptySnapshot(int generation, TokensSegment topLevelSegment,
+            TokensSegment innerSegment) {
+        return new Snapshot(generation, topLevelSegment, innerSegment, new Delta(16), 0,
+                Collections.<String, Integer> emptyMap());
+    }
+
+    /**
+     * @param useMappedFiles if true, the segments created when merging are memory-mapped from temporary files
+     * (otherwise they're kept in the java heap).
+     */
+    public void setUseMappedFiles(boolean useMappedFiles) {
+        this.useMappedFiles = useMappedFiles;
+    }
+
+    private TokensSegment createSegment(TokensSegment.Builder builder) {
+        File file = null;
+        if (useMappedFiles && builder.size() > 0) {
+            try {
+                file = File.createTempFile("pydev_tokens", ".segment");
+            } catch (IOException e) {
+                Log.log(e);
+            }
+        }
+        TokensSegment segment = builder.build(file);
+        if (file != null) {
+            // The mapping is kept even after the file is deleted (if it can't be deleted now -- i.e.: on
+            // Windows -- remove it on exit).
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+        return segment;
+    }
+
+    @Override
+    public void add(IInfo info, int doOn) {
+        if (doOn == AbstractAdditionalTokensInfo.TOP_LEVEL) {
+            addAll(Collections.singletonList(info), Collections.<IInfo> emptyList());
+        } else if (doOn == AbstractAdditionalTokensInfo.INNER) {
+            addAll(Collections.<IInfo> emptyList(), Collections.singletonList(info));
+        } else {
+            throw new RuntimeException("List to add is invalid: " + doOn);
+        }
+    }
+
+    @Override
+    public void addAll(Collection<IInfo> topLevel, Collection<IInfo> inner) {
+        synchronized (writeLock) {
+            Snapshot s = snapshot;
+            int count = s.deltaCount;
+            Delta delta = s.delta.ensureCapacity(count, count + topLevel.size() + inner.size());
+            for (IInfo info : topLevel) {
+                delta.set(count++, info, info.getName().toLowerCase(), AbstractAdditionalTokensInfo.TOP_LEVEL);
+            }
+            for (IInfo info : inner) {
+                delta.set(count++, info, info.getName().toLowerCase(), AbstractAdditionalTokensInfo.INNER);
+            }
+            snapshot = new Snapshot(s.generation, s.topLevelSegment, s.innerSegment, delta, count, s.removedModules);
+            checkMerge();
+        }
+    }
+
+    @Override
+    public void removeInfoFromModule(String moduleName) {
+        synchronized (writeLock) {
+            Snapshot s = snapshot;
+            Map<String, Integer> removedModules = new HashMap<>(s.removedModules);
+            removedModules.put(moduleName, s.deltaCount);
+            snapshot = new Snapshot(s.generation, s.topLevelSegment, s.innerSegment, s.delta, s.deltaCount,
+                    removedModules);
+            checkMerge();
+        }
+    }
+
+    @Override
+    public void getWithFilter(String qualifier, int getWhat, Filter filter, boolean useLowerCaseQual,
+            Collection<IInfo> result) {
+        Snapshot s = snapshot;
+        IPythonNature nature = natureProvider.call();
+        String lower = qualifier.toLowerCase();
+        String qualToCompare = useLowerCaseQual ? lower : qualifier;
+        if ((getWhat & AbstractAdditionalTokensInfo.TOP_LEVEL) != 0) {
+            getWithFilter(s, s.topLevelSegment, lower, qualToCompare, filter, result, nature);
+        }
+        if ((getWhat & AbstractAdditionalTokensInfo.INNER) != 0) {
+            getWithFilter(s, s.innerSegment, lower, qualToCompare, filter, result, nature);
+        }
+        Delta delta = s.delta;
+        for (int i = 0; i < s.deltaCount; i++) {
+            if ((delta.doOn[i] & getWhat) != 0 && delta.lowerNames[i].startsWith(lower) && s.isDeltaEntryVisible(i)
+                    && filter.doCompare(qualToCompare, delta.infos[i])) {
+                result.add(delta.infos[i]);
+            }
+        }
+    }
+
+    private void getWithFilter(Snapshot s, TokensSegment segment, String lower, String qualToCompare,
+            Filter filter, Collection<IInfo> result, IPythonNature nature) {
+        int size = segment.size();
+        for (int i = segment.lowerBound(lower); i < size && segment.lowerNameStartsWith(i, lower); i++) {
+            if (s.isRemovedFromSegments(segment.getModule(i))) {
+                continue;
+            }
+            if (filter.doCompare(qualToCompare, segment.getName(i))) {
+                result.add(segment.createInfo(i, nature));
+            }
+        }
+    }
+
+    @Override
+    public void getBestMatches(TokenMatcher matcher, int getWhat, TopMatches<IInfo> result) {
+        Snapshot s = snapshot;
+        IPythonNature nature = natureProvider.call();
+        if ((getWhat & AbstractAdditionalTokensInfo.TOP_LEVEL) != 0) {
+            getBestMatches(s, s.topLevelSegment, matcher, result, nature);
+        }
+        if ((getWhat & AbstractAdditionalTokensInfo.INNER) != 0) {
+            getBestMatches(s, s.innerSegment, matcher, result, nature);
+        }
+        Delta delta = s.delta;
+        for (int i = 0; i < s.deltaCount; i++) {
+            if ((delta.doOn[i] & getWhat) != 0 && s.isDeltaEntryVisible(i)) {
+                String name = delta.infos[i].getName();
+                int score = matcher.score(name);
+                if (score != TokenMatcher.NO_MATCH) {
+                    result.add(score, name, delta.infos[i]);
+                }
+            }
+        }
+    }
+
+    private void getBestMatches(Snapshot s, TokensSegment segment, TokenMatcher matcher, TopMatches<IInfo> result,
+            IPythonNature nature) {
+        if (segment.size() == 0) {
+            return;
+        }
+        // Names are checked once (for all the tokens with that name) and only the candidates which pass the
+        // index masks are decoded and scored.
+        TokensNameIndex index = segment.getNameIndex();
+        int namesCount = index.getNamesCount();
+        for (int n = 0; n < namesCount; n++) {
+            if (!index.mayMatch(n, matcher)) {
+                continue;
+            }
+            int first = index.getFirstRecord(n);
+            String name = segment.getName(first);
+            int score = matcher.score(name);
+            if (score == TokenMatcher.NO_MATCH || !result.isCompetitive(score)) {
+                continue;
+            }
+            int end = index.getFirstRecord(n + 1);
+            for (int i = first; i < end; i++) {
+                if (!s.isRemovedFromSegments(segment.getModule(i))) {
+                    result.add(score, name, segment.createInfo(i, nature));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void getAllTokens(Collection<IInfo> result) {
+        Snapshot s = snapshot;
+        getAllTokens(s, AbstractAdditionalTokensInfo.TOP_LEVEL, result);
+        getAllTokens(s, AbstractAdditionalTokensInfo.INNER, result);
+    }
+
+    private void getAllTokens(Snapshot s, int doOn, Collection<IInfo> result) {
+        IPythonNature nature = natureProvider.call();
+        TokensSegment segment = s.getSegment(doOn);
+        int size = segment.size();
+        for (int i = 0; i < size; i++) {
+            if (!s.isRemovedFromSegments(segment.getModule(i))) {
+                result.add(segment.createInfo(i, nature));
+            }
+        }
+        for (int i = 0; i < s.deltaCount; i++) {
+            if (s.delta.doOn[i] == doOn && s.isDeltaEntryVisible(i)) {
+                result.add(s.delta.infos[i]);
+            }
+        }
+    }
+
+    @Override
+    public void getAllModulesWithTokens(Set<String> result) {
+        Snapshot s = snapshot;
+        for (TokensSegment segment : new TokensSegment[] { s.topLevelSegment, s.innerSegment }) {
+            int size = segment.size();
+            for (int i = 0; i < size; i++) {
+                String module = segment.getModule(i);
+                if (!s.isRemovedFromSegments(module)) {
+                    result.add(module);
+                }
+            }
+        }
+        for (int i = 0; i < s.deltaCount; i++) {
+            if (s.isDeltaEntryVisible(i)) {
+                result.add(s.delta.infos[i].getDeclaringModuleName());
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        restore(TokensSegment.EMPTY, TokensSegment.EMPTY, null);
+    }
+
+    @Override
+    public SortedMap<String, Set<IInfo>> toTree(int doOn) {
+        List<IInfo> infos = new ArrayList<>();
+        getAllTokens(snapshot, doOn, infos);
+        TreeMapTokensStorage tree = new TreeMapTokensStorage();
+        for (IInfo info : infos) {
+            tree.add(info, doOn);
+        }
+        return tree.toTree(doOn);
+    }
+
+    @Override
+    public void restore(SortedMap<String, Set<IInfo>> topLevelInitialsToInfo,
+            SortedMap<String, Set<IInfo>> innerInitialsToInfo) {
+        TokensSegment.Builder topBuilder = new TokensSegment.Builder();
+        for (Set<IInfo> infos : topLevelInitialsToInfo.values()) {
+            topBuilder.addAll(infos);
+        }
+        TokensSegment.Builder innerBuilder = new TokensSegment.Builder();
+        for (Set<IInfo> infos : innerInitialsToInfo.values()) {
+            innerBuilder.addAll(infos);
+        }
+        restore(createSegment(topBuilder), createSegment(innerBuilder), null);
+    }
+
+    /**
+     * Sets the given segments as the contents of this storage (the nature is not used as the IInfo objects are
+     * only created when queried).
+     */
+    @Override
+    public void restore(TokensSegment topLevelSegment, TokensSegment innerSegment, IPythonNature nature) {
+        synchronized (writeLock) {
+            snapshot = createEmptySnapshot(snapshot.generation + 1, topLevelSegment, innerSegment);
+        }
+    }
+
+    @Override
+    public TokensSegment toSegment(int doOn) {
+        Snapshot s = snapshot;
+        if (s.deltaCount == 0 && s.removedModules.isEmpty()) {
+            return s.getSegment(doOn);
+        }
+        return createSegment(s, doOn, false);
+    }
+
+    /**
+     * @param mapped if true the segment may be memory-mapped (see setUseMappedFiles).
+     * @return a segment with the tokens visible in the given snapshot.
+     */
+    private TokensSegment createSegment(Snapshot s, int doOn, boolean mapped) {
+        TokensSegment segment = s.getSegment(doOn);
+        TokensSegment.Builder builder = new TokensSegment.Builder();
+        int size = segment.size();
+        for (int i = 0; i < size; i++) {
+            if (!s.isRemovedFromSegments(segment.getModule(i))) {
+                builder.add(segment, i);
+            }
+        }
+        for (int i = 0; i < s.deltaCount; i++) {
+            if (s.delta.doOn[i] == doOn && s.isDeltaEntryVisible(i)) {
+                builder.add(s.delta.infos[i]);
+            }
+        }
+        return mapped ? createSegment(builder) : builder.build(null);
+    }
+
+    /**
+     * @return the number of tokens in the delta.
+     */
+    public int getDeltaSize() {
+        return snapshot.deltaCount;
+    }
+
+    public boolean isMerging() {
+        synchronized (writeLock) {
+            return merging;
+        }
+    }
+
+    /**
+     * Must be called with the write lock held.
+     */
+    private void checkMerge() {
+        Snapshot s = snapshot;
+        if (!merging && (s.deltaCount >= MERGE_THRESHOLD || s.removedModules.size() >= MERGE_THRESHOLD)) {
+            startMerge(true);
+        }
+    }
+
+    /**
+     * Merges the current delta into the segments (does nothing if a merge is already in progress).
+     *
+     * @param wait if true, the merge is done in the current thread.
+     */
+    public void merge(boolean wait) {
+        Runnable runnable;
+        synchronized (writeLock) {
+            if (merging) {
+                return;
+            }
+            runnable = startMerge(!wait);
+        }
+        if (wait) {
+            runnable.run();
+        }
+    }
+
+    /**
+     * Must be called with the write lock held.
+     */
+    private Runnable startMerge(boolean startThread) {
+        merging = true;
+        final Snapshot base = snapshot;
+
+        Runnable runnable = new Runnable() {
+
+            @Override
+            public void run() {
+                TokensSegment newTopLevel;
+                TokensSegment newInner;
+                try {
+                    newTopLevel = createSegment(base, AbstractAdditionalTokensInfo.TOP_LEVEL, true);
+                    newInner = createSegment(base, AbstractAdditionalTokensInfo.INNER, true);
+                    // If the names index was being used, create it for the new segments too (so that the next
+                    // query doesn't have to wait for it).
+                    if (base.topLevelSegment.hasNameIndex()) {
+                        newTopLevel.getNameIndex();
+                    }
+                    if (base.innerSegment.hasNameIndex()) {
+                        newInner.getNameIndex();
+                    }
+                } catch (Throwable e) {
+                    Log.log(e);
+                    newTopLevel = null;
+                    newInner = null;
+                }
+                synchronized (writeLock) {
+                    merging = false;
+                    Snapshot current = snapshot;
+                    if (newTopLevel == null || current.generation != base.generation) {
+                        return; // Error merging or contents reset in the meanwhile (keep the current snapshot).
+                    }
+
+                    // The tokens added while merging are kept in the new delta.
+                    int count = current.deltaCount - base.deltaCount;
+                    Delta delta = new Delta(Math.max(16, count * 2));
+                    for (int i = 0; i < count; i++) {
+                        int j = base.deltaCount + i;
+                        delta.set(i, current.delta.infos[j], current.delta.lowerNames[j], current.delta.doOn[j]);
+                    }
+
+                    // As well as the modules removed while merging.
+                    Map<String, Integer> removedModules = new HashMap<>();
+                    for (Entry<String, Integer> entry : current.removedModules.entrySet()) {
+                        if (!entry.getValue().equals(base.removedModules.get(entry.getKey()))) {
+                            removedModules.put(entry.getKey(), Math.max(0, entry.getValue() - base.deltaCount));
+                        }
+                    }
+                    snapshot = new Snapshot(current.generation, newTopLevel, newInner, delta, count, removedModules);
+                    if (DEBUG) {
+                        System.out.println("Merged tokens segments. Top level: " + newTopLevel.size() + " Inner: "
+                                + newInner.size() + " Delta: " + count);
+                    }
+                }
+            }
+        };
+        if (startThread) {
+            Thread thread = new Thread(runnable);
+            thread.setName("PyDev tokens segment merge");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY + 1);
+            thread.start();
+        }
+        return runnable;
+    }
+}
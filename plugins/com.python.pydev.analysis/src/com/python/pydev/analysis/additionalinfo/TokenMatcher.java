@@ -0,0 +1,245 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+/**
+ * Checks whether a token name matches a query and how good the match is (used to get the best matches from the
+ * tokens storage without having to collect all the tokens first -- see ITokensStorage.getBestMatches).
+ *
+ * Modes:
+ *
+ * FUZZY: the chars of the query must appear in the name in the same order (case-insensitive) and the first one
+ * must be at the start of a word (where words are separated by '_' or camel-case humps), so, 'DFR' matches
+ * 'DataFrameReader' and 'np_arr' matches 'numpy_array_utils'. Matches at the start of words and consecutive
+ * matches are ranked higher.
+ *
+ * SUBSTRING: the query must be a substring of the name (case-insensitive). Matches at the start of the name or of
+ * a word are ranked higher.
+ *
+ * SUBSTRING_OR_FUZZY: matches if either SUBSTRING or FUZZY match (with the best score of both) -- used in the
+ * code-completion with substring matching, so that 'DFR' also gets 'DataFrameReader'.
+ *
+ * In all the modes exact matches and prefix matches come first and shorter names are preferred.
+ *
+ * Note: not thread-safe (a matcher should be created for each query).
+ */
+public final class TokenMatcher {
+
+    public static final int FUZZY = 0;
+    public static final int SUBSTRING = 1;
+    public static final int SUBSTRING_OR_FUZZY = 2;
+
+    public static final int NO_MATCH = -1;
+
+    private static final int NEG = Integer.MIN_VALUE / 2;
+
+    private static final int MATCH = 1;
+    private static final int CASE_MATCH = 1;
+    private static final int WORD_START = 8;
+    private static final int CONSECUTIVE = 4;
+    private static final int FIRST_CHAR = 6;
+    private static final int PREFIX = 200;
+    private static final int EXACT = 1000;
+
+    private final String query;
+    private final String lowerQuery;
+    private final int mode;
+    private final long queryMask;
+    private final long firstCharMask;
+
+    // Rows of the dynamic programming used in the fuzzy match (reused among calls).
+    private int[] prev = new int[32];
+    private int[] curr = new int[32];
+
+    public TokenMatcher(String query, int mode) {
+        if (mode != FUZZY && mode != SUBSTRING && mode != SUBSTRING_OR_FUZZY) {
+            throw new IllegalArgumentException("Invalid mode: " + mode);
+        }
+        this.query = query;
+        this.lowerQuery = query.toLowerCase();
+        this.mode = mode;
+        this.queryMask = getCharsMask(lowerQuery);
+        this.firstCharMask = lowerQuery.length() > 0 && mode == FUZZY ? getCharMask(lowerQuery.charAt(0)) : 0;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public int getMode() {
+        return mode;
+    }
+
+    /**
+     * @return the bit used in the masks for the given (lowercase) char.
+     */
+    public static long getCharMask(char c) {
+        if (c >= 'a' && c <= 'z') {
+            return 1L << (c - 'a');
+        }
+        if (c >= '0' && c <= '9') {
+            return 1L << (26 + c - '0');
+        }
+        if (c == '_') {
+            return 1L << 36;
+        }
+        return 1L << (37 + (c % 27));
+    }
+
+    /**
+     * @return a mask with the bits of all the (lowercase) chars in the given string.
+     */
+    public static long getCharsMask(CharSequence lower) {
+        long mask = 0;
+        int len = lower.length();
+        for (int i = 0; i < len; i++) {
+            mask |= getCharMask(lower.charAt(i));
+        }
+        return mask;
+    }
+
+    /**
+     * @param name the name being checked.
+     * @param i an index in the name.
+     * @return whether a word starts at the given index (start of the name, after an '_' or a camel-case hump).
+     */
+    public static boolean isWordStart(CharSequence name, int i) {
+        if (i == 0) {
+            return true;
+        }
+        char c = name.charAt(i);
+        char p = name.charAt(i - 1);
+        if (c == '_') {
+            return false;
+        }
+        if (p == '_') {
+            return true;
+        }
+        if (Character.isUpperCase(c)) {
+            if (!Character.isUpperCase(p)) {
+                return true;
+            }
+            // i.e.: the 'S' in 'HTTPServer'
+            return i + 1 < name.length() && Character.isLowerCase(name.charAt(i + 1));
+        }
+        return Character.isDigit(c) && !Character.isDigit(p);
+    }
+
+    /**
+     * Quick check which may be used to discard names before calling score().
+     *
+     * @param charsMask the mask with all the (lowercase) chars of the name.
+     * @param wordStartsMask the mask with the (lowercase) chars at the start of words in the name.
+     * @return false if the name surely doesn't match.
+     */
+    public boolean mayMatch(long charsMask, long wordStartsMask) {
+        return (charsMask & queryMask) == queryMask && (wordStartsMask & firstCharMask) == firstCharMask;
+    }
+
+    /**
+     * @return the score of the given name (higher is better) or NO_MATCH.
+     */
+    public int score(String name) {
+        int len = name.length();
+        int queryLen = lowerQuery.length();
+        if (queryLen > len) {
+            return NO_MATCH;
+        }
+        int score;
+        if (queryLen == 0) {
+            score = 0;
+        } else if (mode == SUBSTRING) {
+            score = scoreSubstring(name);
+        } else if (mode == FUZZY) {
+            score = scoreFuzzy(name);
+        } else {
+            score = Math.max(scoreSubstring(name), scoreFuzzy(name));
+        }
+        if (score == NO_MATCH) {
+            return NO_MATCH;
+        }
+        if (len == queryLen && name.equalsIgnoreCase(query)) {
+            score += EXACT;
+            if (name.equals(query)) {
+                score += CASE_MATCH;
+            }
+        } else if (name.regionMatches(true, 0, query, 0, queryLen)) {
+            score += PREFIX;
+        }
+        // Shorter names are better (but it's not as important as the other bonuses).
+        score = score * 4 - Math.min(len - queryLen, 100);
+        return Math.max(0, score);
+    }
+
+    private int scoreSubstring(String name) {
+        int found = name.toLowerCase().indexOf(lowerQuery);
+        if (found < 0) {
+            return NO_MATCH;
+        }
+        int score = lowerQuery.length() * (MATCH + CONSECUTIVE);
+        if (isWordStart(name, found)) {
+            score += WORD_START;
+        }
+        return score;
+    }
+
+    private int scoreFuzzy(String name) {
+        int len = name.length();
+        int queryLen = lowerQuery.length();
+        if (prev.length < len) {
+            prev = new int[len * 2];
+            curr = new int[len * 2];
+        }
+        int[] prev = this.prev;
+        int[] curr = this.curr;
+
+        // prev[j]: the best score for the query up to (i - 1) with the char (i - 1) matched at j.
+        for (int i = 0; i < queryLen; i++) {
+            char qc = lowerQuery.charAt(i);
+            char originalQc = query.charAt(i);
+            int bestBefore = NEG; // best in prev[0..j-2]
+            for (int j = 0; j < len; j++) {
+                if (i > 0 && j >= 2 && prev[j - 2] > bestBefore) {
+                    bestBefore = prev[j - 2];
+                }
+                char c = name.charAt(j);
+                if (Character.toLowerCase(c) != qc) {
+                    curr[j] = NEG;
+                    continue;
+                }
+                boolean wordStart = isWordStart(name, j);
+                int bonus = MATCH;
+                if (wordStart) {
+                    bonus += WORD_START;
+                }
+                if (c == originalQc) {
+                    bonus += CASE_MATCH;
+                }
+                if (i == 0) {
+                    curr[j] = wordStart ? bonus + (j == 0 ? FIRST_CHAR : 0) : NEG;
+                } else {
+                    int best = bestBefore;
+                    if (j >= 1 && prev[j - 1] != NEG && prev[j - 1] + CONSECUTIVE > best) {
+                        best = prev[j - 1] + CONSECUTIVE;
+                    }
+                    curr[j] = best <= NEG ? NEG : best + bonus;
+                }
+            }
+            int[] temp = prev;
+            prev = curr;
+            curr = temp;
+        }
+
+        int best = NEG;
+        for (int j = 0; j < len; j++) {
+            if (prev[j] > best) {
+                best = prev[j];
+            }
+        }
+        return best <= NEG ? NO_MATCH : best;
+    }
+}
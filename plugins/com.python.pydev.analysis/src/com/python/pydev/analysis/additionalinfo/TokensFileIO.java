@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import org.python.pydev.core.log.Log;
+
+/**
+ * Saves/loads the tokens of the additional info in a binary file which is memory-mapped when loaded (so, the
+ * tokens are available right away and IInfo objects are only created when queried -- see TokensSegment).
+ *
+ * The layout is:
+ *
+ * header: magic, version, stamp, top level segment offset and length, inner segment offset and length
+ * top level segment
+ * inner segment
+ *
+ * The file name contains the stamp (which is referenced from the main additional info file), so, a new file is
+ * written at each save (a file which is still mapped can't be overwritten or deleted in some platforms).
+ */
+public class TokensFileIO {
+
+    private static final int MAGIC = 0x50594446; // PYDF
+
+    public static final int FILE_VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 * 8;
+
+    private static final String TOKENS_FILE_EXTENSION = ".tokens";
+
+    /**
+     * @return the file with the tokens for the given additional info location and stamp.
+     */
+    public static File getTokensFile(File persistingLocation, long stamp) {
+        return new File(persistingLocation.getParentFile(),
+                persistingLocation.getName() + "_" + stamp + TOKENS_FILE_EXTENSION);
+    }
+
+    public static void save(File file, long stamp, TokensSegment topLevelSegment, TokensSegment innerSegment)
+            throws IOException {
+        long topLevelOffset = HEADER_SIZE;
+        long innerOffset = topLevelOffset + topLevelSegment.getBytesSize();
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(FILE_VERSION);
+        header.putLong(stamp);
+        header.putLong(topLevelOffset);
+        header.putLong(topLevelSegment.getBytesSize());
+        header.putLong(innerOffset);
+        header.putLong(innerSegment.getBytesSize());
+        header.flip();
+
+        try (FileOutputStream stream = new FileOutputStream(file);
+                FileChannel channel = stream.getChannel()) {
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            topLevelSegment.writeTo(channel);
+            innerSegment.writeTo(channel);
+        }
+    }
+
+    /**
+     * @return the top level and inner segments (memory-mapped from the given file).
+     * @throws IOException if the file is not valid or its stamp doesn't match the expected stamp.
+     */
+    public static TokensSegment[] load(File file, long expectedStamp) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+                FileChannel channel = randomAccessFile.getChannel()) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Invalid tokens file (too small): " + file);
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException("Unexpected end of file reading: " + file);
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Invalid tokens file (magic doesn't match): " + file);
+            }
+            int version = header.getInt();
+            if (version != FILE_VERSION) {
+                throw new IOException("Expected tokens file version: " + FILE_VERSION + ". Found: " + version);
+            }
+            long stamp = header.getLong();
+            if (stamp != expectedStamp) {
+                throw new IOException("Expected tokens file stamp: " + expectedStamp + ". Found: " + stamp);
+            }
+            // Note: the mapping is still valid after the channel is closed.
+            TokensSegment topLevel = map(channel, fileSize, header.getLong(), header.getLong());
+            TokensSegment inner = map(channel, fileSize, header.getLong(), header.getLong());
+            return new TokensSegment[] { topLevel, inner };
+        }
+    }
+
+    private static TokensSegment map(FileChannel channel, long fileSize, long offset, long length)
+            throws IOException {
+        if (offset < HEADER_SIZE || length <= 0 || length > Integer.MAX_VALUE || offset + length > fileSize) {
+            throw new IOException("Invalid segment in tokens file. Offset: " + offset + " Length: " + length);
+        }
+        try {
+            return TokensSegment.fromBuffer(channel.map(MapMode.READ_ONLY, offset, length));
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid segment in tokens file.", e);
+        }
+    }
+
+    /**
+     * Removes the tokens files for the given additional info location which are not the one with the given stamp
+     * (files which can't be removed now -- i.e.: still mapped on Windows -- are removed in a later save).
+     */
+    public static void removeOldTokensFiles(File persistingLocation, long currentStamp) {
+        File dir = persistingLocation.getParentFile();
+        if (dir == null) {
+            return;
+        }
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        String prefix = persistingLocation.getName() + "_";
+        String current = getTokensFile(persistingLocation, currentStamp).getName();
+        for (File f : files) {
+            String name = f.getName();
+            if (name.startsWith(prefix) && name.endsWith(TOKENS_FILE_EXTENSION) && !name.equals(current)) {
+                if (!f.delete() && f.exists()) {
+                    Log.logInfo("Unable to remove old tokens file (will retry later): " + f);
+                }
+            }
+        }
+    }
+}
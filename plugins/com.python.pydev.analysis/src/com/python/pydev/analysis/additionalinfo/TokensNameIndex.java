@@ -0,0 +1,83 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.Arrays;
+
+/**
+ * Index over the distinct names of a TokensSegment used to find the names matching a TokenMatcher without
+ * decoding all the names: for each name it keeps a mask with its chars and a mask with the chars which start its
+ * words (camel-case humps and '_' separated parts), so, most of the names are discarded just by checking those.
+ *
+ * Created lazily (only when needed for a fuzzy/substring query) and immutable afterwards.
+ */
+final class TokensNameIndex {
+
+    /**
+     * The first record of each distinct name (plus the segment size at the end). As the records are sorted by the
+     * lowercase name and name, the records with the same name are contiguous.
+     */
+    private final int[] firstRecord;
+
+    private final long[] charsMasks;
+
+    private final long[] wordStartsMasks;
+
+    private final int namesCount;
+
+    TokensNameIndex(TokensSegment segment) {
+        int size = segment.size();
+        int[] firstRecord = new int[size + 1];
+        long[] charsMasks = new long[size];
+        long[] wordStartsMasks = new long[size];
+        int count = 0;
+        int lastNameId = -1;
+        for (int i = 0; i < size; i++) {
+            int nameId = segment.getNameId(i);
+            if (nameId == lastNameId) {
+                continue;
+            }
+            lastNameId = nameId;
+            CharSequence name = segment.getStringChars(nameId);
+            long chars = 0;
+            long wordStarts = 0;
+            int len = name.length();
+            for (int k = 0; k < len; k++) {
+                long mask = TokenMatcher.getCharMask(Character.toLowerCase(name.charAt(k)));
+                chars |= mask;
+                if (TokenMatcher.isWordStart(name, k)) {
+                    wordStarts |= mask;
+                }
+            }
+            firstRecord[count] = i;
+            charsMasks[count] = chars;
+            wordStartsMasks[count] = wordStarts;
+            count++;
+        }
+        firstRecord[count] = size;
+        this.namesCount = count;
+        this.firstRecord = Arrays.copyOf(firstRecord, count + 1);
+        this.charsMasks = Arrays.copyOf(charsMasks, count);
+        this.wordStartsMasks = Arrays.copyOf(wordStartsMasks, count);
+    }
+
+    int getNamesCount() {
+        return namesCount;
+    }
+
+    /**
+     * @return the first record with the given name (the records until getFirstRecord(nameIndex + 1) have the
+     * same name).
+     */
+    int getFirstRecord(int nameIndex) {
+        return firstRecord[nameIndex];
+    }
+
+    boolean mayMatch(int nameIndex, TokenMatcher matcher) {
+        return matcher.mayMatch(charsMasks[nameIndex], wordStartsMasks[nameIndex]);
+    }
+}
@@ -0,0 +1,486 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.python.pydev.core.IInfo;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.log.Log;
+
+/**
+ * An immutable and sorted set of tokens kept in a ByteBuffer (which may be memory-mapped, so, the tokens may be
+ * kept outside of the java heap).
+ *
+ * The layout is:
+ *
+ * header: magic, version, number of records, number of strings, records position, strings table position
+ * records (fixed width, sorted by the lowercase name, name and module):
+ *     lowercase name, name, module, path (-1 if null), file (-1 if null), line, col, type
+ * strings table: the position of each string
+ * strings: length followed by the chars
+ *
+ * All the strings (names, modules, paths and files) are kept only once in the strings table and are only
+ * turned into java strings when needed (IInfo objects are created only for the tokens returned in queries).
+ *
+ * Note: only absolute reads are done in the buffer, so, it may be read from multiple threads.
+ */
+public final class TokensSegment {
+
+    private static final int MAGIC = 0x50594454; // PYDT
+
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_SIZE = 6 * 4;
+
+    private static final int RECORD_SIZE = 8 * 4;
+
+    private static final int R_LOWER_NAME = 0;
+    private static final int R_NAME = 4;
+    private static final int R_MODULE = 8;
+    private static final int R_PATH = 12;
+    private static final int R_FILE = 16;
+    private static final int R_LINE = 20;
+    private static final int R_COL = 24;
+    private static final int R_TYPE = 28;
+
+    public static final TokensSegment EMPTY = new Builder().build(null);
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int recordsPos;
+    private final int stringsTablePos;
+
+    /**
+     * Max number of decoded strings kept (see getString).
+     */
+    private static final int DECODED_CACHE_SIZE = 256;
+
+    /**
+     * A string decoded from the buffer.
+     */
+    private static final class DecodedString {
+
+        private final int stringIndex;
+        private final String str;
+
+        private DecodedString(int stringIndex, String str) {
+            this.stringIndex = stringIndex;
+            this.str = str;
+        }
+    }
+
+    /**
+     * Strings recently decoded from the buffer (so that the same instance is reused for the strings which appear in
+     * many results, such as module names). It's a small direct-mapped cache (indexed by the string index), so, the
+     * strings are not all kept in the heap.
+     */
+    private final DecodedString[] decoded;
+
+    /**
+     * Created lazily (see getNameIndex()).
+     */
+    private volatile TokensNameIndex nameIndex;
+
+    private TokensSegment(ByteBuffer buffer) {
+        if (buffer.getInt(0) != MAGIC) {
+            throw new RuntimeException("Invalid tokens segment (magic doesn't match).");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new RuntimeException("Invalid tokens segment version: " + buffer.getInt(4));
+        }
+        this.buffer = buffer;
+        this.size = buffer.getInt(8);
+        this.recordsPos = buffer.getInt(16);
+        this.stringsTablePos = buffer.getInt(20);
+        this.decoded = new DecodedString[DECODED_CACHE_SIZE];
+    }
+
+    /**
+     * @return the number of tokens in this segment.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of bytes used by this segment.
+     */
+    public int getBytesSize() {
+        return buffer.capacity();
+    }
+
+    private int recordInt(int i, int field) {
+        return buffer.getInt(recordsPos + i * RECORD_SIZE + field);
+    }
+
+    private int stringPos(int stringIndex) {
+        return buffer.getInt(stringsTablePos + stringIndex * 4);
+    }
+
+    private String getString(int stringIndex) {
+        if (stringIndex < 0) {
+            return null;
+        }
+        int slot = stringIndex & (DECODED_CACHE_SIZE - 1);
+        DecodedString d = decoded[slot];
+        if (d != null && d.stringIndex == stringIndex) {
+            return d.str;
+        }
+        int pos = stringPos(stringIndex);
+        int len = buffer.getInt(pos);
+        pos += 4;
+        char[] chars = new char[len];
+        for (int i = 0; i < len; i++) {
+            chars[i] = buffer.getChar(pos + i * 2);
+        }
+        String s = new String(chars);
+        decoded[slot] = new DecodedString(stringIndex, s); // benign race: DecodedString is immutable.
+        return s;
+    }
+
+    /**
+     * @return a view of the chars of the given string in the buffer (without decoding it to a java string).
+     */
+    CharSequence getStringChars(final int stringIndex) {
+        final int pos = stringPos(stringIndex) + 4;
+        final int len = buffer.getInt(pos - 4);
+        return new CharSequence() {
+
+            @Override
+            public int length() {
+                return len;
+            }
+
+            @Override
+            public char charAt(int index) {
+                return buffer.getChar(pos + index * 2);
+            }
+
+            @Override
+            public CharSequence subSequence(int start, int end) {
+                return toString().subSequence(start, end);
+            }
+
+            @Override
+            public String toString() {
+                return getString(stringIndex);
+            }
+        };
+    }
+
+    /**
+     * @return the index of the name of the given record in the strings table (records with the same name have the
+     * same index).
+     */
+    int getNameId(int i) {
+        return recordInt(i, R_NAME);
+    }
+
+    /**
+     * @return the index over the names of this segment used for fuzzy/substring matching (created on the first
+     * call).
+     */
+    TokensNameIndex getNameIndex() {
+        TokensNameIndex index = nameIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = nameIndex;
+                if (index == null) {
+                    index = new TokensNameIndex(this);
+                    nameIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    boolean hasNameIndex() {
+        return nameIndex != null;
+    }
+
+    /**
+     * Compares the lowercase name of the given record with the passed string (as String.compareTo).
+     */
+    private int compareLowerName(int i, String lower) {
+        int pos = stringPos(recordInt(i, R_LOWER_NAME));
+        int len = buffer.getInt(pos);
+        pos += 4;
+        int otherLen = lower.length();
+        int lim = Math.min(len, otherLen);
+        for (int k = 0; k < lim; k++) {
+            char c1 = buffer.getChar(pos + k * 2);
+            char c2 = lower.charAt(k);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return len - otherLen;
+    }
+
+    /**
+     * @return the index of the first record whose lowercase name is >= the given string.
+     */
+    public int lowerBound(String lower) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareLowerName(mid, lower) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public boolean lowerNameStartsWith(int i, String lower) {
+        int pos = stringPos(recordInt(i, R_LOWER_NAME));
+        int len = buffer.getInt(pos);
+        int otherLen = lower.length();
+        if (otherLen > len) {
+            return false;
+        }
+        pos += 4;
+        for (int k = 0; k < otherLen; k++) {
+            if (buffer.getChar(pos + k * 2) != lower.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getName(int i) {
+        return getString(recordInt(i, R_NAME));
+    }
+
+    public String getModule(int i) {
+        return getString(recordInt(i, R_MODULE));
+    }
+
+    public int getType(int i) {
+        return recordInt(i, R_TYPE);
+    }
+
+    /**
+     * Creates the IInfo for the given record.
+     */
+    public IInfo createInfo(int i, IPythonNature nature) {
+        String name = getName(i);
+        String module = getModule(i);
+        String path = getString(recordInt(i, R_PATH));
+        String file = getString(recordInt(i, R_FILE));
+        int line = recordInt(i, R_LINE);
+        int col = recordInt(i, R_COL);
+        int type = getType(i);
+        switch (type) {
+            case IInfo.CLASS_WITH_IMPORT_TYPE:
+                return new ClassInfo(name, module, path, false, nature, file, line, col);
+            case IInfo.METHOD_WITH_IMPORT_TYPE:
+                return new FuncInfo(name, module, path, false, nature, file, line, col);
+            case IInfo.ATTRIBUTE_WITH_IMPORT_TYPE:
+                return new AttrInfo(name, module, path, false, nature, file, line, col);
+            case IInfo.NAME_WITH_IMPORT_TYPE:
+                return new NameInfo(name, module, path, false, nature, file, line, col);
+            case IInfo.MOD_IMPORT_TYPE:
+                return new ModInfo(module, false, nature, file, line, col);
+            default:
+                throw new RuntimeException("Unexpected type: " + type);
+        }
+    }
+
+    /**
+     * Writes the contents of this segment to the given channel (so that it can be later restored with fromBuffer).
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.clear();
+        while (duplicate.hasRemaining()) {
+            channel.write(duplicate);
+        }
+    }
+
+    /**
+     * Creates a segment from the given buffer (i.e.: as written by the Builder).
+     */
+    public static TokensSegment fromBuffer(ByteBuffer buffer) {
+        return new TokensSegment(buffer);
+    }
+
+    /**
+     * Collects the tokens to create a segment.
+     */
+    public static final class Builder {
+
+        private static final class Entry {
+            final String lowerName;
+            final String name;
+            final String module;
+            final String path;
+            final String file;
+            final int line;
+            final int col;
+            final int type;
+
+            Entry(String name, String module, String path, String file, int line, int col, int type) {
+                this.lowerName = name.toLowerCase();
+                this.name = name;
+                this.module = module;
+                this.path = path;
+                this.file = file;
+                this.line = line;
+                this.col = col;
+                this.type = type;
+            }
+        }
+
+        private final List<Entry> entries = new ArrayList<>();
+
+        public Builder add(IInfo info) {
+            entries.add(new Entry(info.getName(), info.getDeclaringModuleName(), info.getPath(), info.getFile(),
+                    info.getLine(), info.getCol(), info.getType()));
+            return this;
+        }
+
+        public Builder addAll(Collection<IInfo> infos) {
+            for (IInfo info : infos) {
+                add(info);
+            }
+            return this;
+        }
+
+        /**
+         * Adds the record i from the given segment (without creating an IInfo).
+         */
+        public Builder add(TokensSegment segment, int i) {
+            entries.add(new Entry(segment.getName(i), segment.getModule(i),
+                    segment.getString(segment.recordInt(i, R_PATH)),
+                    segment.getString(segment.recordInt(i, R_FILE)), segment.recordInt(i, R_LINE),
+                    segment.recordInt(i, R_COL), segment.getType(i)));
+            return this;
+        }
+
+        public int size() {
+            return entries.size();
+        }
+
+        /**
+         * @param file if given, the segment is written to that file and memory-mapped (otherwise a heap buffer
+         * is used).
+         */
+        public TokensSegment build(File file) {
+            Collections.sort(entries, new Comparator<Entry>() {
+
+                @Override
+                public int compare(Entry o1, Entry o2) {
+                    int r = o1.lowerName.compareTo(o2.lowerName);
+                    if (r != 0) {
+                        return r;
+                    }
+                    r = o1.name.compareTo(o2.name);
+                    if (r != 0) {
+                        return r;
+                    }
+                    return o1.module.compareTo(o2.module);
+                }
+            });
+
+            Map<String, Integer> stringToIndex = new HashMap<>();
+            List<String> strings = new ArrayList<>();
+            int size = entries.size();
+            int[] records = new int[size * 8];
+            int r = 0;
+            for (Entry entry : entries) {
+                records[r++] = intern(entry.lowerName, stringToIndex, strings);
+                records[r++] = intern(entry.name, stringToIndex, strings);
+                records[r++] = intern(entry.module, stringToIndex, strings);
+                records[r++] = intern(entry.path, stringToIndex, strings);
+                records[r++] = intern(entry.file, stringToIndex, strings);
+                records[r++] = entry.line;
+                records[r++] = entry.col;
+                records[r++] = entry.type;
+            }
+
+            int recordsPos = HEADER_SIZE;
+            int stringsTablePos = recordsPos + size * RECORD_SIZE;
+            int stringsPos = stringsTablePos + strings.size() * 4;
+            long total = stringsPos;
+            for (String s : strings) {
+                total += 4 + s.length() * 2L;
+            }
+            if (total > Integer.MAX_VALUE) {
+                throw new RuntimeException("Tokens segment too big: " + total);
+            }
+
+            ByteBuffer buffer = allocate((int) total, file);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, FORMAT_VERSION);
+            buffer.putInt(8, size);
+            buffer.putInt(12, strings.size());
+            buffer.putInt(16, recordsPos);
+            buffer.putInt(20, stringsTablePos);
+            for (int i = 0; i < records.length; i++) {
+                buffer.putInt(recordsPos + i * 4, records[i]);
+            }
+            int pos = stringsPos;
+            for (int i = 0; i < strings.size(); i++) {
+                String s = strings.get(i);
+                buffer.putInt(stringsTablePos + i * 4, pos);
+                int len = s.length();
+                buffer.putInt(pos, len);
+                pos += 4;
+                for (int k = 0; k < len; k++) {
+                    buffer.putChar(pos, s.charAt(k));
+                    pos += 2;
+                }
+            }
+            return new TokensSegment(buffer.asReadOnlyBuffer());
+        }
+
+        private static int intern(String s, Map<String, Integer> stringToIndex, List<String> strings) {
+            if (s == null) {
+                return -1;
+            }
+            Integer i = stringToIndex.get(s);
+            if (i == null) {
+                i = strings.size();
+                strings.add(s);
+                stringToIndex.put(s, i);
+            }
+            return i;
+        }
+
+        private static ByteBuffer allocate(int size, File file) {
+            if (file != null) {
+                try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+                        FileChannel channel = randomAccessFile.getChannel()) {
+                    randomAccessFile.setLength(size);
+                    // Note: the mapping is still valid after the channel is closed.
+                    return channel.map(MapMode.READ_WRITE, 0, size);
+                } catch (IOException e) {
+                    Log.log("Unable to map: " + file + " (using direct buffer).", e);
+                }
+                return ByteBuffer.allocateDirect(size);
+            }
+            return ByteBuffer.allocate(size);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps only the best maxResults items added (by score, then by name) -- items which can't be in the result are
+ * discarded right away, so, the memory used doesn't depend on the number of matches.
+ */
+public final class TopMatches<T> {
+
+    private static final class Entry<T> {
+        private final int score;
+        private final String name;
+        private final T item;
+
+        private Entry(int score, String name, T item) {
+            this.score = score;
+            this.name = name;
+            this.item = item;
+        }
+    }
+
+    /**
+     * The worst entry comes first.
+     */
+    private static final Comparator<Entry<?>> WORST_FIRST = new Comparator<Entry<?>>() {
+
+        @Override
+        public int compare(Entry<?> o1, Entry<?> o2) {
+            if (o1.score != o2.score) {
+                return o1.score < o2.score ? -1 : 1;
+            }
+            return o2.name.compareTo(o1.name);
+        }
+    };
+
+    private final int maxResults;
+    private final PriorityQueue<Entry<T>> queue;
+
+    public TopMatches(int maxResults) {
+        if (maxResults <= 0) {
+            throw new IllegalArgumentException("Expected maxResults > 0. Found: " + maxResults);
+        }
+        this.maxResults = maxResults;
+        this.queue = new PriorityQueue<Entry<T>>(Math.min(maxResults, 256) + 1, WORST_FIRST);
+    }
+
+    /**
+     * @return false if an item with the given score would be surely discarded.
+     */
+    public boolean isCompetitive(int score) {
+        return queue.size() < maxResults || score >= queue.peek().score;
+    }
+
+    public void add(int score, String name, T item) {
+        if (!isCompetitive(score)) {
+            return;
+        }
+        queue.add(new Entry<T>(score, name, item));
+        if (queue.size() > maxResults) {
+            queue.poll();
+        }
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * @return the items kept (best first).
+     */
+    public List<T> getItems() {
+        List<Entry<T>> entries = new ArrayList<Entry<T>>(queue);
+        Collections.sort(entries, Collections.reverseOrder(WORST_FIRST));
+        List<T> ret = new ArrayList<T>(entries.size());
+        for (Entry<T> entry : entries) {
+            ret.add(entry.item);
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,284 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+
+import org.python.pydev.ast.codecompletion.revisited.PyPublicTreeMap;
+import org.python.pydev.core.IInfo;
+import org.python.pydev.core.IPythonNature;
+
+import com.python.pydev.analysis.additionalinfo.AbstractAdditionalTokensInfo.Filter;
+
+/**
+ * Keeps the tokens on-heap in trees from the initials of the token to the tokens with those initials.
+ *
+ * Synchronized on the storage itself (so, queries wait while a change is being applied).
+ */
+public class TreeMapTokensStorage implements ITokensStorage {
+
+    /**
+     * indexes used so that we can access the information faster - it is ordered through a tree map, and should be
+     * very fast to access given its initials.
+     *
+     * It contains only top/level information for a module
+     */
+    private SortedMap<String, Set<IInfo>> topLevelInitialsToInfo = new PyPublicTreeMap<String, Set<IInfo>>();
+
+    /**
+     * indexes so that we can get 'inner information' from classes, such as methods or inner classes from a class
+     */
+    private SortedMap<String, Set<IInfo>> innerInitialsToInfo = new PyPublicTreeMap<String, Set<IInfo>>();
+
+    /**
+     * Number of tokens available.
+     */
+    private int size;
+
+    /**
+     * @param name the name from where we want to get the initials
+     * @return the initials for the name
+     */
+    public static String getInitials(String name) {
+        if (name.length() < AbstractAdditionalTokensInfo.NUMBER_OF_INITIALS_TO_INDEX) {
+            return name;
+        }
+        return name.substring(0, AbstractAdditionalTokensInfo.NUMBER_OF_INITIALS_TO_INDEX).toLowerCase();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public synchronized void add(IInfo info, int doOn) {
+        SortedMap<String, Set<IInfo>> initialsToInfo;
+        if (doOn == AbstractAdditionalTokensInfo.TOP_LEVEL) {
+            initialsToInfo = topLevelInitialsToInfo;
+        } else if (doOn == AbstractAdditionalTokensInfo.INNER) {
+            initialsToInfo = innerInitialsToInfo;
+        } else {
+            throw new RuntimeException("List to add is invalid: " + doOn);
+        }
+        String initials = getInitials(info.getName());
+        Set<IInfo> lInfo = initialsToInfo.get(initials);
+        if (lInfo == null) {
+            lInfo = new HashSet<IInfo>();
+            initialsToInfo.put(initials, lInfo);
+        }
+        if (lInfo.add(info)) {
+            size++;
+        }
+    }
+
+    @Override
+    public synchronized void addAll(Collection<IInfo> topLevel, Collection<IInfo> inner) {
+        for (IInfo info : topLevel) {
+            add(info, AbstractAdditionalTokensInfo.TOP_LEVEL);
+        }
+        for (IInfo info : inner) {
+            add(info, AbstractAdditionalTokensInfo.INNER);
+        }
+    }
+
+    @Override
+    public synchronized void removeInfoFromModule(String moduleName) {
+        removeInfoFromMap(moduleName, topLevelInitialsToInfo);
+        removeInfoFromMap(moduleName, innerInitialsToInfo);
+    }
+
+    private void removeInfoFromMap(String moduleName, SortedMap<String, Set<IInfo>> initialsToInfo) {
+        Iterator<Set<IInfo>> itListOfInfo = initialsToInfo.values().iterator();
+        while (itListOfInfo.hasNext()) {
+
+            Iterator<IInfo> it = itListOfInfo.next().iterator();
+            while (it.hasNext()) {
+
+                IInfo info = it.next();
+                if (info != null && info.getDeclaringModuleName() != null) {
+                    if (info.getDeclaringModuleName().equals(moduleName)) {
+                        it.remove();
+                        size--;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void getWithFilter(String qualifier, int getWhat, Filter filter, boolean useLowerCaseQual,
+            Collection<IInfo> result) {
+        getWithFilter(qualifier, getWhat, filter, useLowerCaseQual, result, null);
+    }
+
+    /**
+     * @param excludeModules tokens from those modules are not added to the result (may be null).
+     */
+    public synchronized void getWithFilter(String qualifier, int getWhat, Filter filter, boolean useLowerCaseQual,
+            Collection<IInfo> result, Set<String> excludeModules) {
+        if ((getWhat & AbstractAdditionalTokensInfo.TOP_LEVEL) != 0) {
+            getWithFilter(qualifier, topLevelInitialsToInfo, result, filter, useLowerCaseQual, excludeModules);
+        }
+        if ((getWhat & AbstractAdditionalTokensInfo.INNER) != 0) {
+            getWithFilter(qualifier, innerInitialsToInfo, result, filter, useLowerCaseQual, excludeModules);
+        }
+    }
+
+    /**
+     * @param initialsToInfo this is where we are going to get the info from (currently: inner or top level list)
+     * @param toks (out) the tokens will be added to this list
+     */
+    private void getWithFilter(String qualifier, SortedMap<String, Set<IInfo>> initialsToInfo,
+            Collection<IInfo> toks, Filter filter, boolean useLowerCaseQual, Set<String> excludeModules) {
+        String initials = getInitials(qualifier);
+        String qualToCompare = qualifier;
+        if (useLowerCaseQual) {
+            qualToCompare = qualifier.toLowerCase();
+        }
+
+        //get until the end of the alphabet
+        SortedMap<String, Set<IInfo>> subMap = initialsToInfo.subMap(initials, initials + "\uffff\uffff\uffff\uffff");
+
+        for (Set<IInfo> listForInitials : subMap.values()) {
+
+            for (IInfo info : listForInitials) {
+                if (filter.doCompare(qualToCompare, info)) {
+                    if (excludeModules != null && excludeModules.contains(info.getDeclaringModuleName())) {
+                        continue;
+                    }
+                    toks.add(info);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void getBestMatches(TokenMatcher matcher, int getWhat, TopMatches<IInfo> result) {
+        if ((getWhat & AbstractAdditionalTokensInfo.TOP_LEVEL) != 0) {
+            getBestMatches(topLevelInitialsToInfo, matcher, result);
+        }
+        if ((getWhat & AbstractAdditionalTokensInfo.INNER) != 0) {
+            getBestMatches(innerInitialsToInfo, matcher, result);
+        }
+    }
+
+    private void getBestMatches(SortedMap<String, Set<IInfo>> initialsToInfo, TokenMatcher matcher,
+            TopMatches<IInfo> result) {
+        for (Set<IInfo> list : initialsToInfo.values()) {
+            for (IInfo info : list) {
+                String name = info.getName();
+                int score = matcher.score(name);
+                if (score != TokenMatcher.NO_MATCH) {
+                    result.add(score, name, info);
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void getAllTokens(Collection<IInfo> result) {
+        getAllTokens(AbstractAdditionalTokensInfo.TOP_LEVEL | AbstractAdditionalTokensInfo.INNER, result, null);
+    }
+
+    /**
+     * @param excludeModules tokens from those modules are not added to the result (may be null).
+     */
+    public synchronized void getAllTokens(int getWhat, Collection<IInfo> result, Set<String> excludeModules) {
+        if ((getWhat & AbstractAdditionalTokensInfo.TOP_LEVEL) != 0) {
+            addAll(topLevelInitialsToInfo, result, excludeModules);
+        }
+        if ((getWhat & AbstractAdditionalTokensInfo.INNER) != 0) {
+            addAll(innerInitialsToInfo, result, excludeModules);
+        }
+    }
+
+    private void addAll(SortedMap<String, Set<IInfo>> initialsToInfo, Collection<IInfo> result,
+            Set<String> excludeModules) {
+        for (Set<IInfo> list : initialsToInfo.values()) {
+            for (IInfo info : list) {
+                if (excludeModules != null && excludeModules.contains(info.getDeclaringModuleName())) {
+                    continue;
+                }
+                result.add(info);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void getAllModulesWithTokens(Set<String> result) {
+        for (Entry<String, Set<IInfo>> entry : this.topLevelInitialsToInfo.entrySet()) {
+            for (IInfo info : entry.getValue()) {
+                result.add(info.getDeclaringModuleName());
+            }
+        }
+        for (Entry<String, Set<IInfo>> entry : this.innerInitialsToInfo.entrySet()) {
+            for (IInfo info : entry.getValue()) {
+                result.add(info.getDeclaringModuleName());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        topLevelInitialsToInfo.clear();
+        innerInitialsToInfo.clear();
+        size = 0;
+    }
+
+    @Override
+    public synchronized SortedMap<String, Set<IInfo>> toTree(int doOn) {
+        if (doOn == AbstractAdditionalTokensInfo.TOP_LEVEL) {
+            return topLevelInitialsToInfo;
+        }
+        if (doOn == AbstractAdditionalTokensInfo.INNER) {
+            return innerInitialsToInfo;
+        }
+        throw new RuntimeException("Invalid: " + doOn);
+    }
+
+    @Override
+    public synchronized void restore(SortedMap<String, Set<IInfo>> topLevelInitialsToInfo,
+            SortedMap<String, Set<IInfo>> innerInitialsToInfo) {
+        this.topLevelInitialsToInfo = topLevelInitialsToInfo;
+        this.innerInitialsToInfo = innerInitialsToInfo;
+        int size = 0;
+        for (Set<IInfo> set : topLevelInitialsToInfo.values()) {
+            size += set.size();
+        }
+        for (Set<IInfo> set : innerInitialsToInfo.values()) {
+            size += set.size();
+        }
+        this.size = size;
+    }
+
+    @Override
+    public synchronized TokensSegment toSegment(int doOn) {
+        TokensSegment.Builder builder = new TokensSegment.Builder();
+        for (Set<IInfo> infos : toTree(doOn).values()) {
+            builder.addAll(infos);
+        }
+        return builder.build(null);
+    }
+
+    @Override
+    public synchronized void restore(TokensSegment topLevelSegment, TokensSegment innerSegment, IPythonNature nature) {
+        clear();
+        int size = topLevelSegment.size();
+        for (int i = 0; i < size; i++) {
+            add(topLevelSegment.createInfo(i, nature), AbstractAdditionalTokensInfo.TOP_LEVEL);
+        }
+        size = innerSegment.size();
+        for (int i = 0; i < size; i++) {
+            add(innerSegment.createInfo(i, nature), AbstractAdditionalTokensInfo.INNER);
+        }
+    }
+}
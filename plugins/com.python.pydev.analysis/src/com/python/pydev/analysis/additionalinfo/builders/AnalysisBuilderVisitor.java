@@ -39,6 +39,15 @@ public class AnalysisBuilderVisitor extends PyDevBuilderVisitor {
         return PyCodeCompletionVisitor.PRIORITY_CODE_COMPLETION + 1; //just after the code-completion priority
     }
 
+    /**
+     * The analysis of different modules may already run at the same time in a delta build (each runnable is
+     * scheduled in the jobs pool), and what's needed from the memo is gotten before the runnable is created.
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     public void visitChangedResource(final IResource resource, final ICallback0<IDocument> document,
             final IProgressMonitor monitor) {
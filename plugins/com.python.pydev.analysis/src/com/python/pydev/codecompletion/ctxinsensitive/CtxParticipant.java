@@ -65,6 +65,7 @@ import com.python.pydev.analysis.AnalysisPreferences;
 import com.python.pydev.analysis.additionalinfo.AbstractAdditionalTokensInfo;
 import com.python.pydev.analysis.additionalinfo.AdditionalProjectInterpreterInfo;
 import com.python.pydev.analysis.additionalinfo.AdditionalSystemInterpreterInfo;
+import com.python.pydev.analysis.additionalinfo.TokenMatcher;
 
 /**
  * Provides the completions in a context-insensitive way for classes and methods (both for the editor or the console).
@@ -74,6 +75,31 @@ import com.python.pydev.analysis.additionalinfo.AdditionalSystemInterpreterInfo;
 public class CtxParticipant
         implements IPyDevCompletionParticipant, IPyDevCompletionParticipant2, IPyDevCompletionParticipant3 {
 
+    /**
+     * When substring matching is used, only this number of tokens (the best matches) is gotten from the
+     * additional info.
+     */
+    private static final int MAX_SUBSTRING_MATCHES = 1000;
+
+    private static final IFilter ACCEPT_ALL_FILTER = new IFilter() {
+
+        @Override
+        public boolean acceptName(String name) {
+            return true;
+        }
+    };
+
+    /**
+     * With substring matching, the tokens are gotten with TokenMatcher.SUBSTRING_OR_FUZZY (so, those are already
+     * filtered and may be fuzzy matches which a substring filter would remove).
+     */
+    private static IFilter getNameFilter(boolean useSubstringMatchInCodeCompletion, String qual) {
+        if (useSubstringMatchInCodeCompletion) {
+            return ACCEPT_ALL_FILTER;
+        }
+        return PyCodeCompletionUtils.getNameFilter(false, qual);
+    }
+
     // Console completions ---------------------------------------------------------------------------------------------
 
     /**
@@ -95,7 +121,7 @@ public class CtxParticipant
             int qlen = qual.length();
             boolean useSubstringMatchInCodeCompletion = PyCodeCompletionPreferences
                     .getUseSubstringMatchInCodeCompletion();
-            IFilter nameFilter = PyCodeCompletionUtils.getNameFilter(useSubstringMatchInCodeCompletion, qual);
+            IFilter nameFilter = getNameFilter(useSubstringMatchInCodeCompletion, qual);
 
             for (IPythonNature nature : naturesUsed) {
                 AbstractAdditionalTokensInfo additionalInfo;
@@ -131,8 +157,8 @@ public class CtxParticipant
             boolean useSubstringMatchInCodeCompletion) {
         Collection<IInfo> tokensStartingWith;
         if (useSubstringMatchInCodeCompletion) {
-            tokensStartingWith = additionalInfo.getTokensStartingWith("",
-                    AbstractAdditionalTokensInfo.TOP_LEVEL);
+            tokensStartingWith = additionalInfo.getBestMatches(qual, AbstractAdditionalTokensInfo.TOP_LEVEL,
+                    TokenMatcher.SUBSTRING_OR_FUZZY, MAX_SUBSTRING_MATCHES);
 
         } else {
             tokensStartingWith = additionalInfo.getTokensStartingWith(qual,
@@ -202,13 +228,13 @@ public class CtxParticipant
         String qual = request.qualifier;
         if (qual.length() >= PyCodeCompletionPreferences.getCharsForContextInsensitiveGlobalTokensCompletion()) { //at least n characters required...
 
-            IFilter nameFilter = PyCodeCompletionUtils.getNameFilter(request.useSubstringMatchInCodeCompletion, qual);
+            IFilter nameFilter = getNameFilter(request.useSubstringMatchInCodeCompletion, qual);
             String initialModule = request.resolveModule();
 
             List<IInfo> tokensStartingWith;
             if (request.useSubstringMatchInCodeCompletion) {
-                tokensStartingWith = AdditionalProjectInterpreterInfo.getTokensStartingWith("",
-                        request.nature, AbstractAdditionalTokensInfo.TOP_LEVEL);
+                tokensStartingWith = AdditionalProjectInterpreterInfo.getBestMatches(qual, request.nature,
+                        AbstractAdditionalTokensInfo.TOP_LEVEL, TokenMatcher.SUBSTRING_OR_FUZZY, MAX_SUBSTRING_MATCHES);
             } else {
                 tokensStartingWith = AdditionalProjectInterpreterInfo.getTokensStartingWith(qual,
                         request.nature, AbstractAdditionalTokensInfo.TOP_LEVEL);
@@ -399,19 +425,16 @@ public class CtxParticipant
                     .getUseSubstringMatchInCodeCompletion();
             List<IInfo> tokensStartingWith;
             if (useSubstringMatchInCodeCompletion) {
-                IFilter nameFilter = PyCodeCompletionUtils.getNameFilter(useSubstringMatchInCodeCompletion, qual);
                 try {
-                    tokensStartingWith = AdditionalProjectInterpreterInfo.getTokensStartingWith("", state.getNature(),
-                            AbstractAdditionalTokensInfo.INNER);
+                    tokensStartingWith = AdditionalProjectInterpreterInfo.getBestMatches(qual, state.getNature(),
+                            AbstractAdditionalTokensInfo.INNER, TokenMatcher.SUBSTRING_OR_FUZZY, MAX_SUBSTRING_MATCHES);
                 } catch (MisconfigurationException e) {
                     Log.log(e);
                     return new TokensList(ret);
                 }
                 for (IInfo info : tokensStartingWith) {
-                    if (nameFilter.acceptName(info.getName())) {
-                        ret.add(new SourceToken(null, info.getName(), null, null, info.getDeclaringModuleName(),
-                                info.getType(), info.getNature()));
-                    }
+                    ret.add(new SourceToken(null, info.getName(), null, null, info.getDeclaringModuleName(),
+                            info.getType(), info.getNature()));
                 }
             } else {
                 try {
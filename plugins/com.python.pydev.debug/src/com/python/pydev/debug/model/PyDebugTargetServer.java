@@ -82,19 +82,19 @@ public class PyDebugTargetServer extends AbstractDebugTarget {
     }
 
     @Override
-    public void processCommand(String sCmdCode, String sSeqCode, String payload) {
-        if (Integer.parseInt(sCmdCode) == AbstractDebuggerCommand.CMD_WRITE_TO_CONSOLE) {
+    public void processCommand(int cmdCode, int seqCode, CharSequence payload) {
+        if (cmdCode == AbstractDebuggerCommand.CMD_WRITE_TO_CONSOLE) {
             ProcessServer serverProcess = getDebugger().getServerProcess();
 
             //payload = <xml><io s="%s" ctx="%s"/></xml>
-            Tuple<String, Integer> message = XMLMessage.getMessage(payload);
+            Tuple<String, Integer> message = XMLMessage.getMessage(payload.toString());
             if (message.o2 == 1) {
                 serverProcess.writeToStdOut(message.o1);
             } else {
                 serverProcess.writeToStdErr(message.o1);
             }
         } else {
-            super.processCommand(sCmdCode, sSeqCode, payload);
+            super.processCommand(cmdCode, seqCode, payload);
         }
     }
 
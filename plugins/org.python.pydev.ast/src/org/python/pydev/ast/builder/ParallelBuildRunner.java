@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.builder;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.callbacks.ICallback2;
+
+/**
+ * Visits the items of a full build using a bounded number of threads.
+ *
+ * The items are split in work units (of WORK_UNIT_SIZE consecutive items) which the threads get as they finish the
+ * previous one. The progress is reported and the cancellation is checked by the calling thread (which just waits for
+ * the workers): the workers only receive a monitor which is cancelled when the original monitor is cancelled.
+ */
+public final class ParallelBuildRunner<T> {
+
+    /**
+     * Number of threads used in a full build (if 1, the resources are visited sequentially in the builder thread).
+     */
+    public static final int BUILD_THREADS = Integer.getInteger("pydev.builder.threads",
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+
+    /**
+     * Number of consecutive items a thread visits before getting a new work unit.
+     */
+    public static final int WORK_UNIT_SIZE = Integer.getInteger("pydev.builder.work.unit.size", 8);
+
+    private static final AtomicInteger poolNumber = new AtomicInteger();
+
+    private final int parallelism;
+
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    private final AtomicInteger nextWorkUnit = new AtomicInteger();
+
+    private final AtomicInteger visited = new AtomicInteger();
+
+    /**
+     * The last item visited (only used to show the progress).
+     */
+    private volatile T lastVisited;
+
+    /**
+     * Passed to the visitors (monitors are not thread-safe, so, the original one is only used in the calling thread).
+     */
+    private final IProgressMonitor workersMonitor = new NullProgressMonitor() {
+
+        @Override
+        public boolean isCanceled() {
+            return cancelled.get();
+        }
+    };
+
+    /**
+     * @param parallelism the number of threads used to visit the items.
+     */
+    public ParallelBuildRunner(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Visits the given items (blocks until all are visited or the monitor is cancelled).
+     *
+     * @param visitor called for each item (in one of the threads of the pool) with the monitor to be used in the
+     * visit. Exceptions thrown are logged.
+     * @param progress called in the calling thread (at most every 300 millis, only when something changed) with the
+     * number of items visited so far and the last item visited.
+     * @return false if it was cancelled.
+     */
+    public boolean run(final List<T> items, final ICallback2<Object, T, IProgressMonitor> visitor,
+            ICallback2<Object, Integer, T> progress, IProgressMonitor monitor) {
+        final int workUnits = (items.size() + WORK_UNIT_SIZE - 1) / WORK_UNIT_SIZE;
+        ThreadPoolExecutor pool = createPool();
+        try {
+            int threads = Math.min(parallelism, workUnits);
+            for (int i = 0; i < threads; i++) {
+                pool.execute(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        int workUnit;
+                        while (!cancelled.get() && (workUnit = nextWorkUnit.getAndIncrement()) < workUnits) {
+                            int end = Math.min(items.size(), (workUnit + 1) * WORK_UNIT_SIZE);
+                            for (int j = workUnit * WORK_UNIT_SIZE; j < end && !cancelled.get(); j++) {
+                                T item = items.get(j);
+                                try {
+                                    visitor.call(item, workersMonitor);
+                                } catch (Throwable e) {
+                                    Log.log(e);
+                                }
+                                lastVisited = item;
+                                visited.incrementAndGet();
+                            }
+                        }
+                    }
+                });
+            }
+            pool.shutdown();
+
+            int lastReported = 0;
+            while (!pool.awaitTermination(300, TimeUnit.MILLISECONDS)) {
+                if (monitor.isCanceled()) {
+                    cancelled.set(true);
+                }
+                int current = visited.get();
+                if (current != lastReported) {
+                    lastReported = current;
+                    progress.call(current, lastVisited);
+                }
+            }
+            if (monitor.isCanceled()) {
+                cancelled.set(true);
+            }
+            if (visited.get() != lastReported) {
+                progress.call(visited.get(), lastVisited);
+            }
+        } catch (InterruptedException e) {
+            cancelled.set(true);
+            Thread.currentThread().interrupt();
+        } finally {
+            if (cancelled.get()) {
+                pool.shutdownNow();
+                try {
+                    //Workers stop before the next item, but we must wait for the ones being visited (the visitors
+                    //are notified that the visiting ended right after this returns).
+                    pool.awaitTermination(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        return !cancelled.get();
+    }
+
+    private ThreadPoolExecutor createPool() {
+        final int number = poolNumber.incrementAndGet();
+        return new ThreadPoolExecutor(parallelism, parallelism, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+                    private final AtomicInteger threadNumber = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r);
+                        thread.setName("PyDev builder " + number + "-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.MIN_PRIORITY + 1);
+                        return thread;
+                    }
+                });
+    }
+}
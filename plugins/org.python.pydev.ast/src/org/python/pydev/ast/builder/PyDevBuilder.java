@@ -16,6 +16,8 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
@@ -39,6 +41,7 @@ import org.python.pydev.core.log.Log;
 import org.python.pydev.parser.preferences.PyDevBuilderPreferences;
 import org.python.pydev.plugin.nature.PythonNature;
 import org.python.pydev.shared_core.callbacks.ICallback0;
+import org.python.pydev.shared_core.callbacks.ICallback2;
 import org.python.pydev.shared_core.string.FastStringBuffer;
 
 /**
@@ -263,7 +266,9 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
     }
 
     /**
-     * Default implementation. Visits each resource once at a time. May be overridden if a better implementation is needed.
+     * Default implementation. Visits the resources in parallel if more than one thread is configured for the build
+     * (see: ParallelBuildRunner.BUILD_THREADS) or each resource once at a time otherwise. May be overridden if a better
+     * implementation is needed.
      *
      * @param resourcesToParse list of resources from project that are python files.
      * @param monitor
@@ -271,6 +276,18 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
      */
     public void buildResources(List<IFile> resourcesToParse, IProgressMonitor monitor,
             List<PyDevBuilderVisitor> visitors) {
+        if (ParallelBuildRunner.BUILD_THREADS > 1 && resourcesToParse.size() > ParallelBuildRunner.WORK_UNIT_SIZE) {
+            buildResourcesInParallel(resourcesToParse, monitor, visitors, ParallelBuildRunner.BUILD_THREADS);
+        } else {
+            buildResourcesSequentially(resourcesToParse, monitor, visitors);
+        }
+    }
+
+    /**
+     * Visits each resource once at a time (in the builder thread).
+     */
+    private void buildResourcesSequentially(List<IFile> resourcesToParse, IProgressMonitor monitor,
+            List<PyDevBuilderVisitor> visitors) {
 
         // we have 100 units here
         double inc = (visitors.size() * 100) / (double) resourcesToParse.size();
@@ -316,14 +333,8 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
                 }
 
                 //create new memo for each resource
-                VisitorMemo memo = new VisitorMemo();
-                memo.setSharedProjectState(memoSharedProjectState);
-                memo.put(PyDevBuilderVisitor.IS_FULL_BUILD, true); //mark it as full build
-
                 ICallback0<IDocument> doc = FileUtilsFileBuffer.getDocOnCallbackFromResource(r);
-                memo.put(PyDevBuilderVisitor.DOCUMENT_TIME, System.currentTimeMillis());
-
-                PyDevBuilderVisitor.setModuleNameInCache(memo, r, moduleName);
+                VisitorMemo memo = createFullBuildMemo(r, moduleName, memoSharedProjectState);
 
                 for (Iterator<PyDevBuilderVisitor> it = visitors.iterator(); it.hasNext()
                         && monitor.isCanceled() == false;) {
@@ -356,6 +367,117 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
         }
     }
 
+    /**
+     * Visits the resources using a bounded pool of threads.
+     *
+     * Each resource is still visited by all the visitors in a single thread with its own memo (so, the module parsed
+     * for it by one visitor is reused by the others), but different resources are visited at the same time. Visitors
+     * which are not thread-safe (see: PyDevBuilderVisitor.isThreadSafe()) visit one resource at a time.
+     */
+    private void buildResourcesInParallel(List<IFile> resourcesToParse, final IProgressMonitor monitor,
+            final List<PyDevBuilderVisitor> visitors, int threads) {
+        final int totalResources = resourcesToParse.size();
+
+        // we have 100 units here
+        final double inc = (visitors.size() * 100) / (double) totalResources;
+
+        final Object nonThreadSafeVisitorsLock = new Object();
+        final AtomicReference<Object> memoSharedProjectState = new AtomicReference<Object>();
+        final AtomicBoolean loggedMisconfiguration = new AtomicBoolean();
+        final FastStringBuffer bufferToCreateString = new FastStringBuffer();
+
+        ICallback2<Object, IFile, IProgressMonitor> visitResource = new ICallback2<Object, IFile, IProgressMonitor>() {
+
+            @Override
+            public Object call(IFile r, IProgressMonitor workerMonitor) {
+                CorePlugin.markAsPyDevFileIfDetected(r);
+
+                IPythonNature nature = PythonNature.getPythonNature(r);
+                if (nature == null) {
+                    return null;
+                }
+                if (!nature.startRequests()) {
+                    return null;
+                }
+                try {
+                    String moduleName;
+                    try {
+                        //we visit external because we must index them
+                        moduleName = nature.resolveModuleOnlyInProjectSources(r, true);
+                        if (moduleName == null) {
+                            return null; // we only analyze resources that are in the pythonpath
+                        }
+                    } catch (Exception e1) {
+                        if (loggedMisconfiguration.compareAndSet(false, true)) {
+                            Log.log(e1); //No point in logging it over and over again.
+                        }
+                        return null;
+                    }
+
+                    ICallback0<IDocument> doc = FileUtilsFileBuffer.getDocOnCallbackFromResource(r);
+                    VisitorMemo memo = createFullBuildMemo(r, moduleName, memoSharedProjectState.get());
+
+                    PyDevBuilderVisitor.setThreadMemo(memo);
+                    try {
+                        for (Iterator<PyDevBuilderVisitor> it = visitors.iterator(); it.hasNext()
+                                && workerMonitor.isCanceled() == false;) {
+                            try {
+                                PyDevBuilderVisitor visitor = it.next();
+                                if (visitor.isThreadSafe()) {
+                                    visitor.visitAddedResource(r, doc, workerMonitor);
+                                } else {
+                                    synchronized (nonThreadSafeVisitorsLock) {
+                                        visitor.memo = memo;
+                                        visitor.visitAddedResource(r, doc, workerMonitor);
+                                    }
+                                }
+                            } catch (Exception e) {
+                                Log.log(e);
+                            }
+                        }
+                    } finally {
+                        PyDevBuilderVisitor.setThreadMemo(null);
+                    }
+                    memoSharedProjectState.set(memo.getSharedProjectState());
+                } finally {
+                    nature.endRequests();
+                }
+                return null;
+            }
+        };
+
+        ICallback2<Object, Integer, IFile> progress = new ICallback2<Object, Integer, IFile>() {
+
+            private int worked;
+
+            @Override
+            public Object call(Integer visited, IFile lastVisited) {
+                int total = (int) (visited * inc);
+                if (total > worked) {
+                    monitor.worked(total - worked);
+                    worked = total;
+                }
+                communicateProgress(monitor, totalResources, visited, lastVisited, null, bufferToCreateString);
+                return null;
+            }
+        };
+
+        new ParallelBuildRunner<IFile>(threads).run(resourcesToParse, visitResource, progress, monitor);
+    }
+
+    /**
+     * @return a new memo to visit the given resource in a full build.
+     */
+    private static VisitorMemo createFullBuildMemo(IFile r, String moduleName, Object memoSharedProjectState) {
+        VisitorMemo memo = new VisitorMemo();
+        memo.setSharedProjectState(memoSharedProjectState);
+        memo.put(PyDevBuilderVisitor.IS_FULL_BUILD, true); //mark it as full build
+        memo.put(PyDevBuilderVisitor.DOCUMENT_TIME, System.currentTimeMillis());
+
+        PyDevBuilderVisitor.setModuleNameInCache(memo, r, moduleName);
+        return memo;
+    }
+
     /**
      * Used so that we can communicate the progress to the user
      *
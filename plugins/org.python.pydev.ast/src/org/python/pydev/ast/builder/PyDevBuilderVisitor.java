@@ -110,6 +110,46 @@ public abstract class PyDevBuilderVisitor implements Comparable<PyDevBuilderVisi
      */
     public VisitorMemo memo;
 
+    /**
+     * In a parallel full build the same visitor visits many resources at the same time, so, the memo for the
+     * resource being visited in a thread is set here (and has precedence over the memo field).
+     */
+    private static final ThreadLocal<VisitorMemo> threadMemo = new ThreadLocal<VisitorMemo>();
+
+    /**
+     * Sets the memo to be used by the visitors in the current thread (null to use the memo field again).
+     */
+    public static void setThreadMemo(VisitorMemo memo) {
+        if (memo == null) {
+            threadMemo.remove();
+        } else {
+            threadMemo.set(memo);
+        }
+    }
+
+    /**
+     * @return the memo for the resource being visited in this thread (subclasses should use this method instead of
+     * accessing the memo field directly).
+     */
+    protected final VisitorMemo getMemo() {
+        VisitorMemo memo = threadMemo.get();
+        if (memo != null) {
+            return memo;
+        }
+        return this.memo;
+    }
+
+    /**
+     * @return whether this visitor may visit different resources at the same time (in a parallel full build). If
+     * false, the visits of this visitor are serialized.
+     *
+     * Thread-safe visitors must only keep the state related to the resource being visited in the memo (see:
+     * getMemo()).
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
+
     /**
      * Constant indicating value in memory to represent a full build.
      */
@@ -125,7 +165,7 @@ public abstract class PyDevBuilderVisitor implements Comparable<PyDevBuilderVisi
      * @return whether we are doing a full build right now.
      */
     protected boolean isFullBuild() {
-        Boolean b = (Boolean) memo.get(IS_FULL_BUILD);
+        Boolean b = (Boolean) getMemo().get(IS_FULL_BUILD);
         if (b == null) {
             return false; // we surely will have it set when it is a full build. (the other way around may not be true).
         }
@@ -137,7 +177,7 @@ public abstract class PyDevBuilderVisitor implements Comparable<PyDevBuilderVisi
      * or -1 if the document creation time is not available.
      */
     protected long getDocumentTime() {
-        Long b = (Long) memo.get(DOCUMENT_TIME);
+        Long b = (Long) getMemo().get(DOCUMENT_TIME);
         if (b == null) {
             return -1;
         }
@@ -156,7 +196,7 @@ public abstract class PyDevBuilderVisitor implements Comparable<PyDevBuilderVisi
      */
     protected SourceModule getSourceModule(IResource resource, IDocument document, IPythonNature nature)
             throws MisconfigurationException {
-        SourceModule module = (SourceModule) memo.get(MODULE_CACHE + resource.getModificationStamp());
+        SourceModule module = (SourceModule) getMemo().get(MODULE_CACHE + resource.getModificationStamp());
         if (module == null) {
             module = createSoureModule(resource, document, getModuleName(resource, nature));
             setModuleInCache(resource, module);
@@ -168,7 +208,7 @@ public abstract class PyDevBuilderVisitor implements Comparable<PyDevBuilderVisi
      * @param module this is the module to set in the cache
      */
     protected void setModuleInCache(IResource resource, IModule module) {
-        memo.put(MODULE_CACHE + resource.getModificationStamp(), module);
+        getMemo().put(MODULE_CACHE + resource.getModificationStamp(), module);
     }
 
     /**
@@ -202,11 +242,11 @@ public abstract class PyDevBuilderVisitor implements Comparable<PyDevBuilderVisi
      * @throws MisconfigurationException
      */
     public String getModuleName(IResource resource, IPythonNature nature) throws MisconfigurationException {
-        String moduleName = (String) memo.get(getModuleNameCacheKey(resource));
+        String moduleName = (String) getMemo().get(getModuleNameCacheKey(resource));
         if (moduleName == null) {
             moduleName = nature.resolveModule(resource);
             if (moduleName != null) {
-                setModuleNameInCache(memo, resource, moduleName);
+                setModuleNameInCache(getMemo(), resource, moduleName);
             } else {
                 throw new RuntimeException("Unable to resolve module for:" + resource); //$NON-NLS-1$
             }
@@ -227,14 +267,14 @@ public abstract class PyDevBuilderVisitor implements Comparable<PyDevBuilderVisi
 
     public boolean isResourceInPythonpathProjectSources(IResource resource, IPythonNature nature, boolean addExternal)
             throws CoreException, MisconfigurationException {
-        Boolean isInProjectPythonpath = (Boolean) memo.get(MODULE_IN_PROJECT_PYTHONPATH + addExternal);
+        Boolean isInProjectPythonpath = (Boolean) getMemo().get(MODULE_IN_PROJECT_PYTHONPATH + addExternal);
         if (isInProjectPythonpath == null) {
 
             //This was simply: String moduleName = nature.resolveModuleOnlyInProjectSources(resource, addExternal);
             //Inlined with the code below because nature.getPythonPathNature().getOnlyProjectPythonPathStr was one of
             //the slowest things when doing a full build.
 
-            List<String> onlyProjectPythonPathLst = memo.getOnlyProjectPythonPathStr(nature, addExternal);
+            List<String> onlyProjectPythonPathLst = getMemo().getOnlyProjectPythonPathStr(nature, addExternal);
 
             String resourceOSString = SharedCorePlugin.getIResourceOSString(resource);
             String moduleName = null;
@@ -253,7 +293,7 @@ public abstract class PyDevBuilderVisitor implements Comparable<PyDevBuilderVisi
 
             isInProjectPythonpath = (moduleName != null);
             if (isInProjectPythonpath) {
-                setModuleNameInCache(memo, resource, moduleName);
+                setModuleNameInCache(getMemo(), resource, moduleName);
             }
 
         }
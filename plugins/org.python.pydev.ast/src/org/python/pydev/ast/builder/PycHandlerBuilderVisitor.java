@@ -93,6 +93,11 @@ public class PycHandlerBuilderVisitor extends PyDevBuilderVisitor {
         pycDeleteHandling = PyDevBuilderPreferences.getPycDeleteHandling();
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     public void visitChangedResource(IResource resource, ICallback0<IDocument> document, IProgressMonitor monitor) {
         //Ignore: for pyc files we only care about their addition.
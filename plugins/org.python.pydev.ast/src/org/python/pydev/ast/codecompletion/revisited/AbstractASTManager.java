@@ -25,6 +25,7 @@ import org.eclipse.jface.text.IDocument;
 import org.python.pydev.ast.codecompletion.IPyDevCompletionParticipant;
 import org.python.pydev.ast.codecompletion.PyCodeCompletion;
 import org.python.pydev.ast.codecompletion.TokenCompletionRequest;
+import org.python.pydev.ast.codecompletion.revisited.CompletionResultsCache.Recording;
 import org.python.pydev.ast.codecompletion.revisited.modules.AbstractModule;
 import org.python.pydev.ast.codecompletion.revisited.modules.SourceModule;
 import org.python.pydev.ast.codecompletion.revisited.modules.SourceToken;
@@ -676,6 +677,7 @@ public abstract class AbstractASTManager implements ICodeCompletionASTManager {
                 searchSameLevelMods, lookForArgumentCompletion, state.getBuiltinsGotten(),
                 state.getLocalImportsGotten(), handleAsWildImport);
 
+        CompletionResultsCache resultsCache = CompletionResultsCache.get();
         TokensList ret = (TokensList) state.getObj(key);
         if (ret != null) {
             if (DEBUG_CACHE) {
@@ -688,13 +690,59 @@ public abstract class AbstractASTManager implements ICodeCompletionASTManager {
                     throw new RuntimeException("This can't happen... it should always return the same completions!");
                 }
             }
+            if (resultsCache != null) {
+                //the result being computed (if any) depends on the same modules this one depended on.
+                CompletionResultsCache.recordDependencies(
+                        (Recording) state.getObj(new Tuple<Object, String>(key, "dependencies")));
+            }
             return ret.copy();
         }
 
-        TokensList completionsForModule = internalGenerateGetCompletionsForModule(module, state, searchSameLevelMods,
-                lookForArgumentCompletion);
-        completionsForModule = filterForWildImport(module, handleAsWildImport, completionsForModule);
+        if (resultsCache == null) {
+            TokensList completionsForModule = internalGenerateGetCompletionsForModule(module, state,
+                    searchSameLevelMods, lookForArgumentCompletion);
+            completionsForModule = filterForWildImport(module, handleAsWildImport, completionsForModule);
+
+            state.add(key, completionsForModule.copy());
+            return completionsForModule;
+        }
+
+        //The results cache keeps results across requests (so, the version of the module and anything from the state
+        //which may change the result is also in the key).
+        Object resultsKey = null;
+        if (module instanceof AbstractModule && state.getNature() != null) {
+            long moduleVersion = ((AbstractModule) module).getModuleVersion();
+            if (moduleVersion != 0) {
+                resultsKey = Arrays.asList(name, state.getActivationToken(), searchSameLevelMods,
+                        lookForArgumentCompletion, state.getBuiltinsGotten(), state.getLocalImportsGotten(),
+                        handleAsWildImport, moduleVersion, state.getNature(), state.getLookingFor(),
+                        state.getLine(), state.getCol(), state.getIsInCalltip());
+            }
+        }
 
+        TokensList completionsForModule = null;
+        boolean computed = false;
+        Recording recording = resultsCache.startRecording();
+        try {
+            CompletionResultsCache.recordDependency(name);
+            if (resultsKey != null) {
+                completionsForModule = resultsCache.getObj(resultsKey);
+            }
+            if (completionsForModule == null) {
+                completionsForModule = internalGenerateGetCompletionsForModule(module, state, searchSameLevelMods,
+                        lookForArgumentCompletion);
+                completionsForModule = filterForWildImport(module, handleAsWildImport, completionsForModule);
+                computed = true;
+            }
+        } finally {
+            resultsCache.stopRecording(recording);
+        }
+
+        //Note: empty results are not kept across requests (they're usually the result of some error).
+        if (computed && resultsKey != null && completionsForModule.size() > 0) {
+            resultsCache.add(resultsKey, completionsForModule, recording);
+        }
+        state.add(new Tuple<Object, String>(key, "dependencies"), recording);
         state.add(key, completionsForModule.copy());
         return completionsForModule;
     }
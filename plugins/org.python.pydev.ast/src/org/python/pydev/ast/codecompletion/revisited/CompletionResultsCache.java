@@ -0,0 +1,402 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.revisited;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.python.pydev.ast.codecompletion.revisited.modules.SourceModule;
+import org.python.pydev.core.IModule;
+import org.python.pydev.core.TokensList;
+import org.python.pydev.shared_core.io.FileUtils;
+
+/**
+ * Keeps the results of AbstractASTManager.getCompletionsForModule across completion requests (the CompletionCache
+ * in the ICompletionState only lives during a single request).
+ *
+ * The key of each result must contain the version of the module from where the completions were requested (see:
+ * AbstractModule.getModuleVersion()) and each result keeps the names of the modules which were requested while it
+ * was being computed (its dependencies), so, when a module is changed (i.e.: rebuilt, added or removed from a modules
+ * manager) only the results which depend on it are removed.
+ *
+ * Dependencies are recorded per thread: startRecording() must be called before computing some result and
+ * stopRecording() afterwards (in a finally block). Any module requested in that thread in the meanwhile
+ * (recordDependency) is added to the current recording and to the ones enclosing it (so, a result which was
+ * computed while computing another also adds its dependencies to it when it's gotten from the cache).
+ *
+ * Results computed while some recursion was detected (see: markIncomplete()) or while some module was invalidated
+ * are not kept (as they may be incomplete or stale).
+ *
+ * The modules manager only invalidates the modules it sees changing (i.e.: through the builder), so, the time of the
+ * files of the source modules used is also recorded (recordModuleVersion) and checked when a result is gotten
+ * (so, changes in site-packages, projects without the builder or external files are also noticed).
+ *
+ * The tokens of a result may keep the ast of the modules it depends on alive, so, when a module is evicted from the
+ * modules cache the results which depend on it are also removed (see: evicted()).
+ */
+public final class CompletionResultsCache {
+
+    /**
+     * May be set to false to disable the cache.
+     */
+    public static final boolean ENABLED = !"false".equals(System.getProperty("pydev.completion.results.cache",
+            "true"));
+
+    /**
+     * The maximum number of results to keep.
+     */
+    public static final int MAX_SIZE = Integer.getInteger("pydev.completion.results.cache.size", 1000);
+
+    private static final CompletionResultsCache instance = new CompletionResultsCache(MAX_SIZE);
+
+    /**
+     * @return the workspace-level cache (or null if it's disabled).
+     */
+    public static CompletionResultsCache get() {
+        return ENABLED ? instance : null;
+    }
+
+    private static final class Entry {
+
+        private final TokensList result;
+        private final String[] dependencies;
+        private final File[] files;
+        private final long[] lastModified;
+
+        private Entry(TokensList result, String[] dependencies, Map<File, Long> fileStamps) {
+            this.result = result;
+            this.dependencies = dependencies;
+            this.files = new File[fileStamps.size()];
+            this.lastModified = new long[fileStamps.size()];
+            int i = 0;
+            for (Map.Entry<File, Long> entry : fileStamps.entrySet()) {
+                files[i] = entry.getKey();
+                lastModified[i] = entry.getValue();
+                i++;
+            }
+        }
+
+        /**
+         * @return whether some file used to compute the result was changed.
+         */
+        private boolean isStale() {
+            for (int i = 0; i < files.length; i++) {
+                if (FileUtils.lastModified(files[i]) != lastModified[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The dependencies being recorded while computing some result.
+     */
+    public static final class Recording {
+
+        private final Recording parent;
+        private final Set<String> dependencies = new HashSet<String>();
+        private final Map<File, Long> fileStamps = new HashMap<File, Long>();
+        private final long invalidationsAtStart;
+        private boolean incomplete;
+
+        private Recording(Recording parent, long invalidationsAtStart) {
+            this.parent = parent;
+            this.invalidationsAtStart = invalidationsAtStart;
+        }
+
+        /**
+         * @return the names of the modules recorded or null if the result may be incomplete.
+         */
+        public String[] getDependencies() {
+            if (incomplete) {
+                return null;
+            }
+            return dependencies.toArray(new String[dependencies.size()]);
+        }
+
+        private void addFileStamp(File file, long lastModified) {
+            Long previous = fileStamps.put(file, lastModified);
+            if (previous != null && previous.longValue() != lastModified) {
+                incomplete = true; //different versions of the same module were used.
+            }
+        }
+    }
+
+    private static final ThreadLocal<Recording> currentRecording = new ThreadLocal<Recording>();
+
+    private final Object lock = new Object();
+
+    /**
+     * Access-ordered (so that the least recently used entries are removed when the max size is reached).
+     */
+    private final LinkedHashMap<Object, Entry> entries;
+
+    /**
+     * Module name -> keys of the entries which depend on it.
+     */
+    private final Map<String, Set<Object>> dependents = new HashMap<String, Set<Object>>();
+
+    private final int maxSize;
+
+    /**
+     * Incremented whenever something is invalidated (results being computed when this happens are not added).
+     */
+    private volatile long invalidations;
+
+    private long hits;
+    private long misses;
+
+    /*default*/ CompletionResultsCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+    }
+
+    /**
+     * Starts recording the dependencies of some result in the current thread.
+     */
+    public Recording startRecording() {
+        Recording recording = new Recording(currentRecording.get(), invalidations);
+        currentRecording.set(recording);
+        return recording;
+    }
+
+    /**
+     * Stops recording (adding the dependencies recorded to the enclosing recording).
+     */
+    public void stopRecording(Recording recording) {
+        Recording parent = recording.parent;
+        if (parent != null) {
+            parent.dependencies.addAll(recording.dependencies);
+            for (Map.Entry<File, Long> entry : recording.fileStamps.entrySet()) {
+                parent.addFileStamp(entry.getKey(), entry.getValue());
+            }
+            parent.incomplete |= recording.incomplete;
+        }
+        currentRecording.set(parent);
+    }
+
+    /**
+     * Records that the results being computed in this thread depend on the module with the given name.
+     */
+    public static void recordDependency(String moduleName) {
+        if (moduleName != null) {
+            Recording recording = currentRecording.get();
+            if (recording != null) {
+                recording.dependencies.add(moduleName);
+            }
+        }
+    }
+
+    /**
+     * Records the version of the given module (the time of its file for source modules) in the results being
+     * computed in this thread.
+     */
+    public static void recordModuleVersion(IModule module) {
+        if (module instanceof SourceModule) {
+            File file = module.getFile();
+            if (file != null) {
+                Recording recording = currentRecording.get();
+                if (recording != null) {
+                    recording.addFileStamp(file, ((SourceModule) module).getLastModified());
+                }
+            }
+        }
+    }
+
+    /**
+     * Records that the results being computed in this thread depend on the same modules the given (stopped)
+     * recording depends on (if null, the dependencies are not known, so, the results are marked as incomplete).
+     */
+    public static void recordDependencies(Recording other) {
+        Recording recording = currentRecording.get();
+        if (recording != null) {
+            if (other == null || other.incomplete) {
+                recording.incomplete = true;
+            } else {
+                recording.dependencies.addAll(other.dependencies);
+                for (Map.Entry<File, Long> entry : other.fileStamps.entrySet()) {
+                    recording.addFileStamp(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    private static void recordDependencies(Entry entry) {
+        Recording recording = currentRecording.get();
+        if (recording != null) {
+            for (String moduleName : entry.dependencies) {
+                recording.dependencies.add(moduleName);
+            }
+            for (int i = 0; i < entry.files.length; i++) {
+                recording.addFileStamp(entry.files[i], entry.lastModified[i]);
+            }
+        }
+    }
+
+    /**
+     * Marks the results being computed in this thread as incomplete (i.e.: some recursion was found or the analysis
+     * was stopped), so, they're not added to the cache.
+     */
+    public static void markIncomplete() {
+        Recording recording = currentRecording.get();
+        if (recording != null) {
+            recording.incomplete = true;
+        }
+    }
+
+    /**
+     * @return a copy of the result with the given key or null if it's not in the cache or if some file used to
+     * compute it was changed (when found, its dependencies are added to the current recording).
+     */
+    public TokensList getObj(Object key) {
+        Entry entry;
+        synchronized (lock) {
+            entry = entries.get(key);
+        }
+        boolean found = entry != null && !entry.isStale(); //checked without the lock (accesses the filesystem).
+        synchronized (lock) {
+            if (found) {
+                hits++;
+            } else {
+                misses++;
+                if (entry != null && entries.get(key) == entry) {
+                    entries.remove(key);
+                    removeDependents(key, entry);
+                }
+            }
+        }
+        if (!found) {
+            return null;
+        }
+        recordDependencies(entry);
+        return entry.result.copy();
+    }
+
+    /**
+     * Adds the result computed with the given recording (which must be already stopped). Nothing is added if the
+     * result may be incomplete or if something was invalidated while it was being computed.
+     */
+    public void add(Object key, TokensList result, Recording recording) {
+        String[] dependencies = recording.getDependencies();
+        if (dependencies == null) {
+            return;
+        }
+        synchronized (lock) {
+            if (invalidations != recording.invalidationsAtStart) {
+                return;
+            }
+            Entry old = entries.put(key, new Entry(result.copy(), dependencies, recording.fileStamps));
+            if (old != null) {
+                removeDependents(key, old);
+            }
+            for (String dependency : dependencies) {
+                Set<Object> keys = dependents.get(dependency);
+                if (keys == null) {
+                    keys = new HashSet<Object>();
+                    dependents.put(dependency, keys);
+                }
+                keys.add(key);
+            }
+            if (entries.size() > maxSize) {
+                Iterator<Map.Entry<Object, Entry>> it = entries.entrySet().iterator();
+                Map.Entry<Object, Entry> eldest = it.next();
+                it.remove();
+                removeDependents(eldest.getKey(), eldest.getValue());
+            }
+        }
+    }
+
+    private void removeDependents(Object key, Entry entry) {
+        for (String dependency : entry.dependencies) {
+            Set<Object> keys = dependents.get(dependency);
+            if (keys != null) {
+                keys.remove(key);
+                if (keys.size() == 0) {
+                    dependents.remove(dependency);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the results which depend on the module with the given name (for an __init__, results which depend on
+     * the package are removed too).
+     */
+    public void invalidate(String moduleName) {
+        if (moduleName == null) {
+            return;
+        }
+        synchronized (lock) {
+            invalidations++;
+            removeResultsDependingOnModule(moduleName);
+        }
+    }
+
+    /**
+     * Removes the results which depend on the module with the given name because it was evicted from the modules
+     * cache (the module didn't change, so, results being computed are still added).
+     */
+    public void evicted(String moduleName) {
+        if (moduleName == null) {
+            return;
+        }
+        synchronized (lock) {
+            removeResultsDependingOnModule(moduleName);
+        }
+    }
+
+    private void removeResultsDependingOnModule(String moduleName) {
+        removeResultsDependingOn(moduleName);
+        if (moduleName.endsWith(".__init__")) {
+            removeResultsDependingOn(moduleName.substring(0, moduleName.length() - 9));
+        }
+    }
+
+    private void removeResultsDependingOn(String moduleName) {
+        Set<Object> keys = dependents.remove(moduleName);
+        if (keys != null) {
+            List<Object> toRemove = new ArrayList<Object>(keys);
+            for (Object key : toRemove) {
+                Entry entry = entries.remove(key);
+                if (entry != null) {
+                    removeDependents(key, entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes all the results.
+     */
+    public void clear() {
+        synchronized (lock) {
+            invalidations++;
+            entries.clear();
+            dependents.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    public String getStatistics() {
+        synchronized (lock) {
+            return "Completion results cache -- size: " + entries.size() + " hits: " + hits + " misses: " + misses;
+        }
+    }
+}
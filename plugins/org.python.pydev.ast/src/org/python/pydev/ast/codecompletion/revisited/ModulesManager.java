@@ -24,6 +24,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
@@ -199,6 +200,23 @@ public abstract class ModulesManager implements IModulesManager {
     protected final PyPublicTreeMap<ModulesKey, ModulesKey> modulesKeys = new PyPublicTreeMap<ModulesKey, ModulesKey>();
     protected final Object modulesKeysLock = new Object();
 
+    /**
+     * Index of the modulesKeys by name. It's always changed along with the modulesKeys (with the modulesKeysLock held)
+     * and may be queried without any lock (so that resolving in which manager some module is available is cheap).
+     */
+    private final ConcurrentHashMap<String, ModulesKey> modulesKeysByName = new ConcurrentHashMap<String, ModulesKey>();
+
+    /**
+     * Incremented (with the modulesKeysLock held) whenever a key is added or removed from the modulesKeys.
+     */
+    private volatile int modulesKeysVersion;
+
+    /**
+     * A snapshot of the modulesKeys (sorted by name) and the modulesKeysVersion it was created from. Used to get the
+     * modules starting with some name without holding the modulesKeysLock (recreated lazily when the keys change).
+     */
+    private volatile Tuple<Integer, ModulesKey[]> sortedModulesKeys;
+
     protected static final ModulesManagerCache cache = new ModulesManagerCache();
     private static final CachePyiModules cachePyiModules = new CachePyiModules();
 
@@ -472,6 +490,9 @@ public abstract class ModulesManager implements IModulesManager {
                     throw new UnsupportedOperationException();
                 }
             }, null, null);
+            synchronized (modulesManager.modulesKeysLock) {
+                modulesManager.onModulesKeysReplaced();
+            }
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -536,6 +557,7 @@ public abstract class ModulesManager implements IModulesManager {
             //assign to instance variable
             this.modulesKeys.clear();
             this.modulesKeys.putAll(keys);
+            onModulesKeysReplaced();
         }
 
     }
@@ -674,9 +696,23 @@ public abstract class ModulesManager implements IModulesManager {
             if (DEBUG_BUILD) {
                 System.out.println("Removing module:" + key + " - " + this.getClass());
             }
-            this.modulesKeys.remove(key);
+            if (this.modulesKeys.remove(key) != null) {
+                this.modulesKeysByName.remove(key.name);
+                this.modulesKeysVersion++;
+            }
             ModulesManager.cache.remove(key, this);
         }
+        invalidateCompletionResults(key.name);
+    }
+
+    /**
+     * Removes the completion results (kept across requests) which depended on the given module.
+     */
+    private static void invalidateCompletionResults(String moduleName) {
+        CompletionResultsCache resultsCache = CompletionResultsCache.get();
+        if (resultsCache != null) {
+            resultsCache.invalidate(moduleName);
+        }
     }
 
     /**
@@ -721,10 +757,18 @@ public abstract class ModulesManager implements IModulesManager {
         if (DEBUG_BUILD) {
             System.out.println("Adding module:" + key + " - " + this.getClass());
         }
+        boolean changed = n instanceof EmptyModule; //i.e.: added or rebuilt (and not just loaded)
         synchronized (modulesKeysLock) {
-            this.modulesKeys.put(key, key);
+            if (this.modulesKeys.put(key, key) == null) {
+                this.modulesKeysVersion++;
+                changed = true;
+            }
+            this.modulesKeysByName.put(key.name, key);
             ModulesManager.cache.add(key, n, this);
         }
+        if (changed) {
+            invalidateCompletionResults(key.name);
+        }
     }
 
     /**
@@ -768,6 +812,102 @@ public abstract class ModulesManager implements IModulesManager {
         return getAllDirectModulesStartingWith(strStartingWith);
     }
 
+    /**
+     * Must be called with the modulesKeysLock held after the modulesKeys are replaced (i.e.: not changed through
+     * doAddSingleModule/doRemoveSingleModule) so that the index by name is kept in sync.
+     */
+    protected final void onModulesKeysReplaced() {
+        for (ModulesKey key : modulesKeys.keySet()) {
+            modulesKeysByName.put(key.name, key);
+        }
+        if (modulesKeysByName.size() != modulesKeys.size()) {
+            //Remove the ones which are no longer there (done after adding the new ones so that a concurrent query
+            //doesn't miss keys which were there before and still are).
+            for (Iterator<ModulesKey> it = modulesKeysByName.values().iterator(); it.hasNext();) {
+                if (!modulesKeys.containsKey(it.next())) {
+                    it.remove();
+                }
+            }
+        }
+        modulesKeysVersion++;
+
+        CompletionResultsCache resultsCache = CompletionResultsCache.get();
+        if (resultsCache != null) {
+            resultsCache.clear();
+        }
+    }
+
+    /**
+     * @return the key with the given name (or null if it's not available in this manager).
+     *
+     * Note: doesn't hold any lock (uses the index by name).
+     */
+    public ModulesKey getModulesKeyByName(String name) {
+        return modulesKeysByName.get(name);
+    }
+
+    /**
+     * @return false if it's certain that getModule will return null for the given name (i.e.: there's no temporary
+     * module nor a key with the name -- or with name.__init__ if dontSearchInit is false -- in this manager).
+     *
+     * Note: builtins are not considered and no lock is held in the common case.
+     */
+    public boolean mayHaveModule(String name, boolean dontSearchInit) {
+        if (modulesKeysByName.containsKey(name)) {
+            return true;
+        }
+        if (!dontSearchInit && modulesKeysByName.containsKey(name + ".__init__")) {
+            return true;
+        }
+        if (temporaryModulesCount > 0) {
+            synchronized (lockTemporaryModules) {
+                return temporaryModules.containsKey(name);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Puts in the given map the keys whose name starts with the passed string (same as
+     * getAllDirectModulesStartingWith, but adding to an existing map and without holding the modulesKeysLock
+     * if the keys didn't change since the last call).
+     */
+    public void fillModulesStartingWith(String strStartingWith, Map<ModulesKey, ModulesKey> ret) {
+        ModulesKey[] keys = getSortedModulesKeys();
+
+        //binary search for the first key >= strStartingWith
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].name.compareTo(strStartingWith) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < keys.length; i++) {
+            ModulesKey key = keys[i];
+            if (!key.name.startsWith(strStartingWith)) {
+                break;
+            }
+            ret.put(key, key);
+        }
+    }
+
+    private ModulesKey[] getSortedModulesKeys() {
+        Tuple<Integer, ModulesKey[]> sorted = sortedModulesKeys;
+        if (sorted != null && sorted.o1.intValue() == modulesKeysVersion) {
+            return sorted.o2;
+        }
+        synchronized (modulesKeysLock) {
+            sorted = new Tuple<Integer, ModulesKey[]>(modulesKeysVersion,
+                    this.modulesKeys.keySet().toArray(new ModulesKey[0]));
+            sortedModulesKeys = sorted;
+            return sorted.o2;
+        }
+    }
+
     @Override
     public ModulesKey[] getOnlyDirectModules() {
         synchronized (modulesKeysLock) {
@@ -797,6 +937,11 @@ public abstract class ModulesManager implements IModulesManager {
     private final Object lockTemporaryModules = new Object();
     private int nextHandle = 0;
 
+    /**
+     * The size of temporaryModules (so that mayHaveModule doesn't need to synchronize when there are none).
+     */
+    private volatile int temporaryModulesCount = 0;
+
     public static ICallback2<AbstractModule, EmptyModuleForZip, IPythonNature> createModuleFromJar;
 
     /**
@@ -809,12 +954,14 @@ public abstract class ModulesManager implements IModulesManager {
             if (map == null) {
                 map = new TreeMap<Integer, IModule>(); //small initial size!
                 temporaryModules.put(moduleName, map);
+                temporaryModulesCount = temporaryModules.size();
             }
             if (module instanceof AbstractModule) {
                 module = decorateModule((AbstractModule) module, null);
             }
             nextHandle += 1; //Note: don't care about stack overflow!
             map.put(nextHandle, module);
+            invalidateCompletionResults(moduleName);
             return nextHandle;
         }
 
@@ -827,8 +974,10 @@ public abstract class ModulesManager implements IModulesManager {
             try {
                 if (stack != null) {
                     stack.remove(handle);
+                    invalidateCompletionResults(moduleName);
                     if (stack.size() == 0) {
                         temporaryModules.remove(moduleName);
+                        temporaryModulesCount = temporaryModules.size();
                     }
                 }
             } catch (Throwable e) {
@@ -849,6 +998,7 @@ public abstract class ModulesManager implements IModulesManager {
      */
     protected IModule getModule(boolean acceptCompiledModule, String name, IPythonNature nature,
             boolean dontSearchInit) {
+        CompletionResultsCache.recordDependency(name);
         synchronized (lockTemporaryModules) {
             SortedMap<Integer, IModule> map = temporaryModules.get(name);
             if (map != null && map.size() > 0) {
@@ -996,6 +1146,7 @@ public abstract class ModulesManager implements IModulesManager {
             }
         }
 
+        CompletionResultsCache.recordModuleVersion(n);
         return n;
     }
 
@@ -1132,6 +1283,17 @@ public abstract class ModulesManager implements IModulesManager {
     public static void clearCache() {
         ModulesManager.cache.clear();
         ModulesManager.cachePyiModules.clear();
+        CompletionResultsCache resultsCache = CompletionResultsCache.get();
+        if (resultsCache != null) {
+            resultsCache.clear();
+        }
+    }
+
+    /**
+     * @return a description of the modules cache state (size, hits, misses, evictions) for diagnostics.
+     */
+    public static String getCacheStatistics() {
+        return ModulesManager.cache.getStatistics();
     }
 
     /**
@@ -6,71 +6,371 @@
  */
 package org.python.pydev.ast.codecompletion.revisited;
 
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.python.pydev.ast.codecompletion.revisited.modules.AbstractModule;
+import org.python.pydev.ast.codecompletion.revisited.modules.CompiledModule;
+import org.python.pydev.ast.codecompletion.revisited.modules.EmptyModule;
+import org.python.pydev.ast.codecompletion.revisited.modules.SourceModule;
 import org.python.pydev.core.ModulesKey;
-import org.python.pydev.shared_core.cache.LRUCache;
+import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.python.pydev.shared_core.structure.Tuple;
 
 /**
- * This is a 'global' cache implementation, that can have at most n objects in
- * the memory at any time.
+ * This is a 'global' cache implementation (shared by all the managers) which keeps the modules in memory
+ * up to a given (approximate) weight.
+ *
+ * The entries are split in segments (each with its own lock and LRU order), so, threads accessing different
+ * modules don't contend with each other. The weight of each module is an estimate of the memory retained
+ * by it (i.e.: based on the size of the source for source modules) and each manager may only use a part of
+ * the total weight (so that a big project doesn't evict the modules of all the others).
  */
 final class ModulesManagerCache {
+
+    /**
+     * Defines the maximum (approximate) memory used by the modules in the cache (for all the managers).
+     */
+    private static final long MAX_WEIGHT = Math.max(1,
+            Integer.getInteger("pydev.modules.cache.max.weight.mb", 128)) * 1024L * 1024L;
+
+    /**
+     * Defines the percentage of MAX_WEIGHT which may be used by the modules of a single manager.
+     */
+    private static final int MANAGER_QUOTA_PERCENT = Math.min(100,
+            Math.max(1, Integer.getInteger("pydev.modules.cache.manager.quota", 60)));
+
+    /**
+     * Number of segments (rounded up to a power of 2).
+     */
+    private static final int SEGMENTS = Math.max(1, Integer.getInteger("pydev.modules.cache.segments", 16));
+
     /**
-     * Defines the maximum amount of modules that can be in the memory at any time (for all the managers)
+     * Estimates used for the weight of the modules (in bytes).
      */
-    private static final int MAX_NUMBER_OF_MODULES = 400;
+    private static final int EMPTY_MODULE_WEIGHT = 256;
+    private static final int COMPILED_MODULE_WEIGHT = 32 * 1024;
+    private static final int DEFAULT_MODULE_WEIGHT = 16 * 1024;
 
     /**
-     * The access to the cache is synchronized
+     * The AST (and related structures) retain roughly this many bytes for each byte of source code.
      */
-    private LRUCache<Tuple<ModulesKey, ModulesManager>, AbstractModule> internalCache;
-    private final Object lock = new Object();
+    private static final int SOURCE_WEIGHT_FACTOR = 6;
+
+    private static final class Entry {
+
+        private final AbstractModule module;
+        private final long weight;
+
+        private Entry(AbstractModule module, long weight) {
+            this.module = module;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Segment {
+
+        /**
+         * Access-ordered (the eldest entry is the least recently used). Guarded by the segment itself.
+         */
+        private final LinkedHashMap<Tuple<ModulesKey, ModulesManager>, Entry> entries = new LinkedHashMap<Tuple<ModulesKey, ModulesManager>, Entry>(
+                16, 0.75f, true);
+
+        private long weight;
+
+        /**
+         * Weight of the entries of each manager in this segment (managers without entries are removed). Guarded by
+         * the segment itself.
+         */
+        private final HashMap<ModulesManager, Long> managersWeight = new HashMap<ModulesManager, Long>();
+
+        private long getWeight(ModulesManager modulesManager) {
+            Long weight = managersWeight.get(modulesManager);
+            return weight != null ? weight : 0;
+        }
+
+        private void addWeight(ModulesManager modulesManager, long delta) {
+            weight += delta;
+            long managerWeight = getWeight(modulesManager) + delta;
+            if (managerWeight == 0) {
+                managersWeight.remove(modulesManager);
+            } else {
+                managersWeight.put(modulesManager, managerWeight);
+            }
+        }
+    }
+
+    private final Segment[] segments;
+    private final long maxSegmentWeight;
+    private final long managerQuota;
+
+    /**
+     * Weight used by each manager (across all the segments). Managers without entries are removed (so, managers
+     * which are no longer used aren't kept alive by the cache).
+     */
+    private final ConcurrentHashMap<ModulesManager, Long> managersWeight = new ConcurrentHashMap<ModulesManager, Long>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
 
     ModulesManagerCache() {
-        internalCache = new LRUCache<Tuple<ModulesKey, ModulesManager>, AbstractModule>(MAX_NUMBER_OF_MODULES);
+        this(MAX_WEIGHT, SEGMENTS, MANAGER_QUOTA_PERCENT);
+    }
+
+    /*default*/ModulesManagerCache(long maxWeight, int segmentsCount, int managerQuotaPercent) {
+        int n = 1;
+        while (n < segmentsCount) {
+            n <<= 1;
+        }
+        segments = new Segment[n];
+        for (int i = 0; i < n; i++) {
+            segments[i] = new Segment();
+        }
+        maxSegmentWeight = Math.max(1, maxWeight / n);
+        managerQuota = Math.max(1, maxWeight * managerQuotaPercent / 100);
+    }
+
+    private Segment getSegment(Tuple<ModulesKey, ModulesManager> keyTuple) {
+        // Note: not using the tuple hash (the product of the hashes has a bad distribution in the lower bits).
+        int h = keyTuple.o1.hashCode() * 31 + keyTuple.o2.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
     }
 
     /**
      * Overridden so that if we do not find the key, we have the chance to create it.
+     *
+     * Note: the module created is an EmptyModule (the actual module is created by the manager without holding
+     * any lock and then added back with add()).
      */
     public AbstractModule getObj(ModulesKey key, ModulesManager modulesManager) {
+        Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
+        Segment segment = getSegment(keyTuple);
+        synchronized (segment) {
+            Entry entry = segment.entries.get(keyTuple);
+            if (entry != null) {
+                hits.incrementAndGet();
+                return entry.module;
+            }
+        }
+        misses.incrementAndGet();
+
         synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
-
-            synchronized (lock) {
-                AbstractModule obj = internalCache.getObj(keyTuple);
-                if (obj == null && modulesManager.modulesKeys.containsKey(key)) {
-                    key = modulesManager.modulesKeys.get(key); //get the 'real' key
-                    obj = AbstractModule.createEmptyModule(key);
-                    internalCache.add(keyTuple, obj);
+            ModulesKey realKey = modulesManager.modulesKeys.get(key); //get the 'real' key
+            if (realKey == null) {
+                return null;
+            }
+            // Note: the key passed is usually reused by the caller, so, the real key must be used in the cache.
+            keyTuple = new Tuple<ModulesKey, ModulesManager>(realKey, modulesManager);
+            synchronized (segment) {
+                Entry entry = segment.entries.get(keyTuple);
+                if (entry != null) {
+                    return entry.module; //added by some other thread in the meanwhile
                 }
+                AbstractModule obj = AbstractModule.createEmptyModule(realKey);
+                put(segment, keyTuple, new Entry(obj, EMPTY_MODULE_WEIGHT));
                 return obj;
             }
         }
     }
 
     public void remove(ModulesKey key, ModulesManager modulesManager) {
-        synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
-            synchronized (lock) {
-                internalCache.remove(keyTuple);
+        Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
+        Segment segment = getSegment(keyTuple);
+        synchronized (segment) {
+            Entry removed = segment.entries.remove(keyTuple);
+            if (removed != null) {
+                onRemoved(segment, keyTuple, removed);
             }
         }
     }
 
     public void add(ModulesKey key, AbstractModule n, ModulesManager modulesManager) {
-        synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
-            synchronized (lock) {
-                internalCache.add(keyTuple, n);
-            }
+        Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
+        Entry entry = new Entry(n, estimateWeight(n)); //computed out of the segment lock (may access the filesystem).
+        Segment segment = getSegment(keyTuple);
+        synchronized (segment) {
+            put(segment, keyTuple, entry);
         }
     }
 
     public void clear() {
-        synchronized (lock) {
-            internalCache.clear();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (Map.Entry<Tuple<ModulesKey, ModulesManager>, Entry> e : segment.entries.entrySet()) {
+                    addManagerWeight(e.getKey().o2, -e.getValue().weight);
+                }
+                segment.entries.clear();
+                segment.managersWeight.clear();
+                segment.weight = 0;
+            }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Must be called with the segment lock held.
+     */
+    private void put(Segment segment, Tuple<ModulesKey, ModulesManager> keyTuple, Entry entry) {
+        Entry old = segment.entries.put(keyTuple, entry);
+        if (old != null) {
+            onRemoved(segment, keyTuple, old);
+        }
+        ModulesManager modulesManager = keyTuple.o2;
+        segment.addWeight(modulesManager, entry.weight);
+        long managerWeight = addManagerWeight(modulesManager, entry.weight);
+
+        // Note: the entry just added is never evicted (even if it's bigger than the limits).
+        if (managerWeight > managerQuota && segment.getWeight(modulesManager) > entry.weight) {
+            // Only the entries of the manager in this segment are evicted (as the keys are spread among the
+            // segments, the quota is enforced approximately). Done before the eviction by the segment weight
+            // so that a manager over its quota evicts its own modules first.
+            Iterator<Map.Entry<Tuple<ModulesKey, ModulesManager>, Entry>> it = segment.entries.entrySet()
+                    .iterator();
+            while (getWeight(modulesManager) > managerQuota && segment.getWeight(modulesManager) > entry.weight
+                    && it.hasNext()) {
+                Map.Entry<Tuple<ModulesKey, ModulesManager>, Entry> eldest = it.next();
+                if (eldest.getValue() == entry) {
+                    break;
+                }
+                if (eldest.getKey().o2 == modulesManager) {
+                    it.remove();
+                    onEvicted(segment, eldest.getKey(), eldest.getValue());
+                }
+            }
+        }
+
+        if (segment.weight > maxSegmentWeight) {
+            Iterator<Map.Entry<Tuple<ModulesKey, ModulesManager>, Entry>> it = segment.entries.entrySet()
+                    .iterator();
+            while (segment.weight > maxSegmentWeight && it.hasNext()) {
+                Map.Entry<Tuple<ModulesKey, ModulesManager>, Entry> eldest = it.next();
+                if (eldest.getValue() == entry) {
+                    break;
+                }
+                it.remove();
+                onEvicted(segment, eldest.getKey(), eldest.getValue());
+            }
+        }
+    }
+
+    /**
+     * The results kept in the CompletionResultsCache may have tokens which reference the ast of the module, so,
+     * those are removed too (otherwise the memory of the module wouldn't be actually released).
+     */
+    private void onEvicted(Segment segment, Tuple<ModulesKey, ModulesManager> keyTuple, Entry entry) {
+        onRemoved(segment, keyTuple, entry);
+        evictions.incrementAndGet();
+        if (!(entry.module instanceof EmptyModule)) {
+            CompletionResultsCache resultsCache = CompletionResultsCache.get();
+            if (resultsCache != null) {
+                resultsCache.evicted(keyTuple.o1.name);
+            }
+        }
+    }
+
+    private void onRemoved(Segment segment, Tuple<ModulesKey, ModulesManager> keyTuple, Entry entry) {
+        segment.addWeight(keyTuple.o2, -entry.weight);
+        addManagerWeight(keyTuple.o2, -entry.weight);
+    }
+
+    /**
+     * @return the new weight of the given manager (its entry is removed when it reaches 0).
+     */
+    private long addManagerWeight(ModulesManager modulesManager, long delta) {
+        Long weight = managersWeight.compute(modulesManager, (key, current) -> {
+            long newWeight = (current != null ? current : 0) + delta;
+            return newWeight != 0 ? newWeight : null;
+        });
+        return weight != null ? weight : 0;
+    }
+
+    /**
+     * @return the approximate memory retained by the given module (in bytes).
+     */
+    /*default*/static long estimateWeight(AbstractModule module) {
+        if (module instanceof EmptyModule) {
+            return EMPTY_MODULE_WEIGHT;
+        }
+        if (module instanceof CompiledModule) {
+            return COMPILED_MODULE_WEIGHT;
+        }
+        if (module instanceof SourceModule && ((SourceModule) module).zipFilePath == null) {
+            File file = module.getFile();
+            if (file != null) {
+                long length = file.length();
+                if (length > 0) {
+                    return EMPTY_MODULE_WEIGHT + length * SOURCE_WEIGHT_FACTOR;
+                }
+            }
+        }
+        return DEFAULT_MODULE_WEIGHT;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the approximate memory retained by the modules in the cache (in bytes).
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                weight += segment.weight;
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * @return the approximate memory retained by the modules of the given manager in the cache (in bytes).
+     */
+    public long getWeight(ModulesManager modulesManager) {
+        Long weight = managersWeight.get(modulesManager);
+        return weight != null ? weight : 0;
+    }
+
+    /**
+     * @return the number of managers with modules in the cache.
+     */
+    /*default*/int getManagersCount() {
+        return managersWeight.size();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return a description of the cache state (for diagnostics).
+     */
+    public String getStatistics() {
+        FastStringBuffer buf = new FastStringBuffer();
+        buf.append("Modules cache: ").append(size()).append(" modules (")
+                .append(getWeight() / 1024).append(" of ").append((maxSegmentWeight * segments.length) / 1024)
+                .append(" KB) hits: ").append(hits.get()).append(" misses: ").append(misses.get())
+                .append(" evictions: ").append(evictions.get());
+        return buf.toString();
+    }
+}
@@ -151,7 +151,12 @@ public final class ProjectModulesManager extends ModulesManagerWithBuild impleme
         SortedMap<ModulesKey, ModulesKey> ret = new TreeMap<ModulesKey, ModulesKey>();
         IModulesManager[] managersInvolved = this.getManagersInvolved(true);
         for (int i = 0; i < managersInvolved.length; i++) {
-            ret.putAll(managersInvolved[i].getAllDirectModulesStartingWith(strStartingWith));
+            IModulesManager m = managersInvolved[i];
+            if (m instanceof ModulesManager) {
+                ((ModulesManager) m).fillModulesStartingWith(strStartingWith, ret);
+            } else {
+                ret.putAll(m.getAllDirectModulesStartingWith(strStartingWith));
+            }
         }
         return ret;
     }
@@ -192,6 +197,7 @@ public final class ProjectModulesManager extends ModulesManagerWithBuild impleme
     public Tuple<IModule, IModulesManager> getModuleAndRelatedModulesManager(String name, IPythonNature nature,
             boolean checkSystemManager, boolean dontSearchInit) {
 
+        CompletionResultsCache.recordDependency(name);
         IModule module = null;
 
         IModulesManager[] managersInvolved = this.getManagersInvolved(true); //only get the system manager here (to avoid recursion)
@@ -210,6 +216,11 @@ public final class ProjectModulesManager extends ModulesManagerWithBuild impleme
         }
 
         for (IModulesManager m : managersInvolved) {
+            if (m instanceof ModulesManager && !((ModulesManager) m).mayHaveModule(name, dontSearchInit)) {
+                //The index by name says it's not there: don't even try to get it (which would need to get the locks
+                //for the temporary modules and the keys in that manager).
+                continue;
+            }
             if (m instanceof IProjectModulesManager) {
                 IProjectModulesManager pM = (IProjectModulesManager) m;
                 module = pM.getModuleInDirectManager(name, nature, dontSearchInit);
@@ -41,6 +41,14 @@ public class PyCodeCompletionVisitor extends PyDevBuilderVisitor {
         return PRIORITY_CODE_COMPLETION;
     }
 
+    /**
+     * The modules manager is synchronized (the visit just adds the key for the resource).
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     /**
      * On a full build we'll stop generating deltas (the build is much faster this way).
      */
@@ -24,6 +24,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.jface.text.IDocument;
 import org.python.pydev.ast.codecompletion.revisited.modules.AbstractModule;
 import org.python.pydev.ast.codecompletion.revisited.modules.CompiledModule;
+import org.python.pydev.ast.codecompletion.revisited.modules.CompiledModulesCache;
 import org.python.pydev.ast.codecompletion.revisited.modules.EmptyModule;
 import org.python.pydev.ast.codecompletion.revisited.modules.PredefinedSourceModule;
 import org.python.pydev.ast.codecompletion.revisited.modules.SourceModule;
@@ -51,7 +52,6 @@ import org.python.pydev.shared_core.cache.LRUCache;
 import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
 import org.python.pydev.shared_core.string.FastStringBuffer;
-import org.python.pydev.shared_core.string.StringUtils;
 import org.python.pydev.shared_core.structure.Tuple;
 
 /**
@@ -371,6 +371,7 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
      */
     @Override
     public IModule getModule(String name, IPythonNature nature, boolean dontSearchInit) {
+        CompletionResultsCache.recordDependency(name);
         AbstractModule n = getBuiltinModule(name, dontSearchInit);
         if (n != null) {
             return n;
@@ -428,6 +429,7 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
         synchronized (modulesKeysLock) {
             modulesKeys.clear();
             modulesKeys.putAll(keysFound);
+            onModulesKeysReplaced();
         }
         this.save();
     }
@@ -435,27 +437,10 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
     @Override
     public void changePythonPath(String pythonpath, IProject project, IProgressMonitor monitor) {
         try {
-            //Clear the cached files related to compiled modules.
-            File ioDirectory = getIoDirectory();
-            if (ioDirectory != null) {
-                File d = new File(ioDirectory, DIR_NAME_FOR_COMPILED_CACHE);
-                if (d.exists()) {
-                    File[] files = d.listFiles();
-                    if (files != null) {
-
-                        for (int i = 0; i < files.length; ++i) {
-                            File f = files[i];
-
-                            if (f.isFile()) {
-                                try {
-                                    FileUtils.deleteFile(f);
-                                } catch (IOException e) {
-                                    Log.log(e);
-                                }
-                            }
-                        }
-                    }
-                }
+            //Clear the cached tokens related to compiled modules.
+            File d = getCompiledModulesCacheDir();
+            if (d != null) {
+                CompiledModulesCache.get(d).clear();
             }
         } catch (Exception e) {
             Log.log(e);
@@ -464,32 +449,17 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
     }
 
     /**
-     * Gets the directory where compiled modules should be saved.
+     * Gets the directory where the tokens of compiled modules should be saved.
      */
     @Override
-    public File getCompiledModuleCacheFile(String name) {
+    public File getCompiledModulesCacheDir() {
         File ioDirectory = getIoDirectory();
         if (ioDirectory != null) {
             File d = new File(ioDirectory, DIR_NAME_FOR_COMPILED_CACHE);
             if (!d.exists()) {
                 d.mkdirs();
             }
-            int len = name.length();
-            String pre = "";
-            if (len >= 3) {
-                pre = name.substring(0, 3);
-
-            } else if (len >= 2) {
-                pre = name.substring(0, 2);
-
-            } else if (len >= 1) {
-                pre = name.substring(0, 1);
-
-            }
-
-            //Already separate dotted from non dotted (i.e.: top level) modules.
-            String post = name.contains(".") ? ".top" : ".inn";
-            return new File(d, StringUtils.join("", pre, "_", StringUtils.md5(name), post));
+            return d;
         }
         return null;
     }
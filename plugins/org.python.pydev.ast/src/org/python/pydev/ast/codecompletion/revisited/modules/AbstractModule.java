@@ -267,6 +267,23 @@ public abstract class AbstractModule implements IModule {
         return name;
     }
 
+    /**
+     * @return a version which changes when the contents of the module change (used in the key of the results kept
+     * across requests -- see: CompletionResultsCache) or 0 if it's not known (in which case the results for this
+     * module are not kept across requests).
+     */
+    public long getModuleVersion() {
+        return 0;
+    }
+
+    /**
+     * @return a version for a module with the given contents (never 0).
+     */
+    private static long computeModuleVersion(String contents) {
+        long version = ((long) contents.hashCode() << 32) | (contents.length() & 0xFFFFFFFFL);
+        return version != 0 ? version : 1;
+    }
+
     /**
      * Constructor
      *
@@ -287,7 +304,30 @@ public abstract class AbstractModule implements IModule {
             throws IOException, MisconfigurationException {
         if (PythonPathHelper.isValidFileMod(f.getName())) {
             if (PythonPathHelper.isValidSourceFile(f.getName())) {
-                return createModuleFromDoc(name, f, FileUtilsFileBuffer.getDocFromFile(f), nature, checkForPath);
+                SourceModulesAstCache astCache = nature != null ? SourceModulesAstCache.get() : null;
+                if (astCache == null) {
+                    return createModuleFromDoc(name, f, FileUtilsFileBuffer.getDocFromFile(f), nature, checkForPath);
+                }
+                int grammarKey = SourceModulesAstCache.getGrammarKey(nature);
+                //Get the time/size before reading it (so, if it changes afterwards, it won't match the cache).
+                long lastModified = FileUtils.lastModified(f);
+                long size = f.length();
+                SimpleNode ast = astCache.get(f, grammarKey);
+                if (ast != null) {
+                    SourceModule sourceModule = new SourceModule(name, f, ast, null, nature);
+                    //the contents weren't read: the version is based on the time/size of the file.
+                    sourceModule.setModuleVersion(computeModuleVersion(lastModified + "|" + size));
+                    return sourceModule;
+                }
+
+                IDocument doc = FileUtilsFileBuffer.getDocFromFile(f);
+                ParseOutput obj = PyParser.reparseDocument(new PyParser.ParserInfo(doc, nature, name, f));
+                if (obj.ast != null && obj.error == null) {
+                    astCache.put(f, grammarKey, lastModified, size, (SimpleNode) obj.ast);
+                }
+                SourceModule sourceModule = new SourceModule(name, f, (SimpleNode) obj.ast, obj.error, nature);
+                sourceModule.setModuleVersion(computeModuleVersion(doc.get()));
+                return sourceModule;
 
             } else { //this should be a compiled extension... we have to get completions from the python shell.
                 return new CompiledModule(name, nature.getAstManager().getModulesManager(), nature);
@@ -315,11 +355,15 @@ public abstract class AbstractModule implements IModule {
             if (!checkForPath || PythonPathHelper.isValidSourceFile(f.getName())) {
                 ParseOutput obj = PyParser.reparseDocument(new PyParser.ParserInfo(doc, grammarVersionProvider, name,
                         f));
-                return new SourceModule(name, f, (SimpleNode) obj.ast, obj.error, nature);
+                SourceModule sourceModule = new SourceModule(name, f, (SimpleNode) obj.ast, obj.error, nature);
+                sourceModule.setModuleVersion(computeModuleVersion(doc.get()));
+                return sourceModule;
             }
         } else {
             ParseOutput obj = PyParser.reparseDocument(new PyParser.ParserInfo(doc, grammarVersionProvider, name, f));
-            return new SourceModule(name, f, (SimpleNode) obj.ast, obj.error, nature);
+            SourceModule sourceModule = new SourceModule(name, f, (SimpleNode) obj.ast, obj.error, nature);
+            sourceModule.setModuleVersion(computeModuleVersion(doc.get()));
+            return sourceModule;
         }
         return null;
     }
@@ -0,0 +1,608 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.revisited.modules;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.IToken;
+import org.python.pydev.core.concurrency.IRunnableWithMonitor;
+import org.python.pydev.core.concurrency.RunnableAsJobsPoolThread;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.structure.Tuple;
+
+/**
+ * Keeps the tokens of the compiled modules of an interpreter (gotten from the shell) in a single append-only file
+ * (memory-mapped when read).
+ *
+ * The layout is:
+ *
+ * header: magic, version
+ * records (one for each time a module is cached -- the last one for a module is the valid one):
+ *     record length, module name, docstrings section offset (relative to the record start),
+ *     string table (strings count and each string), module file (string table index or -1), tokens count,
+ *     tokens (representation, type, args and parent package -- type and string table indexes),
+ *     docstrings section (one string for each token: only read when a docstring is requested).
+ *
+ * The module name -> record offset index is created (in memory) when the file is opened by skipping over the
+ * records.
+ *
+ * Modules are added in batches (in a RunnableAsJobsPoolThread job). The file name contains a generation, so,
+ * clearing or compacting the cache writes a new file (a file which is still mapped can't be overwritten or deleted
+ * in some platforms).
+ */
+public final class CompiledModulesCache {
+
+    private static final int MAGIC = 0x5059434D; // PYCM
+
+    public static final int FILE_VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 4;
+
+    private static final String FILE_PREFIX = "compiled_modules_";
+
+    private static final String FILE_EXTENSION = ".cache";
+
+    /**
+     * The file is compacted when opened if it has more than this number of bytes in records which were replaced
+     * (and they're more than the valid ones).
+     */
+    private static final int COMPACT_THRESHOLD = 1024 * 1024;
+
+    private static final Map<File, CompiledModulesCache> caches = new HashMap<File, CompiledModulesCache>();
+
+    /**
+     * @return the cache which saves its contents in the given directory.
+     */
+    public static CompiledModulesCache get(File dir) {
+        synchronized (caches) {
+            CompiledModulesCache cache = caches.get(dir);
+            if (cache == null) {
+                cache = new CompiledModulesCache(dir);
+                caches.put(dir, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * The contents currently in the file (replaced as a whole when the file changes).
+     */
+    private static final class Snapshot {
+
+        private final long generation;
+
+        private final ByteBuffer buffer;
+
+        /**
+         * Module name -> offset of its record in the buffer.
+         */
+        private final Map<String, Integer> index;
+
+        private Snapshot(long generation, ByteBuffer buffer, Map<String, Integer> index) {
+            this.generation = generation;
+            this.buffer = buffer;
+            this.index = index;
+        }
+    }
+
+    private final File dir;
+
+    private final Object writeLock = new Object();
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * Modules which still weren't written to the file (module name -> file and tokens).
+     */
+    private final Map<String, Tuple<File, IToken[]>> pending = new ConcurrentHashMap<String, Tuple<File, IToken[]>>();
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    /**
+     * Use get(dir) (it's only created directly in tests, to reopen the same directory).
+     */
+    /*default*/ CompiledModulesCache(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * @return the file and tokens for the given module or null if it's not cached.
+     */
+    public Tuple<File, IToken[]> get(String name, IPythonNature nature) {
+        Tuple<File, IToken[]> info = pending.get(name);
+        if (info != null) {
+            return info;
+        }
+        Snapshot current = getSnapshot();
+        Integer offset = current.index.get(name);
+        if (offset == null) {
+            return null;
+        }
+        try {
+            return readRecord(current.buffer, offset, nature);
+        } catch (RuntimeException e) {
+            Log.log("Unable to read cached compiled module: " + name, e);
+            return null;
+        }
+    }
+
+    public boolean contains(String name) {
+        return pending.containsKey(name) || getSnapshot().index.containsKey(name);
+    }
+
+    /**
+     * Adds the given module to the cache (it's written to the file later on in a RunnableAsJobsPoolThread job,
+     * along with the other modules added in the meanwhile).
+     */
+    public void put(String name, File file, IToken[] tokens) {
+        pending.put(name, new Tuple<File, IToken[]>(file, tokens));
+        if (flushScheduled.compareAndSet(false, true)) {
+            IRunnableWithMonitor runnable = new IRunnableWithMonitor() {
+
+                @Override
+                public void run() {
+                    flushScheduled.set(false);
+                    flush();
+                }
+
+                @Override
+                public void setMonitor(IProgressMonitor monitor) {
+                }
+            };
+            RunnableAsJobsPoolThread.getSingleton().scheduleToRun(runnable, "Cache compiled modules");
+        }
+    }
+
+    /**
+     * Writes the pending modules to the file.
+     */
+    public void flush() {
+        synchronized (writeLock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            Snapshot current = getSnapshot();
+            Map<String, Tuple<File, IToken[]>> toWrite = new LinkedHashMap<String, Tuple<File, IToken[]>>(pending);
+            File file = getFile(current.generation);
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+                    FileChannel channel = randomAccessFile.getChannel()) {
+                // Note: contents after the current snapshot (i.e.: from a write which failed) are overwritten.
+                long size = current.buffer.limit();
+                if (size < HEADER_SIZE) {
+                    size = writeHeader(channel);
+                }
+                Map<String, Integer> index = new HashMap<String, Integer>(current.index);
+                channel.position(size);
+                for (Map.Entry<String, Tuple<File, IToken[]>> entry : toWrite.entrySet()) {
+                    ByteBuffer record = createRecord(entry.getKey(), entry.getValue().o1, entry.getValue().o2);
+                    if (size + record.remaining() > Integer.MAX_VALUE) {
+                        Log.log("Compiled modules cache is too big: " + file);
+                        break;
+                    }
+                    index.put(entry.getKey(), (int) size);
+                    size += record.remaining();
+                    while (record.hasRemaining()) {
+                        channel.write(record);
+                    }
+                }
+                snapshot = new Snapshot(current.generation, channel.map(MapMode.READ_ONLY, 0, size), index);
+            } catch (IOException e) {
+                Log.log(e);
+            }
+            for (Map.Entry<String, Tuple<File, IToken[]>> entry : toWrite.entrySet()) {
+                pending.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Removes all the modules from the cache.
+     */
+    public void clear() {
+        synchronized (writeLock) {
+            pending.clear();
+            Snapshot current = getSnapshot();
+            long generation = current.generation + 1;
+            snapshot = new Snapshot(generation, ByteBuffer.allocate(0), Collections.<String, Integer> emptyMap());
+            removeOtherFiles(generation);
+            File file = getFile(generation);
+            if (file.exists() && !file.delete()) {
+                Log.log("Unable to remove compiled modules cache file: " + file);
+            }
+        }
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (writeLock) {
+                current = snapshot;
+                if (current == null) {
+                    current = open();
+                    snapshot = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private File getFile(long generation) {
+        return new File(dir, FILE_PREFIX + generation + FILE_EXTENSION);
+    }
+
+    /**
+     * Opens the file with the latest generation (older files and the files from older versions -- which had one
+     * file for each module -- are removed).
+     */
+    private Snapshot open() {
+        long generation = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                long fileGeneration = getGeneration(f);
+                if (fileGeneration > generation) {
+                    generation = fileGeneration;
+                }
+            }
+        }
+        removeOtherFiles(generation);
+
+        File file = getFile(generation);
+        if (file.exists()) {
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+                    FileChannel channel = randomAccessFile.getChannel()) {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Compiled modules cache is too big: " + file);
+                }
+                Map<String, Integer> index = new HashMap<String, Integer>();
+                ByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, size);
+                int validSize = createIndex(buffer, index);
+                Snapshot opened = new Snapshot(generation, buffer, index);
+                if (validSize != size) {
+                    // i.e.: the last record was not completely written (the file can't be truncated while mapped
+                    // in some platforms, so, the valid records are written to a new file).
+                    Log.logInfo("Invalid record in compiled modules cache at: " + validSize + " (size: " + size
+                            + "): " + file);
+                    return compact(opened);
+                }
+                long usedSize = 0;
+                for (Integer offset : index.values()) {
+                    usedSize += buffer.getInt(offset);
+                }
+                long unusedSize = validSize - HEADER_SIZE - usedSize;
+                if (unusedSize > COMPACT_THRESHOLD && unusedSize > usedSize) {
+                    return compact(opened);
+                }
+                return opened;
+
+            } catch (IOException e) {
+                Log.log("Error opening compiled modules cache (it'll be recreated): " + file, e);
+                generation++;
+                removeOtherFiles(generation);
+            }
+        }
+        return new Snapshot(generation, ByteBuffer.allocate(0), Collections.<String, Integer> emptyMap());
+    }
+
+    /**
+     * Writes the valid records to a file with a new generation.
+     */
+    private Snapshot compact(Snapshot current) throws IOException {
+        long generation = current.generation + 1;
+        File file = getFile(generation);
+        Map<String, Integer> index = new HashMap<String, Integer>();
+        long size;
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+                FileChannel channel = randomAccessFile.getChannel()) {
+            channel.truncate(0);
+            size = writeHeader(channel);
+            for (Map.Entry<String, Integer> entry : current.index.entrySet()) {
+                ByteBuffer record = current.buffer.duplicate();
+                int offset = entry.getValue();
+                record.limit(offset + record.getInt(offset)).position(offset);
+                index.put(entry.getKey(), (int) size);
+                size += record.remaining();
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+            }
+            Snapshot compacted = new Snapshot(generation, channel.map(MapMode.READ_ONLY, 0, size), index);
+            removeOtherFiles(generation);
+            return compacted;
+        }
+    }
+
+    /**
+     * @return the generation of the given cache file or -1 if it's not a cache file.
+     */
+    private static long getGeneration(File f) {
+        String name = f.getName();
+        if (name.startsWith(FILE_PREFIX) && name.endsWith(FILE_EXTENSION)) {
+            try {
+                return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_EXTENSION.length()));
+            } catch (NumberFormatException e) {
+                //not a cache file
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes the files in the cache directory which are not the one with the given generation (files which can't
+     * be removed now -- i.e.: still mapped on Windows -- are removed later on).
+     */
+    private void removeOtherFiles(long generation) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        String current = getFile(generation).getName();
+        for (File f : files) {
+            if (f.isFile() && !f.getName().equals(current)) {
+                if (!f.delete() && f.exists()) {
+                    Log.logInfo("Unable to remove old compiled modules cache file (will retry later): " + f);
+                }
+            }
+        }
+    }
+
+    private static long writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(FILE_VERSION);
+        header.flip();
+        channel.position(0);
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+        return HEADER_SIZE;
+    }
+
+    /**
+     * Fills the index with the records in the buffer.
+     *
+     * @return the size of the valid contents of the buffer (a partially written record at the end is not valid).
+     */
+    private static int createIndex(ByteBuffer buffer, Map<String, Integer> index) throws IOException {
+        int size = buffer.limit();
+        if (size < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Invalid compiled modules cache (magic doesn't match).");
+        }
+        int version = buffer.getInt(4);
+        if (version != FILE_VERSION) {
+            throw new IOException("Expected compiled modules cache version: " + FILE_VERSION + ". Found: " + version);
+        }
+        int offset = HEADER_SIZE;
+        while (offset + 8 <= size) {
+            int recordLength = buffer.getInt(offset);
+            int nameLength = buffer.getInt(offset + 4);
+            if (recordLength < 12 || recordLength > size - offset || nameLength < 0
+                    || nameLength > recordLength - 12) {
+                break;
+            }
+            index.put(getString(buffer, offset + 8, nameLength), offset);
+            offset += recordLength;
+        }
+        return offset;
+    }
+
+    private static String getString(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(offset);
+        return readString(dup, length);
+    }
+
+    /**
+     * Reads a string with the given length in bytes (from the current position of the buffer).
+     */
+    private static String readString(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Helper to create a record.
+     */
+    private static final class RecordWriter {
+
+        private ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer newBuffer = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                buffer.flip();
+                newBuffer.put(buffer);
+                buffer = newBuffer;
+            }
+        }
+
+        private void putInt(int i) {
+            ensure(4);
+            buffer.putInt(i);
+        }
+
+        private void putString(String s) {
+            byte[] bytes = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+            ensure(4 + bytes.length);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static ByteBuffer createRecord(String name, File file, IToken[] tokens) {
+        Map<String, Integer> stringToIndex = new HashMap<String, Integer>();
+        List<String> strings = new ArrayList<String>();
+        int[] tokensData = new int[tokens.length * 4];
+        for (int i = 0; i < tokens.length; i++) {
+            IToken token = tokens[i];
+            tokensData[i * 4] = getStringIndex(token.getRepresentation(), stringToIndex, strings);
+            tokensData[i * 4 + 1] = token.getType();
+            tokensData[i * 4 + 2] = getStringIndex(token.getArgs(), stringToIndex, strings);
+            tokensData[i * 4 + 3] = getStringIndex(token.getParentPackage(), stringToIndex, strings);
+        }
+        int fileIndex = file == null ? -1 : getStringIndex(file.getPath(), stringToIndex, strings);
+
+        RecordWriter writer = new RecordWriter();
+        writer.putInt(0); // record length (set later on)
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        writer.putInt(nameBytes.length);
+        writer.ensure(nameBytes.length);
+        writer.buffer.put(nameBytes);
+        int docsOffsetPosition = writer.buffer.position();
+        writer.putInt(0); // docstrings section offset (set later on)
+
+        writer.putInt(strings.size());
+        for (String s : strings) {
+            writer.putString(s);
+        }
+        writer.putInt(fileIndex);
+        writer.putInt(tokens.length);
+        for (int i : tokensData) {
+            writer.putInt(i);
+        }
+
+        int docsOffset = writer.buffer.position();
+        for (IToken token : tokens) {
+            writer.putString(token.getDocStr());
+        }
+
+        ByteBuffer buffer = writer.buffer;
+        buffer.putInt(0, buffer.position());
+        buffer.putInt(docsOffsetPosition, docsOffset);
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int getStringIndex(String s, Map<String, Integer> stringToIndex, List<String> strings) {
+        if (s == null) {
+            s = "";
+        }
+        Integer i = stringToIndex.get(s);
+        if (i == null) {
+            i = strings.size();
+            strings.add(s);
+            stringToIndex.put(s, i);
+        }
+        return i;
+    }
+
+    private static Tuple<File, IToken[]> readRecord(ByteBuffer buffer, int offset, IPythonNature nature) {
+        ByteBuffer buf = buffer.duplicate();
+        buf.position(offset);
+        int recordLength = buf.getInt();
+        buf.limit(offset + recordLength);
+        int nameLength = buf.getInt();
+        buf.position(buf.position() + nameLength);
+        int docsOffset = buf.getInt();
+
+        String[] strings = new String[buf.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(buf, buf.getInt());
+        }
+        int fileIndex = buf.getInt();
+        File file = fileIndex == -1 ? null : new File(strings[fileIndex]);
+
+        IToken[] tokens = new IToken[buf.getInt()];
+        LazyDocStrings docStrings = new LazyDocStrings(buffer, offset + docsOffset, tokens.length);
+        for (int i = 0; i < tokens.length; i++) {
+            String rep = strings[buf.getInt()];
+            int type = buf.getInt();
+            String args = strings[buf.getInt()];
+            String parentPackage = strings[buf.getInt()];
+            tokens[i] = new CachedCompiledToken(rep, args, parentPackage, type, nature, docStrings, i);
+        }
+        return new Tuple<File, IToken[]>(file, tokens);
+    }
+
+    /**
+     * The docstrings of the tokens of a module (only read when the first is requested).
+     */
+    private static final class LazyDocStrings {
+
+        private ByteBuffer buffer;
+        private final int offset;
+        private final int size;
+        private String[] docStrings;
+
+        private LazyDocStrings(ByteBuffer buffer, int offset, int size) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        private synchronized String get(int i) {
+            if (docStrings == null) {
+                docStrings = new String[size];
+                ByteBuffer buf = buffer.duplicate();
+                buf.position(offset);
+                for (int j = 0; j < size; j++) {
+                    docStrings[j] = readString(buf, buf.getInt());
+                }
+                buffer = null; // no longer needed
+            }
+            return docStrings[i];
+        }
+    }
+
+    /**
+     * A compiled token whose docstring is read from the cache when requested.
+     */
+    private static final class CachedCompiledToken extends CompiledToken {
+
+        private static final long serialVersionUID = 1L;
+
+        private transient LazyDocStrings docStrings;
+        private transient int docStringIndex;
+
+        private CachedCompiledToken(String rep, String args, String parentPackage, int type, IPythonNature nature,
+                LazyDocStrings docStrings, int docStringIndex) {
+            super(rep, "", args, parentPackage, type, nature);
+            this.docStrings = docStrings;
+            this.docStringIndex = docStringIndex;
+        }
+
+        @Override
+        public String getDocStr() {
+            LazyDocStrings d = docStrings;
+            if (d != null) {
+                this.doc = d.get(docStringIndex);
+                docStrings = null;
+            }
+            return doc;
+        }
+
+        @Override
+        public void setDocStr(String docStr) {
+            docStrings = null;
+            super.setDocStr(docStr);
+        }
+
+        private void writeObject(ObjectOutputStream out) throws IOException {
+            getDocStr();
+            out.defaultWriteObject();
+        }
+    }
+}
@@ -24,6 +24,7 @@ import java.util.TreeMap;
 
 import org.python.pydev.ast.codecompletion.revisited.AbstractASTManager;
 import org.python.pydev.ast.codecompletion.revisited.AbstractToken;
+import org.python.pydev.ast.codecompletion.revisited.CompletionResultsCache;
 import org.python.pydev.ast.codecompletion.revisited.CompletionState;
 import org.python.pydev.ast.codecompletion.revisited.ConcreteToken;
 import org.python.pydev.ast.codecompletion.revisited.visitors.AssignDefinition;
@@ -135,6 +136,11 @@ public class SourceModule extends AbstractModule implements ISourceModule {
      */
     private long lastModified;
 
+    /**
+     * See: getModuleVersion() (0 means unknown).
+     */
+    private long moduleVersion;
+
     /**
      * The object may be a SourceToken or a List<SourceToken>
      */
@@ -916,6 +922,7 @@ public class SourceModule extends AbstractModule implements ISourceModule {
                         //see: http://sourceforge.net/tracker/?func=detail&aid=2992629&group_id=85796&atid=577329
                         int dotsFound = StringUtils.count(checkFor, '.');
                         if (dotsFound > 15) {
+                            CompletionResultsCache.markIncomplete();
                             throw new CompletionRecursionException("Trying to go to deep to find definition.\n"
                                     + "We probably started entering a recursion.\n" + "Module: "
                                     + definition.module.getName() + "\n" + "Token: " + checkFor);
@@ -1433,6 +1440,22 @@ public class SourceModule extends AbstractModule implements ISourceModule {
         }
     }
 
+    @Override
+    public long getModuleVersion() {
+        return moduleVersion;
+    }
+
+    /*default*/ void setModuleVersion(long moduleVersion) {
+        this.moduleVersion = moduleVersion;
+    }
+
+    /**
+     * @return the time of the file when this module was created (see: isSynched()).
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
     /**
      * @return if the file we have is the same file in the cache.
      */
@@ -0,0 +1,289 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.revisited.modules;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.python.pydev.core.CorePlugin;
+import org.python.pydev.core.IGrammarVersionProvider;
+import org.python.pydev.core.IGrammarVersionProvider.AdditionalGrammarVersionsToCheck;
+import org.python.pydev.core.MisconfigurationException;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.SimpleNodeSerializer;
+import org.python.pydev.shared_core.io.FileUtils;
+
+/**
+ * Keeps the ASTs of source modules in the disk (so that modules which are no longer in memory or which are needed
+ * after a restart don't have to be parsed again).
+ *
+ * Each source file has its own cache file (named from a hash of the path of the source file). The layout is:
+ *
+ * magic, version (changes with the format of the nodes), absolute path of the source file, last modified time,
+ * size, grammar (the grammar version and additional grammar versions used to parse it), AST (see:
+ * SimpleNodeSerializer).
+ *
+ * The AST is only used if all the fields in the header match the current source file (otherwise it's parsed again
+ * and the cache file overwritten). Only ASTs without errors are cached.
+ *
+ * The modified time of a cache file is updated when it's read, so, when the cache goes over its max size, the least
+ * recently used files are removed. The cache is cleared when the pythonpath changes.
+ */
+public final class SourceModulesAstCache {
+
+    private static final int MAGIC = 0x50594153; // PYAS
+
+    private static final int FILE_VERSION = 1 ^ SimpleNodeSerializer.FORMAT_VERSION;
+
+    private static final String FILE_EXTENSION = ".ast";
+
+    /**
+     * May be set to false to disable the cache.
+     */
+    public static final boolean ENABLED = !"false".equals(System.getProperty("pydev.ast.cache", "true"));
+
+    /**
+     * The default max size of the cache (in bytes).
+     */
+    public static final long DEFAULT_MAX_SIZE = Long.getLong("pydev.ast.cache.max_size_mb", 256) * 1024 * 1024;
+
+    /**
+     * The size of the cache is checked after this number of puts (and in the first put).
+     */
+    private static final int PUTS_TO_CHECK_SIZE = 500;
+
+    private static volatile SourceModulesAstCache instance;
+
+    private static volatile boolean initialized;
+
+    /**
+     * @return the cache (or null if it's disabled or if the workspace metadata is not available).
+     */
+    public static SourceModulesAstCache get() {
+        if (!initialized) {
+            synchronized (SourceModulesAstCache.class) {
+                if (!initialized) {
+                    if (ENABLED) {
+                        try {
+                            String dir = System.getProperty("pydev.ast.cache.dir");
+                            instance = new SourceModulesAstCache(dir != null ? new File(dir)
+                                    : CorePlugin.getWorkspaceMetadataFile("ast_cache"));
+                        } catch (RuntimeException e) {
+                            // pydevStatelocation not set (i.e.: running in tests): keep it disabled.
+                        }
+                    }
+                    initialized = true;
+                }
+            }
+        }
+        return instance;
+    }
+
+    private final File dir;
+
+    private final long maxSize;
+
+    private final AtomicInteger putsUntilSizeCheck = new AtomicInteger(1);
+
+    private final AtomicBoolean pruning = new AtomicBoolean();
+
+    public SourceModulesAstCache(File dir) {
+        this(dir, DEFAULT_MAX_SIZE);
+    }
+
+    public SourceModulesAstCache(File dir, long maxSize) {
+        this.dir = dir;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return a key for the grammar used to parse the module (the ast is only valid for the same key).
+     */
+    public static int getGrammarKey(IGrammarVersionProvider grammarVersionProvider) throws MisconfigurationException {
+        int key = grammarVersionProvider.getGrammarVersion();
+        AdditionalGrammarVersionsToCheck additionalGrammarVersions = grammarVersionProvider
+                .getAdditionalGrammarVersions();
+        if (additionalGrammarVersions != null) {
+            Set<Integer> versions = new TreeSet<Integer>(additionalGrammarVersions.getGrammarVersions());
+            for (Integer version : versions) {
+                key = key * 31 + version;
+            }
+        }
+        return key;
+    }
+
+    /*default*/ File getCacheFile(String path) {
+        // FNV-1a 64 bit hash (collisions are handled as the path is also checked when reading).
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i++) {
+            hash ^= path.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        String hex = Long.toHexString(hash);
+        return new File(new File(dir, Integer.toHexString((int) (hash & 0xFF))), hex + FILE_EXTENSION);
+    }
+
+    /**
+     * @return the ast for the given file or null if it's not in the cache (or if the file changed).
+     */
+    public SimpleNode get(File file, int grammarKey) {
+        String path = file.getAbsolutePath();
+        File cacheFile = getCacheFile(path);
+        if (!cacheFile.exists()) {
+            return null;
+        }
+        try {
+            byte[] bytes = Files.readAllBytes(cacheFile.toPath());
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readInt() != MAGIC || in.readInt() != FILE_VERSION || !path.equals(in.readUTF())) {
+                return null;
+            }
+            long lastModified = in.readLong();
+            long size = in.readLong();
+            int cachedGrammarKey = in.readInt();
+            if (lastModified != FileUtils.lastModified(file) || size != file.length()
+                    || cachedGrammarKey != grammarKey) {
+                return null;
+            }
+            SimpleNode node = new SimpleNodeSerializer(in).readNode();
+            cacheFile.setLastModified(System.currentTimeMillis()); // Keep it in the next prune.
+            return node;
+        } catch (NoSuchFileException e) {
+            return null; // Removed concurrently (pruned or cleared).
+        } catch (Exception e) {
+            Log.log("Unable to read cached ast for: " + path + " (from: " + cacheFile + ")", e);
+            return null;
+        }
+    }
+
+    /**
+     * Saves the ast for the given file.
+     *
+     * @param lastModified the time of the file when it was read to be parsed.
+     * @param size the size of the file when it was read to be parsed.
+     */
+    public void put(File file, int grammarKey, long lastModified, long size, SimpleNode ast) {
+        String path = file.getAbsolutePath();
+        File cacheFile = getCacheFile(path);
+        File parent = cacheFile.getParentFile();
+        if (!parent.exists()) {
+            parent.mkdirs();
+        }
+        File tempFile = new File(parent, cacheFile.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeUTF(path);
+                out.writeLong(lastModified);
+                out.writeLong(size);
+                out.writeInt(grammarKey);
+                new SimpleNodeSerializer(out).writeNode(ast);
+            }
+            try {
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // i.e.: some node which can't be serialized: just don't cache it.
+            Log.logInfo("Unable to cache ast for: " + path, e);
+            tempFile.delete();
+            cacheFile.delete();
+            return;
+        }
+        if (putsUntilSizeCheck.decrementAndGet() <= 0) {
+            putsUntilSizeCheck.set(PUTS_TO_CHECK_SIZE);
+            prune();
+        }
+    }
+
+    /**
+     * If the cache is over its max size, removes the least recently used files (until it's at 3/4 of the max size).
+     */
+    public void prune() {
+        if (!pruning.compareAndSet(false, true)) {
+            return; // Already being pruned in another thread.
+        }
+        try {
+            File[] subDirs = dir.listFiles();
+            if (subDirs == null) {
+                return;
+            }
+            List<File> cacheFiles = new ArrayList<File>();
+            final Map<File, Long> lastModified = new HashMap<File, Long>();
+            long totalSize = 0;
+            for (File subDir : subDirs) {
+                File[] files = subDir.listFiles();
+                if (files == null) {
+                    continue;
+                }
+                for (File f : files) {
+                    if (f.getName().endsWith(FILE_EXTENSION)) {
+                        cacheFiles.add(f);
+                        lastModified.put(f, f.lastModified());
+                        totalSize += f.length();
+                    }
+                }
+            }
+            if (totalSize <= maxSize) {
+                return;
+            }
+            cacheFiles.sort(new Comparator<File>() {
+
+                @Override
+                public int compare(File o1, File o2) {
+                    return Long.compare(lastModified.get(o1), lastModified.get(o2));
+                }
+            });
+            long targetSize = maxSize / 4 * 3;
+            for (File f : cacheFiles) {
+                if (totalSize <= targetSize) {
+                    break;
+                }
+                long size = f.length();
+                if (f.delete()) {
+                    totalSize -= size;
+                }
+            }
+        } finally {
+            pruning.set(false);
+        }
+    }
+
+    /**
+     * Removes all the contents of the cache.
+     */
+    public void clear() {
+        try {
+            FileUtils.deleteDirectoryTree(dir);
+        } catch (IOException e) {
+            Log.log(e);
+        }
+    }
+}
@@ -11,6 +11,7 @@ package org.python.pydev.ast.codecompletion.shell;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
@@ -20,10 +21,16 @@ import java.net.URLEncoder;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.python.copiedfromeclipsesrc.JDTNotAvailableException;
 import org.python.pydev.ast.codecompletion.PyCodeCompletionPreferences;
@@ -33,7 +40,6 @@ import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.IToken;
 import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.PythonNatureWithoutProjectException;
-import org.python.pydev.core.concurrency.Semaphore;
 import org.python.pydev.core.docutils.PySelection;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.core.logging.DebugSettings;
@@ -44,13 +50,14 @@ import org.python.pydev.shared_core.net.SocketUtil;
 import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.python.pydev.shared_core.string.StringUtils;
 import org.python.pydev.shared_core.structure.Tuple;
-import org.python.pydev.shared_core.utils.Timer;
 
 /**
  * This is the shell that 'talks' to the python / jython process (it is intended to be subclassed so that
  * we know how to deal with each).
  *
- * Its methods are synched to prevent concurrent access.
+ * Requests are identified by an id (which the server sends back with the reply), so, many requests may be in
+ * flight at the same time: the requests are written atomically and the replies are read in a separate thread,
+ * which gives each reply to the request waiting for it.
  *
  * @author fabioz
  *
@@ -75,6 +82,13 @@ public abstract class AbstractShell {
 
     protected static final int DEBUG_SHELL = -1;
 
+    /**
+     * Time to wait for the reply to a request (if it's not received the shell is restarted in a separate thread).
+     */
+    public static final int REQUEST_TIMEOUT_MILLIS = Integer.getInteger("pydev.shell.request.timeout", 20 * 1000);
+
+    private static final String REQUEST_ID = "@@REQUEST_ID:";
+
     /**
      * Determines if we are already in a method that starts the shell
      */
@@ -88,21 +102,32 @@ public abstract class AbstractShell {
      */
     private volatile boolean isConnected = false;
 
-    private volatile boolean isInRead = false;
-
-    private volatile boolean isInWrite = false;
+    private final AtomicBoolean isInRestart = new AtomicBoolean();
 
-    private volatile boolean isInRestart = false;
+    /**
+     * Set when the shell is removed from its pool (so, it should not be restarted anymore).
+     */
+    private volatile boolean disposed = false;
 
-    private IInterpreterInfo shellInterpreter;
+    private volatile IInterpreterInfo shellInterpreter;
 
     /**
-     * Lock to know if there is someone already using this shell for some operation
+     * Lock used while starting the shell.
      */
-    private final Semaphore semaphore = new Semaphore(1);
+    private final Object startLock = new Object();
 
+    /**
+     * Lock used to write to the shell (held just while writing a request, not while waiting for its reply).
+     */
     private final Object ioLock = new Object();
 
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+
+    /**
+     * The requests written to the shell whose replies were still not read.
+     */
+    private final Map<Integer, PendingRequest> pendingRequests = new ConcurrentHashMap<Integer, PendingRequest>();
+
     private static void dbg(String string, int priority) {
         if (priority <= DEBUG_SHELL) {
             System.out.println(string);
@@ -128,7 +153,7 @@ public abstract class AbstractShell {
     /**
      * We should read this socket.
      */
-    private Socket socket;
+    private volatile Socket socket;
 
     /**
      * Python file that works as the server.
@@ -251,7 +276,7 @@ public abstract class AbstractShell {
             JDTNotAvailableException, CoreException, MisconfigurationException {
 
         int milisSleep = AbstractShell.DEFAULT_SLEEP_BETWEEN_ATTEMPTS;
-        synchronized (ioLock) {
+        synchronized (startLock) {
 
             this.shellInterpreter = interpreter;
             if (inStart || isConnected) {
@@ -325,8 +350,9 @@ public abstract class AbstractShell {
                                 }
                                 if (accept != null) {
                                     socket = accept.socket();
-                                    dbg("socketToRead.setSoTimeout(8000) ", 1);
-                                    socket.setSoTimeout(8 * 1000); //let's give it a higher timeout
+                                    //no timeout: replies are read in a separate thread (the timeout is checked for
+                                    //each request).
+                                    socket.setSoTimeout(0);
                                     connected = true;
                                     dbg("connected! ", 1);
                                 } else {
@@ -394,12 +420,12 @@ public abstract class AbstractShell {
             }
 
             //if it got here, everything went ok (otherwise we would have gotten an exception).
-            isConnected = true;
-        }
-        synchronized (lockLastPythonPath) {
-            lastPythonPath = null;
+            synchronized (ioLock) {
+                lastPythonPath = null;
+                isConnected = true;
+            }
+            startReader(socket);
         }
-
     }
 
     /**
@@ -416,138 +442,129 @@ public abstract class AbstractShell {
             throws IOException, JDTNotAvailableException, MisconfigurationException;
 
     /**
-     * @param operation
-     * @return
-     * @throws IOException
+     * Starts the thread which reads the replies from the shell (until the given socket is closed).
      */
-    private FastStringBuffer read(IProgressMonitor monitor) throws IOException {
-        synchronized (ioLock) {
-
-            if (finishedForGood) {
-                throw new RuntimeException(
-                        "Shells are already finished for good, so, it is an invalid state to try to read from it.");
-            }
-            if (inStart) {
-                throw new RuntimeException(
-                        "The shell is still not completely started, so, it is an invalid state to try to read from it.");
-            }
-            if (!isConnected) {
-                throw new RuntimeException(
-                        "The shell is still not connected, so, it is an invalid state to try to read from it.");
-            }
-            if (isInRead) {
-                throw new RuntimeException(
-                        "The shell is already in read mode, so, it is an invalid state to try to read from it.");
-            }
-            if (isInWrite) {
-                throw new RuntimeException(
-                        "The shell is already in write mode, so, it is an invalid state to try to read from it.");
+    private void startReader(final Socket socketToRead) {
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                readReplies(socketToRead);
             }
+        };
+        reader.setName("PyDev shell reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
 
-            isInRead = true;
-
-            try {
-                FastStringBuffer strBuf = new FastStringBuffer(AbstractShell.BUFFER_SIZE);
-                byte[] b = new byte[AbstractShell.BUFFER_SIZE];
-                int searchFrom = 0;
-                while (true) {
-
-                    int len = this.socket.getInputStream().read(b);
-                    if (len <= 0) {
-                        break;
-                    }
-
-                    String s = new String(b, 0, len);
-                    searchFrom = strBuf.length() - 5; //-5 because that's the len of END@@
-                    if (searchFrom < 0) {
-                        searchFrom = 0;
-                    }
-                    strBuf.append(s);
-
-                    if (strBuf.indexOf("END@@", searchFrom) != -1) {
-                        break;
-                    } else {
-                        sleepALittle(10);
-                    }
+    private void readReplies(Socket socketToRead) {
+        try {
+            InputStream inputStream = socketToRead.getInputStream();
+            FastStringBuffer strBuf = new FastStringBuffer(AbstractShell.BUFFER_SIZE);
+            byte[] b = new byte[AbstractShell.BUFFER_SIZE];
+            int searchFrom = 0;
+            while (true) {
+                int len = inputStream.read(b);
+                if (len <= 0) {
+                    break;
                 }
+                strBuf.append(new String(b, 0, len));
 
-                strBuf.replaceFirst("@@COMPLETIONS", "");
-                searchFrom -= "@@COMPLETIONS".length();
+                int endIndex;
+                while ((endIndex = strBuf.indexOf("END@@", searchFrom)) != -1) {
+                    String reply = strBuf.subSequence(0, endIndex).toString();
+                    strBuf.delete(0, endIndex + "END@@".length());
+                    searchFrom = 0;
+                    onReply(reply);
+                }
+                searchFrom = strBuf.length() - 5; //-5 because that's the len of END@@
                 if (searchFrom < 0) {
                     searchFrom = 0;
                 }
+            }
+        } catch (IOException e) {
+            //the socket was closed
+        } catch (Exception e) {
+            Log.log(e);
+        }
+
+        if (this.socket == socketToRead) {
+            //the connection was not closed by us (i.e.: the process died): restart it.
+            dbg("Shell connection closed unexpectedly.", 1);
+            failPendingRequests();
+            scheduleRestart();
+        }
+    }
 
-                //remove END@@
+    /**
+     * Gives the reply received to the request waiting for it.
+     */
+    private void onReply(String reply) {
+        int id = -1;
+        if (reply.startsWith(REQUEST_ID)) {
+            int i = reply.indexOf('|');
+            if (i != -1) {
                 try {
-                    int endIndex = strBuf.indexOf("END@@", searchFrom);
-                    if (endIndex != -1) {
-                        strBuf.setCount(endIndex);
-                        return strBuf;
-                    } else {
-                        throw new RuntimeException("Couldn't find END@@ on received string.");
-                    }
-                } catch (RuntimeException e) {
-                    if (strBuf.length() > 500) {
-                        strBuf.setCount(499).append("...(continued)...");//if the string gets too big, it can crash Eclipse...
-                    }
-                    Log.log(IStatus.ERROR, ("ERROR WITH STRING:" + strBuf), e);
-                    return new FastStringBuffer();
+                    id = Integer.parseInt(reply.substring(REQUEST_ID.length(), i));
+                    reply = reply.substring(i + 1);
+                } catch (NumberFormatException e) {
+                    Log.log(e);
                 }
-            } finally {
-                isInRead = false;
             }
         }
+        PendingRequest request = pendingRequests.remove(id);
+        if (request == null) {
+            //i.e.: a request which timed out or one which nobody waits for.
+            dbg("Discarding reply to request: " + id, 1);
+            return;
+        }
+        FastStringBuffer strBuf = new FastStringBuffer(reply, 0);
+        strBuf.replaceFirst("@@COMPLETIONS", "");
+        request.setResult(strBuf);
     }
 
     /**
-     * @return s string with the contents read.
-     * @throws IOException
+     * Makes all the requests waiting for a reply finish without a result.
      */
-    private FastStringBuffer read() throws IOException {
-        FastStringBuffer r = read(null);
-        //System.out.println("RETURNING:"+URLDecoder.decode(URLDecoder.decode(r,ENCODING_UTF_8),ENCODING_UTF_8));
-        return r;
+    private void failPendingRequests() {
+        for (Iterator<PendingRequest> it = pendingRequests.values().iterator(); it.hasNext();) {
+            PendingRequest request = it.next();
+            it.remove();
+            request.setResult(null);
+        }
     }
 
     /**
-     * @param str
-     * @throws IOException
+     * Writes a request to the shell.
+     *
+     * Note: must be called with the ioLock held.
+     *
+     * @param request the request to be written (if null the reply is discarded).
      */
-    private void write(String str) throws IOException {
-        synchronized (ioLock) {
-
-            if (finishedForGood) {
-                throw new RuntimeException(
-                        "Shells are already finished for good, so, it is an invalid state to try to write to it.");
-            }
-            if (inStart) {
-                throw new RuntimeException(
-                        "The shell is still not completely started, so, it is an invalid state to try to write to it.");
-            }
-            if (!isConnected) {
-                throw new RuntimeException(
-                        "The shell is still not connected, so, it is an invalid state to try to write to it.");
-            }
-            if (isInRead) {
-                throw new RuntimeException(
-                        "The shell is already in read mode, so, it is an invalid state to try to write to it.");
-            }
-            if (isInWrite) {
-                throw new RuntimeException(
-                        "The shell is already in write mode, so, it is an invalid state to try to write to it.");
-            }
-
-            isInWrite = true;
+    private void write(PendingRequest request, String... str) throws IOException {
+        if (finishedForGood) {
+            throw new RuntimeException(
+                    "Shells are already finished for good, so, it is an invalid state to try to write to it.");
+        }
+        if (inStart) {
+            throw new RuntimeException(
+                    "The shell is still not completely started, so, it is an invalid state to try to write to it.");
+        }
+        if (!isConnected) {
+            throw new RuntimeException(
+                    "The shell is still not connected, so, it is an invalid state to try to write to it.");
+        }
 
-            //dbg("WRITING:"+str);
-            try {
-                OutputStream outputStream = this.socket.getOutputStream();
-                outputStream.write(str.getBytes());
-                outputStream.flush();
-            } finally {
-                isInWrite = false;
-            }
+        int id = nextRequestId.incrementAndGet();
+        if (request != null) {
+            request.id = id;
+            pendingRequests.put(id, request);
         }
+
+        //dbg("WRITING:"+str);
+        OutputStream outputStream = this.socket.getOutputStream();
+        outputStream.write(StringUtils.join("", REQUEST_ID, String.valueOf(id), "|", StringUtils.join("", str))
+                .getBytes());
+        outputStream.flush();
     }
 
     /**
@@ -583,10 +600,9 @@ public abstract class AbstractShell {
             } catch (Exception e) {
             }
             serverSocket = null;
-        }
-        synchronized (lockLastPythonPath) {
             lastPythonPath = null;
         }
+        failPendingRequests();
     }
 
     /**
@@ -602,10 +618,9 @@ public abstract class AbstractShell {
                 process.destroy();
                 process = null;
             }
-        }
-        synchronized (lockLastPythonPath) {
             lastPythonPath = null;
         }
+        failPendingRequests();
     }
 
     /**
@@ -628,9 +643,42 @@ public abstract class AbstractShell {
                 process = null;
             }
         }
-        synchronized (lockLastPythonPath) {
-            lastPythonPath = null;
-        }
+    }
+
+    /**
+     * Kills our sub-process and makes sure that it won't be restarted (used when the shell is removed from its pool).
+     */
+    /*default*/void dispose() {
+        disposed = true;
+        endIt();
+    }
+
+    /**
+     * @return whether the shell is connected and may receive requests.
+     */
+    /*default*/boolean isAvailable() {
+        return isConnected && !inStart && !isInRestart.get();
+    }
+
+    /**
+     * @return the number of requests written to the shell which are still waiting for a reply.
+     */
+    /*default*/int getPendingRequestsCount() {
+        return pendingRequests.size();
+    }
+
+    /**
+     * @return the pythonpath currently set in the shell (as returned by {@link #getPythonPathKey(List)}) or null.
+     */
+    /*default*/String getLastPythonPath() {
+        return lastPythonPath;
+    }
+
+    /**
+     * @return the key which identifies the given pythonpath.
+     */
+    /*default*/static String getPythonPathKey(List<String> pythonpath) {
+        return StringUtils.join("|", pythonpath.toArray(new String[pythonpath.size()]));
     }
 
     /**
@@ -638,109 +686,109 @@ public abstract class AbstractShell {
      *
      */
     private void restartShell() throws CoreException {
-        synchronized (ioLock) {
-            if (!isInRestart) {// we don't want to end up in a loop here...
-                isInRestart = true;
-                try {
-                    if (finishedForGood) {
-                        throw new RuntimeException(
-                                "Shells are already finished for good, so, it is an invalid state to try to restart a new shell.");
-                    }
+        synchronized (startLock) {
+            if (finishedForGood) {
+                throw new RuntimeException(
+                        "Shells are already finished for good, so, it is an invalid state to try to restart a new shell.");
+            }
 
-                    try {
-                        this.endIt();
-                    } catch (Exception e) {
-                    }
-                    try {
-                        this.startIt(shellInterpreter);
-                    } catch (Exception e) {
-                        Log.log(IStatus.ERROR, "ERROR restarting shell.", e);
-                    }
-                } finally {
-                    isInRestart = false;
-                }
+            try {
+                this.endIt();
+            } catch (Exception e) {
+            }
+            try {
+                this.startIt(shellInterpreter);
+            } catch (Exception e) {
+                Log.log(IStatus.ERROR, "ERROR restarting shell.", e);
             }
         }
     }
 
-    @SuppressWarnings("unused")
-    private AutoCloseable acquire(String msg) {
-        final Timer timer = new Timer();
-        semaphore.acquire();
-        if (DEBUG_SHELL >= 1) {
-            String name = Thread.currentThread().getName();
-            msg += " (" + name + ")";
-            timer.printDiff("Time to aqcuire: " + msg);
+    /**
+     * Restarts the shell in a separate thread (so that the callers don't need to wait for the new process).
+     */
+    private void scheduleRestart() {
+        if (finishedForGood || disposed || inStart || shellInterpreter == null) {
+            return;
         }
-        final String s = msg;
-        return new AutoCloseable() {
-
+        if (!isInRestart.compareAndSet(false, true)) {
+            return; // we don't want to end up in a loop here...
+        }
+        Thread thread = new Thread() {
             @Override
-            public void close() throws Exception {
-                if (DEBUG_SHELL >= 1) {
-                    timer.printDiff("-- Time to execute: " + s);
+            public void run() {
+                try {
+                    restartShell();
+                } catch (Exception e) {
+                    Log.log(e);
+                } finally {
+                    isInRestart.set(false);
                 }
-                semaphore.release();
             }
         };
+        thread.setName("PyDev shell restart");
+        thread.setDaemon(true);
+        thread.start();
     }
 
-    private FastStringBuffer writeAndGetResults(String... str) throws CoreException {
-
+    /**
+     * Writes a request to the shell and waits for its reply.
+     *
+     * @param pythonpath if not null, the pythonpath to be set in the shell before handling the request (the change
+     * is written along with the request, so, another request may not change it in the meanwhile).
+     *
+     * @return the reply or null if it was not received (in which case the shell is restarted in a separate thread).
+     */
+    private FastStringBuffer writeAndGetResults(List<String> pythonpath, String... str) throws CoreException {
+        PendingRequest request = new PendingRequest();
         try {
             synchronized (ioLock) {
-                this.write(StringUtils.join("", str));
-                FastStringBuffer read = this.read();
-                return read;
+                if (pythonpath != null) {
+                    if (finishedForGood) {
+                        throw new RuntimeException(
+                                "Shells are already finished for good, so, it is an invalid state to try to change its dir.");
+                    }
+                    String pythonpathStr = getPythonPathKey(pythonpath);
+                    if (!pythonpathStr.equals(lastPythonPath)) {
+                        //the server handles the requests in order, so, there's no need to wait for this reply.
+                        write(null, "@@CHANGE_PYTHONPATH:", URLEncoder.encode(pythonpathStr, ENCODING_UTF_8),
+                                "\nEND@@");
+                        lastPythonPath = pythonpathStr;
+                    }
+                }
+                this.write(request, str);
+            }
+
+            FastStringBuffer read = request.waitResult(REQUEST_TIMEOUT_MILLIS);
+            if (read == null) {
+                throw new SocketTimeoutException(request.isDone() ? "Shell connection closed."
+                        : "Timeout waiting for reply (" + REQUEST_TIMEOUT_MILLIS + " millis).");
             }
+            return read;
 
         } catch (Exception e) {
+            pendingRequests.remove(request.id);
             String message = "ERROR reading shell. Message sent: " + StringUtils.join("", str) + "\n";
-            if (process != null) {
-                message += "\n" + process.getProcessLog();
+            ProcessCreationInfo p = process;
+            if (p != null) {
+                message += "\n" + p.getProcessLog();
             }
             Log.log(IStatus.ERROR, message, e);
 
-            restartShell();
+            scheduleRestart();
             return null;
         } finally {
-            if (process != null) {
+            ProcessCreationInfo p = process;
+            if (p != null) {
                 //Clear the contents from the output from time to time
                 //Note: it's important having a thread reading the stdout and stderr, otherwise the
                 //python client could become halted and would need to be restarted.
-                process.clearOutput();
+                p.clearOutput();
             }
         }
     }
 
-    private final Object lockLastPythonPath = new Object();
-    private String lastPythonPath = null;
-
-    /**
-     * @param pythonpath
-     */
-    private void internalChangePythonPath(List<String> pythonpath) throws Exception {
-        if (finishedForGood) {
-            throw new RuntimeException(
-                    "Shells are already finished for good, so, it is an invalid state to try to change its dir.");
-        }
-        String pythonpathStr;
-
-        synchronized (lockLastPythonPath) {
-            pythonpathStr = StringUtils.join("|", pythonpath.toArray(new String[pythonpath.size()]));
-
-            if (lastPythonPath != null && lastPythonPath.equals(pythonpathStr)) {
-                return;
-            }
-            lastPythonPath = pythonpathStr;
-        }
-        try {
-            writeAndGetResults("@@CHANGE_PYTHONPATH:", URLEncoder.encode(pythonpathStr, ENCODING_UTF_8), "\nEND@@");
-        } catch (Exception e) {
-            Log.log("Error changing the pythonpath to: " + StringUtils.join("\n", pythonpath), e);
-            throw e;
-        }
-    }
+    private volatile String lastPythonPath = null;
 
     /**
      * @return list with tuples: new String[]{token, description}
@@ -748,14 +796,9 @@ public abstract class AbstractShell {
      */
     public Tuple<String, List<String[]>> getImportCompletions(String str, List<String> pythonpath)
             throws Exception {
-        FastStringBuffer read = null;
-
         str = URLEncoder.encode(str, ENCODING_UTF_8);
 
-        try (AutoCloseable permit = acquire(StringUtils.join("", "getImportCompletions: ", str))) {
-            internalChangePythonPath(pythonpath);
-            read = this.writeAndGetResults("@@IMPORTS:", str, "\nEND@@");
-        }
+        FastStringBuffer read = this.writeAndGetResults(pythonpath, "@@IMPORTS:", str, "\nEND@@");
         return ShellConvert.convertStringToCompletions(read);
     }
 
@@ -767,15 +810,10 @@ public abstract class AbstractShell {
      */
     public Tuple<String[], int[]> getLineCol(String moduleName, String token, List<String> pythonpath)
             throws Exception {
-        FastStringBuffer read = null;
-
         String str = moduleName + "." + token;
         str = URLEncoder.encode(str, ENCODING_UTF_8);
 
-        try (AutoCloseable permit = acquire("getLineCol")) {
-            internalChangePythonPath(pythonpath);
-            read = this.writeAndGetResults("@@SEARCH", str, "\nEND@@");
-        }
+        FastStringBuffer read = this.writeAndGetResults(pythonpath, "@@SEARCH", str, "\nEND@@");
 
         Tuple<String, List<String[]>> theCompletions = ShellConvert.convertStringToCompletions(read);
 
@@ -802,7 +840,6 @@ public abstract class AbstractShell {
     public List<IToken> getJediCompletions(File editorFile, PySelection ps, String charset,
             List<String> pythonpath) throws Exception {
 
-        FastStringBuffer read = null;
         String str = StringUtils.join(
                 "|",
                 new String[] { String.valueOf(ps.getCursorLine()), String.valueOf(ps.getCursorColumn()),
@@ -811,10 +848,7 @@ public abstract class AbstractShell {
 
         str = URLEncoder.encode(str, ENCODING_UTF_8);
 
-        try (AutoCloseable permit = acquire("getJediCompletions")) {
-            internalChangePythonPath(pythonpath);
-            read = this.writeAndGetResults("@@MSG_JEDI:", str, "\nEND@@");
-        }
+        FastStringBuffer read = this.writeAndGetResults(pythonpath, "@@MSG_JEDI:", str, "\nEND@@");
 
         Tuple<String, List<String[]>> theCompletions = ShellConvert.convertStringToCompletions(read);
         ArrayList<IToken> lst = new ArrayList<>(theCompletions.o2.size());
@@ -825,4 +859,33 @@ public abstract class AbstractShell {
         return lst;
     }
 
+    /**
+     * A request written to the shell (waiting for its reply).
+     */
+    private static final class PendingRequest {
+
+        private volatile int id = -1;
+
+        private volatile FastStringBuffer result;
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private void setResult(FastStringBuffer result) {
+            this.result = result;
+            done.countDown();
+        }
+
+        private boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        /**
+         * @return the reply or null if it was not received in the given time (or if the shell was closed).
+         */
+        private FastStringBuffer waitResult(long timeoutMillis) throws InterruptedException {
+            done.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            return result;
+        }
+    }
+
 }
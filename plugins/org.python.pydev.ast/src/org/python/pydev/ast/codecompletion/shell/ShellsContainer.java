@@ -9,6 +9,7 @@ import org.eclipse.core.runtime.CoreException;
 import org.python.copiedfromeclipsesrc.JDTNotAvailableException;
 import org.python.pydev.ast.codecompletion.revisited.ModulesManager;
 import org.python.pydev.ast.interpreter_managers.InterpreterManagersAPI;
+import org.python.pydev.core.ICodeCompletionASTManager;
 import org.python.pydev.core.IInterpreterInfo;
 import org.python.pydev.core.IInterpreterManager;
 import org.python.pydev.core.IPythonNature;
@@ -27,11 +28,19 @@ public class ShellsContainer {
      *
      * and then we have the id with the shell type that points to the actual shell
      *
+     * Note: only the shells explicitly registered with {@link #putServerShell(IPythonNature, int, AbstractShell)} are
+     * kept here (otherwise the shells come from the pool related to the interpreter).
+     *
      * @see #MAIN_THREAD_SHELL
      * @see #OTHER_THREADS_SHELL
      */
     private static Map<String, Map<Integer, AbstractShell>> shells = new HashMap<String, Map<Integer, AbstractShell>>();
 
+    /**
+     * The pool of shells for each interpreter (accessed with the shells lock).
+     */
+    private static Map<String, ShellsPool> pools = new HashMap<String, ShellsPool>();
+
     /**
      * simple stop of a shell (it may be later restarted)
      */
@@ -48,6 +57,11 @@ public class ShellsContainer {
                 }
             }
             typeToShell.remove(id); //there's no exception if it was not there in the 1st place...
+
+            ShellsPool pool = pools.remove(interpreter.getExecutableOrJar());
+            if (pool != null) {
+                pool.dispose();
+            }
         }
     }
 
@@ -79,6 +93,12 @@ public class ShellsContainer {
                 }
             }
             shells.clear();
+
+            AbstractShell.finishedForGood = true;
+            for (ShellsPool pool : pools.values()) {
+                pool.shutdown();
+            }
+            pools.clear();
         }
     }
 
@@ -96,6 +116,12 @@ public class ShellsContainer {
                             AbstractShell.class);
                 }
 
+                //The pools are created again (and warmed up) when needed.
+                for (ShellsPool pool : pools.values()) {
+                    pool.dispose();
+                }
+                pools.clear();
+
                 for (Map<Integer, AbstractShell> val : shells.values()) {
                     for (AbstractShell val2 : val.values()) {
                         if (val2 != null) {
@@ -164,7 +190,25 @@ public class ShellsContainer {
 
     public static AbstractShell getServerShell(IPythonNature nature, int id) throws IOException,
             JDTNotAvailableException, CoreException, MisconfigurationException, PythonNatureWithoutProjectException {
-        return getServerShell(nature.getProjectInterpreter(), nature.getInterpreterType(), id);
+        return getServerShell(nature.getProjectInterpreter(), nature.getInterpreterType(), id,
+                getPythonPathKey(nature));
+    }
+
+    /**
+     * @return the key for the pythonpath which will be used in the requests from the given nature (or null if it
+     * can't be gotten).
+     */
+    private static String getPythonPathKey(IPythonNature nature) {
+        try {
+            ICodeCompletionASTManager astManager = nature.getAstManager();
+            if (astManager != null) {
+                return AbstractShell.getPythonPathKey(astManager.getModulesManager().getCompletePythonPath(
+                        nature.getProjectInterpreter(), nature.getRelatedInterpreterManager()));
+            }
+        } catch (Exception e) {
+            //ignore (the pythonpath is just used to choose the shell in the pool).
+        }
+        return null;
     }
 
     /**
@@ -178,15 +222,18 @@ public class ShellsContainer {
      * @see #MAIN_THREAD_SHELL
      * @see #OTHER_THREADS_SHELL
      *
-     * @return the shell with the given id related to some nature
+     * @param pythonpathKey the pythonpath to be used in the requests (used to choose the shell from the pool).
+     *
+     * @return the shell registered with the given id or a shell from the pool related to the interpreter
      *
      * @throws CoreException
      * @throws IOException
      * @throws MisconfigurationException
      */
-    private static AbstractShell getServerShell(IInterpreterInfo interpreter, int relatedTo, int id)
-            throws IOException, JDTNotAvailableException, CoreException, MisconfigurationException {
-        AbstractShell pythonShell = null;
+    private static AbstractShell getServerShell(IInterpreterInfo interpreter, int relatedTo, int id,
+            String pythonpathKey) throws IOException, JDTNotAvailableException, CoreException,
+            MisconfigurationException {
+        ShellsPool pool;
         synchronized (shells) {
             if (DebugSettings.DEBUG_CODE_COMPLETION) {
                 org.python.pydev.shared_core.log.ToLogFile.toLogFile("Synchronizing on shells...", AbstractShell.class);
@@ -210,41 +257,37 @@ public class ShellsContainer {
                         AbstractShell.class);
             }
             Map<Integer, AbstractShell> typeToShell = getTypeToShellFromId(interpreter);
-            pythonShell = typeToShell.get(id);
-
-            if (pythonShell == null) {
-                if (DebugSettings.DEBUG_CODE_COMPLETION) {
-                    org.python.pydev.shared_core.log.ToLogFile.toLogFile("pythonShell == null", AbstractShell.class);
-                }
-                if (relatedTo == IPythonNature.INTERPRETER_TYPE_PYTHON) {
-                    pythonShell = new PythonShell();
-
-                } else if (relatedTo == IPythonNature.INTERPRETER_TYPE_JYTHON) {
-                    pythonShell = new JythonShell();
-
-                } else if (relatedTo == IPythonNature.INTERPRETER_TYPE_IRONPYTHON) {
-                    pythonShell = new IronpythonShell();
+            AbstractShell pythonShell = typeToShell.get(id);
+            if (pythonShell != null) {
+                return pythonShell;
+            }
 
-                } else {
-                    throw new RuntimeException("unknown related id");
-                }
+            pool = pools.get(interpreter.getExecutableOrJar());
+            if (pool == null) {
                 if (DebugSettings.DEBUG_CODE_COMPLETION) {
-                    org.python.pydev.shared_core.log.ToLogFile.toLogFile("pythonShell.startIt()", AbstractShell.class);
-                    org.python.pydev.shared_core.log.ToLogFile.addLogLevel();
+                    org.python.pydev.shared_core.log.ToLogFile.toLogFile("Creating pool with " + ShellsPool.POOL_SIZE
+                            + " shells", AbstractShell.class);
                 }
-                pythonShell.startIt(interpreter); //first start it
-                if (DebugSettings.DEBUG_CODE_COMPLETION) {
-                    org.python.pydev.shared_core.log.ToLogFile.remLogLevel();
-                    org.python.pydev.shared_core.log.ToLogFile.toLogFile("Finished pythonShell.startIt()",
-                            AbstractShell.class);
-                }
-
-                //then make it accessible
-                typeToShell.put(id, pythonShell);
+                pool = new ShellsPool(interpreter, relatedTo, ShellsPool.POOL_SIZE);
+                pools.put(interpreter.getExecutableOrJar(), pool);
+                pool.warmUp();
             }
+        }
 
+        //Note: if a shell must be started, it's done out of the lock (so that other interpreters aren't blocked).
+        if (DebugSettings.DEBUG_CODE_COMPLETION) {
+            org.python.pydev.shared_core.log.ToLogFile.toLogFile("pool.getShell()", AbstractShell.class);
+            org.python.pydev.shared_core.log.ToLogFile.addLogLevel();
+        }
+        try {
+            return pool.getShell(pythonpathKey);
+        } finally {
+            if (DebugSettings.DEBUG_CODE_COMPLETION) {
+                org.python.pydev.shared_core.log.ToLogFile.remLogLevel();
+                org.python.pydev.shared_core.log.ToLogFile.toLogFile("Finished pool.getShell()",
+                        AbstractShell.class);
+            }
         }
-        return pythonShell;
     }
 
 }
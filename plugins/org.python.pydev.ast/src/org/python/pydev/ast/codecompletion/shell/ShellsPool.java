@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.shell;
+
+import java.io.IOException;
+
+import org.eclipse.core.runtime.CoreException;
+import org.python.copiedfromeclipsesrc.JDTNotAvailableException;
+import org.python.pydev.core.IInterpreterInfo;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.MisconfigurationException;
+import org.python.pydev.core.log.Log;
+
+/**
+ * The shells related to an interpreter.
+ *
+ * The first shell is started when it's first needed and the others are started in a separate thread. Requests are
+ * routed to the shell which already has the same pythonpath (so that it doesn't need to be changed, which also
+ * clears the caches in the shell) or to the one with less requests in flight. Shells which are being restarted
+ * (i.e.: after a timeout) are skipped.
+ */
+/*default*/final class ShellsPool {
+
+    /**
+     * Number of shells for each interpreter.
+     */
+    public static final int POOL_SIZE = Math.max(1, Integer.getInteger("pydev.shells.pool.size", 2));
+
+    private final IInterpreterInfo interpreter;
+
+    private final AbstractShell[] shells;
+
+    /*default*/ShellsPool(IInterpreterInfo interpreter, int relatedTo, int size) throws IOException,
+            CoreException {
+        this.interpreter = interpreter;
+        this.shells = new AbstractShell[Math.max(1, size)];
+        for (int i = 0; i < shells.length; i++) {
+            shells[i] = createShell(relatedTo);
+        }
+    }
+
+    private static AbstractShell createShell(int relatedTo) throws IOException, CoreException {
+        if (relatedTo == IPythonNature.INTERPRETER_TYPE_PYTHON) {
+            return new PythonShell();
+
+        } else if (relatedTo == IPythonNature.INTERPRETER_TYPE_JYTHON) {
+            return new JythonShell();
+
+        } else if (relatedTo == IPythonNature.INTERPRETER_TYPE_IRONPYTHON) {
+            return new IronpythonShell();
+
+        }
+        throw new RuntimeException("unknown related id");
+    }
+
+    /**
+     * Starts all the shells but the first in a separate thread (the first is started when a shell is requested).
+     */
+    /*default*/void warmUp() {
+        if (shells.length < 2) {
+            return;
+        }
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 1; i < shells.length && !AbstractShell.finishedForGood; i++) {
+                    try {
+                        shells[i].startIt(interpreter);
+                    } catch (Exception e) {
+                        Log.log(e);
+                    }
+                }
+            }
+        };
+        thread.setName("PyDev shells warm up");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY + 1);
+        thread.start();
+    }
+
+    /**
+     * @param pythonpathKey the pythonpath which will be used in the requests (may be null if unknown).
+     * @return the shell which should handle the requests (started if no shell is available).
+     */
+    /*default*/AbstractShell getShell(String pythonpathKey) throws IOException, JDTNotAvailableException,
+            CoreException, MisconfigurationException {
+        AbstractShell shell = selectShell(shells, pythonpathKey);
+        if (shell == null) {
+            //No shell available: start the first one (if it's being started or restarted this waits for it).
+            shell = shells[0];
+            shell.startIt(interpreter);
+        }
+        return shell;
+    }
+
+    /**
+     * @return the available shell with the same pythonpath and less requests in flight (a shell without requests
+     * is preferred over one with the same pythonpath) or null if no shell is available.
+     */
+    /*default*/static AbstractShell selectShell(AbstractShell[] shells, String pythonpathKey) {
+        AbstractShell best = null;
+        int bestCost = Integer.MAX_VALUE;
+        for (AbstractShell shell : shells) {
+            if (!shell.isAvailable()) {
+                continue;
+            }
+            int cost = shell.getPendingRequestsCount() * 2;
+            if (pythonpathKey == null || !pythonpathKey.equals(shell.getLastPythonPath())) {
+                cost += 1;
+            }
+            if (cost < bestCost) {
+                best = shell;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    /*default*/AbstractShell[] getShells() {
+        return shells;
+    }
+
+    /**
+     * Ends all the shells (they won't be restarted).
+     */
+    /*default*/void dispose() {
+        for (AbstractShell shell : shells) {
+            try {
+                shell.dispose();
+            } catch (Exception e) {
+                // ignore... we are ending it anyway...
+            }
+        }
+    }
+
+    /**
+     * Destroys the processes of all the shells (intended for shutdowns).
+     */
+    /*default*/void shutdown() {
+        for (AbstractShell shell : shells) {
+            try {
+                shell.shutdown();
+            } catch (Exception e) {
+                Log.log(e); //let's log it... this should not happen
+            }
+        }
+    }
+}
@@ -93,6 +93,7 @@ import pydevconsole
 from _pydevd_bundle import pydevd_vars
 import pydevd_tracing
 from _pydevd_bundle import pydevd_xml
+from _pydevd_bundle import pydevd_resolver
 from _pydevd_bundle import pydevd_vm_type
 from pydevd_file_utils import get_abs_path_real_path_and_base_from_frame, NORM_PATHS_AND_BASE_CONTAINER
 import pydevd_file_utils
@@ -136,7 +137,7 @@ from _pydevd_bundle.pydevd_comm_constants import (
     CMD_SHOW_RETURN_VALUES, CMD_INPUT_REQUESTED, CMD_GET_DESCRIPTION, CMD_PROCESS_CREATED,
     CMD_SHOW_CYTHON_WARNING, CMD_LOAD_FULL_VALUE, CMD_GET_THREAD_STACK, CMD_THREAD_DUMP_TO_STDERR,
     CMD_STOP_ON_START, CMD_GET_EXCEPTION_DETAILS, CMD_PYDEVD_JSON_CONFIG,
-    CMD_THREAD_SUSPEND_SINGLE_NOTIFICATION, CMD_THREAD_RESUME_SINGLE_NOTIFICATION,
+    CMD_THREAD_SUSPEND_SINGLE_NOTIFICATION, CMD_THREAD_RESUME_SINGLE_NOTIFICATION, CMD_GET_VARIABLE_PAGE,
     CMD_REDIRECT_OUTPUT, CMD_GET_NEXT_STATEMENT_TARGETS, CMD_SET_PROJECT_ROOTS, CMD_VERSION,
     CMD_RETURN, CMD_SET_PROTOCOL, CMD_ERROR,)
 MAX_IO_MSG_SIZE = 1000  #if the io is too big, we'll not send all (could make the debugger too non-responsive)
@@ -809,6 +810,12 @@ class NetCommandFactory:
         except Exception:
             return self.make_error_message(seq, get_exception_traceback_str())
 
+    def make_get_variable_page_message(self, seq, payload):
+        try:
+            return NetCommand(CMD_GET_VARIABLE_PAGE, seq, payload)
+        except Exception:
+            return self.make_error_message(seq, get_exception_traceback_str())
+
 
     def make_get_array_message(self, seq, payload):
         try:
@@ -1194,6 +1201,41 @@ class InternalGetVariable(InternalThreadCommand):
             dbg.writer.add_command(cmd)
 
 
+#=======================================================================================================================
+# InternalGetVariablePage
+#=======================================================================================================================
+class InternalGetVariablePage(InternalThreadCommand):
+    """ gets the items of a container variable in [offset, offset + count) """
+    def __init__(self, seq, offset, count, thread_id, frame_id, scope, attrs):
+        self.sequence = seq
+        self.offset = int(offset)
+        self.count = int(count)
+        self.thread_id = thread_id
+        self.frame_id = frame_id
+        self.scope = scope
+        self.attributes = attrs
+
+    def do_it(self, dbg):
+        try:
+            var = pydevd_vars.getVariable(self.thread_id, self.frame_id, self.scope, self.attributes)
+            _type, _typeName, resolver = pydevd_xml.get_type(var)
+            items, length, has_more = pydevd_resolver.get_page(resolver, var, self.offset, self.count)
+
+            xml = StringIO.StringIO()
+            xml.write('<xml offset="%s" len="%s" hasMore="%s">' % (self.offset, length, has_more))
+            for k, val in items:
+                evaluate_full_value = pydevd_xml.should_evaluate_full_value(val)
+                xml.write(pydevd_xml.var_to_xml(val, k, evaluate_full_value=evaluate_full_value))
+            xml.write("</xml>")
+            cmd = dbg.cmd_factory.make_get_variable_page_message(self.sequence, xml.getvalue())
+            xml.close()
+            dbg.writer.add_command(cmd)
+        except Exception:
+            cmd = dbg.cmd_factory.make_error_message(
+                self.sequence, "Error resolving variables page %s" % (get_exception_traceback_str(),))
+            dbg.writer.add_command(cmd)
+
+
 #=======================================================================================================================
 # InternalGetArray
 #=======================================================================================================================
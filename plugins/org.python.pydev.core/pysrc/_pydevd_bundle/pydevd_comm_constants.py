@@ -75,6 +75,9 @@ CMD_PYDEVD_JSON_CONFIG = 156
 CMD_THREAD_SUSPEND_SINGLE_NOTIFICATION = 157
 CMD_THREAD_RESUME_SINGLE_NOTIFICATION = 158
 
+# Gets the items of a container variable in [offset, offset + count) (used to show huge containers in pages).
+CMD_GET_VARIABLE_PAGE = 159
+
 CMD_REDIRECT_OUTPUT = 200
 CMD_GET_NEXT_STATEMENT_TARGETS = 201
 CMD_SET_PROJECT_ROOTS = 202
@@ -145,6 +148,7 @@ ID_TO_MEANING = {
     '156': 'CMD_PYDEVD_JSON_CONFIG',
     '157': 'CMD_THREAD_SUSPEND_SINGLE_NOTIFICATION',
     '158': 'CMD_THREAD_RESUME_SINGLE_NOTIFICATION',
+    '159': 'CMD_GET_VARIABLE_PAGE',
 
     '200': 'CMD_REDIRECT_OUTPUT',
     '201': 'CMD_GET_NEXT_STATEMENT_TARGETS',
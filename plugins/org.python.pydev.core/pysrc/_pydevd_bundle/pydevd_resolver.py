@@ -2,6 +2,7 @@ try:
     import StringIO
 except:
     import io as StringIO
+import itertools
 import traceback
 from os.path import basename
 
@@ -242,6 +243,12 @@ class DictResolver:
         ret.update(additional_fields)
         return ret
 
+    def get_page(self, dict, offset, count):
+        ret = []
+        for key, val in itertools.islice(dict_iter_items(dict), offset, offset + count):
+            ret.append(('%s (%s)' % (self.key_to_str(key), id(key)), val))
+        return ret
+
 
 #=======================================================================================================================
 # TupleResolver
@@ -281,6 +288,13 @@ class TupleResolver: #to enumerate tuples and lists
         d.update(additional_fields)
         return d
 
+    def get_page(self, var, offset, count):
+        format_str = '%0' + str(int(len(str(len(var))))) + 'd'
+        try:
+            page = var[offset:offset + count]
+        except:
+            page = itertools.islice(var, offset, offset + count)  # i.e.: deque
+        return [(format_str % i, item) for i, item in enumerate(page, offset)]
 
 
 #=======================================================================================================================
@@ -324,6 +338,9 @@ class SetResolver:
         d.update(additional_fields)
         return d
 
+    def get_page(self, var, offset, count):
+        return [(str(id(item)), item) for item in itertools.islice(var, offset, offset + count)]
+
 
 #=======================================================================================================================
 # InstanceResolver
@@ -503,3 +520,27 @@ djangoFormResolver = DjangoFormResolver()
 dequeResolver = DequeResolver()
 orderedDictResolver = OrderedDictResolver()
 frameResolver = FrameResolver()
+
+
+def get_page(resolver, var, offset, count):
+    '''
+    :return tuple(list(tuple(str, object)), int, bool):
+        the (name, value) of the items of the container in [offset, offset + count), the number of items in the
+        container and whether there are items after the ones returned.
+
+    Note: the names are the same ones used in resolver.get_dictionary(var) (so, each item may be resolved later on
+    with resolver.resolve(var, name)).
+
+    Containers whose resolver doesn't have a get_page (i.e.: instances) are paged over the sorted names of
+    resolver.get_dictionary(var).
+    '''
+    if hasattr(resolver, 'get_page'):
+        length = len(var)
+        items = resolver.get_page(var, offset, count)
+    else:
+        from _pydevd_bundle.pydevd_utils import compare_object_attrs_key
+        d = resolver.get_dictionary(var)
+        keys = sorted(dict_keys(d), key=compare_object_attrs_key)
+        length = len(keys)
+        items = [(key, d[key]) for key in keys[offset:offset + count]]
+    return items, length, offset + len(items) < length
@@ -91,6 +91,7 @@ MSG_PYTHONPATH = '@@PYTHONPATH_END@@'
 MSG_CHANGE_PYTHONPATH = '@@CHANGE_PYTHONPATH:'
 MSG_JEDI = '@@MSG_JEDI:'
 MSG_SEARCH = '@@SEARCH'
+MSG_REQUEST_ID = '@@REQUEST_ID:'
 
 BUFFER_SIZE = 1024
 
@@ -184,6 +185,7 @@ class CompletionServer:
         self.socket = None  # socket to send messages.
         self.exit_process_on_kill = True
         self.processor = Processor()
+        self.request_id = None
 
 
     def connect_to_server(self):
@@ -227,6 +229,10 @@ class CompletionServer:
 
 
     def send(self, msg):
+        if self.request_id is not None:
+            # The reply is identified by the id of the request (so that the client may have many requests in flight).
+            msg = '%s%s|%s' % (MSG_REQUEST_ID, self.request_id, msg)
+
         if not hasattr(self.socket, 'sendall'):
             #Older versions (jython 2.1)
             self.emulated_sendall(msg)
@@ -250,17 +256,28 @@ class CompletionServer:
             dbg(SERVER_NAME + ' Connected to java server', INFO1)
 
 
+            # Note: the client may send many requests without waiting for the replies, so, the requests are
+            # handled one at a time (in the order they were received).
+            buf = ''
             while not self.ended:
-                data = ''
-
-                while data.find(MSG_END) == -1:
+                while buf.find(MSG_END) == -1:
                     received = self.socket.recv(BUFFER_SIZE)
                     if len(received) == 0:
                         raise Exit()  # ok, connection ended
                     if IS_PYTHON_3_ONWARDS:
-                        data = data + received.decode('utf-8')
+                        buf = buf + received.decode('utf-8')
                     else:
-                        data = data + received
+                        buf = buf + received
+
+                i = buf.find(MSG_END) + len(MSG_END)
+                data = buf[:i]
+                buf = buf[i:]
+
+                self.request_id = None
+                if data.startswith(MSG_REQUEST_ID):
+                    i = data.find('|')
+                    self.request_id = data[len(MSG_REQUEST_ID):i]
+                    data = data[i + 1:]
 
                 try:
                     try:
@@ -168,6 +168,33 @@ class TestCPython(unittest.TestCase):
             except:
                 pass
 
+    def test_pipelined_requests(self):
+        t, socket = self.create_connections()
+        self.socket = socket
+
+        try:
+            # Many requests may be sent without waiting for the replies (which are identified by the request id).
+            send(socket, '@@REQUEST_ID:1|@@IMPORTS:%s\nEND@@@@REQUEST_ID:2|@@SEARCH%s\nEND@@' % (
+                quote_plus('%s.list' % BUILTIN_MOD), quote_plus('inspect.ismodule')))
+            msg = ''
+            while msg.count('END@@') < 2:
+                m = socket.recv(1024 * 4)
+                if IS_PYTHON_3_ONWARDS:
+                    m = m.decode('utf-8')
+                msg += m
+
+            first, second = msg.split('END@@')[:2]
+            self.assertTrue(first.startswith('@@REQUEST_ID:1|@@COMPLETIONS('), first)
+            self.assertTrue('sort' in first, 'Could not find sort in: %s' % (first,))
+            self.assertTrue(second.startswith('@@REQUEST_ID:2|@@COMPLETIONS('), second)
+            self.assertTrue('inspect.py' in second)
+        finally:
+            try:
+                self.send_kill_msg(socket)
+                socket.close()
+            except:
+                pass
+
     def send_kill_msg(self, socket):
         socket.send(pycompletionserver.MSG_KILL_SERVER)
 
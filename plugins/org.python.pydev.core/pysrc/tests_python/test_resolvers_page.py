@@ -0,0 +1,53 @@
+import collections
+
+from _pydevd_bundle import pydevd_resolver
+from _pydevd_bundle.pydevd_xml import get_type
+
+
+def check_page(var, offset, count, expected_len, expected_has_more):
+    _type, _type_name, resolver = get_type(var)
+    items, length, has_more = pydevd_resolver.get_page(resolver, var, offset, count)
+    assert length == expected_len
+    assert has_more == expected_has_more
+    for name, val in items:
+        # The names must be resolved as the ones from get_dictionary.
+        assert resolver.resolve(var, name) is val
+    return items
+
+
+def test_page_list():
+    items = check_page(list(range(100000)), 50000, 100, 100000, True)
+    assert len(items) == 100
+    assert items[0] == ('050000', 50000)
+    assert items[-1] == ('050099', 50099)
+
+    items = check_page(list(range(100000)), 99990, 100, 100000, False)
+    assert len(items) == 10
+
+
+def test_page_deque():
+    items = check_page(collections.deque(range(20)), 15, 10, 20, False)
+    assert [val for _name, val in items] == [15, 16, 17, 18, 19]
+
+
+def test_page_dict():
+    d = dict((str(i), i) for i in range(1000))
+    items = check_page(d, 10, 10, 1000, True)
+    assert len(items) == 10
+
+
+def test_page_set():
+    items = check_page(set(range(1000)), 990, 20, 1000, False)
+    assert len(items) == 10
+
+
+def test_page_instance():
+
+    class Obj(object):
+
+        def __init__(self):
+            self.a = 1
+            self.b = 2
+
+    items = check_page(Obj(), 0, 1, 2, True)
+    assert items == [('a', 1)]
@@ -44,5 +44,5 @@ public interface ISystemModulesManager extends IModulesManager {
 
     public abstract IInterpreterManager getInterpreterManager();
 
-    public abstract File getCompiledModuleCacheFile(String name);
+    public abstract File getCompiledModulesCacheDir();
 }
\ No newline at end of file
@@ -10,6 +10,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.python.pydev.core.FastBufferedReader;
 import org.python.pydev.core.ModulesKey;
@@ -42,6 +43,16 @@ public final class DiskCache {
      */
     private Map<CompleteIndexKey, CompleteIndexKey> keys = new HashMap<CompleteIndexKey, CompleteIndexKey>();
 
+    /**
+     * Used to generate the modification stamps (unique among all the disk caches).
+     */
+    private static final AtomicLong nextModificationStamp = new AtomicLong();
+
+    /**
+     * Changed whenever the keys are changed.
+     */
+    private volatile long modificationStamp = nextModificationStamp.incrementAndGet();
+
     /**
      * Writes this cache in a format that may later be restored with loadFrom.
      */
@@ -185,6 +196,7 @@ public final class DiskCache {
                 System.out.println("Disk cache - Removing: " + key);
             }
             keys.remove(key);
+            modificationStamp = nextModificationStamp.incrementAndGet();
         }
     }
 
@@ -197,6 +209,7 @@ public final class DiskCache {
                 System.out.println("Disk cache - Adding: " + key);
             }
             keys.put(key, key);
+            modificationStamp = nextModificationStamp.incrementAndGet();
         }
     }
 
@@ -209,6 +222,7 @@ public final class DiskCache {
                 System.out.println("Disk cache - clear");
             }
             keys.clear();
+            modificationStamp = nextModificationStamp.incrementAndGet();
         }
     }
 
@@ -221,6 +235,15 @@ public final class DiskCache {
         }
     }
 
+    /**
+     * @return a stamp which changes whenever the keys are changed (the same stamp is never
+     * reused by a different DiskCache instance). Note: if the stamp is gotten before the keys,
+     * a stamp equal to a previous one means that the keys are still the same.
+     */
+    public long getModificationStamp() {
+        return modificationStamp;
+    }
+
     public void setFolderToPersist(String folderToPersist) {
         synchronized (lock) {
             File file = new File(folderToPersist);
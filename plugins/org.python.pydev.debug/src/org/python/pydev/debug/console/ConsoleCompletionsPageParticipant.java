@@ -91,26 +91,26 @@ public class ConsoleCompletionsPageParticipant implements IConsolePageParticipan
 
             if (stackFrame != null) {
                 AbstractDebugTarget target = (AbstractDebugTarget) stackFrame.getAdapter(IDebugTarget.class);
+                GetCompletionsCommand cmd = null;
                 if (target != null) {
-                    GetCompletionsCommand cmd = new GetCompletionsCommand(target, actTok, stackFrame.getLocalsLocator()
+                    cmd = new GetCompletionsCommand(target, actTok, stackFrame.getLocalsLocator()
                             .getPyDBLocation());
                     cmd.setCompletionListener(this);
                     target.postCommand(cmd);
                 }
-                return waitForCommand();
+                return waitForCommand(cmd);
             }
             return EMPTY_COMPLETION_PROPOSALS;
         }
 
         /**
-         * Keeps in a loop for 3 seconds or until the completions are found. If no completions are found in that time,
+         * Waits for 3 seconds or until the completions are found. If no completions are found in that time,
          * returns an empty array.
          */
-        private ICompletionProposalHandle[] waitForCommand() {
-            int i = 300; //wait up to 3 seconds
-            while (--i > 0 && receivedXmlCompletions == null) {
+        private ICompletionProposalHandle[] waitForCommand(AbstractDebuggerCommand cmd) {
+            if (cmd != null) {
                 try {
-                    Thread.sleep(10); //10 millis
+                    cmd.waitForResponse(3000); //wait up to 3 seconds
                 } catch (InterruptedException e) {
                     //ignore
                 }
@@ -408,43 +408,44 @@ public abstract class AbstractDebugTarget extends AbstractDebugTargetWithTransmi
      * this routine processes it.
      * The responses to commands originating from here
      * are processed by commands themselves
+     *
+     * Note: the payload is a view over the buffer of the reader (only valid during this call), so, toString() must be
+     * used if it's kept.
      */
-    public void processCommand(String sCmdCode, String sSeqCode, String payload) {
+    public void processCommand(int cmdCode, int seqCode, CharSequence payload) {
         if (DEBUG) {
-            System.out.println("process command:" + sCmdCode +
-                    "\tseq:" + sSeqCode +
+            System.out.println("process command:" + cmdCode +
+                    "\tseq:" + seqCode +
                     "\tpayload:" + payload +
                     "\n\n");
         }
         try {
-            int cmdCode = Integer.parseInt(sCmdCode);
-
             if (cmdCode == AbstractDebuggerCommand.CMD_THREAD_CREATED) {
-                processThreadCreated(payload);
+                processThreadCreated(payload.toString());
 
             } else if (cmdCode == AbstractDebuggerCommand.CMD_THREAD_KILL) {
-                processThreadKilled(payload);
+                processThreadKilled(payload.toString());
 
             } else if (cmdCode == AbstractDebuggerCommand.CMD_THREAD_SUSPEND) {
-                processThreadSuspended(payload);
+                processThreadSuspended(payload.toString());
 
             } else if (cmdCode == AbstractDebuggerCommand.CMD_THREAD_RUN) {
-                processThreadRun(payload);
+                processThreadRun(payload.toString());
 
             } else if (cmdCode == AbstractDebuggerCommand.CMD_GET_BREAKPOINT_EXCEPTION) {
-                processBreakpointException(payload);
+                processBreakpointException(payload.toString());
 
             } else if (cmdCode == AbstractDebuggerCommand.CMD_SEND_CURR_EXCEPTION_TRACE) {
-                processCaughtExceptionTraceSent(payload);
+                processCaughtExceptionTraceSent(payload.toString());
 
             } else if (cmdCode == AbstractDebuggerCommand.CMD_SEND_CURR_EXCEPTION_TRACE_PROCEEDED) {
-                processCaughtExceptionTraceProceededSent(payload);
+                processCaughtExceptionTraceProceededSent(payload.toString());
 
             } else if (cmdCode == AbstractDebuggerCommand.CMD_INPUT_REQUESTED) {
-                if ("true".equalsIgnoreCase(payload.trim())) {
+                if (equalsIgnoreCaseTrimmed("true", payload)) {
                     this.setWaitingForInput(true);
 
-                } else if ("false".equalsIgnoreCase(payload.trim())) {
+                } else if (equalsIgnoreCaseTrimmed("false", payload)) {
                     this.setWaitingForInput(false);
 
                 } else {
@@ -459,17 +460,40 @@ public abstract class AbstractDebugTarget extends AbstractDebugTargetWithTransmi
                 // We don't really need to handle process created for now.
 
             } else {
-                PydevDebugPlugin.log(IStatus.WARNING, "Unexpected debugger command:" + sCmdCode +
-                        "\nseq:" + sSeqCode
+                PydevDebugPlugin.log(IStatus.WARNING, "Unexpected debugger command:" + cmdCode +
+                        "\nseq:" + seqCode
                         +
                         "\npayload:" + payload, null);
             }
         } catch (Exception e) {
-            PydevDebugPlugin.log(IStatus.ERROR, "Error processing: " + sCmdCode +
+            PydevDebugPlugin.log(IStatus.ERROR, "Error processing: " + cmdCode +
                     "\npayload: " + payload, e);
         }
     }
 
+    /**
+     * @return whether the payload (with leading/trailing whitespaces ignored) is equal to the expected contents.
+     */
+    private static boolean equalsIgnoreCaseTrimmed(String expected, CharSequence payload) {
+        int start = 0;
+        int end = payload.length();
+        while (start < end && Character.isWhitespace(payload.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(payload.charAt(end - 1))) {
+            end--;
+        }
+        if (end - start != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < expected.length(); i++) {
+            if (Character.toLowerCase(payload.charAt(start + i)) != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public void fireEvent(DebugEvent event) {
         DebugPlugin manager = DebugPlugin.getDefault();
         if (manager != null) {
@@ -62,9 +62,10 @@ public class AbstractDebugTargetWithTransmission extends PlatformObject {
     }
 
     /**
-     * @return next available debugger command sequence number
+     * @return next available debugger command sequence number (synchronized as commands may be created in any
+     * thread).
      */
-    public int getNextSequence() {
+    public synchronized int getNextSequence() {
         sequence += 2;
         return sequence;
     }
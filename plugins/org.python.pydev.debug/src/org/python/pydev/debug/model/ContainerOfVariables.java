@@ -5,6 +5,7 @@ import java.lang.ref.WeakReference;
 import org.eclipse.debug.core.DebugEvent;
 import org.eclipse.debug.core.DebugException;
 import org.eclipse.debug.core.model.IVariable;
+import org.python.pydev.debug.model.remote.AbstractDebuggerCommand;
 import org.python.pydev.debug.model.remote.GetVariableCommand;
 
 public class ContainerOfVariables {
@@ -13,7 +14,10 @@ public class ContainerOfVariables {
     private WeakReference<IVariablesContainerParent> parent;
     private volatile boolean onAskGetNewVars = true;
 
-    private final static Object lock = new Object();
+    /**
+     * Per container (a static lock would make the fetch of one container wait for the fetch of all the others).
+     */
+    private final Object lock = new Object();
     private volatile boolean gettingInitialVariables = false;
     private final VariablesLoader variablesLoader;
 
@@ -109,6 +113,14 @@ public class ContainerOfVariables {
         return p.getVariableCommand(target);
     }
 
+    public PyVariable[] getCommandVariables(AbstractDebuggerCommand cmd) {
+        IVariablesContainerParent p = this.parent.get();
+        if (p == null) {
+            return null;
+        }
+        return p.getCommandVariables(cmd);
+    }
+
     public IVariableLocator getGlobalLocator() {
         IVariablesContainerParent p = this.parent.get();
         if (p == null) {
@@ -1,5 +1,6 @@
 package org.python.pydev.debug.model;
 
+import org.python.pydev.debug.model.remote.AbstractDebuggerCommand;
 import org.python.pydev.debug.model.remote.GetVariableCommand;
 
 public interface IVariablesContainerParent extends IVariableLocator {
@@ -8,6 +9,11 @@ public interface IVariablesContainerParent extends IVariableLocator {
 
     GetVariableCommand getVariableCommand(AbstractDebugTarget target);
 
+    /**
+     * @return the variables for the response to the command created in getVariableCommand.
+     */
+    PyVariable[] getCommandVariables(AbstractDebuggerCommand cmd);
+
     IVariableLocator getGlobalLocator();
 
 }
@@ -370,6 +370,11 @@ public class PyStackFrame extends PlatformObject
         return getFrameCommand(target);
     }
 
+    @Override
+    public PyVariable[] getCommandVariables(AbstractDebuggerCommand cmd) {
+        return PyVariableCollection.getCommandVariables(cmd, target, this);
+    }
+
     @Override
     public String getPyDBLocation() {
         return this.frameLocator.getPyDBLocation();
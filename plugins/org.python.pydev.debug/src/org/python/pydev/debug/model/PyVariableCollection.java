@@ -15,6 +15,7 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.debug.core.DebugException;
 import org.eclipse.debug.core.model.IVariable;
 import org.python.pydev.debug.core.PydevDebugPlugin;
+import org.python.pydev.debug.model.XMLUtils.VariablesPage;
 import org.python.pydev.debug.model.remote.AbstractDebuggerCommand;
 import org.python.pydev.debug.model.remote.GetVariableCommand;
 
@@ -39,8 +40,13 @@ public class PyVariableCollection extends PyVariable
         return super.getDetailText();
     }
 
+    /**
+     * The items pydevd doesn't send for huge containers are represented by PyVariablesPage placeholders (which get
+     * those on demand).
+     */
+    @Override
     public PyVariable[] getCommandVariables(AbstractDebuggerCommand cmd) {
-        return getCommandVariables(cmd, target, this);
+        return PyVariablesPage.addPages(target, this, getCommandVariables(cmd, target, this));
     }
 
     /**
@@ -48,20 +54,28 @@ public class PyVariableCollection extends PyVariable
      */
     public static PyVariable[] getCommandVariables(AbstractDebuggerCommand cmd, AbstractDebugTarget target,
             IVariableLocator locator) {
-        PyVariable[] tempVariables = new PyVariable[0];
+        return getCommandVariablesPage(cmd, target, locator).variables;
+    }
+
+    /**
+     * @return the variables resolved for some command (with the paging information if it was a
+     * GetVariablePageCommand).
+     */
+    public static VariablesPage getCommandVariablesPage(AbstractDebuggerCommand cmd, AbstractDebugTarget target,
+            IVariableLocator locator) {
         try {
             String payload = ((GetVariableCommand) cmd).getResponse();
-            tempVariables = XMLUtils.XMLToVariables(target, locator, payload);
+            return XMLUtils.XMLToVariablesPage(target, locator, payload);
         } catch (CoreException e) {
-            tempVariables = new PyVariable[1];
+            PyVariable[] tempVariables = new PyVariable[1];
             tempVariables[0] = new PyVariable(target, "Error", "pydev ERROR", "Could not resolve variable", locator);
 
             String msg = e.getMessage(); //we don't want to show this error
             if (msg == null || (msg.indexOf("Error resolving frame:") == -1 && msg.indexOf("from thread:") == -1)) {
                 PydevDebugPlugin.log(IStatus.ERROR, "Error fetching a variable", e);
             }
+            return new VariablesPage(tempVariables, -1, false);
         }
-        return tempVariables;
     }
 
     @Override
@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.debug.core.DebugException;
+import org.eclipse.debug.core.model.IVariable;
+import org.python.pydev.debug.model.XMLUtils.VariablesPage;
+import org.python.pydev.debug.model.remote.AbstractDebuggerCommand;
+import org.python.pydev.debug.model.remote.GetVariableCommand;
+import org.python.pydev.debug.model.remote.GetVariablePageCommand;
+
+/**
+ * Placeholder for the items [start, end) of a huge container (pydevd only sends the first items of a container in
+ * the response to CMD_GET_VARIABLE and marks the remaining ones with a variable named TOO_LARGE_ATTR).
+ *
+ * A page with up to PAGE_SIZE items gets them with a GetVariablePageCommand when expanded. Bigger ranges are split
+ * into placeholders (with up to PAGE_SIZE children each) without going to pydevd, so, expanding a huge container only
+ * gets the items of one page.
+ */
+public class PyVariablesPage extends PyVariableCollection {
+
+    /**
+     * Name of the variable pydevd adds when it doesn't send all the items (pydevd_resolver.TOO_LARGE_ATTR).
+     */
+    public static final String TOO_LARGE_ATTR = "Unable to handle:";
+
+    /**
+     * Number of items pydevd sends in the response to CMD_GET_VARIABLE (pydevd_resolver.MAX_ITEMS_TO_HANDLE + 1).
+     */
+    public static final int ITEMS_SENT = 301;
+
+    public static final int PAGE_SIZE = 100;
+
+    private final PyVariableCollection container;
+    private final int start;
+    private final int end;
+
+    /**
+     * If true, this is the last page of the container (so, if pydevd reports more items than expected, a new page
+     * is added after the items of this page).
+     */
+    private final boolean last;
+
+    private volatile PyVariablesPage[] subPages;
+
+    public PyVariablesPage(AbstractDebugTarget target, PyVariableCollection container, int start, int end,
+            boolean last) {
+        super(target, "[" + start + ".." + (end - 1) + "]", "", "", container);
+        this.container = container;
+        this.start = start;
+        this.end = end;
+        this.last = last;
+    }
+
+    /**
+     * @return the variables with the TOO_LARGE_ATTR variable replaced by placeholders for the items not sent (or
+     * removed if the len shows that all the items were sent).
+     */
+    public static PyVariable[] addPages(AbstractDebugTarget target, PyVariableCollection container,
+            PyVariable[] variables) {
+        int tooLargeIndex = -1;
+        int len = -1;
+        for (int i = 0; i < variables.length; i++) {
+            String name = variables[i].name;
+            if (TOO_LARGE_ATTR.equals(name)) {
+                tooLargeIndex = i;
+            } else if ("__len__".equals(name)) {
+                len = parseLen(variables[i].value);
+            }
+        }
+        if (tooLargeIndex == -1) {
+            return variables;
+        }
+        if (len != -1 && len <= ITEMS_SENT) {
+            // pydevd adds the marker once ITEMS_SENT items are sent (even if there are no more items).
+            PyVariable[] temp = new PyVariable[variables.length - 1];
+            System.arraycopy(variables, 0, temp, 0, tooLargeIndex);
+            System.arraycopy(variables, tooLargeIndex + 1, temp, tooLargeIndex, temp.length - tooLargeIndex);
+            return temp;
+        }
+        variables = variables.clone();
+        if (len > ITEMS_SENT) {
+            variables[tooLargeIndex] = new PyVariablesPage(target, container, ITEMS_SENT, len, true);
+        } else {
+            // Unknown len: it's gotten with the first page.
+            variables[tooLargeIndex] = new PyVariablesPage(target, container, ITEMS_SENT, ITEMS_SENT + PAGE_SIZE,
+                    true);
+        }
+        return variables;
+    }
+
+    /**
+     * @return the len from a value such as "int: 1000" (or -1 if it can't be gotten).
+     */
+    private static int parseLen(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(value.substring(value.lastIndexOf(':') + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public IVariable[] getVariables() throws DebugException {
+        if (end - start <= PAGE_SIZE) {
+            return super.getVariables();
+        }
+        PyVariablesPage[] pages = subPages;
+        if (pages == null) {
+            long chunk = PAGE_SIZE;
+            while ((end - start + chunk - 1) / chunk > PAGE_SIZE) {
+                chunk *= PAGE_SIZE;
+            }
+            List<PyVariablesPage> lst = new ArrayList<>();
+            for (long i = start; i < end; i += chunk) {
+                int pageEnd = (int) Math.min(end, i + chunk);
+                lst.add(new PyVariablesPage(target, container, (int) i, pageEnd, last && pageEnd == end));
+            }
+            pages = lst.toArray(new PyVariablesPage[lst.size()]);
+            subPages = pages;
+        }
+        return pages;
+    }
+
+    @Override
+    public GetVariableCommand getVariableCommand(AbstractDebugTarget dbg) {
+        return new GetVariablePageCommand(dbg, container.getPyDBLocation(), start, end - start);
+    }
+
+    /**
+     * The items are children of the container (so, their location is gotten from the container and not from this
+     * placeholder).
+     */
+    @Override
+    public PyVariable[] getCommandVariables(AbstractDebuggerCommand cmd) {
+        VariablesPage page = getCommandVariablesPage(cmd, target, container);
+        PyVariable[] variables = page.variables;
+        if (last && page.hasMore) {
+            PyVariable[] temp = new PyVariable[variables.length + 1];
+            System.arraycopy(variables, 0, temp, 0, variables.length);
+            temp[variables.length] = new PyVariablesPage(target, container, end,
+                    page.len > end ? page.len : end + PAGE_SIZE, true);
+            variables = temp;
+        }
+        return variables;
+    }
+
+    @Override
+    public void forceGetNewVariables() {
+        super.forceGetNewVariables();
+        PyVariablesPage[] pages = subPages;
+        if (pages != null) {
+            for (PyVariablesPage page : pages) {
+                page.forceGetNewVariables();
+            }
+        }
+    }
+
+    @Override
+    public boolean supportsValueModification() {
+        return false;
+    }
+
+    @Override
+    public String getValueString() throws DebugException {
+        return (end - start) + " items";
+    }
+}
@@ -9,6 +9,10 @@ package org.python.pydev.debug.model;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.debug.core.DebugException;
@@ -19,6 +23,11 @@ import org.python.pydev.shared_core.log.Log;
 
 public class VariablesLoader implements ICommandResponseListener {
 
+    /**
+     * Time fetchVariables() waits for the variables (up to 1.5 seconds).
+     */
+    private static final long INITIAL_WAIT_MILLIS = 1500;
+
     private volatile PyVariable[] currentVariables;
     private volatile PyVariable[] oldVariables;
     private final ContainerOfVariables parent;
@@ -39,51 +48,76 @@ public class VariablesLoader implements ICommandResponseListener {
     }
 
     public PyVariable[] fetchVariables() {
-        oldVariables = currentVariables;
-        currentVariables = null;
-        AbstractDebugTarget target = this.getTarget();
-        if (target == null) {
-            return new PyVariable[0];
-        }
-        GetVariableCommand variableCommand = this.parent.getVariableCommand(target);
-        variableCommand.setCompletionListener(this);
-        target.postCommand(variableCommand);
-        return waitForCommand();
-    }
-
-    private PyVariable[] waitForCommand() {
+        CompletableFuture<PyVariable[]> future = fetchVariablesAsync();
         try {
             // VariablesView does not deal well with children changing asynchronously.
             // it causes unneeded scrolling, because view preserves selection instead
             // of visibility.
             // I try to minimize the occurrence here, by giving pydevd time to complete the
-            // task before we are forced to do asynchronous notification.
-            int i = 150; //up to 1.5 seconds
-            while (--i > 0 && currentVariables == null) {
+            // task before we are forced to do asynchronous notification (if the response
+            // arrives later on, the variables are set in the parent when it arrives).
+            long timeout = INITIAL_WAIT_MILLIS;
+            while (timeout > 0) {
                 if (this.monitor != null && this.monitor.isCanceled() == true) {
                     //canceled request... let's return
                     return new PyVariable[0];
                 }
-                Thread.sleep(10); //10 millis
+                long wait = this.monitor != null ? Math.min(timeout, 50) : timeout;
+                try {
+                    return future.get(wait, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    timeout -= wait;
+                }
             }
-        } catch (InterruptedException e) {
+        } catch (InterruptedException | ExecutionException e) {
             Log.log(e);
         }
+        return new PyVariable[0];
+    }
 
-        if (currentVariables != null) {
-            return currentVariables;
+    /**
+     * Requests the variables to pydevd without blocking.
+     *
+     * @return a future with the variables (completed when the response arrives, with an empty array on errors or
+     * timeouts).
+     */
+    public CompletableFuture<PyVariable[]> fetchVariablesAsync() {
+        oldVariables = currentVariables;
+        currentVariables = null;
+        AbstractDebugTarget target = this.getTarget();
+        if (target == null) {
+            return CompletableFuture.completedFuture(new PyVariable[0]);
         }
-        return new PyVariable[0];
+        GetVariableCommand variableCommand = this.parent.getVariableCommand(target);
+        if (variableCommand == null) {
+            return CompletableFuture.completedFuture(new PyVariable[0]);
+        }
+        CompletableFuture<PyVariable[]> future = variableCommand.getResponseFuture().thenApply((cmd) -> {
+            PyVariable[] variables = onVariablesReceived(cmd);
+            return variables != null ? variables : new PyVariable[0];
+        });
+        target.postCommand(variableCommand);
+        return future;
     }
 
     @Override
     public void commandComplete(AbstractDebuggerCommand cmd) {
+        onVariablesReceived(cmd);
+    }
+
+    /**
+     * @return the variables set in the parent (or null if the parent is no longer available).
+     */
+    private PyVariable[] onVariablesReceived(AbstractDebuggerCommand cmd) {
         AbstractDebugTarget target = getTarget();
         IVariableLocator locator = getLocator();
         if (target == null || locator == null) {
-            return;
+            return null;
+        }
+        PyVariable[] temp = parent.getCommandVariables(cmd);
+        if (temp == null) {
+            return null;
         }
-        PyVariable[] temp = PyVariableCollection.getCommandVariables(cmd, target, locator);
 
         if (addGlobalsVariable) {
             PyVariable[] temp1 = new PyVariable[temp.length + 1];
@@ -96,6 +130,7 @@ public class VariablesLoader implements ICommandResponseListener {
         PyVariable[] newVars = this.verifyVariablesModified(temp, oldVariables);
 
         currentVariables = parent.setVariables(newVars);
+        return currentVariables;
     }
 
     /**
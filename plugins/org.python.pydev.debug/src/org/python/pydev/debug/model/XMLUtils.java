@@ -59,8 +59,18 @@ public class XMLUtils {
         }
     }
 
+    /**
+     * Parsers reused by each thread (responses are parsed in the reader thread of each debug target). Note that
+     * the parser must not be used again while parsing (i.e.: from a handler).
+     */
+    private static final ThreadLocal<SAXParser> threadParser = new ThreadLocal<>();
+
     public static SAXParser getSAXParser() throws CoreException {
-        SAXParser parser = null;
+        SAXParser parser = threadParser.get();
+        if (parser != null) {
+            parser.reset();
+            return parser;
+        }
         try {
             synchronized (parserFactory) {
                 parser = parserFactory.newSAXParser();
@@ -70,6 +80,7 @@ public class XMLUtils {
         } catch (SAXException e) {
             throw new CoreException(PydevDebugPlugin.makeStatus(IStatus.ERROR, "Unexpected XML SAX error", e));
         }
+        threadParser.set(parser);
         return parser;
     }
 
@@ -367,6 +378,10 @@ public class XMLUtils {
         private IVariableLocator locator;
         public List<PyVariable> vars;
 
+        // Only available in the response to CMD_GET_VARIABLE_PAGE.
+        public int len = -1;
+        public boolean hasMore;
+
         public XMLToVariableInfo(AbstractDebugTarget target, IVariableLocator locator) {
             this.target = target;
             this.locator = locator;
@@ -380,21 +395,59 @@ public class XMLUtils {
             // create a local variable, and add it to locals
             if (qName.equals("var")) {
                 vars.add(createVariable(target, locator, attributes));
+
+            } else if (qName.equals("xml")) {
+                // <xml offset="0" len="1000000" hasMore="True">
+                String lenStr = attributes.getValue("len");
+                if (lenStr != null) {
+                    try {
+                        len = Integer.parseInt(lenStr);
+                    } catch (NumberFormatException e) {
+                        Log.log(e);
+                    }
+                }
+                hasMore = "True".equals(attributes.getValue("hasMore"));
             }
         }
     }
 
     public static PyVariable[] XMLToVariables(AbstractDebugTarget target, IVariableLocator locator, String payload)
             throws CoreException {
+        return XMLToVariablesPage(target, locator, payload).variables;
+    }
+
+    /**
+     * The variables in a page of a container (CMD_GET_VARIABLE_PAGE).
+     */
+    public static class VariablesPage {
+
+        public final PyVariable[] variables;
+
+        /**
+         * The number of items in the container (-1 if not available).
+         */
+        public final int len;
+
+        /**
+         * Whether the container has items after the ones in this page.
+         */
+        public final boolean hasMore;
+
+        public VariablesPage(PyVariable[] variables, int len, boolean hasMore) {
+            this.variables = variables;
+            this.len = len;
+            this.hasMore = hasMore;
+        }
+    }
+
+    public static VariablesPage XMLToVariablesPage(AbstractDebugTarget target, IVariableLocator locator,
+            String payload) throws CoreException {
         try {
             SAXParser parser = getSAXParser();
             XMLToVariableInfo info = new XMLToVariableInfo(target, locator);
             parser.parse(new ByteArrayInputStream(payload.getBytes()), info);
-            PyVariable[] vars = new PyVariable[info.vars.size()];
-            for (int i = 0; i < info.vars.size(); i++) {
-                vars[i] = info.vars.get(i);
-            }
-            return vars;
+            PyVariable[] vars = info.vars.toArray(new PyVariable[info.vars.size()]);
+            return new VariablesPage(vars, info.len, info.hasMore);
         } catch (CoreException e) {
             throw e;
         } catch (SAXException e) {
@@ -10,6 +10,11 @@
  */
 package org.python.pydev.debug.model.remote;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import org.eclipse.core.runtime.IStatus;
 import org.python.pydev.debug.core.PydevDebugPlugin;
 import org.python.pydev.debug.model.AbstractDebugTarget;
@@ -35,7 +40,10 @@ import org.python.pydev.shared_core.string.FastStringBuffer;
  *         cmd.processResponse()
  *     else
  *         cmd.processErrorResponse()
+ *  cmd.getResponseFuture() // completed after the response is processed
  *
+ * If the response doesn't arrive in getResponseTimeoutMillis() or the connection is closed before it arrives,
+ * it's processed as an error response (so, the response future is always completed once the command is sent).
  */
 public abstract class AbstractDebuggerCommand {
 
@@ -86,16 +94,25 @@ public abstract class AbstractDebuggerCommand {
     static public final int CMD_SHOW_RETURN_VALUES = 146;
     static public final int CMD_INPUT_REQUESTED = 147;
     static public final int CMD_PROCESS_CREATED = 149;
+    static public final int CMD_GET_VARIABLE_PAGE = 159;
 
     static public final int CMD_ERROR = 901;
     static public final int CMD_VERSION = 501;
     static public final int CMD_RETURN = 502;
     static public final int CMD_SET_PROTOCOL = 503;
 
+    /**
+     * Time to wait for the response to a command before considering it an error (0 means no timeout).
+     * May be changed with -Dpydev.debug.command.timeout=millis
+     */
+    public static final long DEFAULT_RESPONSE_TIMEOUT_MILLIS = Long.getLong("pydev.debug.command.timeout", 30000);
+
     protected AbstractDebugTarget target;
     protected ICommandResponseListener responseListener;
     int sequence;
 
+    private final CompletableFuture<AbstractDebuggerCommand> responseFuture = new CompletableFuture<>();
+
     public AbstractDebuggerCommand(AbstractDebugTarget debugger) {
         this.target = debugger;
         this.responseListener = null;
@@ -131,6 +148,37 @@ public abstract class AbstractDebuggerCommand {
         return false;
     }
 
+    /**
+     * @return the time to wait for the response (only used if needResponse is true).
+     */
+    public long getResponseTimeoutMillis() {
+        return DEFAULT_RESPONSE_TIMEOUT_MILLIS;
+    }
+
+    /**
+     * @return a future which is completed with this command after its response is processed (i.e.: after
+     * processOKResponse/processErrorResponse and the completion listener are called).
+     */
+    public final CompletableFuture<AbstractDebuggerCommand> getResponseFuture() {
+        return responseFuture;
+    }
+
+    /**
+     * Blocks until the response is processed or the given timeout elapses.
+     *
+     * @return true if the response was processed and false if the timeout elapsed.
+     */
+    public final boolean waitForResponse(long timeoutMillis) throws InterruptedException {
+        try {
+            responseFuture.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            return true; //Not really expected (it's never completed exceptionally).
+        }
+    }
+
     /**
      * returns Sequence #
      */
@@ -142,14 +190,18 @@ public abstract class AbstractDebuggerCommand {
      * Called when command completes, if needResponse was true
      */
     public final void processResponse(int cmdCode, String payload) {
-        if (cmdCode / 100 == 9) {
-            processErrorResponse(cmdCode, payload);
-        } else {
-            processOKResponse(cmdCode, payload);
-        }
-
-        if (responseListener != null) {
-            responseListener.commandComplete(this);
+        try {
+            if (cmdCode / 100 == 9) {
+                processErrorResponse(cmdCode, payload);
+            } else {
+                processOKResponse(cmdCode, payload);
+            }
+
+            if (responseListener != null) {
+                responseListener.commandComplete(this);
+            }
+        } finally {
+            responseFuture.complete(this);
         }
     }
 
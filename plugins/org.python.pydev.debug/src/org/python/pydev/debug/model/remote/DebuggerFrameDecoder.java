@@ -0,0 +1,318 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model.remote;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import org.python.pydev.core.log.Log;
+
+/**
+ * Decodes the frames sent by pydevd:
+ *
+ * Content-Length: N\r\n
+ * \r\n
+ * code\tsequence\tpayload (N bytes in utf-8)
+ *
+ * The bytes are read into a direct buffer which is reused for all the frames, the command code and sequence are
+ * parsed from the bytes and only the payload is decoded (into a char buffer which is also reused), so, no
+ * intermediary strings/arrays are created for each frame.
+ *
+ * Not thread-safe (it's meant to be used only by the thread reading from pydevd).
+ */
+public class DebuggerFrameDecoder {
+
+    /**
+     * Raised when a header other than the Content-Length is found (which means an old version of pydevd is being
+     * used).
+     */
+    public static class UnexpectedHeaderException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        public final String header;
+
+        public UnexpectedHeaderException(String header) {
+            super("Unexpected header: " + header);
+            this.header = header;
+        }
+    }
+
+    public static final int BUFFER_SIZE = 32 * 1024;
+
+    /**
+     * If a huge payload makes the char buffer grow beyond this size, it's not kept for the next frames.
+     */
+    private static final int MAX_RETAINED_CHARS = 1024 * 1024;
+
+    private static final byte[] CONTENT_LENGTH = "Content-Length: ".getBytes(StandardCharsets.US_ASCII);
+
+    private final ReadableByteChannel channel;
+
+    /**
+     * Bytes read and still not consumed are the ones between its position and limit.
+     */
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+
+    /**
+     * Contents of the header line being read (only used for the error message if it's not the Content-Length).
+     */
+    private byte[] line = new byte[128];
+
+    private int cmdCode;
+    private int sequence;
+
+    /**
+     * Bytes of the current frame still not consumed.
+     */
+    private int frameLeft;
+
+    public DebuggerFrameDecoder(ReadableByteChannel channel) {
+        this.channel = channel;
+        bytes.flip();
+    }
+
+    /**
+     * Reads the next frame (blocking until it's completely read).
+     *
+     * @return false if the end of the stream was reached before a new frame started.
+     * @throws EOFException if the end of the stream is reached in the middle of a frame.
+     * @throws UnexpectedHeaderException if an unexpected header is found.
+     */
+    public boolean next() throws IOException {
+        int contentLength;
+        do {
+            contentLength = readHeaders();
+            if (contentLength == -1) {
+                return false;
+            }
+        } while (contentLength == 0);
+
+        frameLeft = contentLength;
+        cmdCode = readField();
+        sequence = readField();
+        decodePayload();
+        return true;
+    }
+
+    public int getCmdCode() {
+        return cmdCode;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return the payload of the last frame read. Note that it's a view over the internal buffer, which is
+     * only valid until the next call to next() (so, toString() must be used to keep it).
+     */
+    public CharSequence getPayload() {
+        return chars;
+    }
+
+    /**
+     * @return the Content-Length of the next frame or -1 if the end of the stream was reached.
+     */
+    private int readHeaders() throws IOException {
+        int contentLength = -1;
+        while (true) {
+            int lineLen = readLine();
+            if (lineLen == -1) {
+                if (contentLength != -1) {
+                    throw new EOFException();
+                }
+                return -1;
+            }
+            if (lineLen == 0) {
+                // Ok, real payload ahead.
+                if (contentLength == -1) {
+                    String msg = "Error. pydevd did not respect protocol (Content-Length not passed in header).";
+                    Log.log(msg);
+                    throw new IOException(msg);
+                }
+                return contentLength;
+            }
+            if (!startsWithContentLength(lineLen)) {
+                throw new UnexpectedHeaderException(new String(line, 0, lineLen, StandardCharsets.UTF_8));
+            }
+            contentLength = 0;
+            for (int i = CONTENT_LENGTH.length; i < lineLen; i++) {
+                byte b = line[i];
+                if (b >= '0' && b <= '9') {
+                    contentLength = contentLength * 10 + (b - '0');
+                } else if (b != ' ') {
+                    throw new IOException("Error getting number of bytes to load. Found: "
+                            + new String(line, 0, lineLen, StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    private boolean startsWithContentLength(int lineLen) {
+        if (lineLen < CONTENT_LENGTH.length) {
+            return false;
+        }
+        for (int i = 0; i < CONTENT_LENGTH.length; i++) {
+            if (line[i] != CONTENT_LENGTH[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a line into the line buffer (without the \r\n).
+     *
+     * @return the length of the line or -1 if the end of the stream was reached before reading anything.
+     */
+    private int readLine() throws IOException {
+        int len = 0;
+        boolean readSomething = false;
+        while (true) {
+            if (!bytes.hasRemaining() && fill() == -1) {
+                if (readSomething) {
+                    throw new EOFException();
+                }
+                return -1;
+            }
+            readSomething = true;
+            byte b = bytes.get();
+            if (b == '\n') {
+                return len;
+            }
+            if (b == '\r') {
+                continue;
+            }
+            if (len == line.length) {
+                byte[] temp = new byte[line.length * 2];
+                System.arraycopy(line, 0, temp, 0, len);
+                line = temp;
+            }
+            line[len++] = b;
+        }
+    }
+
+    /**
+     * Parses an int (followed by a tab) from the bytes of the current frame.
+     */
+    private int readField() throws IOException {
+        int value = 0;
+        boolean negative = false;
+        boolean found = false;
+        while (frameLeft > 0) {
+            if (!bytes.hasRemaining() && fill() == -1) {
+                throw new EOFException();
+            }
+            byte b = bytes.get();
+            frameLeft--;
+            if (b == '\t') {
+                if (!found) {
+                    break;
+                }
+                return negative ? -value : value;
+            }
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                found = true;
+            } else if (b == '-' && !found && !negative) {
+                negative = true;
+            } else {
+                break;
+            }
+        }
+        throw new IOException("Unable to parse command code/sequence from frame.");
+    }
+
+    /**
+     * Decodes the remaining bytes of the current frame into the chars buffer (flipped so that it can be read).
+     */
+    private void decodePayload() throws IOException {
+        if (chars.capacity() > MAX_RETAINED_CHARS) {
+            chars = CharBuffer.allocate(BUFFER_SIZE);
+        }
+        chars.clear();
+        if (frameLeft == 0) {
+            chars.flip();
+            return;
+        }
+        decoder.reset();
+        boolean endOfInput = false;
+        while (!endOfInput) {
+            if (!bytes.hasRemaining() && fill() == -1) {
+                throw new EOFException();
+            }
+            int limit = bytes.limit();
+            int available = Math.min(bytes.remaining(), frameLeft);
+            // If all the bytes of the frame are available, an incomplete char in the end is malformed input
+            // (otherwise it's kept to be decoded when the next bytes are read).
+            endOfInput = available == frameLeft;
+            int start = bytes.position();
+            bytes.limit(start + available);
+            decode(endOfInput);
+            frameLeft -= bytes.position() - start;
+            bytes.limit(limit);
+            if (!endOfInput && bytes.hasRemaining() && fill() == -1) {
+                // Only the start of a char is in the buffer (it's decoded when the next bytes are read).
+                throw new EOFException();
+            }
+        }
+        while (decoder.flush(chars).isOverflow()) {
+            growChars();
+        }
+        chars.flip();
+    }
+
+    private void decode(boolean endOfInput) {
+        while (true) {
+            CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            if (result.isOverflow()) {
+                growChars();
+            } else {
+                return; // underflow: everything possible was decoded.
+            }
+        }
+    }
+
+    private void growChars() {
+        CharBuffer temp = CharBuffer.allocate(chars.capacity() * 2);
+        chars.flip();
+        temp.put(chars);
+        chars = temp;
+    }
+
+    /**
+     * Reads more bytes from the channel (keeping the bytes still not consumed).
+     *
+     * @return the number of bytes read or -1 if the end of the stream was reached.
+     */
+    private int fill() throws IOException {
+        bytes.compact();
+        try {
+            int read;
+            do {
+                read = channel.read(bytes);
+            } while (read == 0);
+            return read;
+        } finally {
+            bytes.flip();
+        }
+    }
+}
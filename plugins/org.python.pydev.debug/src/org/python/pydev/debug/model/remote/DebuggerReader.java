@@ -6,21 +6,22 @@
  */
 package org.python.pydev.debug.model.remote;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.Socket;
-import java.nio.charset.StandardCharsets;
-import java.util.Dictionary;
-import java.util.Hashtable;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.runtime.IStatus;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.debug.core.PydevDebugPlugin;
 import org.python.pydev.debug.model.AbstractDebugTarget;
 import org.python.pydev.debug.model.AbstractDebugTargetWithTransmission;
-import org.python.pydev.shared_core.io.FileUtils;
-import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.debug.model.remote.DebuggerFrameDecoder.UnexpectedHeaderException;
 import org.python.pydev.shared_ui.utils.RunInUiThread;
 import org.python.pydev.ui.dialogs.PyDialogHelpers;
 
@@ -45,13 +46,37 @@ public class DebuggerReader implements Runnable {
 
     /**
      * commands waiting for response. Their keys are the sequence ids
+     *
+     * Whoever removes a command from here (the reader when the response arrives, the timeout or the reader
+     * finishing) is the one which processes its response.
      */
-    private Dictionary<Integer, AbstractDebuggerCommand> responseQueue = new Hashtable<Integer, AbstractDebuggerCommand>();
+    private final ConcurrentHashMap<Integer, AbstractDebuggerCommand> responseQueue = new ConcurrentHashMap<>();
+
+    private static ScheduledThreadPoolExecutor timeouts;
 
     /**
-     * we read from this
+     * @return the executor which times out the commands waiting for a response (shared by all the readers).
      */
-    private InputStream in;
+    private static synchronized ScheduledThreadPoolExecutor getTimeouts() {
+        if (timeouts == null) {
+            timeouts = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "pydevd.commandTimeouts");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            timeouts.setRemoveOnCancelPolicy(true);
+        }
+        return timeouts;
+    }
+
+    /**
+     * we read the frames from this
+     */
+    private DebuggerFrameDecoder decoder;
 
     /**
      * that's the debugger that made us... we have to finish it when we are done
@@ -69,7 +94,11 @@ public class DebuggerReader implements Runnable {
     public DebuggerReader(Socket s, AbstractDebugTargetWithTransmission r) throws IOException {
         remote = (AbstractDebugTarget) r;
         socket = s;
-        in = socket.getInputStream();
+        ReadableByteChannel channel = socket.getChannel();
+        if (channel == null) {
+            channel = Channels.newChannel(socket.getInputStream());
+        }
+        decoder = new DebuggerFrameDecoder(channel);
     }
 
     /**
@@ -82,37 +111,57 @@ public class DebuggerReader implements Runnable {
     /**
      * @param cmd
      */
-    public void addToResponseQueue(AbstractDebuggerCommand cmd) {
-        int sequence = cmd.getSequence();
-        synchronized (responseQueue) {
-            responseQueue.put(sequence, cmd);
+    public void addToResponseQueue(final AbstractDebuggerCommand cmd) {
+        final int sequence = cmd.getSequence();
+        responseQueue.put(sequence, cmd);
+        if (done) {
+            // No response will be read anymore.
+            removeWithErrorResponse(sequence, cmd, "Debugger connection closed.");
+            return;
+        }
+        long timeout = cmd.getResponseTimeoutMillis();
+        if (timeout > 0) {
+            final ScheduledFuture<?> scheduled = getTimeouts().schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    removeWithErrorResponse(sequence, cmd, "Timeout waiting for response to: " + cmd.getClass()
+                            .getName() + " (" + cmd.getResponseTimeoutMillis() + " millis).");
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+            cmd.getResponseFuture().whenComplete((c, e) -> scheduled.cancel(false));
+        }
+    }
+
+    private void removeWithErrorResponse(int sequence, AbstractDebuggerCommand cmd, String message) {
+        if (responseQueue.remove(sequence, cmd)) {
+            try {
+                cmd.processResponse(AbstractDebuggerCommand.CMD_ERROR, message);
+            } catch (Exception e) {
+                Log.log(e);
+            }
         }
     }
 
     /**
-     * Parses & dispatches the command
+     * Dispatches the command (the payload is only valid during this call).
      */
-    private void processCommand(String cmdLine) {
+    private void processCommand(int cmdCode, int seqCode, CharSequence payload) {
         try {
-            String[] cmdParsed = cmdLine.split("\t", 3);
-            int cmdCode = Integer.parseInt(cmdParsed[0]);
-            int seqCode = Integer.parseInt(cmdParsed[1]);
-            String payload = cmdParsed[2];
-
-            // is there a response waiting
-            AbstractDebuggerCommand cmd;
-            synchronized (responseQueue) {
-                cmd = responseQueue.remove(new Integer(seqCode));
+            if (DEBUG) {
+                System.err.println("receive cmd: " + cmdCode + "\t" + seqCode + "\t" + payload);
             }
+            // is there a response waiting
+            AbstractDebuggerCommand cmd = responseQueue.remove(seqCode);
 
             if (cmd == null) {
                 if (remote != null) {
-                    remote.processCommand(cmdParsed[0], cmdParsed[1], payload);
+                    remote.processCommand(cmdCode, seqCode, payload);
                 } else {
                     PydevDebugPlugin.log(IStatus.ERROR, "internal error, command received no target", null);
                 }
             } else {
-                cmd.processResponse(cmdCode, payload);
+                cmd.processResponse(cmdCode, payload.toString());
             }
         } catch (Exception e) {
             Log.log(e);
@@ -130,15 +179,20 @@ public class DebuggerReader implements Runnable {
     public void run() {
         try {
             while (!done) {
-                String contents;
                 try {
-                    if ((contents = readContents()) == null) {
+                    if (!decoder.next()) {
                         done = true;
                     } else {
-                        if (contents.length() > 0) {
-                            processCommand(contents.toString());
-                        }
+                        processCommand(decoder.getCmdCode(), decoder.getSequence(), decoder.getPayload());
                     }
+                } catch (UnexpectedHeaderException e) {
+                    done = true;
+                    String msg = "It seems an old version of the PyDev Debugger is being used (please update the pydevd package being used).\n\nFound message:\n"
+                            + e.header;
+                    RunInUiThread.async(() -> {
+                        PyDialogHelpers.openCritical("Error", msg);
+                    });
+                    Log.log(msg);
                 } catch (Exception e1) {
                     done = true;
                     //that's ok, it means that the client finished
@@ -157,61 +211,12 @@ public class DebuggerReader implements Runnable {
                 }
             }
         } finally {
-            buffer = null;
-            contents = null;
-            byteArrayOutputStream = null;
-        }
-    }
-
-    private byte[] buffer = new byte[32 * 1024];
-    private FastStringBuffer contents = new FastStringBuffer();
-    private ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-
-    private String readContents() throws IOException {
-        int bytesToRead = -1;
-
-        while (true) {
-            FileUtils.readLine(in, contents.clear());
-            contents.trim(); // Remove the \r\n in the end.
-
-            if (contents.length() == 0) {
-                // Ok, real payload ahead.
-                // Read once from stdin and print result to stdout
-                if (bytesToRead == -1) {
-                    Log.log("Error. pydevd did not respect protocol (Content-Length not passed in header).");
-                    return null;
-                }
-
-                int bytesRead;
-                while ((bytesRead = in.read(buffer, 0, Math.min(bytesToRead, buffer.length))) > 0) {
-                    byteArrayOutputStream.write(buffer, 0, bytesRead);
-                    bytesToRead -= bytesRead;
-                }
-                byte[] bytes = byteArrayOutputStream.toByteArray();
-                byteArrayOutputStream.reset();
-                return new String(bytes, StandardCharsets.UTF_8);
-            } else {
-                // Header found
-                String contentLen = "Content-Length: ";
-                if (contents.startsWith(contentLen)) {
-                    if (DEBUG) {
-                        System.err.println("receive cmd: " + contents);
-                    }
-                    contents.deleteFirstChars(contentLen.length());
-                    try {
-                        bytesToRead = Integer.parseInt(contents.trim().toString());
-                    } catch (NumberFormatException e) {
-                        throw new IOException("Error getting number of bytes to load. Found: " + contents);
-                    }
-                } else {
-                    // Unexpected header.
-                    String msg = "It seems an old version of the PyDev Debugger is being used (please update the pydevd package being used).\n\nFound message:\n"
-                            + contents;
-                    RunInUiThread.async(() -> {
-                        PyDialogHelpers.openCritical("Error", msg);
-                    });
-                    Log.log(msg);
-                    return null;
+            decoder = null;
+            done = true;
+            for (Integer sequence : responseQueue.keySet()) {
+                AbstractDebuggerCommand cmd = responseQueue.get(sequence);
+                if (cmd != null) {
+                    removeWithErrorResponse(sequence, cmd, "Debugger connection closed.");
                 }
             }
         }
@@ -6,12 +6,19 @@
  */
 package org.python.pydev.debug.model.remote;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import org.python.pydev.core.log.Log;
@@ -19,9 +26,17 @@ import org.python.pydev.core.log.Log;
 /**
  * Writer writes debugger commands to the network. Use postCommand to put new
  * ones in queue.
+ *
+ * All the commands pending when the writer wakes up are written in a single flush (and redundant ones -- i.e.: a
+ * breakpoint set and later removed or the exceptions configuration sent twice -- are not written).
  */
 public class DebuggerWriter implements Runnable {
 
+    /**
+     * Max number of commands waiting to be written (postCommand blocks while it's reached).
+     */
+    public static final int MAX_PENDING_COMMANDS = 1024;
+
     /**
      * connection socket
      */
@@ -30,9 +45,22 @@ public class DebuggerWriter implements Runnable {
     /**
      * a list of RemoteDebuggerCommands
      */
-    private BlockingQueue<AbstractDebuggerCommand> cmdQueue = new ArrayBlockingQueue<>(64);
+    private final LinkedBlockingQueue<AbstractDebuggerCommand> cmdQueue = new LinkedBlockingQueue<>();
+
+    /**
+     * Number of commands posted and still not gotten by the writer thread (guarded by pendingLock).
+     */
+    private int pending = 0;
+    private final Object pendingLock = new Object();
+
+    private volatile Thread writerThread;
 
-    private OutputStreamWriter out;
+    private Writer out;
+
+    /**
+     * Ids of the breakpoints set in pydevd (only accessed in the writer thread).
+     */
+    private final Set<Integer> breakpointsSent = new HashSet<>();
 
     /**
      * Volatile, as multiple threads may ask it to be 'done'
@@ -41,18 +69,41 @@ public class DebuggerWriter implements Runnable {
 
     public DebuggerWriter(Socket s) throws IOException {
         socket = s;
-        out = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8);
+        out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), 32 * 1024);
     }
 
     /**
      * Add command for processing
+     *
+     * Blocks while there are MAX_PENDING_COMMANDS waiting to be written (unless called from the writer thread or
+     * the writer is already done).
      */
     public void postCommand(AbstractDebuggerCommand cmd) {
-        cmdQueue.offer(cmd);
+        synchronized (pendingLock) {
+            if (Thread.currentThread() != writerThread) {
+                boolean interrupted = false;
+                while (pending >= MAX_PENDING_COMMANDS && !done) {
+                    try {
+                        pendingLock.wait(100);
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                        break; // Don't keep on blocking, but don't drop the command either.
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            pending++;
+        }
+        cmdQueue.add(cmd);
     }
 
     public void done() {
         this.done = true;
+        synchronized (pendingLock) {
+            pendingLock.notifyAll();
+        }
     }
 
     /**
@@ -60,39 +111,114 @@ public class DebuggerWriter implements Runnable {
      */
     @Override
     public void run() {
+        writerThread = Thread.currentThread();
+        List<AbstractDebuggerCommand> batch = new ArrayList<>();
         while (!done) {
-            AbstractDebuggerCommand cmd = null;
-            try {
-                cmd = cmdQueue.poll(100, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException e) {
-                cmd = null;
-                Log.log(e);
-            }
             try {
+                AbstractDebuggerCommand cmd = cmdQueue.poll(100, TimeUnit.MILLISECONDS);
                 if (cmd != null) {
-                    String outgoing;
-                    try {
-                        outgoing = cmd.getOutgoing();
-                        if (outgoing == null) {
-                            continue;
-                        }
-                    } catch (Throwable e) {
-                        Log.log(e);
-                        continue;
+                    batch.add(cmd);
+                    cmdQueue.drainTo(batch);
+                    synchronized (pendingLock) {
+                        pending -= batch.size();
+                        pendingLock.notifyAll();
                     }
-
-                    cmd.aboutToSend();
-                    out.write(outgoing);
-                    out.write("\n");
-                    out.flush();
+                    write(batch);
                 }
+            } catch (InterruptedException e) {
+                Log.log(e);
             } catch (IOException e) {
-                done = true;
+                done();
             } catch (Throwable e1) {
                 Log.log(e1); //Unexpected error (but not done).
+            } finally {
+                batch.clear();
             }
             if ((socket == null) || !socket.isConnected()) {
-                done = true;
+                done();
+            }
+        }
+    }
+
+    /**
+     * Writes the given commands and flushes the output once.
+     */
+    private void write(List<AbstractDebuggerCommand> batch) throws IOException {
+        coalesce(batch, breakpointsSent);
+        for (AbstractDebuggerCommand cmd : batch) {
+            if (cmd == null) {
+                continue;
+            }
+            String outgoing;
+            try {
+                outgoing = cmd.getOutgoing();
+                if (outgoing == null) {
+                    continue;
+                }
+                cmd.aboutToSend();
+            } catch (Throwable e) {
+                Log.log(e);
+                continue;
+            }
+            out.write(outgoing);
+            out.write('\n');
+
+            if (cmd instanceof SetBreakpointCommand) {
+                breakpointsSent.add(((SetBreakpointCommand) cmd).getBreakpointId());
+            } else if (cmd instanceof RemoveBreakpointCommand) {
+                breakpointsSent.remove(((RemoveBreakpointCommand) cmd).breakpointId);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Replaces with null the commands which don't need to be written because a later command in the batch makes them
+     * redundant:
+     *
+     * - a set breakpoint followed by another set or a remove of the same breakpoint id;
+     * - a remove breakpoint when the breakpoint was not set in pydevd or is already being removed;
+     * - commands which send the whole current configuration (exceptions/property trace) followed by another one
+     * of the same kind.
+     *
+     * @param breakpointsSent ids of the breakpoints which were already set in pydevd.
+     */
+    /*default*/ static void coalesce(List<AbstractDebuggerCommand> batch, Set<Integer> breakpointsSent) {
+        if (batch.size() < 2) {
+            return;
+        }
+        Map<Integer, Integer> pendingSet = new HashMap<>();
+        Set<Integer> pendingRemove = new HashSet<>();
+        Map<Class<?>, Integer> lastConfiguration = new HashMap<>();
+
+        int size = batch.size();
+        for (int i = 0; i < size; i++) {
+            AbstractDebuggerCommand cmd = batch.get(i);
+            if (cmd instanceof SetBreakpointCommand) {
+                Integer previous = pendingSet.put(((SetBreakpointCommand) cmd).getBreakpointId(), i);
+                if (previous != null) {
+                    batch.set(previous, null);
+                }
+
+            } else if (cmd instanceof RemoveBreakpointCommand) {
+                int breakpointId = ((RemoveBreakpointCommand) cmd).breakpointId;
+                Integer previousSet = pendingSet.remove(breakpointId);
+                if (previousSet != null) {
+                    batch.set(previousSet, null);
+                }
+                if (pendingRemove.contains(breakpointId)
+                        || (previousSet != null && !breakpointsSent.contains(breakpointId))) {
+                    // Already being removed or pydevd never got it.
+                    batch.set(i, null);
+                } else {
+                    pendingRemove.add(breakpointId);
+                }
+
+            } else if (cmd instanceof SendPyExceptionCommand || cmd instanceof SetPropertyTraceCommand) {
+                Integer previous = lastConfiguration.put(cmd.getClass(), i);
+                if (previous != null) {
+                    batch.set(previous, null);
+                }
             }
         }
     }
@@ -43,6 +43,14 @@ public class EvaluateConsoleExpressionCommand extends AbstractDebuggerCommand {
         return true; // Allows the command to wait till a response is received.
     }
 
+    /**
+     * No timeout: the code evaluated in the console may take any time to run (or wait for some input).
+     */
+    @Override
+    public long getResponseTimeoutMillis() {
+        return 0;
+    }
+
     @Override
     public void processOKResponse(int cmdCode, String payload) {
         this.responseCode = cmdCode;
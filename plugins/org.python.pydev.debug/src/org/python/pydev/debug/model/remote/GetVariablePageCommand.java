@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model.remote;
+
+import org.python.pydev.debug.model.AbstractDebugTarget;
+
+/**
+ * Gets the items of a container variable in [offset, offset + count).
+ *
+ * The response also has the number of items in the container and whether it has items after the ones returned
+ * (see: XMLUtils.XMLToVariablesPage).
+ */
+public class GetVariablePageCommand extends GetVariableCommand {
+
+    private final int offset;
+    private final int count;
+
+    public GetVariablePageCommand(AbstractDebugTarget debugger, String locator, int offset, int count) {
+        super(debugger, locator);
+        this.offset = offset;
+        this.count = count;
+    }
+
+    @Override
+    public String getOutgoing() {
+        return makeCommand(getCommandId(), sequence, offset + "\t" + count + "\t" + locator);
+    }
+
+    @Override
+    protected int getCommandId() {
+        return CMD_GET_VARIABLE_PAGE;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getCount() {
+        return count;
+    }
+}
@@ -49,6 +49,10 @@ public class SetBreakpointCommand extends AbstractDebuggerCommand {
         this.type = type;
     }
 
+    public int getBreakpointId() {
+        return breakpointId;
+    }
+
     @Override
     public String getOutgoing() {
         if (file == null || line == null) {
@@ -26,23 +26,21 @@ import org.python.pydev.debug.model.XMLUtils;
  */
 public class ThreadListCommand extends AbstractDebuggerCommand {
 
-    boolean done;
-    PyThread[] threads;
+    volatile boolean done;
+    volatile PyThread[] threads;
 
     public ThreadListCommand(AbstractDebugTarget target) {
         super(target);
         done = false;
     }
 
+    /**
+     * @throws InterruptedException if the threads weren't gotten in the given timeout.
+     */
     public void waitUntilDone(int timeout) throws InterruptedException {
-        while (!done && timeout > 0) {
-            timeout -= 100;
-            synchronized (this) {
-                Thread.sleep(100);
-            }
-        }
-        if (timeout < 0)
+        if (!waitForResponse(timeout) || !done) {
             throw new InterruptedException();
+        }
     }
 
     public PyThread[] getThreads() {
@@ -6,8 +6,18 @@
  */
 package org.python.pydev.debug.pyunit;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -60,6 +70,30 @@ public class PyUnitTestRun {
      */
     public Integer savedDiskIndex;
 
+    /**
+     * Whether the summary (counts, finished, time) changed since it was last saved to the disk.
+     */
+    /*default*/ volatile boolean summaryChanged = true;
+
+    /**
+     * First line of the results log (the other lines have one result each).
+     */
+    private static final String RESULTS_LOG_HEADER = "pydev-testrun-results version=1.0";
+
+    /**
+     * While not null, only the summary of this test run was restored and the results must still be loaded
+     * from this file (the counts are gotten from the summary until then).
+     */
+    private volatile File resultsToLoad;
+    private int summaryNumberOfRuns;
+    private int summaryNumberOfErrors;
+    private int summaryNumberOfFailures;
+
+    /**
+     * If not null, the results are appended to it as they're added (closed when the test run finishes).
+     */
+    private Writer resultsLog;
+
     public PyUnitTestRun(IPyUnitLaunch server) {
         synchronized (lock) {
             this.name = "Test Run: " + currentRun;
@@ -78,9 +112,23 @@ public class PyUnitTestRun {
 
     public void setTotalNumberOfRuns(String totalNumberOfRuns) {
         this.totalNumberOfRuns = totalNumberOfRuns;
+        this.summaryChanged = true;
     }
 
     public synchronized void addResult(PyUnitTestResult result) {
+        ensureResultsLoaded();
+        addResultNoLog(result);
+        if (resultsLog != null) {
+            try {
+                writeResult(resultsLog, result);
+            } catch (IOException e) {
+                Log.log(e);
+                closeResultsLog();
+            }
+        }
+    }
+
+    private void addResultNoLog(PyUnitTestResult result) {
         if (result.status.equals("fail")) {
             numberOfFailures += 1;
 
@@ -100,6 +148,7 @@ public class PyUnitTestRun {
         synchronized (resultsLock) {
             results.add(result);
         }
+        this.summaryChanged = true;
     }
 
     public void addStartTest(PyUnitTestStarted result) {
@@ -114,20 +163,30 @@ public class PyUnitTestRun {
      * mostly for testing).
      */
     public List<PyUnitTestResult> getSharedResultsList() {
+        ensureResultsLoaded();
         return results;
     }
 
     public int getNumberOfRuns() {
+        if (resultsToLoad != null) {
+            return summaryNumberOfRuns;
+        }
         synchronized (resultsLock) {
             return results.size();
         }
     }
 
     public int getNumberOfErrors() {
+        if (resultsToLoad != null) {
+            return summaryNumberOfErrors;
+        }
         return numberOfErrors;
     }
 
     public int getNumberOfFailures() {
+        if (resultsToLoad != null) {
+            return summaryNumberOfFailures;
+        }
         return numberOfFailures;
     }
 
@@ -135,8 +194,12 @@ public class PyUnitTestRun {
         return totalNumberOfRuns;
     }
 
-    public void setFinished(boolean finished) {
+    public synchronized void setFinished(boolean finished) {
         this.finished = finished;
+        this.summaryChanged = true;
+        if (finished) {
+            closeResultsLog();
+        }
     }
 
     public boolean getFinished() {
@@ -172,8 +235,9 @@ public class PyUnitTestRun {
     public void relaunchOnlyErrors() {
         IPyUnitLaunch s = this.pyUnitLaunch;
         if (s != null) {
-            ArrayList<PyUnitTestResult> arrayList = new ArrayList<PyUnitTestResult>(this.results.size());
-            for (PyUnitTestResult pyUnitTestResult : this.results) {
+            List<PyUnitTestResult> results = getResults();
+            ArrayList<PyUnitTestResult> arrayList = new ArrayList<PyUnitTestResult>(results.size());
+            for (PyUnitTestResult pyUnitTestResult : results) {
                 if (!pyUnitTestResult.isOk() && !pyUnitTestResult.isSkip()) {
                     arrayList.add(pyUnitTestResult);
                 }
@@ -200,6 +264,7 @@ public class PyUnitTestRun {
 
     public void setTotalTime(String totalTime) {
         this.totalTime = totalTime;
+        this.summaryChanged = true;
     }
 
     public String getTotalTime() {
@@ -224,6 +289,17 @@ public class PyUnitTestRun {
     }
 
     public String toXML() {
+        return toXML(true);
+    }
+
+    /**
+     * @return the summary and launch of this test run (without the results) as xml.
+     */
+    public String toSummaryXML() {
+        return toXML(false);
+    }
+
+    private String toXML(boolean includeResults) {
         try {
             DocumentBuilderFactory icFactory = DocumentBuilderFactory.newInstance();
             icFactory.setFeature("http://xml.org/sax/features/namespaces", false);
@@ -248,9 +324,12 @@ public class PyUnitTestRun {
             summary.setAttribute("tests", String.valueOf(pyUnitTestRun.getTotalNumberOfRuns()));
             summary.setAttribute("finished", String.valueOf(pyUnitTestRun.getFinished()));
             summary.setAttribute("total_time", String.valueOf(pyUnitTestRun.getTotalTime()));
+            summary.setAttribute("results", String.valueOf(pyUnitTestRun.getNumberOfRuns()));
             root.appendChild(summary);
 
-            for (PyUnitTestResult pyUnitTestResult : pyUnitTestRun.getResults()) {
+            List<PyUnitTestResult> results = includeResults ? pyUnitTestRun.getResults()
+                    : new ArrayList<PyUnitTestResult>(0);
+            for (PyUnitTestResult pyUnitTestResult : results) {
                 Element test = document.createElement("test");
                 test.setAttribute("status", pyUnitTestResult.status);
                 test.setAttribute("location", pyUnitTestResult.location);
@@ -293,6 +372,7 @@ public class PyUnitTestRun {
     }
 
     private List<PyUnitTestResult> getResults() {
+        ensureResultsLoaded();
         List<PyUnitTestResult> lst;
         synchronized (resultsLock) {
             lst = new ArrayList<>(results);
@@ -366,6 +446,10 @@ public class PyUnitTestRun {
                 if (totalTime != null) {
                     testRun.setTotalTime(totalTime);
                 }
+                // results/errors/failures: only used while the results aren't loaded (see fromSummaryXML).
+                testRun.summaryNumberOfRuns = parseCount(attributes.getValue("results"));
+                testRun.summaryNumberOfErrors = parseCount(attributes.getValue("errors"));
+                testRun.summaryNumberOfFailures = parseCount(attributes.getValue("failures"));
             }
         }
 
@@ -410,6 +494,17 @@ public class PyUnitTestRun {
             }
         }
 
+        private static int parseCount(String value) {
+            if (value != null) {
+                try {
+                    return Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    //ignore
+                }
+            }
+            return 0;
+        }
+
     }
 
     public static PyUnitTestRun fromXML(String exportToClipboard) throws Exception {
@@ -420,8 +515,206 @@ public class PyUnitTestRun {
         return testRun;
     }
 
+    /**
+     * @param summaryXml the contents created by toSummaryXML().
+     * @param resultsLogFile the file with the results (only loaded when the results are actually requested).
+     */
+    public static PyUnitTestRun fromSummaryXML(String summaryXml, File resultsLogFile) throws Exception {
+        PyUnitTestRun testRun = fromXML(summaryXml);
+        testRun.resultsToLoad = resultsLogFile;
+        testRun.summaryChanged = false;
+        return testRun;
+    }
+
     /*default*/ IPyUnitLaunch getPyUnitLaunch() {
         return this.pyUnitLaunch;
     }
 
+    /**
+     * @return whether the results are in memory (if false, only the summary was restored so far).
+     */
+    public boolean isResultsLoaded() {
+        return resultsToLoad == null;
+    }
+
+    /**
+     * Called when the file with the results (which weren't loaded yet) is renamed.
+     */
+    /*default*/ synchronized void resultsLogRenamed(File resultsLogFile) {
+        if (resultsToLoad != null) {
+            resultsToLoad = resultsLogFile;
+        }
+    }
+
+    private void ensureResultsLoaded() {
+        if (resultsToLoad == null) {
+            return;
+        }
+        synchronized (this) {
+            File file = resultsToLoad;
+            if (file == null) {
+                return;
+            }
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                FastStringBuffer lineBuf = new FastStringBuffer();
+                String line = readCompleteLine(reader, lineBuf);
+                if (RESULTS_LOG_HEADER.equals(line)) {
+                    List<String> fields = new ArrayList<>(6);
+                    while ((line = readCompleteLine(reader, lineBuf)) != null) {
+                        readFields(line, fields);
+                        if (fields.size() != 6) {
+                            Log.log("Unexpected line in: " + file);
+                            continue;
+                        }
+                        addResultNoLog(new PyUnitTestResult(this, fields.get(0), fields.get(1), fields.get(2),
+                                fields.get(4), fields.get(5), fields.get(3)));
+                    }
+                } else {
+                    Log.log("Unexpected header in: " + file);
+                }
+            } catch (IOException e) {
+                Log.log(e);
+            }
+            resultsToLoad = null;
+            summaryChanged = false;
+        }
+    }
+
+    /**
+     * Starts writing the results of this test run to the given file (the results which are already available are
+     * written and the ones added later on are appended while the test run isn't finished).
+     */
+    public synchronized void startResultsLog(File logFile) throws IOException {
+        ensureResultsLoaded();
+        closeResultsLog();
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(logFile), StandardCharsets.UTF_8));
+        try {
+            writer.write(RESULTS_LOG_HEADER);
+            writer.write('\n');
+            for (PyUnitTestResult result : getResults()) {
+                writeResult(writer, result);
+            }
+            writer.flush();
+        } catch (IOException e) {
+            writer.close();
+            throw e;
+        }
+        if (finished) {
+            writer.close();
+        } else {
+            resultsLog = writer;
+        }
+    }
+
+    /**
+     * Flushes the results written so far (if the results log is still open).
+     */
+    public synchronized void flushResultsLog() {
+        if (resultsLog != null) {
+            try {
+                resultsLog.flush();
+            } catch (IOException e) {
+                Log.log(e);
+            }
+        }
+    }
+
+    private void closeResultsLog() {
+        if (resultsLog != null) {
+            try {
+                resultsLog.close();
+            } catch (IOException e) {
+                Log.log(e);
+            }
+            resultsLog = null;
+        }
+    }
+
+    /**
+     * Writes a result in a single line (with the fields separated by tabs and tabs, new lines and backslashes
+     * escaped).
+     */
+    private static void writeResult(Writer writer, PyUnitTestResult result) throws IOException {
+        FastStringBuffer buf = new FastStringBuffer(result.capturedOutput.length() + result.errorContents.length()
+                + 100);
+        String[] fields = new String[] { result.status, result.location, result.test, result.time,
+                result.capturedOutput, result.errorContents };
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                buf.append('\t');
+            }
+            String field = fields[i];
+            int len = field.length();
+            for (int j = 0; j < len; j++) {
+                char c = field.charAt(j);
+                switch (c) {
+                    case '\\':
+                        buf.append("\\\\");
+                        break;
+                    case '\t':
+                        buf.append("\\t");
+                        break;
+                    case '\n':
+                        buf.append("\\n");
+                        break;
+                    case '\r':
+                        buf.append("\\r");
+                        break;
+                    default:
+                        buf.append(c);
+                }
+            }
+        }
+        buf.append('\n');
+        writer.write(buf.getInternalCharsArray(), 0, buf.length());
+    }
+
+    /**
+     * Reads a line which ends with '\n' (the last line of the file is incomplete if it doesn't end with '\n' --
+     * i.e.: the process was killed while writing it -- and is not returned).
+     *
+     * @return the line (without the '\n') or null if there are no more complete lines.
+     */
+    private static String readCompleteLine(Reader reader, FastStringBuffer buf) throws IOException {
+        buf.clear();
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == '\n') {
+                return buf.toString();
+            }
+            buf.append((char) c);
+        }
+        return null;
+    }
+
+    private static void readFields(String line, List<String> fields) {
+        fields.clear();
+        FastStringBuffer buf = new FastStringBuffer(line.length());
+        int len = line.length();
+        for (int i = 0; i < len; i++) {
+            char c = line.charAt(i);
+            if (c == '\t') {
+                fields.add(buf.toString());
+                buf.clear();
+            } else if (c == '\\' && i + 1 < len) {
+                i++;
+                char next = line.charAt(i);
+                if (next == 't') {
+                    buf.append('\t');
+                } else if (next == 'n') {
+                    buf.append('\n');
+                } else if (next == 'r') {
+                    buf.append('\r');
+                } else {
+                    buf.append(next);
+                }
+            } else {
+                buf.append(c);
+            }
+        }
+        fields.add(buf.toString());
+    }
+
 }
@@ -487,6 +487,7 @@ public class PyUnitView extends ViewPartWithOrientation implements IViewWithCont
         final PyUnitViewServerListener serverListener = new PyUnitViewServerListener(pyUnitServer,
                 pyUnitServer.getPyUnitLaunch());
         PyUnitViewTestsHolder.addServerListener(serverListener);
+        PyUnitViewTestsHolder.startSavingTestRun(serverListener.getTestRun());
 
         Runnable r = new Runnable() {
             @Override
@@ -545,7 +546,7 @@ public class PyUnitView extends ViewPartWithOrientation implements IViewWithCont
         }
 
         // When a test finishes executing, save the configuration
-        if (testRun.savedDiskIndex == null) {
+        if (testRun.savedDiskIndex == null || testRun.summaryChanged) {
             PyUnitViewTestsHolder.saveDiskIndexJob.schedule(20);
         }
 
@@ -7,6 +7,7 @@
 package org.python.pydev.debug.pyunit;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -29,6 +30,12 @@ import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.python.pydev.shared_core.string.StringUtils;
 
 // Class which is friends with PyUnitView
+//
+// Each test run is saved in the pyunit_tests dir as:
+// - test_run_N.index: a small xml with the summary and launch (see PyUnitTestRun.toSummaryXML), which is what's
+//   loaded on startup.
+// - test_run_N.log: the results (appended as they're added and only loaded when the test run is selected).
+// test_run_N.xml is the format used in previous versions (with everything in it), which is still restored.
 public class PyUnitViewTestsHolder {
 
     public static int MAX_RUNS_TO_KEEP = 20;
@@ -109,11 +116,14 @@ public class PyUnitViewTestsHolder {
             for (File f : workspaceMetadataFile.listFiles()) {
                 String name = f.getName();
 
-                if (name.endsWith(".xml") && name.startsWith("test_run_")) {
-                    String val0 = name.substring(i0, name.length() - 4);
+                boolean isIndex = name.endsWith(INDEX_EXT);
+                if ((isIndex || name.endsWith(LEGACY_EXT)) && name.startsWith("test_run_")) {
+                    String val0 = name.substring(i0, name.length() - (isIndex ? INDEX_EXT : LEGACY_EXT).length());
                     try {
                         int i = Integer.parseInt(val0);
-                        files.put(i, f);
+                        if (isIndex || !files.containsKey(i)) {
+                            files.put(i, f);
+                        }
                     } catch (NumberFormatException e) {
                         //ignore
                     }
@@ -166,7 +176,7 @@ public class PyUnitViewTestsHolder {
                 // We need to prevent from deleting the pinned contents.
                 if (entry.getKey() == currentPin) {
                     try {
-                        currentPinned = PyUnitTestRun.fromXML(FileUtils.getFileContents(entry.getValue()));
+                        currentPinned = loadTestRun(entry.getValue());
                         setSavedDiskIndex(currentPinned, workspaceMetadataFile, i, entry);
                         i += 1;
                         if (currentPin == lastPin) {
@@ -180,7 +190,7 @@ public class PyUnitViewTestsHolder {
                     }
                 } else if (entry.getKey() == lastPin) {
                     try {
-                        lastPinned = PyUnitTestRun.fromXML(FileUtils.getFileContents(entry.getValue()));
+                        lastPinned = loadTestRun(entry.getValue());
                         setSavedDiskIndex(lastPinned, workspaceMetadataFile, i, entry);
 
                         if (currentRun == lastPin) {
@@ -194,14 +204,16 @@ public class PyUnitViewTestsHolder {
 
                 } else if (entry.getKey() == currentRun) {
                     try {
-                        currentSelected = PyUnitTestRun.fromXML(FileUtils.getFileContents(entry.getValue()));
+                        currentSelected = loadTestRun(entry.getValue());
                         setSavedDiskIndex(currentSelected, workspaceMetadataFile, i, entry);
                         i += 1;
                     } catch (Exception e) {
                         Log.log(e);
                     }
                 } else {
-                    entry.getValue().delete();
+                    for (File f : getTestRunFiles(workspaceMetadataFile, entry.getKey())) {
+                        f.delete();
+                    }
                 }
                 it.remove();
             }
@@ -210,28 +222,23 @@ public class PyUnitViewTestsHolder {
             for (Entry<Integer, File> entry : entrySet) {
                 File file = entry.getValue();
                 try {
-                    String fileContents = FileUtils.getFileContents(file);
-                    try {
-                        PyUnitTestRun testRunRestored = PyUnitTestRun.fromXML(fileContents);
-                        setSavedDiskIndex(testRunRestored, workspaceMetadataFile, i, entry);
-                        i += 1;
+                    PyUnitTestRun testRunRestored = loadTestRun(file);
+                    setSavedDiskIndex(testRunRestored, workspaceMetadataFile, i, entry);
+                    i += 1;
 
-                        // If the pinned files are current files, we have to restore them too.
-                        if (entry.getKey() == currentPin) {
-                            currentPinned = testRunRestored;
-                        }
-                        if (entry.getKey() == lastPin) {
-                            lastPinned = testRunRestored;
-                        }
-                        DummyPyUnitServer pyUnitServer = new DummyPyUnitServer(testRunRestored.getPyUnitLaunch());
-                        final PyUnitViewServerListener serverListener = new PyUnitViewServerListener(pyUnitServer,
-                                testRunRestored);
-                        addServerListener(serverListener);
-                    } catch (Exception e) {
-                        Log.log("Error with contents: " + fileContents, e);
+                    // If the pinned files are current files, we have to restore them too.
+                    if (entry.getKey() == currentPin) {
+                        currentPinned = testRunRestored;
+                    }
+                    if (entry.getKey() == lastPin) {
+                        lastPinned = testRunRestored;
                     }
+                    DummyPyUnitServer pyUnitServer = new DummyPyUnitServer(testRunRestored.getPyUnitLaunch());
+                    final PyUnitViewServerListener serverListener = new PyUnitViewServerListener(pyUnitServer,
+                            testRunRestored);
+                    addServerListener(serverListener);
                 } catch (Exception e) {
-                    Log.log(e);
+                    Log.log("Error restoring: " + file, e);
                 }
             }
         } catch (Exception e) {
@@ -239,14 +246,60 @@ public class PyUnitViewTestsHolder {
         }
     }
 
+    private static final String INDEX_EXT = ".index";
+    private static final String LOG_EXT = ".log";
+    private static final String LEGACY_EXT = ".xml";
+
+    /**
+     * The last index used to save a test run (so that a new test run never reuses the files of another one).
+     */
+    private static int lastDiskIndex = -1;
+
+    /**
+     * @return the files which may be used to save the test run with the given index.
+     */
+    private static File[] getTestRunFiles(File workspaceMetadataFile, int i) {
+        return new File[] {
+                new File(workspaceMetadataFile, "test_run_" + i + INDEX_EXT),
+                new File(workspaceMetadataFile, "test_run_" + i + LOG_EXT),
+                new File(workspaceMetadataFile, "test_run_" + i + LEGACY_EXT) };
+    }
+
+    /**
+     * Loads only the summary of the test run (the results are loaded when requested), unless it was saved in the
+     * previous format.
+     */
+    private static PyUnitTestRun loadTestRun(File file) throws Exception {
+        String fileContents = FileUtils.getFileContents(file);
+        if (file.getName().endsWith(INDEX_EXT)) {
+            String name = file.getName();
+            File logFile = new File(file.getParentFile(),
+                    name.substring(0, name.length() - INDEX_EXT.length()) + LOG_EXT);
+            return PyUnitTestRun.fromSummaryXML(fileContents, logFile);
+        }
+        PyUnitTestRun testRun = PyUnitTestRun.fromXML(fileContents);
+        testRun.summaryChanged = false; // Kept in the previous format (no summary is written for it).
+        return testRun;
+    }
+
     private static void setSavedDiskIndex(PyUnitTestRun testRun, File workspaceMetadataFile, int i,
             Entry<Integer, File> entry) {
         if (i != entry.getKey()) {
             // Restart the numbering on the disk (otherwise that number would grow forever as we
             // always start numbering from the last maximum number + 1).
-            entry.getValue().renameTo(new File(workspaceMetadataFile, "test_run_" + i + ".xml"));
+            File[] from = getTestRunFiles(workspaceMetadataFile, entry.getKey());
+            File[] to = getTestRunFiles(workspaceMetadataFile, i);
+            for (int j = 0; j < from.length; j++) {
+                if (from[j].exists()) {
+                    from[j].renameTo(to[j]);
+                }
+            }
+            testRun.resultsLogRenamed(to[1]);
         }
         testRun.savedDiskIndex = i;
+        synchronized (saveTestsRunStateLock) {
+            lastDiskIndex = Math.max(lastDiskIndex, i);
+        }
     }
 
     /**
@@ -323,6 +376,10 @@ public class PyUnitViewTestsHolder {
                     }
                 }
 
+                if (lastDiskIndex >= i) {
+                    i = lastDiskIndex + 1;
+                }
+
                 for (PyUnitTestRun testRun : lst) {
                     // We want to write only the deltas, so, skip it if it's already saved
                     if (testRun.savedDiskIndex != null) {
@@ -333,14 +390,20 @@ public class PyUnitViewTestsHolder {
                             continue;
                         }
                     }
-                    String xml = testRun.toXML();
-                    File f = new File(workspaceMetadataFile,
-                            "test_run_" + i + ".xml");
-                    FileUtils.writeBytesToFile(xml.getBytes(StandardCharsets.UTF_8), f);
-                    testRun.savedDiskIndex = i;
+                    saveTestRun(workspaceMetadataFile, testRun, i);
                     i += 1;
                 }
 
+                for (PyUnitTestRun testRun : lst) {
+                    if (testRun.savedDiskIndex != null && testRun.summaryChanged) {
+                        // The results are already in the log: only the summary has to be updated.
+                        saveSummary(workspaceMetadataFile, testRun);
+                    }
+                    if (forceWriteUnfinished) {
+                        testRun.flushResultsLog();
+                    }
+                }
+
                 FastStringBuffer buf = new FastStringBuffer();
                 if (currPin != null && currPin.savedDiskIndex != null) {
                     buf.append(currPin.savedDiskIndex);
@@ -361,6 +424,40 @@ public class PyUnitViewTestsHolder {
         }
     }
 
+    /**
+     * Starts saving a new test run (its results are appended to the disk as they're added, so, they don't have
+     * to be written all at once when it finishes).
+     */
+    public static void startSavingTestRun(PyUnitTestRun testRun) {
+        try {
+            synchronized (saveTestsRunStateLock) {
+                if (testRun.savedDiskIndex == null) {
+                    saveTestRun(getPyUnitTestsDir(), testRun, lastDiskIndex + 1);
+                }
+            }
+        } catch (Exception e) {
+            Log.log(e);
+        }
+    }
+
+    /**
+     * Writes the results log and the summary of the test run (the log is kept open to receive new results while
+     * the test run isn't finished).
+     */
+    private static void saveTestRun(File workspaceMetadataFile, PyUnitTestRun testRun, int i) throws IOException {
+        testRun.startResultsLog(getTestRunFiles(workspaceMetadataFile, i)[1]);
+        testRun.savedDiskIndex = i;
+        lastDiskIndex = Math.max(lastDiskIndex, i);
+        saveSummary(workspaceMetadataFile, testRun);
+    }
+
+    private static void saveSummary(File workspaceMetadataFile, PyUnitTestRun testRun) {
+        testRun.summaryChanged = false;
+        String xml = testRun.toSummaryXML();
+        FileUtils.writeBytesToFile(xml.getBytes(StandardCharsets.UTF_8),
+                getTestRunFiles(workspaceMetadataFile, testRun.savedDiskIndex)[0]);
+    }
+
     /**
      * @return the directory to save the files
      */
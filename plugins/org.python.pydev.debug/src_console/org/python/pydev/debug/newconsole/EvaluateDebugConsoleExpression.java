@@ -31,7 +31,8 @@ import org.python.pydev.shared_core.string.StringUtils;
 public class EvaluateDebugConsoleExpression implements ICommandResponseListener {
 
     String EMPTY = StringUtils.EMPTY;
-    private String payload;
+    private volatile String payload;
+    private volatile AbstractDebuggerCommand lastCommand;
     private final PyStackFrame frame;
 
     public EvaluateDebugConsoleExpression(PyStackFrame frame) {
@@ -71,6 +72,7 @@ public class EvaluateDebugConsoleExpression implements ICommandResponseListener
                         EvaluateDebugConsoleExpression.this.commandComplete(cmd);
                     }
                 });
+        lastCommand = cmd;
         target.postCommand(cmd);
     }
 
@@ -85,19 +87,20 @@ public class EvaluateDebugConsoleExpression implements ICommandResponseListener
         AbstractDebugTarget target = frame.getTarget();
         String locator = getLocator(frame.getThreadId(), frame.getId(), "GET_COMPLETIONS", actTok);
         AbstractDebuggerCommand cmd = new EvaluateConsoleExpressionCommand(target, locator, this);
+        lastCommand = cmd;
         target.postCommand(cmd);
         return waitForCommand();
     }
 
     /**
-     * Keeps in a loop for 3 seconds or until the completions are found. If no
-     * completions are found in that time, returns an empty array.
+     * Waits for the response of the last command posted (up to PydevConsoleConstants.CONSOLE_TIMEOUT * 10 millis).
+     * If no response is found in that time, returns an empty string.
      */
     public String waitForCommand() {
-        int timeout = PydevConsoleConstants.CONSOLE_TIMEOUT; // wait up to 3 seconds
-        while (--timeout > 0 && payload == null) {
+        AbstractDebuggerCommand cmd = lastCommand;
+        if (cmd != null) {
             try {
-                Thread.sleep(10); // 10 millis
+                cmd.waitForResponse(PydevConsoleConstants.CONSOLE_TIMEOUT * 10L);
             } catch (InterruptedException e) {
                 // ignore
             }
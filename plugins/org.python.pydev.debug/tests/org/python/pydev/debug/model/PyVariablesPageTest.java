@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model;
+
+import org.eclipse.debug.core.model.IVariable;
+import org.python.pydev.debug.model.remote.AbstractDebuggerCommand;
+import org.python.pydev.debug.model.remote.FakePydevd;
+import org.python.pydev.debug.model.remote.GetVariableCommand;
+import org.python.pydev.debug.model.remote.GetVariablePageCommand;
+
+import junit.framework.TestCase;
+
+public class PyVariablesPageTest extends TestCase {
+
+    private AbstractDebugTarget target;
+    private PyVariableCollection container;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        target = new FakePydevd.DummyDebugTarget();
+        IVariableLocator frameLocator = new IVariableLocator() {
+
+            @Override
+            public String getThreadId() {
+                return "pid_1_seq_1";
+            }
+
+            @Override
+            public String getPyDBLocation() {
+                return "pid_1_seq_1\t10\tFRAME";
+            }
+        };
+        container = new PyVariableCollection(target, "lst", "list", "list: [0, 1, 2, ...]", frameLocator);
+    }
+
+    private PyVariable[] createItemsSent(int len) {
+        PyVariable[] variables = new PyVariable[PyVariablesPage.ITEMS_SENT + 2];
+        for (int i = 0; i < PyVariablesPage.ITEMS_SENT; i++) {
+            variables[i] = new PyVariable(target, String.valueOf(i), "int", "int: " + i, container);
+        }
+        variables[PyVariablesPage.ITEMS_SENT] = new PyVariable(target, "__len__", "int", "int: " + len, container);
+        variables[PyVariablesPage.ITEMS_SENT + 1] = new PyVariable(target, PyVariablesPage.TOO_LARGE_ATTR, "str",
+                "Too large to show contents. Max items to show: 300", container);
+        return variables;
+    }
+
+    public void testHugeContainerIsSplitInPages() throws Exception {
+        PyVariable[] variables = PyVariablesPage.addPages(target, container, createItemsSent(1000000));
+        PyVariablesPage page = (PyVariablesPage) variables[PyVariablesPage.ITEMS_SENT + 1];
+        assertEquals("[301..999999]", page.getName());
+
+        // No more than PAGE_SIZE children at each level.
+        IVariable[] pages = page.getVariables();
+        assertEquals(100, pages.length);
+        assertEquals("[301..10300]", pages[0].getName());
+        assertEquals("[990301..999999]", pages[99].getName());
+
+        IVariable[] subPages = pages[0].getVariables();
+        assertEquals(100, subPages.length);
+        assertEquals("[301..400]", subPages[0].getName());
+
+        PyVariablesPage leaf = (PyVariablesPage) subPages[0];
+        GetVariableCommand cmd = leaf.getVariableCommand(target);
+        assertEquals(AbstractDebuggerCommand.makeCommand(AbstractDebuggerCommand.CMD_GET_VARIABLE_PAGE,
+                cmd.getSequence(), "301\t100\tpid_1_seq_1\t10\tFRAME\tlst"), cmd.getOutgoing());
+    }
+
+    public void testMarkerRemovedWhenAllItemsWereSent() throws Exception {
+        // pydevd adds the marker once ITEMS_SENT items are sent (even if the len is exactly ITEMS_SENT).
+        PyVariable[] variables = PyVariablesPage.addPages(target, container,
+                createItemsSent(PyVariablesPage.ITEMS_SENT));
+        assertEquals(PyVariablesPage.ITEMS_SENT + 1, variables.length);
+        for (PyVariable variable : variables) {
+            assertFalse(variable instanceof PyVariablesPage);
+            assertFalse(PyVariablesPage.TOO_LARGE_ATTR.equals(variable.getName()));
+        }
+
+        variables = PyVariablesPage.addPages(target, container, createItemsSent(PyVariablesPage.ITEMS_SENT + 1));
+        assertEquals("[301..301]", variables[PyVariablesPage.ITEMS_SENT + 1].getName());
+    }
+
+    public void testContainerWithoutMarkerIsKept() throws Exception {
+        PyVariable[] variables = new PyVariable[] {
+                new PyVariable(target, "0", "int", "int: 0", container) };
+        assertSame(variables, PyVariablesPage.addPages(target, container, variables));
+    }
+
+    public void testPageResponse() throws Exception {
+        PyVariablesPage page = new PyVariablesPage(target, container, 301, 401, true);
+        GetVariablePageCommand cmd = (GetVariablePageCommand) page.getVariableCommand(target);
+        assertEquals(301, cmd.getOffset());
+        assertEquals(100, cmd.getCount());
+
+        // The container grew: a new page is added after the last one.
+        cmd.processResponse(AbstractDebuggerCommand.CMD_GET_VARIABLE_PAGE,
+                "<xml offset=\"301\" len=\"1000\" hasMore=\"True\">"
+                        + "<var name=\"301\" type=\"int\" value=\"int%3A 301\" />"
+                        + "<var name=\"302\" type=\"int\" value=\"int%3A 302\" />"
+                        + "</xml>");
+        PyVariable[] variables = page.getCommandVariables(cmd);
+        assertEquals(3, variables.length);
+        assertEquals("pid_1_seq_1\t10\tFRAME\tlst\t301", variables[0].getPyDBLocation());
+        assertEquals("int: 302", variables[1].getValueString());
+        assertEquals("[401..999]", variables[2].getName());
+
+        // Parsed again with the parser reused in this thread.
+        PyVariablesPage notLast = new PyVariablesPage(target, container, 301, 401, false);
+        assertEquals(2, notLast.getCommandVariables(cmd).length);
+    }
+}
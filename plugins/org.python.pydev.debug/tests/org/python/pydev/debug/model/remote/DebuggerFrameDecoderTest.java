@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model.remote;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.python.pydev.debug.model.remote.DebuggerFrameDecoder.UnexpectedHeaderException;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+import junit.framework.TestCase;
+
+public class DebuggerFrameDecoderTest extends TestCase {
+
+    /**
+     * Channel which returns at most 1 byte in each read (so that the frames are split in all the possible places).
+     */
+    private static class OneByteChannel implements ReadableByteChannel {
+
+        private final ByteArrayInputStream in;
+
+        private OneByteChannel(byte[] bytes) {
+            this.in = new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int b = in.read();
+            if (b == -1) {
+                return -1;
+            }
+            dst.put((byte) b);
+            return 1;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    public static byte[] frame(int cmdCode, int sequence, String payload) {
+        byte[] bytes = (cmdCode + "\t" + sequence + "\t" + payload).getBytes(StandardCharsets.UTF_8);
+        byte[] header = ("Content-Length: " + bytes.length + "\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] ret = new byte[header.length + bytes.length];
+        System.arraycopy(header, 0, ret, 0, header.length);
+        System.arraycopy(bytes, 0, ret, header.length, bytes.length);
+        return ret;
+    }
+
+    private static byte[] concat(byte[]... frames) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] frame : frames) {
+            out.write(frame);
+        }
+        return out.toByteArray();
+    }
+
+    public void testFrames() throws Exception {
+        byte[] bytes = concat(frame(103, 2, "pid_1_seq_1"), frame(502, 3, ""), frame(901, 4, "a\tb\tc"));
+        for (ReadableByteChannel channel : new ReadableByteChannel[] {
+                Channels.newChannel(new ByteArrayInputStream(bytes)), new OneByteChannel(bytes) }) {
+            DebuggerFrameDecoder decoder = new DebuggerFrameDecoder(channel);
+            assertTrue(decoder.next());
+            assertEquals(103, decoder.getCmdCode());
+            assertEquals(2, decoder.getSequence());
+            assertEquals("pid_1_seq_1", decoder.getPayload().toString());
+
+            assertTrue(decoder.next());
+            assertEquals(502, decoder.getCmdCode());
+            assertEquals(3, decoder.getSequence());
+            assertEquals("", decoder.getPayload().toString());
+
+            assertTrue(decoder.next());
+            assertEquals(901, decoder.getCmdCode());
+            assertEquals(4, decoder.getSequence());
+            assertEquals("a\tb\tc", decoder.getPayload().toString());
+
+            assertFalse(decoder.next());
+        }
+    }
+
+    public void testMultiByteCharsAndBigPayload() throws Exception {
+        FastStringBuffer buf = new FastStringBuffer();
+        while (buf.length() < DebuggerFrameDecoder.BUFFER_SIZE * 3) {
+            buf.append("<var value=\"\u00e1\u20ac\ud83d\ude00\"/>");
+        }
+        String payload = buf.toString();
+        byte[] bytes = concat(frame(105, 7, payload), frame(106, 8, "\u20ac"));
+        for (ReadableByteChannel channel : new ReadableByteChannel[] {
+                Channels.newChannel(new ByteArrayInputStream(bytes)), new OneByteChannel(bytes) }) {
+            DebuggerFrameDecoder decoder = new DebuggerFrameDecoder(channel);
+            assertTrue(decoder.next());
+            assertEquals(7, decoder.getSequence());
+            assertEquals(payload, decoder.getPayload().toString());
+
+            assertTrue(decoder.next());
+            assertEquals(8, decoder.getSequence());
+            assertEquals("\u20ac", decoder.getPayload().toString());
+            assertFalse(decoder.next());
+        }
+    }
+
+    public void testUnexpectedHeader() throws Exception {
+        byte[] bytes = "501\t1\t1.1\n".getBytes(StandardCharsets.UTF_8);
+        DebuggerFrameDecoder decoder = new DebuggerFrameDecoder(Channels.newChannel(new ByteArrayInputStream(bytes)));
+        try {
+            decoder.next();
+            fail("Expected UnexpectedHeaderException");
+        } catch (UnexpectedHeaderException e) {
+            assertEquals("501\t1\t1.1", e.header);
+        }
+    }
+
+    public void testEndOfStreamInFrame() throws Exception {
+        byte[] bytes = frame(105, 7, "<xml></xml>");
+        byte[] truncated = new byte[bytes.length - 3];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        DebuggerFrameDecoder decoder = new DebuggerFrameDecoder(
+                Channels.newChannel(new ByteArrayInputStream(truncated)));
+        try {
+            decoder.next();
+            fail("Expected EOFException");
+        } catch (EOFException e) {
+            //expected
+        }
+    }
+}
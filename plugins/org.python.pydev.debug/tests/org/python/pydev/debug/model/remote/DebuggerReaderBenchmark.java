@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model.remote;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+/**
+ * Benchmark comparing the commands/second decoded with the previous approach (header lines read into a
+ * FastStringBuffer, payload copied to a ByteArrayOutputStream, converted to a String and split) with the
+ * DebuggerFrameDecoder (used by the DebuggerReader).
+ *
+ * The commands are the ones pydevd sends in bursts (thread created/killed, console output).
+ *
+ * Run as a java application (args: [number of commands] [number of runs]).
+ */
+public class DebuggerReaderBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int commands = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        byte[] stream = createStream(commands);
+
+        for (int i = 0; i < runs; i++) {
+            long checksum = 0;
+            long initial = System.nanoTime();
+            InputStream in = new ByteArrayInputStream(stream);
+            String contents;
+            while ((contents = readContentsPrevious(in)) != null) {
+                String[] cmdParsed = contents.split("\t", 3);
+                checksum += Integer.parseInt(cmdParsed[0]) + Integer.parseInt(cmdParsed[1])
+                        + cmdParsed[2].length();
+            }
+            double before = commands / ((System.nanoTime() - initial) / 1e9);
+
+            long checksum2 = 0;
+            initial = System.nanoTime();
+            DebuggerFrameDecoder decoder = new DebuggerFrameDecoder(
+                    Channels.newChannel(new ByteArrayInputStream(stream)));
+            while (decoder.next()) {
+                checksum2 += decoder.getCmdCode() + decoder.getSequence() + decoder.getPayload().length();
+            }
+            double after = commands / ((System.nanoTime() - initial) / 1e9);
+
+            if (checksum != checksum2) {
+                throw new AssertionError("Different results: " + checksum + " != " + checksum2);
+            }
+            System.out.println("Run " + i + ": previous: " + (long) before + " commands/second, frame decoder: "
+                    + (long) after + " commands/second");
+        }
+    }
+
+    private static byte[] createStream(int commands) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < commands; i++) {
+            String payload;
+            int cmdCode;
+            switch (i % 3) {
+                case 0:
+                    cmdCode = AbstractDebuggerCommand.CMD_THREAD_CREATED;
+                    payload = "<xml><thread name=\"Thread-" + i + "\" id=\"pid_1234_id_" + i + "\" /></xml>";
+                    break;
+                case 1:
+                    cmdCode = AbstractDebuggerCommand.CMD_THREAD_KILL;
+                    payload = "pid_1234_id_" + (i - 1);
+                    break;
+                default:
+                    cmdCode = AbstractDebuggerCommand.CMD_WRITE_TO_CONSOLE;
+                    payload = "<xml><io s=\"Processing item " + i + " \u2713%0A\" ctx=\"1\"/></xml>";
+                    break;
+            }
+            byte[] bytes = (cmdCode + "\t" + (i * 2) + "\t" + payload).getBytes(StandardCharsets.UTF_8);
+            out.write(("Content-Length: " + bytes.length + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            out.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] buffer = new byte[32 * 1024];
+    private static FastStringBuffer contents = new FastStringBuffer();
+    private static ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+
+    /**
+     * How the DebuggerReader read the contents before using the DebuggerFrameDecoder.
+     */
+    private static String readContentsPrevious(InputStream in) throws IOException {
+        if (in.available() == 0) {
+            return null;
+        }
+        int bytesToRead = -1;
+
+        while (true) {
+            FileUtils.readLine(in, contents.clear());
+            contents.trim();
+
+            if (contents.length() == 0) {
+                if (bytesToRead == -1) {
+                    return null;
+                }
+                int bytesRead;
+                while ((bytesRead = in.read(buffer, 0, Math.min(bytesToRead, buffer.length))) > 0) {
+                    byteArrayOutputStream.write(buffer, 0, bytesRead);
+                    bytesToRead -= bytesRead;
+                }
+                byte[] bytes = byteArrayOutputStream.toByteArray();
+                byteArrayOutputStream.reset();
+                return new String(bytes, StandardCharsets.UTF_8);
+            } else {
+                contents.deleteFirstChars("Content-Length: ".length());
+                bytesToRead = Integer.parseInt(contents.trim().toString());
+            }
+        }
+    }
+}
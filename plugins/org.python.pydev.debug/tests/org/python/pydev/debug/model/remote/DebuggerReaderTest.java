@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model.remote;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.CoreException;
+
+import junit.framework.TestCase;
+
+public class DebuggerReaderTest extends TestCase {
+
+    private static final int SUSPENDED_THREADS = 100;
+    private static final int REQUESTS_PER_THREAD = 20;
+
+    private FakePydevd pydevd;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        pydevd = new FakePydevd((cmd) -> {
+            if (cmd[2].endsWith("NO_REPLY")) {
+                return null;
+            }
+            // i.e.: the frame of a suspended thread.
+            return "<xml><var name=\"frame\" type=\"str\" value=\"" + cmd[2].replace('\t', '_') + "\" /></xml>";
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        pydevd.close();
+        pydevd.target.terminate();
+        super.tearDown();
+    }
+
+    private static String getLocator(int thread, int frame) {
+        return "pid_1_seq_" + thread + "\t" + frame + "\tFRAME";
+    }
+
+    private static String getExpectedResponse(String locator) {
+        return "<xml><var name=\"frame\" type=\"str\" value=\"" + locator.replace('\t', '_') + "\" /></xml>";
+    }
+
+    /**
+     * Each suspended thread requests its frames in sequence (as the variables view would do) and the round-trip
+     * latency is reported (it's not checked as it depends on the machine running the test).
+     */
+    public void testRoundTripWithSuspendedThreads() throws Exception {
+        final long[] latencies = new long[SUSPENDED_THREADS * REQUESTS_PER_THREAD];
+        final List<Throwable> errors = new ArrayList<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < SUSPENDED_THREADS; i++) {
+            final int thread = i;
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int frame = 0; frame < REQUESTS_PER_THREAD; frame++) {
+                            String locator = getLocator(thread, frame);
+                            GetFrameCommand cmd = new GetFrameCommand(pydevd.target, locator);
+                            long initial = System.nanoTime();
+                            pydevd.target.postCommand(cmd);
+                            assertTrue(cmd.waitForResponse(5000));
+                            latencies[thread * REQUESTS_PER_THREAD + frame] = System.nanoTime() - initial;
+                            assertEquals(getExpectedResponse(locator), cmd.getResponse());
+                        }
+                    } catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            };
+            t.start();
+            threads.add(t);
+        }
+        long initial = System.currentTimeMillis();
+        start.countDown();
+        for (Thread t : threads) {
+            t.join(60000);
+        }
+        long elapsed = System.currentTimeMillis() - initial;
+        assertEquals("Errors: " + errors, 0, errors.size());
+
+        Arrays.sort(latencies);
+        System.out.println("Round-trip with " + SUSPENDED_THREADS + " suspended threads: " + latencies.length
+                + " requests in " + elapsed + " millis -- median: "
+                + TimeUnit.NANOSECONDS.toMicros(latencies[latencies.length / 2]) + " micros, p99: "
+                + TimeUnit.NANOSECONDS.toMicros(latencies[latencies.length * 99 / 100]) + " micros, max: "
+                + TimeUnit.NANOSECONDS.toMicros(latencies[latencies.length - 1]) + " micros");
+    }
+
+    public void testAsyncRequests() throws Exception {
+        List<CompletableFuture<AbstractDebuggerCommand>> futures = new ArrayList<>();
+        List<GetFrameCommand> commands = new ArrayList<>();
+        for (int i = 0; i < SUSPENDED_THREADS; i++) {
+            GetFrameCommand cmd = new GetFrameCommand(pydevd.target, getLocator(i, 0));
+            commands.add(cmd);
+            futures.add(cmd.getResponseFuture());
+            pydevd.target.postCommand(cmd);
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        for (int i = 0; i < SUSPENDED_THREADS; i++) {
+            assertEquals(getExpectedResponse(getLocator(i, 0)), commands.get(i).getResponse());
+        }
+    }
+
+    public void testTimeout() throws Exception {
+        GetVariableCommand cmd = new GetVariableCommand(pydevd.target, "NO_REPLY") {
+            @Override
+            public long getResponseTimeoutMillis() {
+                return 200;
+            }
+        };
+        pydevd.target.postCommand(cmd);
+        assertTrue(cmd.waitForResponse(5000));
+        try {
+            cmd.getResponse();
+            fail("Expected timeout error.");
+        } catch (CoreException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Timeout"));
+        }
+    }
+
+    public void testConnectionClosed() throws Exception {
+        GetVariableCommand cmd = new GetVariableCommand(pydevd.target, "NO_REPLY");
+        pydevd.target.postCommand(cmd);
+        while (pydevd.commandsReceived.get() < 2) { //set protocol + get variable
+            Thread.sleep(10);
+        }
+        pydevd.close();
+        assertTrue(cmd.waitForResponse(5000));
+        try {
+            cmd.getResponse();
+            fail("Expected connection closed error.");
+        } catch (CoreException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("closed"));
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model.remote;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import junit.framework.TestCase;
+
+public class DebuggerWriterTest extends TestCase {
+
+    private static final int BREAKPOINTS = 1000;
+
+    private FakePydevd pydevd;
+    private final ConcurrentLinkedQueue<String> received = new ConcurrentLinkedQueue<>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        pydevd = new FakePydevd((cmd) -> {
+            if (cmd[0].equals(Integer.toString(AbstractDebuggerCommand.CMD_SET_BREAK))
+                    || cmd[0].equals(Integer.toString(AbstractDebuggerCommand.CMD_REMOVE_BREAK))) {
+                received.add(cmd[0] + "\t" + cmd[2]);
+                return null;
+            }
+            return "1.1";
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        pydevd.close();
+        pydevd.target.terminate();
+        super.tearDown();
+    }
+
+    private SetBreakpointCommand createSetBreakpoint(int id) {
+        return new SetBreakpointCommand(pydevd.target, id, "/tmp/mod" + (id % 50) + ".py", id, null, null,
+                "python-line");
+    }
+
+    private RemoveBreakpointCommand createRemoveBreakpoint(int id) {
+        return new RemoveBreakpointCommand(pydevd.target, id, "/tmp/mod" + (id % 50) + ".py", "python-line");
+    }
+
+    /**
+     * Measures the time to sync the breakpoints on attach (until pydevd answers the version command posted after
+     * them).
+     */
+    public void testAttachWithBreakpoints() throws Exception {
+        long initial = System.currentTimeMillis();
+        for (int i = 0; i < BREAKPOINTS; i++) {
+            pydevd.target.postCommand(createSetBreakpoint(i));
+        }
+        VersionCommand version = new VersionCommand(pydevd.target);
+        pydevd.target.postCommand(version);
+        assertTrue(version.waitForResponse(10000));
+        long elapsed = System.currentTimeMillis() - initial;
+        System.out.println("Attach with " + BREAKPOINTS + " breakpoints: " + elapsed + " millis");
+
+        // Previously only 64 commands could be pending (the others were dropped).
+        assertEquals(BREAKPOINTS, received.size());
+    }
+
+    public void testBackPressure() throws Exception {
+        final int commandsPerThread = DebuggerWriter.MAX_PENDING_COMMANDS;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final int base = i * commandsPerThread;
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < commandsPerThread; j++) {
+                        pydevd.target.postCommand(createSetBreakpoint(base + j));
+                    }
+                }
+            };
+            t.start();
+            threads.add(t);
+        }
+        for (Thread t : threads) {
+            t.join(20000);
+        }
+        VersionCommand version = new VersionCommand(pydevd.target);
+        pydevd.target.postCommand(version);
+        assertTrue(version.waitForResponse(10000));
+
+        // Set breakpoints for different ids are never coalesced, so, all must be received.
+        assertEquals(4 * commandsPerThread, received.size());
+    }
+
+    public void testCoalesce() throws Exception {
+        Set<Integer> breakpointsSent = new HashSet<>(Arrays.asList(2));
+        SendPyExceptionCommand exceptions1 = new SendPyExceptionCommand(pydevd.target);
+        SetBreakpointCommand set1 = createSetBreakpoint(1);
+        SetBreakpointCommand set1Again = createSetBreakpoint(1);
+        RemoveBreakpointCommand remove2 = createRemoveBreakpoint(2);
+        SetBreakpointCommand set2 = createSetBreakpoint(2);
+        RemoveBreakpointCommand remove2Again = createRemoveBreakpoint(2);
+        SetBreakpointCommand set3 = createSetBreakpoint(3);
+        RemoveBreakpointCommand remove3 = createRemoveBreakpoint(3);
+        SendPyExceptionCommand exceptions2 = new SendPyExceptionCommand(pydevd.target);
+
+        List<AbstractDebuggerCommand> batch = new ArrayList<>(Arrays.asList(exceptions1, set1, set1Again, remove2,
+                set2, remove2Again, set3, remove3, exceptions2));
+        DebuggerWriter.coalesce(batch, breakpointsSent);
+
+        // - set1 is replaced by set1Again;
+        // - remove2 is kept (2 was set in pydevd) and set2/remove2Again are redundant;
+        // - 3 was never set in pydevd, so, neither set3 nor remove3 are needed;
+        // - only the last exceptions configuration is sent.
+        assertEquals(Arrays.asList(null, null, set1Again, remove2, null, null, null, null, exceptions2), batch);
+    }
+
+    public void testRemoveAfterSetInPreviousBatch() throws Exception {
+        pydevd.target.postCommand(createSetBreakpoint(7));
+        VersionCommand version = new VersionCommand(pydevd.target);
+        pydevd.target.postCommand(version);
+        assertTrue(version.waitForResponse(10000));
+
+        pydevd.target.postCommand(createSetBreakpoint(7));
+        pydevd.target.postCommand(createRemoveBreakpoint(7));
+        version = new VersionCommand(pydevd.target);
+        pydevd.target.postCommand(version);
+        assertTrue(version.waitForResponse(10000));
+
+        // Whether the 2nd set is coalesced depends on the timing, but the remove must always be received.
+        List<String> lst = new ArrayList<>(received);
+        assertTrue(lst.toString(), lst.get(lst.size() - 1).startsWith(
+                AbstractDebuggerCommand.CMD_REMOVE_BREAK + "\t"));
+    }
+}
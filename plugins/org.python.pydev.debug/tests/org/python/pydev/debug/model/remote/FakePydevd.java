@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.model.remote;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.eclipse.debug.core.ILaunch;
+import org.eclipse.debug.core.model.IProcess;
+import org.python.pydev.debug.model.AbstractDebugTarget;
+import org.python.pydev.shared_core.net.SocketUtil;
+
+/**
+ * Plays the role of pydevd in tests: reads the commands written by a DebuggerWriter and answers them with the
+ * framing expected by the DebuggerReader (the debug target is connected to it in the constructor).
+ */
+public class FakePydevd implements Runnable {
+
+    /**
+     * Target which just ignores the commands which aren't responses.
+     */
+    public static class DummyDebugTarget extends AbstractDebugTarget {
+
+        @Override
+        public void processCommand(int cmdCode, int seqCode, CharSequence payload) {
+        }
+
+        @Override
+        public IProcess getProcess() {
+            return null;
+        }
+
+        @Override
+        public void launchRemoved(ILaunch launch) {
+        }
+
+        @Override
+        public boolean canTerminate() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+    }
+
+    /**
+     * Receives the command code, sequence and payload of each command read and returns the payload of the response
+     * (or null to send no response).
+     */
+    private final Function<String[], String> responder;
+    private final Socket socket;
+    private final OutputStream out;
+    private final Object writeLock = new Object();
+
+    public final DummyDebugTarget target = new DummyDebugTarget();
+    public final AtomicInteger commandsReceived = new AtomicInteger();
+
+    public FakePydevd(Function<String[], String> responder) throws IOException {
+        this.responder = responder;
+        try (ServerSocket serverSocket = SocketUtil.createLocalServerSocket()) {
+            serverSocket.setSoTimeout(5000);
+            Socket clientSocket = new Socket("127.0.0.1", serverSocket.getLocalPort());
+            socket = serverSocket.accept();
+            target.startTransmission(clientSocket);
+        }
+        out = socket.getOutputStream();
+        Thread thread = new Thread(this, "FakePydevd");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] cmd = line.split("\t", 3);
+                commandsReceived.incrementAndGet();
+                String response = responder.apply(cmd);
+                if (response != null) {
+                    send(cmd[0], cmd[1], response);
+                }
+            }
+        } catch (IOException e) {
+            //closed
+        }
+    }
+
+    public void send(String cmdCode, String sequence, String payload) throws IOException {
+        byte[] bytes = (cmdCode + "\t" + sequence + "\t" + payload).getBytes(StandardCharsets.UTF_8);
+        byte[] header = ("Content-Length: " + bytes.length + "\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        synchronized (writeLock) {
+            out.write(header);
+            out.write(bytes);
+            out.flush();
+        }
+    }
+
+    public void close() throws IOException {
+        socket.close();
+    }
+}
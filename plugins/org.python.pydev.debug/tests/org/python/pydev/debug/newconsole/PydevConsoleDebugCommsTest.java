@@ -141,8 +141,8 @@ public class PydevConsoleDebugCommsTest extends TestCase {
     private class DummyDebugTarget extends AbstractDebugTarget {
 
         @Override
-        public void processCommand(String sCmdCode, String sSeqCode, String payload) {
-            System.out.println(sCmdCode + ":" + sSeqCode + ":" + payload);
+        public void processCommand(int cmdCode, int seqCode, CharSequence payload) {
+            System.out.println(cmdCode + ":" + seqCode + ":" + payload);
         }
 
         @Override
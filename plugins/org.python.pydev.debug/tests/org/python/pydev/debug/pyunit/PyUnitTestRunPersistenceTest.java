@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.debug.pyunit;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.python.pydev.shared_core.io.FileUtils;
+
+import junit.framework.TestCase;
+
+public class PyUnitTestRunPersistenceTest extends TestCase {
+
+    private File baseDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = Files.createTempDirectory("pyunit_persistence").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectoryTree(baseDir);
+        super.tearDown();
+    }
+
+    public void testResultsAppendedAndLoadedLazily() throws Exception {
+        File logFile = new File(baseDir, "test_run_0.log");
+        PyUnitTestRun testRun = new PyUnitTestRun(null);
+        testRun.addResult(new PyUnitTestResult(testRun, "ok", "/tmp/a.py", "TestA.test1", "", "", "0.1"));
+        // Started after a result was added: it must be written too.
+        testRun.startResultsLog(logFile);
+        testRun.addResult(new PyUnitTestResult(testRun, "fail", "/tmp/a.py", "TestA.test2", "out\twith\ttabs",
+                "Traceback:\n  line\\1\r\n", "0.2"));
+        testRun.addResult(new PyUnitTestResult(testRun, "error", "/tmp/b.py", "TestB.test1", "", "err", "0.3"));
+        testRun.setTotalNumberOfRuns("3");
+        testRun.setTotalTime("0.6");
+        testRun.setFinished(true); // closes the log
+        String summaryXml = testRun.toSummaryXML();
+        assertFalse(summaryXml.contains("TestA"));
+
+        PyUnitTestRun restored = PyUnitTestRun.fromSummaryXML(summaryXml, logFile);
+        assertFalse(restored.isResultsLoaded());
+        assertEquals(3, restored.getNumberOfRuns());
+        assertEquals(1, restored.getNumberOfErrors());
+        assertEquals(1, restored.getNumberOfFailures());
+        assertEquals("3", restored.getTotalNumberOfRuns());
+        assertEquals("0.6", restored.getTotalTime());
+        assertTrue(restored.getFinished());
+        assertFalse(restored.isResultsLoaded());
+
+        List<PyUnitTestResult> results = restored.getSharedResultsList();
+        assertTrue(restored.isResultsLoaded());
+        assertEquals(3, results.size());
+        assertEquals("TestA.test1", results.get(0).test);
+        PyUnitTestResult fail = results.get(1);
+        assertEquals("fail", fail.status);
+        assertEquals("out\twith\ttabs", fail.capturedOutput);
+        assertEquals("Traceback:\n  line\\1\r\n", fail.errorContents);
+        assertEquals("0.2", fail.time);
+        assertEquals(1, restored.getNumberOfErrors());
+        assertEquals(1, restored.getNumberOfFailures());
+    }
+
+    public void testIncompleteLastLineIgnored() throws Exception {
+        File logFile = new File(baseDir, "test_run_1.log");
+        PyUnitTestRun testRun = new PyUnitTestRun(null);
+        testRun.startResultsLog(logFile);
+        testRun.addResult(new PyUnitTestResult(testRun, "ok", "/tmp/a.py", "TestA.test1", "", "", "0.1"));
+        testRun.flushResultsLog();
+        String summaryXml = testRun.toSummaryXML();
+
+        // i.e.: the process was killed while writing a result.
+        try (OutputStream out = new FileOutputStream(logFile, true)) {
+            out.write("fail\t/tmp/a.py\tTestA.te".getBytes(StandardCharsets.UTF_8));
+        }
+
+        PyUnitTestRun restored = PyUnitTestRun.fromSummaryXML(summaryXml, logFile);
+        assertFalse(restored.getFinished());
+        assertEquals(1, restored.getSharedResultsList().size());
+        assertEquals(0, restored.getNumberOfFailures());
+    }
+
+    public void testLastLineCutInErrorContentsIgnored() throws Exception {
+        File logFile = new File(baseDir, "test_run_2.log");
+        PyUnitTestRun testRun = new PyUnitTestRun(null);
+        testRun.startResultsLog(logFile);
+        testRun.addResult(new PyUnitTestResult(testRun, "ok", "/tmp/a.py", "TestA.test1", "", "", "0.1"));
+        testRun.flushResultsLog();
+        String summaryXml = testRun.toSummaryXML();
+
+        // All the fields are there, but the error contents were cut (no '\n' at the end).
+        try (OutputStream out = new FileOutputStream(logFile, true)) {
+            out.write("fail\t/tmp/a.py\tTestA.test2\t0.2\t\tTraceback:\\n  li".getBytes(StandardCharsets.UTF_8));
+        }
+
+        PyUnitTestRun restored = PyUnitTestRun.fromSummaryXML(summaryXml, logFile);
+        List<PyUnitTestResult> results = restored.getSharedResultsList();
+        assertEquals(1, results.size());
+        assertEquals("TestA.test1", results.get(0).test);
+        assertEquals(0, restored.getNumberOfFailures());
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.python.pydev.core.IGrammarVersionProvider.AdditionalGrammarVersionsToCheck;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.parser.jython.ParseException;
+import org.python.pydev.parser.jython.TokenMgrError;
+import org.python.pydev.shared_core.callbacks.ICallback;
+import org.python.pydev.shared_core.out_of_memory.OnExpectedOutOfMemory;
+
+/**
+ * Checks the contents of a document against the grammars in AdditionalGrammarVersionsToCheck.
+ *
+ * The parser of an editor uses it to do those checks in a background pool after the ast of the main grammar is
+ * delivered to the listeners (the error found is posted later on) and PyParser.reparseDocument(ParserInfo) uses it to
+ * check the output of the main grammar in the calling thread. The results of the last texts checked are shared (keyed
+ * by the hash and length of the text), so, the same contents are not checked again (i.e.: when the builder requests
+ * the contents checked by the editor, on a save or after an edit is undone).
+ */
+public final class AdditionalGrammarsChecker {
+
+    /**
+     * Number of threads used to check the additional grammars (shared by all the editors).
+     */
+    public static final int THREADS = Integer.getInteger("pydev.parser.additional.grammars.threads",
+            Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1)));
+
+    private static ThreadPoolExecutor pool;
+
+    /**
+     * @return the pool shared by all the checkers (its threads are stopped when idle).
+     */
+    private static synchronized ThreadPoolExecutor getPool() {
+        if (pool == null) {
+            pool = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+                        private final AtomicInteger threadNumber = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r);
+                            thread.setName("PyDev additional grammars checker " + threadNumber.incrementAndGet());
+                            thread.setDaemon(true);
+                            thread.setPriority(Thread.MIN_PRIORITY + 1);
+                            return thread;
+                        }
+                    });
+            pool.allowCoreThreadTimeOut(true);
+        }
+        return pool;
+    }
+
+    /**
+     * The maximum number of results kept.
+     */
+    public static final int MAX_CHECKED_RESULTS = Integer.getInteger("pydev.parser.additional.grammars.cache.size",
+            20);
+
+    private static final Object lock = new Object();
+
+    /**
+     * The results of the last texts checked (access-ordered and accessed with the lock held). Note that the value is
+     * null if no error was found in the text.
+     */
+    private static final LinkedHashMap<String, Throwable> checkedResults = new LinkedHashMap<String, Throwable>(16,
+            0.75f, true);
+
+    /**
+     * Incremented for each check requested (so that a check which is still in the queue when a new one is requested
+     * for the same document is skipped).
+     */
+    private final AtomicInteger lastRequest = new AtomicInteger();
+
+    /**
+     * Checks the grammars (in the calling thread).
+     *
+     * @param grammarVersionsParsed the grammars already checked (updated with the ones checked in this call).
+     * @return the first error found or null if the contents are valid for all the grammars.
+     */
+    public static Throwable checkGrammars(char[] charArray, Set<Integer> grammarVersionsParsed,
+            AdditionalGrammarVersionsToCheck additionalGrammarVersionsToCheck) {
+        for (int grammarVersion : additionalGrammarVersionsToCheck.getGrammarVersions()) {
+            if (grammarVersionsParsed.contains(grammarVersion)) {
+                continue;
+            }
+            grammarVersionsParsed.add(grammarVersion);
+            IGrammar grammar = PyParser.createGrammar(false, grammarVersion, charArray);
+            Throwable error;
+            try {
+                try {
+                    grammar.file_input();
+                } catch (OutOfMemoryError e) {
+                    OnExpectedOutOfMemory.clearCacheOnOutOfMemory.call(null);
+                    grammar.file_input(); //retry now with caches cleared...
+                }
+                error = grammar.getErrorOnParsing();
+            } catch (ParseException | TokenMgrError e) {
+                //We have to report the 1st error we got (the one in catch is the last one).
+                error = grammar.getErrorOnParsing();
+                if (error == null) {
+                    error = e;
+                }
+            }
+            if (error != null) {
+                return error;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Requests the contents of the document (at the given modification stamp) to be checked in the background.
+     *
+     * @param onError called in a thread of the pool if an error is found (only if the document still has the same
+     * modification stamp).
+     */
+    public void checkLater(final IDocument document, final long modificationStamp, final int mainGrammarVersion,
+            final AdditionalGrammarVersionsToCheck additionalGrammarVersionsToCheck,
+            final ICallback<Object, Throwable> onError) {
+        final int request = lastRequest.incrementAndGet();
+        getPool().execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    if (request != lastRequest.get() || !isCurrent(document, modificationStamp)) {
+                        return; //A new parse/check is already on the way.
+                    }
+                    Throwable error = check(document.get(), mainGrammarVersion, additionalGrammarVersionsToCheck);
+                    if (error != null && request == lastRequest.get() && isCurrent(document, modificationStamp)) {
+                        onError.call(error);
+                    }
+                } catch (Throwable e) {
+                    Log.log(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Cancels any check which is pending.
+     */
+    public void cancel() {
+        lastRequest.incrementAndGet();
+    }
+
+    private static boolean isCurrent(IDocument document, long modificationStamp) {
+        return ((IDocumentExtension4) document).getModificationStamp() == modificationStamp;
+    }
+
+    /**
+     * @return the first error found checking the given contents (reusing the result of a previous check of the same
+     * contents with the same grammars if it's still available).
+     */
+    /*default*/ static Throwable check(String contents, int mainGrammarVersion,
+            AdditionalGrammarVersionsToCheck additionalGrammarVersionsToCheck) {
+        String key = mainGrammarVersion + ":"
+                + new TreeSet<Integer>(additionalGrammarVersionsToCheck.getGrammarVersions()) + ":"
+                + contents.length() + ":" + contents.hashCode();
+        synchronized (lock) {
+            if (checkedResults.containsKey(key)) {
+                return checkedResults.get(key);
+            }
+        }
+
+        Set<Integer> grammarVersionsParsed = new TreeSet<Integer>();
+        grammarVersionsParsed.add(mainGrammarVersion);
+        Throwable error = checkGrammars(PyParser.createCharArrayToParse(contents), grammarVersionsParsed,
+                additionalGrammarVersionsToCheck);
+
+        synchronized (lock) {
+            checkedResults.put(key, error);
+            if (checkedResults.size() > MAX_CHECKED_RESULTS) {
+                Iterator<String> it = checkedResults.keySet().iterator();
+                it.next();
+                it.remove();
+            }
+        }
+        return error;
+    }
+}
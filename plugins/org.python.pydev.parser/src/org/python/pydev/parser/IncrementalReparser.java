@@ -0,0 +1,743 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.SpecialStr;
+import org.python.pydev.parser.jython.ast.ClassDef;
+import org.python.pydev.parser.jython.ast.FunctionDef;
+import org.python.pydev.parser.jython.ast.ImportFrom;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.NameTok;
+import org.python.pydev.parser.jython.ast.VisitorBase;
+import org.python.pydev.parser.jython.ast.commentType;
+import org.python.pydev.parser.jython.ast.decoratorsType;
+import org.python.pydev.parser.jython.ast.stmtType;
+import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
+
+/**
+ * Reparses only the part of a document which changed since its last parse (used by the parser of an editor, where
+ * a keystroke usually changes a single top-level statement of the module).
+ *
+ * The contents and ast of the last parse without errors are kept: the new contents are compared with those to find
+ * the changed range, which is mapped to the enclosing top-level statement(s) of the previous ast. Only the text of
+ * those statements is parsed; the new nodes have their lines adjusted and replace the old ones (the statements
+ * before that region are reused as is and the ones after it are reused or copied with the lines shifted if the number
+ * of lines of the region changed).
+ *
+ * A full parse is done when that's not possible or may give a different result: i.e.: no previous ast, the edit is
+ * before the first statement, the region doesn't start/end at a statement in the first column (indentation changed),
+ * the region has errors when parsed alone (unclosed brackets/strings or a block continuing in the next statement),
+ * or __future__ imports changed (or the module has __future__ imports which change the tokens in the 2.x grammars:
+ * the region would be parsed without those).
+ */
+public final class IncrementalReparser {
+
+    /**
+     * May be set to false to always do a full parse.
+     */
+    public static final boolean ENABLED = !"false".equals(System.getProperty("pydev.parser.incremental", "true"));
+
+    private final Object lock = new Object();
+
+    // The last parse without errors: all accessed with the lock held.
+    private String lastContents;
+    private Module lastAst;
+    private int lastGrammarVersion;
+
+    private int incrementalParses;
+    private int fullParses;
+
+    /**
+     * Same as PyParser.reparseDocument(ParserInfo), but tries to reuse the last ast parsed by this reparser.
+     */
+    public ParseOutput reparseDocument(final PyParser.ParserInfo info) {
+        if (!ENABLED || !info.generateTree || info.additionalGrammarVersionsToCheck != null
+                || info.grammarVersion == IPythonNature.GRAMMAR_PYTHON_VERSION_CYTHON) {
+            return PyParser.reparseDocument(info);
+        }
+        Callable<ParseOutput> parser = new Callable<ParseOutput>() {
+
+            @Override
+            public ParseOutput call() throws Exception {
+                return doReparseDocument(info);
+            }
+        };
+        ParseOutputCache cache = ParseOutputCache.get();
+        if (cache == null) {
+            return doReparseDocument(info);
+        }
+        return cache.getParseOutput(info, parser);
+    }
+
+    private ParseOutput doReparseDocument(PyParser.ParserInfo info) {
+        IDocument document = info.document;
+        long modifiedTime = ((IDocumentExtension4) document).getModificationStamp();
+        String contents = document.get();
+
+        Module module = reparse(contents, info.grammarVersion);
+        if (module != null) {
+            synchronized (lock) {
+                incrementalParses++;
+            }
+            PyParser.notifySuccessfulParseListeners(module, null, info);
+            return new ParseOutput(module, null, modifiedTime);
+        }
+        synchronized (lock) {
+            fullParses++;
+        }
+        ParseOutput output = PyParser.doReparseDocument(info, modifiedTime, contents);
+        if (output.error == null && output.ast instanceof Module) {
+            setLastParse(contents, (Module) output.ast, info.grammarVersion);
+        }
+        return output;
+    }
+
+    /**
+     * Forgets the last ast parsed.
+     */
+    public void clear() {
+        synchronized (lock) {
+            lastContents = null;
+            lastAst = null;
+        }
+    }
+
+    public String getStatistics() {
+        synchronized (lock) {
+            return "Incremental reparser -- incremental: " + incrementalParses + " full: " + fullParses;
+        }
+    }
+
+    /*default*/ void setLastParse(String contents, Module ast, int grammarVersion) {
+        synchronized (lock) {
+            lastContents = contents;
+            lastAst = ast;
+            lastGrammarVersion = grammarVersion;
+        }
+    }
+
+    /**
+     * @return the ast for the given contents created from the last ast parsed (which is updated to the new one) or
+     * null if a full parse is needed.
+     */
+    /*default*/ Module reparse(String contents, int grammarVersion) {
+        String previousContents;
+        Module previousAst;
+        synchronized (lock) {
+            if (lastAst == null || lastGrammarVersion != grammarVersion) {
+                return null;
+            }
+            previousContents = lastContents;
+            previousAst = lastAst;
+        }
+        Module module;
+        try {
+            module = reparse(previousContents, previousAst, contents, grammarVersion);
+        } catch (Throwable e) {
+            //The region could not be parsed (a full parse should report the error).
+            module = null;
+        }
+        if (module != null) {
+            setLastParse(contents, module, grammarVersion);
+        }
+        return module;
+    }
+
+    private static Module reparse(String previousContents, Module previousAst, String contents,
+            int grammarVersion) throws Throwable {
+        if (previousContents.equals(contents)) {
+            return previousAst;
+        }
+        stmtType[] body = previousAst.body;
+        int length = body.length;
+        if (length == 0) {
+            return null;
+        }
+        if (grammarVersion <= IPythonNature.LATEST_GRAMMAR_PY2_VERSION && hasFutureImports(body)) {
+            return null; //i.e.: print_function: 'print(a, b)' would be parsed as a print statement in the region.
+        }
+        int[] lineOffsets = getLineOffsets(previousContents);
+        int previousLength = previousContents.length();
+        int lines = lineOffsets.length - 1;
+        boolean[] topLevelLines = getTopLevelLines(previousContents, lineOffsets);
+        int[] startLines = new int[length];
+        for (int i = 0; i < length; i++) {
+            //i.e.: the line of a multi-line string is not the line where it starts.
+            int line = getStartLine(body[i]);
+            while (line > 1 && !topLevelLines[line]) {
+                line--;
+            }
+            startLines[i] = line;
+            if (i > 0 && startLines[i] <= startLines[i - 1]) {
+                return null;
+            }
+        }
+
+        // Find the changed range.
+        int minLength = Math.min(previousLength, contents.length());
+        int prefix = 0;
+        while (prefix < minLength && previousContents.charAt(prefix) == contents.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < minLength - prefix
+                && previousContents.charAt(previousLength - suffix - 1) == contents.charAt(contents.length() - suffix
+                        - 1)) {
+            suffix++;
+        }
+
+        // Map it to the enclosing top-level statements in the previous ast.
+        int changeStartLine = getLine(lineOffsets, prefix);
+        int changeEndLine = getLine(lineOffsets, previousLength - suffix);
+        int first = findStatement(startLines, changeStartLine);
+        if (first + 1 < length && changeStartLine >= getRegionStartLine(previousContents, lineOffsets, previousAst,
+                startLines, first + 1)) {
+            first++;
+        }
+        if (first > 0 && lineOffsets[getRegionStartLine(previousContents, lineOffsets, previousAst, startLines,
+                first)] == prefix) {
+            first--; //Something added right at the start may be a part of the previous statement.
+        }
+        int last = findStatement(startLines, changeEndLine);
+        int nextRegionLine = getRegionStartLine(previousContents, lineOffsets, previousAst, startLines, last + 1);
+        if (last + 1 < length && changeEndLine >= nextRegionLine) {
+            last++;
+            nextRegionLine = getRegionStartLine(previousContents, lineOffsets, previousAst, startLines, last + 1);
+        }
+        if (last + 1 == length && changeEndLine >= nextRegionLine) {
+            nextRegionLine = lines + 1; //Comments at the end changed: the region goes up to the end.
+        }
+        if (last + 1 < length && !isStatementStart(previousContents, lineOffsets[startLines[last + 1]])) {
+            return null;
+        }
+        // Comments right after the region which were added to the next statement (or to the module).
+        boolean commentsAfterRegion = nextRegionLine <= lines
+                && (last + 1 == length || nextRegionLine < startLines[last + 1]);
+
+        int regionStartLine = getRegionStartLine(previousContents, lineOffsets, previousAst, startLines, first);
+        int regionStart = lineOffsets[regionStartLine];
+        int previousRegionEnd = nextRegionLine <= lines ? lineOffsets[nextRegionLine] : previousLength;
+        if (regionStart > prefix || previousRegionEnd < previousLength - suffix) {
+            return null;
+        }
+        int regionEnd = previousRegionEnd + contents.length() - previousLength;
+        if (regionEnd <= regionStart || (regionEnd < contents.length() && !isLineBreak(contents.charAt(regionEnd
+                - 1)))) {
+            return null;
+        }
+
+        // The region must still start with a top-level statement (i.e.: indentation not changed). If comments
+        // follow the region, its last line must not be indented (otherwise, those could be added to the region).
+        String regionContents = contents.substring(regionStart, regionEnd);
+        if (!startsWithStatement(regionContents)
+                || (commentsAfterRegion && !endsWithStatementAtFirstColumn(regionContents))) {
+            return null;
+        }
+        if (regionContents.indexOf("__future__") != -1
+                || previousContents.substring(regionStart, previousRegionEnd).indexOf("__future__") != -1) {
+            return null; //May change the way the whole module is parsed.
+        }
+
+        // Brackets, strings or blocks crossing the region boundaries make the region parse fail.
+        IGrammar grammar = PyParser.createGrammar(true, grammarVersion, PyParser.createCharArrayToParse(
+                regionContents));
+        SimpleNode regionAst = grammar.file_input();
+        if (grammar.getErrorOnParsing() != null || !(regionAst instanceof Module)) {
+            return null;
+        }
+        Module regionModule = (Module) regionAst;
+        boolean regionAtEnd = previousRegionEnd == previousLength;
+        if (regionModule.body.length == 0
+                || (regionModule.specialsBefore != null && regionModule.specialsBefore.size() > 0)
+                || (!regionAtEnd && regionModule.specialsAfter != null && regionModule.specialsAfter.size() > 0)) {
+            return null;
+        }
+
+        for (stmtType stmt : regionModule.body) {
+            if (!shiftLines(stmt, regionStartLine - 1)) {
+                return null;
+            }
+        }
+        int shiftAfterRegion = regionStartLine + countLineBreaks(regionContents) - nextRegionLine;
+
+        List<stmtType> newBody = new ArrayList<stmtType>(length - (last - first + 1) + regionModule.body.length);
+        for (int i = 0; i < first; i++) {
+            newBody.add(body[i]);
+        }
+        for (stmtType stmt : regionModule.body) {
+            newBody.add(stmt);
+        }
+        for (int i = last + 1; i < length; i++) {
+            if (shiftAfterRegion == 0) {
+                newBody.add(body[i]);
+            } else {
+                //Nodes of the previous ast can't be changed (it may be shared), so, copy with the lines shifted.
+                stmtType copy = copyWithLinesShifted(body[i], shiftAfterRegion);
+                if (copy == null) {
+                    return null;
+                }
+                newBody.add(copy);
+            }
+        }
+
+        Module module = new Module(newBody.toArray(new stmtType[newBody.size()]));
+        module.setId(previousAst.getId());
+        if (first == 0) {
+            //The position of the module depends on the start of the contents.
+            if (regionStartLine != 1) {
+                return null;
+            }
+            module.beginLine = regionModule.beginLine;
+            module.beginColumn = regionModule.beginColumn;
+        } else {
+            module.beginLine = previousAst.beginLine;
+            module.beginColumn = previousAst.beginColumn;
+        }
+        if (previousAst.specialsBefore != null && previousAst.specialsBefore.size() > 0) {
+            if (first == 0) {
+                return null;
+            }
+            module.getSpecialsBefore().addAll(previousAst.specialsBefore);
+        }
+        //Comments at the end of the module.
+        List<Object> specialsAfter = regionAtEnd ? regionModule.specialsAfter : previousAst.specialsAfter;
+        if (specialsAfter != null && specialsAfter.size() > 0) {
+            if (!copySpecials(specialsAfter, module.getSpecialsAfter(),
+                    regionAtEnd ? regionStartLine - 1 : shiftAfterRegion)) {
+                return null;
+            }
+        }
+        return module;
+    }
+
+    /**
+     * @return whether there's some 'from __future__ import ...' (those are only valid at the top-level of the module).
+     */
+    private static boolean hasFutureImports(stmtType[] body) {
+        for (stmtType stmt : body) {
+            if (stmt instanceof ImportFrom) {
+                ImportFrom importFrom = (ImportFrom) stmt;
+                if (importFrom.module != null && "__future__".equals(((NameTok) importFrom.module).id)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the first line of the region of the statement at the given index (or of the comments after the last
+     * statement if the index is the number of statements).
+     *
+     * The comments (and blank lines) before a statement are part of its region if the parser added those to the
+     * statement (they're added to the previous statement when before the dedent which ends its block).
+     */
+    private static int getRegionStartLine(String contents, int[] lineOffsets, Module ast, int[] startLines,
+            int index) throws Exception {
+        int line = index < startLines.length ? startLines[index] : lineOffsets.length;
+        int minLine = index > 0 ? startLines[index - 1] : 0;
+        int commentsStartLine = line;
+        while (commentsStartLine - 1 > minLine && isBlankOrComment(contents, lineOffsets, commentsStartLine - 1)) {
+            commentsStartLine--;
+        }
+        if (index == startLines.length) {
+            return ast.specialsAfter != null && ast.specialsAfter.size() > 0 ? commentsStartLine : line;
+        }
+        if (commentsStartLine < line && hasCommentsBefore(ast.body[index], line)) {
+            return commentsStartLine;
+        }
+        return line;
+    }
+
+    /**
+     * @return whether a comment before the given line was added to some node of the statement.
+     */
+    private static boolean hasCommentsBefore(stmtType stmt, int line) throws Exception {
+        for (SimpleNode node : NodesCollector.collect(stmt)) {
+            if (hasCommentsBefore(node.specialsBefore, line) || hasCommentsBefore(node.specialsAfter, line)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasCommentsBefore(List<Object> specials, int line) {
+        if (specials != null) {
+            for (Object special : specials) {
+                if (special instanceof commentType && ((commentType) special).beginLine < line) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isBlankOrComment(String contents, int[] lineOffsets, int line) {
+        int end = line + 1 < lineOffsets.length ? lineOffsets[line + 1] : contents.length();
+        for (int i = lineOffsets[line]; i < end; i++) {
+            char c = contents.charAt(i);
+            if (c == '#') {
+                return true;
+            }
+            if (!Character.isWhitespace(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return whether the last line with code in the given contents starts at the first column (and has no
+     * comments).
+     */
+    private static boolean endsWithStatementAtFirstColumn(String contents) {
+        int[] lineOffsets = getLineOffsets(contents);
+        for (int line = lineOffsets.length - 1; line > 0; line--) {
+            if (!isBlankOrComment(contents, lineOffsets, line)) {
+                //Comments after a line with a comment may be added to that line.
+                int end = line + 1 < lineOffsets.length ? lineOffsets[line + 1] : contents.length();
+                return isStatementStart(contents, lineOffsets[line])
+                        && contents.substring(lineOffsets[line], end).indexOf('#') == -1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether the first line with code in the given contents starts at the first column.
+     */
+    private static boolean startsWithStatement(String contents) {
+        int length = contents.length();
+        int i = 0;
+        while (i < length) {
+            char c = contents.charAt(i);
+            if (c == '#') {
+                while (i < length && !isLineBreak(contents.charAt(i))) {
+                    i++;
+                }
+            } else if (isLineBreak(c)) {
+                i++;
+            } else {
+                return isStatementStart(contents, i) && (i == 0 || isLineBreak(contents.charAt(i - 1)));
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the first line of a top-level statement (considering its decorators).
+     */
+    private static int getStartLine(stmtType stmt) {
+        decoratorsType[] decs = null;
+        if (stmt instanceof FunctionDef) {
+            decs = ((FunctionDef) stmt).decs;
+        } else if (stmt instanceof ClassDef) {
+            decs = ((ClassDef) stmt).decs;
+        }
+        int line = stmt.beginLine;
+        if (decs != null) {
+            for (decoratorsType dec : decs) {
+                if (dec != null && dec.beginLine < line) {
+                    line = dec.beginLine;
+                }
+            }
+        }
+        return line;
+    }
+
+    /**
+     * @return the index of the last statement starting at or before the given line.
+     */
+    private static int findStatement(int[] startLines, int line) {
+        int low = 0;
+        int high = startLines.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (startLines[mid] <= line) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private static boolean isLineBreak(char c) {
+        return c == '\n' || c == '\r';
+    }
+
+    /**
+     * @return whether there's some code (not whitespace nor a comment) at the given offset.
+     */
+    private static boolean isStatementStart(String contents, int offset) {
+        if (offset >= contents.length()) {
+            return false;
+        }
+        char c = contents.charAt(offset);
+        return !Character.isWhitespace(c) && c != '#' && c != '\\';
+    }
+
+    /**
+     * @return the offsets where each line starts (index = line, 1-based as in the ast, so, index 0 is not used).
+     * \r\n, \n and \r are line breaks.
+     */
+    /*default*/ static int[] getLineOffsets(String contents) {
+        int length = contents.length();
+        int[] lineOffsets = new int[16];
+        int lines = 1;
+        for (int i = 0; i < length; i++) {
+            char c = contents.charAt(i);
+            if (c == '\n' || (c == '\r' && (i + 1 >= length || contents.charAt(i + 1) != '\n'))) {
+                lines++;
+                if (lines == lineOffsets.length) {
+                    int[] newLineOffsets = new int[lineOffsets.length * 2];
+                    System.arraycopy(lineOffsets, 0, newLineOffsets, 0, lineOffsets.length);
+                    lineOffsets = newLineOffsets;
+                }
+                lineOffsets[lines] = i + 1;
+            }
+        }
+        int[] ret = new int[lines + 1];
+        System.arraycopy(lineOffsets, 0, ret, 0, ret.length);
+        return ret;
+    }
+
+    /**
+     * @return for each line, whether it starts outside of strings, brackets and explicit line continuations (i.e.:
+     * where a statement may start).
+     */
+    private static boolean[] getTopLevelLines(String contents, int[] lineOffsets) {
+        boolean[] topLevelLines = new boolean[lineOffsets.length];
+        int length = contents.length();
+        int brackets = 0;
+        char quote = 0;
+        boolean tripleQuoted = false;
+        boolean continuation = false;
+        int line = 1;
+        topLevelLines[1] = true;
+        for (int i = 0; i < length; i++) {
+            char c = contents.charAt(i);
+            if (c == '\n' || (c == '\r' && (i + 1 >= length || contents.charAt(i + 1) != '\n'))) {
+                if (quote != 0 && !tripleQuoted) {
+                    quote = 0; //Not closed: the parser should report it.
+                }
+                line++;
+                topLevelLines[line] = quote == 0 && brackets == 0 && !continuation;
+                continuation = false;
+                continue;
+            }
+            if (c == '\r') {
+                continue;
+            }
+            continuation = false;
+            if (quote != 0) {
+                if (c == '\\') {
+                    if (i + 1 < length && contents.charAt(i + 1) != '\n' && contents.charAt(i + 1) != '\r') {
+                        i++;
+                    }
+                } else if (c == quote) {
+                    if (!tripleQuoted) {
+                        quote = 0;
+                    } else if (i + 2 < length && contents.charAt(i + 1) == quote && contents.charAt(i + 2) == quote) {
+                        quote = 0;
+                        i += 2;
+                    }
+                }
+                continue;
+            }
+            switch (c) {
+                case '#':
+                    while (i + 1 < length && !isLineBreak(contents.charAt(i + 1))) {
+                        i++;
+                    }
+                    break;
+                case '\'':
+                case '"':
+                    quote = c;
+                    tripleQuoted = i + 2 < length && contents.charAt(i + 1) == c && contents.charAt(i + 2) == c;
+                    if (tripleQuoted) {
+                        i += 2;
+                    }
+                    break;
+                case '(':
+                case '[':
+                case '{':
+                    brackets++;
+                    break;
+                case ')':
+                case ']':
+                case '}':
+                    if (brackets > 0) {
+                        brackets--;
+                    }
+                    break;
+                case '\\':
+                    continuation = true;
+                    break;
+            }
+        }
+        return topLevelLines;
+    }
+
+    /**
+     * @return the line (1-based) of the given offset.
+     */
+    private static int getLine(int[] lineOffsets, int offset) {
+        int low = 1;
+        int high = lineOffsets.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (lineOffsets[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    private static int countLineBreaks(String contents) {
+        int length = contents.length();
+        int breaks = 0;
+        for (int i = 0; i < length; i++) {
+            char c = contents.charAt(i);
+            if (c == '\n' || (c == '\r' && (i + 1 >= length || contents.charAt(i + 1) != '\n'))) {
+                breaks++;
+            }
+        }
+        return breaks;
+    }
+
+    /**
+     * Collects all the nodes of an ast (in the order they're traversed).
+     *
+     * Note: nodes are collected in traverse (and not in unhandled_node) because nodes such as aliasType or
+     * excepthandlerType are only passed to traverse.
+     */
+    private static final class NodesCollector extends VisitorBase {
+
+        private final List<SimpleNode> nodes = new ArrayList<SimpleNode>();
+
+        @Override
+        protected Object unhandled_node(SimpleNode node) throws Exception {
+            return null;
+        }
+
+        @Override
+        public void traverse(SimpleNode node) throws Exception {
+            nodes.add(node);
+            node.traverse(this);
+        }
+
+        private static List<SimpleNode> collect(SimpleNode node) throws Exception {
+            NodesCollector collector = new NodesCollector();
+            node.accept(collector);
+            return collector.nodes;
+        }
+    }
+
+    /**
+     * Shifts the lines of a newly parsed statement (changing its nodes).
+     *
+     * @return false if some special could not be shifted.
+     */
+    private static boolean shiftLines(stmtType stmt, int lines) throws Exception {
+        IdentityHashMap<SimpleNode, SimpleNode> shifted = new IdentityHashMap<SimpleNode, SimpleNode>();
+        for (SimpleNode node : NodesCollector.collect(stmt)) {
+            if (shifted.put(node, node) != null) {
+                continue;
+            }
+            node.beginLine = shiftLine(node.beginLine, lines);
+            if (node.specialsBefore != null && node.specialsBefore.size() > 0) {
+                List<Object> specials = node.specialsBefore;
+                node.specialsBefore = null;
+                if (!copySpecials(specials, node.getSpecialsBefore(), lines)) {
+                    return false;
+                }
+            }
+            if (node.specialsAfter != null && node.specialsAfter.size() > 0) {
+                List<Object> specials = node.specialsAfter;
+                node.specialsAfter = null;
+                if (!copySpecials(specials, node.getSpecialsAfter(), lines)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the line shifted (nodes without a position, such as argumentsType, are kept at line 0).
+     */
+    private static int shiftLine(int line, int lines) {
+        return line > 0 ? line + lines : line;
+    }
+
+    /**
+     * @return a copy of the given statement with its lines shifted or null if it could not be copied.
+     */
+    private static stmtType copyWithLinesShifted(stmtType stmt, int lines) throws Exception {
+        stmtType copy = (stmtType) stmt.createCopy(false);
+        List<SimpleNode> nodes = NodesCollector.collect(stmt);
+        List<SimpleNode> copiedNodes = NodesCollector.collect(copy);
+        int size = nodes.size();
+        if (size != copiedNodes.size()) {
+            return null;
+        }
+        IdentityHashMap<SimpleNode, SimpleNode> nodeToCopy = new IdentityHashMap<SimpleNode, SimpleNode>(size);
+        for (int i = 0; i < size; i++) {
+            nodeToCopy.put(nodes.get(i), copiedNodes.get(i));
+        }
+        for (int i = 0; i < size; i++) {
+            SimpleNode node = nodes.get(i);
+            SimpleNode copiedNode = copiedNodes.get(i);
+            copiedNode.beginLine = shiftLine(node.beginLine, lines);
+            copiedNode.setId(node.getId());
+            if (node.specialsBefore != null && node.specialsBefore.size() > 0) {
+                if (!copySpecials(node.specialsBefore, copiedNode.getSpecialsBefore(), lines)) {
+                    return null;
+                }
+            }
+            if (node.specialsAfter != null && node.specialsAfter.size() > 0) {
+                if (!copySpecials(node.specialsAfter, copiedNode.getSpecialsAfter(), lines)) {
+                    return null;
+                }
+            }
+            if (node.parent != null) {
+                SimpleNode copiedParent = nodeToCopy.get(node.parent);
+                copiedNode.parent = copiedParent != null ? copiedParent : node.parent;
+            }
+        }
+        return copy;
+    }
+
+    private static boolean copySpecials(List<Object> specials, List<Object> copiedSpecials, int lines) {
+        for (Object special : specials) {
+            if (special instanceof commentType) {
+                commentType comment = ((commentType) special).createCopy(false);
+                comment.beginLine = shiftLine(comment.beginLine, lines);
+                copiedSpecials.add(comment);
+            } else if (special instanceof SpecialStr) {
+                SpecialStr specialStr = (SpecialStr) special;
+                copiedSpecials.add(new SpecialStr(specialStr.str, shiftLine(specialStr.beginLine, lines),
+                        specialStr.beginCol));
+            } else {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,252 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.python.pydev.shared_core.callbacks.ICallbackListener;
+import org.python.pydev.shared_core.out_of_memory.OnExpectedOutOfMemory;
+import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
+
+/**
+ * Shares the result of parsing a given version of a document (so that the editor, the outline, code folding, mark
+ * occurrences, code analysis and the builder don't parse the same contents again).
+ *
+ * Results are keyed by the document instance (the document of an opened editor is the same one gotten by the builder
+ * from the file buffers), its modification stamp and the main grammar used. A request for a version being parsed in
+ * another thread waits for that parse instead of starting a new one.
+ *
+ * Note: the additional grammars to check are not a part of the key (the cached output only has the result of the main
+ * grammar -- PyParser.reparseDocument(ParserInfo) checks the additional grammars afterwards through the
+ * AdditionalGrammarsChecker), so, the editor and the builder share the same entry.
+ *
+ * Only the last MAX_SIZE results are kept (documents are only weakly referenced, so, results for documents no longer
+ * used are just removed as new documents are parsed). Clients must not change the ast of a shared result.
+ */
+public final class ParseOutputCache {
+
+    /**
+     * May be set to false to disable the cache.
+     */
+    public static final boolean ENABLED = !"false".equals(System.getProperty("pydev.parser.cache", "true"));
+
+    /**
+     * The maximum number of results to keep.
+     */
+    public static final int MAX_SIZE = Integer.getInteger("pydev.parser.cache.size", 20);
+
+    private static final ParseOutputCache instance = new ParseOutputCache(MAX_SIZE);
+
+    static {
+        OnExpectedOutOfMemory.clearCacheOnOutOfMemory.registerListener(new ICallbackListener<Object>() {
+
+            @Override
+            public Object call(Object obj) {
+                instance.clear();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * @return the shared cache (or null if it's disabled).
+     */
+    public static ParseOutputCache get() {
+        return ENABLED ? instance : null;
+    }
+
+    private static final class Key {
+
+        private final WeakReference<IDocument> document;
+        private final int documentHash;
+        private final long modificationStamp;
+        private final int grammarVersion;
+        private final boolean generateTree;
+
+        private Key(IDocument document, long modificationStamp, int grammarVersion, boolean generateTree) {
+            this.document = new WeakReference<IDocument>(document);
+            this.documentHash = System.identityHashCode(document);
+            this.modificationStamp = modificationStamp;
+            this.grammarVersion = grammarVersion;
+            this.generateTree = generateTree;
+        }
+
+        @Override
+        public int hashCode() {
+            return documentHash * 31 + (int) (modificationStamp ^ (modificationStamp >>> 32)) * 7 + grammarVersion;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            if (modificationStamp != other.modificationStamp || grammarVersion != other.grammarVersion
+                    || generateTree != other.generateTree || documentHash != other.documentHash) {
+                return false;
+            }
+            IDocument doc = document.get();
+            return doc != null && doc == other.document.get();
+        }
+    }
+
+    private static final class Entry {
+
+        private final FutureTask<ParseOutput> task;
+
+        /**
+         * The length of the document when the parse was requested (the modification stamp should be enough, but this
+         * makes sure that a document which doesn't update it properly is not mistaken).
+         */
+        private final int documentLength;
+
+        private Entry(FutureTask<ParseOutput> task, int documentLength) {
+            this.task = task;
+            this.documentLength = documentLength;
+        }
+    }
+
+    private final Object lock = new Object();
+
+    /**
+     * Access-ordered (so that the least recently used entries are removed when the max size is reached).
+     */
+    private final LinkedHashMap<Key, Entry> entries;
+
+    private final int maxSize;
+
+    private long hits;
+    private long misses;
+
+    /*default*/ ParseOutputCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    }
+
+    /**
+     * @return the output of parsing the document with the main grammar of the given info: if the same version of the
+     * document was already parsed (or is being parsed in another thread) with the same grammar, that result is
+     * returned, otherwise, the parser is called in this thread (it must not check the additional grammars of the
+     * info).
+     */
+    public ParseOutput getParseOutput(PyParser.ParserInfo info, Callable<ParseOutput> parser) {
+        IDocument document = info.document;
+        long modificationStamp = ((IDocumentExtension4) document).getModificationStamp();
+        if (modificationStamp == IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP) {
+            return call(parser);
+        }
+        Key key = new Key(document, modificationStamp, info.grammarVersion, info.generateTree);
+        int documentLength = document.getLength();
+
+        Entry entry;
+        boolean parseInThisThread = false;
+        synchronized (lock) {
+            entry = entries.get(key);
+            if (entry != null && entry.documentLength != documentLength) {
+                entries.remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                misses++;
+                entry = new Entry(new FutureTask<ParseOutput>(parser), documentLength);
+                parseInThisThread = true;
+                entries.put(key, entry);
+                if (entries.size() > maxSize) {
+                    Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+                    it.next();
+                    it.remove();
+                }
+            } else {
+                hits++;
+            }
+        }
+
+        if (parseInThisThread) {
+            entry.task.run();
+        }
+        try {
+            return getResult(entry.task);
+        } catch (RuntimeException | Error e) {
+            synchronized (lock) {
+                if (entries.get(key) == entry) {
+                    entries.remove(key);
+                }
+            }
+            throw e;
+        }
+    }
+
+    private static ParseOutput getResult(FutureTask<ParseOutput> task) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return task.get();
+                } catch (InterruptedException e) {
+                    //The parse is done by another thread (which won't stop), so, just wait for it.
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new RuntimeException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static ParseOutput call(Callable<ParseOutput> parser) {
+        try {
+            return parser.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Removes all the results.
+     */
+    public void clear() {
+        synchronized (lock) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    public String getStatistics() {
+        synchronized (lock) {
+            return "Parse output cache -- size: " + entries.size() + " hits: " + hits + " misses: " + misses;
+        }
+    }
+}
@@ -17,6 +17,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.eclipse.core.internal.resources.ResourceException;
 import org.eclipse.core.resources.IFile;
@@ -179,6 +180,12 @@ public class PyParser extends BaseParser implements IPyParser {
         forceReparse();
     }
 
+    @Override
+    public void dispose() {
+        super.dispose();
+        incrementalReparser.clear();
+    }
+
     /**
      * @return false if we asked a reparse and it will not be scheduled because a reparse is already in action.
      */
@@ -195,6 +202,24 @@ public class PyParser extends BaseParser implements IPyParser {
         public void participantsNotified(Object... argsToReparse);
     }
 
+    /**
+     * Checks the grammars in AdditionalGrammarVersionsToCheck after the main ast is delivered.
+     */
+    private final AdditionalGrammarsChecker additionalGrammarsChecker = new AdditionalGrammarsChecker();
+
+    /**
+     * Held while the observers are notified (by the parser thread or when an error is found checking the additional
+     * grammars).
+     */
+    private final Object lockNotifications = new Object();
+
+    /**
+     * Incremented for each parse notified (accessed with lockNotifications held).
+     */
+    private long notificationsCount;
+
+    private final IncrementalReparser incrementalReparser = new IncrementalReparser();
+
     private final List<IPostParserListener> postParserListeners = new LowMemoryArrayList<>();
     private final Object lockPostParserListeners = new Object();
 
@@ -283,15 +308,16 @@ public class PyParser extends BaseParser implements IPyParser {
             version = IGrammarVersionProvider.LATEST_GRAMMAR_PY3_VERSION;
         }
         long documentTime = System.currentTimeMillis();
-        ParseOutput obj = reparseDocument(new ParserInfo(document, version, true, additionalGrammarsToCheck));
+        if (input == null) {
+            return reparseDocument(new ParserInfo(document, version, true, additionalGrammarsToCheck));
+        }
+        //The additional grammars are checked later on (so that the listeners don't have to wait for those).
+        //As the editor is reparsed on each change, only the statements changed are actually parsed when possible.
+        ParseOutput obj = incrementalReparser.reparseDocument(new ParserInfo(document, version, true, null));
 
         IFile original = null;
         IAdaptable adaptable = null;
 
-        if (input == null) {
-            return obj;
-        }
-
         original = (input instanceof IAdaptable) ? ((IAdaptable) input).getAdapter(IFile.class) : null;
         if (original != null) {
             adaptable = original;
@@ -324,39 +350,82 @@ public class PyParser extends BaseParser implements IPyParser {
         }
         //end delete the markers
 
-        if (disposed) {
-            //if it was disposed in this time, don't fire any notification nor return anything valid.
-            return new ParseOutput();
-        }
+        //The notifications are done with the lock held (so that the error found later on when checking the
+        //additional grammars isn't posted in the middle of the notifications of a newer parse).
+        synchronized (lockNotifications) {
+            if (disposed) {
+                //if it was disposed in this time, don't fire any notification nor return anything valid.
+                return new ParseOutput();
+            }
 
-        ErrorParserInfoForObservers errorInfo = null;
-        if (obj.error instanceof ParseException || obj.error instanceof TokenMgrError) {
-            errorInfo = new ErrorParserInfoForObservers(obj.error, adaptable, document, argsToReparse);
-        }
+            ErrorParserInfoForObservers errorInfo = null;
+            if (obj.error instanceof ParseException || obj.error instanceof TokenMgrError) {
+                errorInfo = new ErrorParserInfoForObservers(obj.error, adaptable, document, argsToReparse);
+            }
 
-        if (obj.ast != null) {
-            //Ok, reparse successful, lets erase the markers that are in the editor we just parsed
-            //Note: we may get the ast even if errors happen (and we'll notify in that case too).
-            ChangedParserInfoForObservers info = new ChangedParserInfoForObservers(obj.ast, obj.modificationStamp,
-                    adaptable, document, documentTime, errorInfo, argsToReparse);
-            fireParserChanged(info);
-        }
+            if (obj.ast != null) {
+                //Ok, reparse successful, lets erase the markers that are in the editor we just parsed
+                //Note: we may get the ast even if errors happen (and we'll notify in that case too).
+                ChangedParserInfoForObservers info = new ChangedParserInfoForObservers(obj.ast, obj.modificationStamp,
+                        adaptable, document, documentTime, errorInfo, argsToReparse);
+                fireParserChanged(info);
+            }
 
-        if (errorInfo != null) {
-            fireParserError(errorInfo);
-        }
+            if (errorInfo != null) {
+                fireParserError(errorInfo);
+            }
+
+            if (postParserListeners.size() > 0) {
+                ArrayList<IPostParserListener> tempList = new ArrayList<>(postParserListeners);
+                for (IPostParserListener iParserObserver : tempList) {
+                    iParserObserver.participantsNotified(argsToReparse);
+                }
 
-        if (postParserListeners.size() > 0) {
-            ArrayList<IPostParserListener> tempList = new ArrayList<>(postParserListeners);
-            for (IPostParserListener iParserObserver : tempList) {
-                iParserObserver.participantsNotified(argsToReparse);
             }
 
+            notificationsCount++;
+            if (obj.ast != null && obj.error == null && additionalGrammarsToCheck != null
+                    && additionalGrammarsToCheck.getGrammarVersions().size() > 0) {
+                checkAdditionalGrammarsLater(notificationsCount, obj.modificationStamp, version,
+                        additionalGrammarsToCheck, adaptable, argsToReparse);
+            } else {
+                additionalGrammarsChecker.cancel();
+            }
         }
 
         return obj;
     }
 
+    /**
+     * Checks the additional grammars in the background: if an error is found and the document didn't change nor was
+     * parsed again in the meanwhile, the error is posted to the observers as a follow-up of the parse.
+     *
+     * @param notification the notificationsCount of the parse (the error is only posted if it's still the same).
+     */
+    private void checkAdditionalGrammarsLater(final long notification, final long modificationStamp, int version,
+            AdditionalGrammarVersionsToCheck additionalGrammarsToCheck, final IAdaptable adaptable,
+            final Object... argsToReparse) {
+        final IDocument doc = document;
+        additionalGrammarsChecker.checkLater(doc, modificationStamp, version, additionalGrammarsToCheck,
+                new ICallback<Object, Throwable>() {
+
+                    @Override
+                    public Object call(Throwable error) {
+                        if (!(error instanceof ParseException || error instanceof TokenMgrError)) {
+                            return null;
+                        }
+                        synchronized (lockNotifications) {
+                            if (disposed || notificationsCount != notification
+                                    || ((IDocumentExtension4) doc).getModificationStamp() != modificationStamp) {
+                                return null;
+                            }
+                            fireParserError(new ErrorParserInfoForObservers(error, adaptable, doc, argsToReparse));
+                        }
+                        return null;
+                    }
+                });
+    }
+
     //static methods that can be used to get the ast (and error if any) --------------------------------------
 
     public final static class ParserInfo {
@@ -452,7 +521,7 @@ public class PyParser extends BaseParser implements IPyParser {
     /**
      * Create the char array to parse based on the initial document and our parser limitations.
      */
-    private static char[] createCharArrayToParse(String startDoc) {
+    /*default*/ static char[] createCharArrayToParse(String startDoc) {
         int length = startDoc.length();
         int skipAtStart = 0;
         if (startDoc.startsWith(FileUtils.BOM_UTF8)) {
@@ -525,12 +594,55 @@ public class PyParser extends BaseParser implements IPyParser {
     /**
      * @return a tuple with the SimpleNode root(if parsed) and the error (if any).
      *         if we are able to recover from a reparse, we have both, the root and the error.
+     *
+     * Note: the result is shared with other requests for the same version of the document (see: ParseOutputCache),
+     * so, its ast must not be changed.
      */
-    public static ParseOutput reparseDocument(ParserInfo info) {
+    public static ParseOutput reparseDocument(final ParserInfo info) {
         if (info.grammarVersion == IPythonNature.GRAMMAR_PYTHON_VERSION_CYTHON) {
             IDocument doc = info.document;
             return new ParseOutput(createCythonAst(doc), ((IDocumentExtension4) info.document).getModificationStamp());
         }
+        ParseOutputCache cache = ParseOutputCache.get();
+        if (cache == null) {
+            return doReparseDocument(info, true);
+        }
+        //The cache only has the output of the main grammar (so that it's shared with the editor, which checks the
+        //additional grammars later on).
+        ParseOutput output = cache.getParseOutput(info, new Callable<ParseOutput>() {
+
+            @Override
+            public ParseOutput call() throws Exception {
+                return doReparseDocument(info, false);
+            }
+        });
+        return checkAdditionalGrammars(info, output);
+    }
+
+    /**
+     * @return the given output of the main grammar with the error of the additional grammars of the info (if any).
+     */
+    private static ParseOutput checkAdditionalGrammars(ParserInfo info, ParseOutput output) {
+        AdditionalGrammarVersionsToCheck additionalGrammarVersionsToCheck = info.additionalGrammarVersionsToCheck;
+        if (additionalGrammarVersionsToCheck == null || output.ast == null || output.error != null) {
+            return output;
+        }
+        IDocumentExtension4 document = (IDocumentExtension4) info.document;
+        long modifiedTime = document.getModificationStamp();
+        String contents = info.document.get();
+        if (modifiedTime != output.modificationStamp || document.getModificationStamp() != modifiedTime) {
+            //The document changed after the parse: parse the current version with all the grammars.
+            return doReparseDocument(info, true);
+        }
+        Throwable error = AdditionalGrammarsChecker.check(contents, info.grammarVersion,
+                additionalGrammarVersionsToCheck);
+        if (error == null) {
+            return output;
+        }
+        return new ParseOutput(output.ast, error, output.modificationStamp);
+    }
+
+    private static ParseOutput doReparseDocument(ParserInfo info, boolean checkAdditionalGrammars) {
 
         // create a stream with document's data
 
@@ -538,8 +650,18 @@ public class PyParser extends BaseParser implements IPyParser {
         //right after that, at least any cache will check against the old stamp to be reconstructed (which is the main
         //reason for this stamp).
         long modifiedTime = ((IDocumentExtension4) info.document).getModificationStamp();
-        String startDoc = info.document.get();
+        return doReparseDocument(info, modifiedTime, info.document.get(), checkAdditionalGrammars);
+    }
 
+    /**
+     * Parses the given contents (gotten from the document of the info at the given modification stamp).
+     */
+    /*default*/ static ParseOutput doReparseDocument(ParserInfo info, long modifiedTime, String startDoc) {
+        return doReparseDocument(info, modifiedTime, startDoc, true);
+    }
+
+    private static ParseOutput doReparseDocument(ParserInfo info, long modifiedTime, String startDoc,
+            boolean checkAdditionalGrammars) {
         if (startDoc.trim().length() == 0) {
             //If empty, don't bother to parse!
             return new ParseOutput(new Module(new stmtType[0]), null, modifiedTime);
@@ -570,37 +692,15 @@ public class PyParser extends BaseParser implements IPyParser {
             returnVar.o1 = newRoot;
 
             //only notify successful parses
-            if (successfulParseListeners.size() > 0) {
-                Tuple3<ISimpleNode, Throwable, ParserInfo> param = new Tuple3<ISimpleNode, Throwable, ParserInfo>(
-                        returnVar.o1, returnVar.o2, info);
-
-                for (ICallback<Object, Tuple3<ISimpleNode, Throwable, ParserInfo>> callback : successfulParseListeners) {
-                    callback.call(param);
-                }
-            }
+            notifySuccessfulParseListeners(returnVar.o1, returnVar.o2, info);
 
             returnVar.o2 = grammar.getErrorOnParsing();
 
-            if (returnVar.o2 == null) {
+            if (returnVar.o2 == null && checkAdditionalGrammars) {
                 AdditionalGrammarVersionsToCheck additionalGrammarVersionsToCheck = info.additionalGrammarVersionsToCheck;
                 if (additionalGrammarVersionsToCheck != null) {
-                    for (int grammarVersion : additionalGrammarVersionsToCheck.getGrammarVersions()) {
-                        if (parsedVersions.contains(grammarVersion)) {
-                            continue;
-                        }
-                        parsedVersions.add(grammarVersion);
-                        grammar = createGrammar(false, grammarVersion, charArray);
-                        try {
-                            grammar.file_input();
-                        } catch (OutOfMemoryError e) {
-                            OnExpectedOutOfMemory.clearCacheOnOutOfMemory.call(null);
-                            grammar.file_input(); //retry now with caches cleared...
-                        }
-                        returnVar.o2 = grammar.getErrorOnParsing();
-                        if (returnVar.o2 != null) {
-                            break;
-                        }
-                    }
+                    returnVar.o2 = AdditionalGrammarsChecker.checkGrammars(charArray, parsedVersions,
+                            additionalGrammarVersionsToCheck);
                 }
             }
 
@@ -647,6 +747,17 @@ public class PyParser extends BaseParser implements IPyParser {
         return new ParseOutput(returnVar, modifiedTime);
     }
 
+    /*default*/ static void notifySuccessfulParseListeners(ISimpleNode ast, Throwable error, ParserInfo info) {
+        if (successfulParseListeners.size() > 0) {
+            Tuple3<ISimpleNode, Throwable, ParserInfo> param = new Tuple3<ISimpleNode, Throwable, ParserInfo>(
+                    ast, error, info);
+
+            for (ICallback<Object, Tuple3<ISimpleNode, Throwable, ParserInfo>> callback : successfulParseListeners) {
+                callback.call(param);
+            }
+        }
+    }
+
     public static Tuple<ISimpleNode, Throwable> createCythonAst(IDocument doc) {
         List<stmtType> classesAndFunctions = FastParser.parseCython(doc);
         return new Tuple<ISimpleNode, Throwable>(new Module(
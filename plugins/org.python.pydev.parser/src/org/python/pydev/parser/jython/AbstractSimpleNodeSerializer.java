@@ -0,0 +1,307 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser.jython;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.python.pydev.parser.jython.ast.commentType;
+
+/**
+ * Base class for the (generated) serializer of the AST nodes (see: SimpleNodeSerializer).
+ *
+ * Provides a compact binary encoding for the values in the nodes: ints are written as variable length ints
+ * and strings are written only once (further references use the index of the string in a table, so,
+ * names which appear multiple times in a module are only written once).
+ *
+ * Note: an instance should be used either for writing or reading a single tree (the table of strings is
+ * kept in the instance).
+ */
+public abstract class AbstractSimpleNodeSerializer {
+
+    private static final int SPECIAL_COMMENT = 1;
+    private static final int SPECIAL_STR = 2;
+
+    private static final int OBJECT_NULL = 0;
+    private static final int OBJECT_INTEGER = 1;
+    private static final int OBJECT_LONG = 2;
+    private static final int OBJECT_BIG_INTEGER = 3;
+    private static final int OBJECT_FLOAT = 4;
+    private static final int OBJECT_DOUBLE = 5;
+    private static final int OBJECT_STRING = 6;
+
+    private final DataOutput out;
+    private final DataInput in;
+
+    private final Map<String, Integer> writtenStrings;
+    private final List<String> readStrings;
+
+    protected AbstractSimpleNodeSerializer(DataOutput out) {
+        this.out = out;
+        this.in = null;
+        this.writtenStrings = new HashMap<String, Integer>();
+        this.readStrings = null;
+    }
+
+    protected AbstractSimpleNodeSerializer(DataInput in) {
+        this.out = null;
+        this.in = in;
+        this.writtenStrings = null;
+        this.readStrings = new ArrayList<String>();
+    }
+
+    /**
+     * Writes the node (and its children).
+     *
+     * @throws IOException if some node or value in the tree can't be serialized.
+     */
+    public abstract void writeNode(SimpleNode node) throws IOException;
+
+    /**
+     * @return the node read (with its children).
+     */
+    public abstract SimpleNode readNode() throws IOException;
+
+    protected final void writeInt(int i) throws IOException {
+        //zig-zag encoding so that small negative numbers are also small.
+        int v = (i << 1) ^ (i >> 31);
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    protected final int readInt() throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (v >>> 1) ^ -(v & 1);
+            }
+        }
+        throw new IOException("Malformed int.");
+    }
+
+    protected final void writeBoolean(boolean b) throws IOException {
+        out.writeBoolean(b);
+    }
+
+    protected final boolean readBoolean() throws IOException {
+        return in.readBoolean();
+    }
+
+    /**
+     * Strings are written as: 0 for null, 1 for a new string (followed by its length and utf-8 bytes) or the
+     * index of a string already written + 2.
+     */
+    protected final void writeString(String s) throws IOException {
+        if (s == null) {
+            writeInt(0);
+            return;
+        }
+        Integer index = writtenStrings.get(s);
+        if (index != null) {
+            writeInt(index + 2);
+            return;
+        }
+        writtenStrings.put(s, writtenStrings.size());
+        writeInt(1);
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    protected final String readString() throws IOException {
+        int v = readInt();
+        if (v == 0) {
+            return null;
+        }
+        if (v == 1) {
+            int len = readInt();
+            if (len < 0) {
+                throw new IOException("Malformed string.");
+            }
+            byte[] bytes = new byte[len];
+            in.readFully(bytes);
+            String s = new String(bytes, StandardCharsets.UTF_8);
+            readStrings.add(s);
+            return s;
+        }
+        int index = v - 2;
+        if (index < 0 || index >= readStrings.size()) {
+            throw new IOException("Malformed string reference.");
+        }
+        return readStrings.get(index);
+    }
+
+    /**
+     * Writes the objects which may be in a Num.
+     */
+    protected final void writeObject(Object o) throws IOException {
+        if (o == null) {
+            writeInt(OBJECT_NULL);
+
+        } else if (o instanceof Integer) {
+            writeInt(OBJECT_INTEGER);
+            writeInt((Integer) o);
+
+        } else if (o instanceof Long) {
+            writeInt(OBJECT_LONG);
+            out.writeLong((Long) o);
+
+        } else if (o instanceof BigInteger) {
+            writeInt(OBJECT_BIG_INTEGER);
+            writeString(o.toString());
+
+        } else if (o instanceof Float) {
+            writeInt(OBJECT_FLOAT);
+            out.writeFloat((Float) o);
+
+        } else if (o instanceof Double) {
+            writeInt(OBJECT_DOUBLE);
+            out.writeDouble((Double) o);
+
+        } else if (o instanceof String) {
+            writeInt(OBJECT_STRING);
+            writeString((String) o);
+
+        } else {
+            throw new IOException("Unable to serialize: " + o.getClass());
+        }
+    }
+
+    protected final Object readObject() throws IOException {
+        int type = readInt();
+        switch (type) {
+            case OBJECT_NULL:
+                return null;
+            case OBJECT_INTEGER:
+                return readInt();
+            case OBJECT_LONG:
+                return in.readLong();
+            case OBJECT_BIG_INTEGER:
+                return new BigInteger(readString());
+            case OBJECT_FLOAT:
+                return in.readFloat();
+            case OBJECT_DOUBLE:
+                return in.readDouble();
+            case OBJECT_STRING:
+                return readString();
+        }
+        throw new IOException("Unexpected object type: " + type);
+    }
+
+    /**
+     * Arrays are written as: 0 for null or the length + 1 (followed by the contents).
+     */
+    protected final void writeNodes(SimpleNode[] nodes) throws IOException {
+        if (nodes == null) {
+            writeInt(0);
+            return;
+        }
+        writeInt(nodes.length + 1);
+        for (SimpleNode node : nodes) {
+            writeNode(node);
+        }
+    }
+
+    /**
+     * @return the length of the array to be read or -1 if it's null.
+     */
+    protected final int readArrayLength() throws IOException {
+        return readInt() - 1;
+    }
+
+    protected final void writeInts(int[] ints) throws IOException {
+        if (ints == null) {
+            writeInt(0);
+            return;
+        }
+        writeInt(ints.length + 1);
+        for (int i : ints) {
+            writeInt(i);
+        }
+    }
+
+    protected final int[] readInts() throws IOException {
+        int len = readArrayLength();
+        if (len < 0) {
+            return null;
+        }
+        int[] ints = new int[len];
+        for (int i = 0; i < len; i++) {
+            ints[i] = readInt();
+        }
+        return ints;
+    }
+
+    /**
+     * Writes the specials before and after the node (only comments and SpecialStr are expected).
+     */
+    protected final void writeSpecials(SimpleNode node) throws IOException {
+        writeSpecials(node.specialsBefore);
+        writeSpecials(node.specialsAfter);
+    }
+
+    private void writeSpecials(List<Object> specials) throws IOException {
+        if (specials == null || specials.size() == 0) {
+            writeInt(0);
+            return;
+        }
+        writeInt(specials.size());
+        for (Object o : specials) {
+            if (o instanceof commentType) {
+                writeInt(SPECIAL_COMMENT);
+                writeNode((commentType) o);
+
+            } else if (o instanceof SpecialStr) {
+                SpecialStr specialStr = (SpecialStr) o;
+                writeInt(SPECIAL_STR);
+                writeString(specialStr.str);
+                writeInt(specialStr.beginLine);
+                writeInt(specialStr.beginCol);
+
+            } else {
+                throw new IOException("Unable to serialize special: " + (o != null ? o.getClass() : null));
+            }
+        }
+    }
+
+    protected final void readSpecials(SimpleNode node) throws IOException {
+        int size = readInt();
+        for (int i = 0; i < size; i++) {
+            node.getSpecialsBefore().add(readSpecial());
+        }
+        size = readInt();
+        for (int i = 0; i < size; i++) {
+            node.getSpecialsAfter().add(readSpecial());
+        }
+    }
+
+    private Object readSpecial() throws IOException {
+        int type = readInt();
+        switch (type) {
+            case SPECIAL_COMMENT:
+                return readNode();
+            case SPECIAL_STR:
+                String str = readString();
+                int beginLine = readInt();
+                int beginCol = readInt();
+                return new SpecialStr(str, beginLine, beginCol);
+        }
+        throw new IOException("Unexpected special type: " + type);
+    }
+}
@@ -0,0 +1,1120 @@
+// Autogenerated AST node
+package org.python.pydev.parser.jython.ast;
+
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.python.pydev.parser.jython.AbstractSimpleNodeSerializer;
+import org.python.pydev.parser.jython.SimpleNode;
+
+public final class SimpleNodeSerializer extends AbstractSimpleNodeSerializer {
+
+    /**
+     * Changes whenever the nodes change (contents written with another version must not be read).
+     */
+    public static final int FORMAT_VERSION = 1301344980;
+
+    private static final Map<Class<?>, Integer> ids = new HashMap<Class<?>, Integer>();
+
+    static {
+        ids.put(Module.class, 1);
+        ids.put(Interactive.class, 2);
+        ids.put(Expression.class, 3);
+        ids.put(NameTok.class, 4);
+        ids.put(Suite.class, 5);
+        ids.put(WithItem.class, 6);
+        ids.put(FunctionDef.class, 7);
+        ids.put(ClassDef.class, 8);
+        ids.put(Return.class, 9);
+        ids.put(Delete.class, 10);
+        ids.put(Assign.class, 11);
+        ids.put(AugAssign.class, 12);
+        ids.put(Print.class, 13);
+        ids.put(For.class, 14);
+        ids.put(While.class, 15);
+        ids.put(If.class, 16);
+        ids.put(With.class, 17);
+        ids.put(Raise.class, 18);
+        ids.put(TryExcept.class, 19);
+        ids.put(TryFinally.class, 20);
+        ids.put(Assert.class, 21);
+        ids.put(Import.class, 22);
+        ids.put(ImportFrom.class, 23);
+        ids.put(Exec.class, 24);
+        ids.put(Global.class, 25);
+        ids.put(NonLocal.class, 26);
+        ids.put(Expr.class, 27);
+        ids.put(Pass.class, 28);
+        ids.put(Break.class, 29);
+        ids.put(Continue.class, 30);
+        ids.put(BoolOp.class, 31);
+        ids.put(BinOp.class, 32);
+        ids.put(UnaryOp.class, 33);
+        ids.put(Lambda.class, 34);
+        ids.put(IfExp.class, 35);
+        ids.put(Dict.class, 36);
+        ids.put(Set.class, 37);
+        ids.put(ListComp.class, 38);
+        ids.put(SetComp.class, 39);
+        ids.put(DictComp.class, 40);
+        ids.put(GeneratorExp.class, 41);
+        ids.put(Yield.class, 42);
+        ids.put(Await.class, 43);
+        ids.put(Compare.class, 44);
+        ids.put(Call.class, 45);
+        ids.put(Repr.class, 46);
+        ids.put(Num.class, 47);
+        ids.put(Str.class, 48);
+        ids.put(StrJoin.class, 49);
+        ids.put(Attribute.class, 50);
+        ids.put(Subscript.class, 51);
+        ids.put(Starred.class, 52);
+        ids.put(Name.class, 53);
+        ids.put(List.class, 54);
+        ids.put(Tuple.class, 55);
+        ids.put(Ellipsis.class, 56);
+        ids.put(Slice.class, 57);
+        ids.put(ExtSlice.class, 58);
+        ids.put(Index.class, 59);
+        ids.put(Comprehension.class, 60);
+        ids.put(excepthandlerType.class, 61);
+        ids.put(argumentsType.class, 62);
+        ids.put(keywordType.class, 63);
+        ids.put(aliasType.class, 64);
+        ids.put(decoratorsType.class, 65);
+        ids.put(commentType.class, 66);
+    }
+
+    public SimpleNodeSerializer(DataOutput out) {
+        super(out);
+    }
+
+    public SimpleNodeSerializer(DataInput in) {
+        super(in);
+    }
+
+    @Override
+    public void writeNode(SimpleNode node) throws IOException {
+        if (node == null) {
+            writeInt(0);
+            return;
+        }
+        Integer id = ids.get(node.getClass());
+        if (id == null) {
+            throw new IOException("Unable to serialize: " + node.getClass());
+        }
+        writeInt(id);
+        writeInt(node.beginLine);
+        writeInt(node.beginColumn);
+        switch (id) {
+            case 1: {
+                Module n = (Module) node;
+                writeNodes(n.body);
+                break;
+            }
+            case 2: {
+                Interactive n = (Interactive) node;
+                writeNodes(n.body);
+                break;
+            }
+            case 3: {
+                Expression n = (Expression) node;
+                writeNode(n.body);
+                break;
+            }
+            case 4: {
+                NameTok n = (NameTok) node;
+                writeString(n.id);
+                writeInt(n.ctx);
+                break;
+            }
+            case 5: {
+                Suite n = (Suite) node;
+                writeNodes(n.body);
+                break;
+            }
+            case 6: {
+                WithItem n = (WithItem) node;
+                writeNode(n.context_expr);
+                writeNode(n.optional_vars);
+                break;
+            }
+            case 7: {
+                FunctionDef n = (FunctionDef) node;
+                writeNode(n.name);
+                writeNode(n.args);
+                writeNodes(n.body);
+                writeNodes(n.decs);
+                writeNode(n.returns);
+                writeBoolean(n.async);
+                break;
+            }
+            case 8: {
+                ClassDef n = (ClassDef) node;
+                writeNode(n.name);
+                writeNodes(n.bases);
+                writeNodes(n.body);
+                writeNodes(n.decs);
+                writeNodes(n.keywords);
+                writeNode(n.starargs);
+                writeNode(n.kwargs);
+                break;
+            }
+            case 9: {
+                Return n = (Return) node;
+                writeNode(n.value);
+                break;
+            }
+            case 10: {
+                Delete n = (Delete) node;
+                writeNodes(n.targets);
+                break;
+            }
+            case 11: {
+                Assign n = (Assign) node;
+                writeNodes(n.targets);
+                writeNode(n.value);
+                writeNode(n.type);
+                break;
+            }
+            case 12: {
+                AugAssign n = (AugAssign) node;
+                writeNode(n.target);
+                writeInt(n.op);
+                writeNode(n.value);
+                break;
+            }
+            case 13: {
+                Print n = (Print) node;
+                writeNode(n.dest);
+                writeNodes(n.values);
+                writeBoolean(n.nl);
+                break;
+            }
+            case 14: {
+                For n = (For) node;
+                writeNode(n.target);
+                writeNode(n.iter);
+                writeNodes(n.body);
+                writeNode(n.orelse);
+                writeBoolean(n.async);
+                break;
+            }
+            case 15: {
+                While n = (While) node;
+                writeNode(n.test);
+                writeNodes(n.body);
+                writeNode(n.orelse);
+                break;
+            }
+            case 16: {
+                If n = (If) node;
+                writeNode(n.test);
+                writeNodes(n.body);
+                writeNode(n.orelse);
+                break;
+            }
+            case 17: {
+                With n = (With) node;
+                writeNodes(n.with_item);
+                writeNode(n.body);
+                writeBoolean(n.async);
+                break;
+            }
+            case 18: {
+                Raise n = (Raise) node;
+                writeNode(n.type);
+                writeNode(n.inst);
+                writeNode(n.tback);
+                writeNode(n.cause);
+                break;
+            }
+            case 19: {
+                TryExcept n = (TryExcept) node;
+                writeNodes(n.body);
+                writeNodes(n.handlers);
+                writeNode(n.orelse);
+                break;
+            }
+            case 20: {
+                TryFinally n = (TryFinally) node;
+                writeNodes(n.body);
+                writeNode(n.finalbody);
+                break;
+            }
+            case 21: {
+                Assert n = (Assert) node;
+                writeNode(n.test);
+                writeNode(n.msg);
+                break;
+            }
+            case 22: {
+                Import n = (Import) node;
+                writeNodes(n.names);
+                break;
+            }
+            case 23: {
+                ImportFrom n = (ImportFrom) node;
+                writeNode(n.module);
+                writeNodes(n.names);
+                writeInt(n.level);
+                break;
+            }
+            case 24: {
+                Exec n = (Exec) node;
+                writeNode(n.body);
+                writeNode(n.globals);
+                writeNode(n.locals);
+                break;
+            }
+            case 25: {
+                Global n = (Global) node;
+                writeNodes(n.names);
+                writeNode(n.value);
+                break;
+            }
+            case 26: {
+                NonLocal n = (NonLocal) node;
+                writeNodes(n.names);
+                writeNode(n.value);
+                break;
+            }
+            case 27: {
+                Expr n = (Expr) node;
+                writeNode(n.value);
+                break;
+            }
+            case 28: {
+                break;
+            }
+            case 29: {
+                break;
+            }
+            case 30: {
+                break;
+            }
+            case 31: {
+                BoolOp n = (BoolOp) node;
+                writeInt(n.op);
+                writeNodes(n.values);
+                break;
+            }
+            case 32: {
+                BinOp n = (BinOp) node;
+                writeNode(n.left);
+                writeInt(n.op);
+                writeNode(n.right);
+                break;
+            }
+            case 33: {
+                UnaryOp n = (UnaryOp) node;
+                writeInt(n.op);
+                writeNode(n.operand);
+                break;
+            }
+            case 34: {
+                Lambda n = (Lambda) node;
+                writeNode(n.args);
+                writeNode(n.body);
+                break;
+            }
+            case 35: {
+                IfExp n = (IfExp) node;
+                writeNode(n.test);
+                writeNode(n.body);
+                writeNode(n.orelse);
+                break;
+            }
+            case 36: {
+                Dict n = (Dict) node;
+                writeNodes(n.keys);
+                writeNodes(n.values);
+                break;
+            }
+            case 37: {
+                Set n = (Set) node;
+                writeNodes(n.elts);
+                break;
+            }
+            case 38: {
+                ListComp n = (ListComp) node;
+                writeNode(n.elt);
+                writeNodes(n.generators);
+                writeInt(n.ctx);
+                break;
+            }
+            case 39: {
+                SetComp n = (SetComp) node;
+                writeNode(n.elt);
+                writeNodes(n.generators);
+                break;
+            }
+            case 40: {
+                DictComp n = (DictComp) node;
+                writeNode(n.key);
+                writeNode(n.value);
+                writeNodes(n.generators);
+                break;
+            }
+            case 41: {
+                GeneratorExp n = (GeneratorExp) node;
+                writeNode(n.elt);
+                writeNodes(n.generators);
+                break;
+            }
+            case 42: {
+                Yield n = (Yield) node;
+                writeNode(n.value);
+                writeBoolean(n.yield_from);
+                break;
+            }
+            case 43: {
+                Await n = (Await) node;
+                writeNode(n.value);
+                break;
+            }
+            case 44: {
+                Compare n = (Compare) node;
+                writeNode(n.left);
+                writeInts(n.ops);
+                writeNodes(n.comparators);
+                break;
+            }
+            case 45: {
+                Call n = (Call) node;
+                writeNode(n.func);
+                writeNodes(n.args);
+                writeNodes(n.keywords);
+                writeNode(n.starargs);
+                writeNode(n.kwargs);
+                break;
+            }
+            case 46: {
+                Repr n = (Repr) node;
+                writeNode(n.value);
+                break;
+            }
+            case 47: {
+                Num n = (Num) node;
+                writeObject(n.n);
+                writeInt(n.type);
+                writeString(n.num);
+                break;
+            }
+            case 48: {
+                Str n = (Str) node;
+                writeString(n.s);
+                writeInt(n.type);
+                writeBoolean(n.unicode);
+                writeBoolean(n.raw);
+                writeBoolean(n.binary);
+                writeBoolean(n.fstring);
+                break;
+            }
+            case 49: {
+                StrJoin n = (StrJoin) node;
+                writeNodes(n.strs);
+                break;
+            }
+            case 50: {
+                Attribute n = (Attribute) node;
+                writeNode(n.value);
+                writeNode(n.attr);
+                writeInt(n.ctx);
+                break;
+            }
+            case 51: {
+                Subscript n = (Subscript) node;
+                writeNode(n.value);
+                writeNode(n.slice);
+                writeInt(n.ctx);
+                break;
+            }
+            case 52: {
+                Starred n = (Starred) node;
+                writeNode(n.value);
+                writeInt(n.ctx);
+                break;
+            }
+            case 53: {
+                Name n = (Name) node;
+                writeString(n.id);
+                writeInt(n.ctx);
+                writeBoolean(n.reserved);
+                break;
+            }
+            case 54: {
+                List n = (List) node;
+                writeNodes(n.elts);
+                writeInt(n.ctx);
+                break;
+            }
+            case 55: {
+                Tuple n = (Tuple) node;
+                writeNodes(n.elts);
+                writeInt(n.ctx);
+                writeBoolean(n.endsWithComma);
+                break;
+            }
+            case 56: {
+                break;
+            }
+            case 57: {
+                Slice n = (Slice) node;
+                writeNode(n.lower);
+                writeNode(n.upper);
+                writeNode(n.step);
+                break;
+            }
+            case 58: {
+                ExtSlice n = (ExtSlice) node;
+                writeNodes(n.dims);
+                break;
+            }
+            case 59: {
+                Index n = (Index) node;
+                writeNode(n.value);
+                break;
+            }
+            case 60: {
+                Comprehension n = (Comprehension) node;
+                writeNode(n.target);
+                writeNode(n.iter);
+                writeNodes(n.ifs);
+                break;
+            }
+            case 61: {
+                excepthandlerType n = (excepthandlerType) node;
+                writeNode(n.type);
+                writeNode(n.name);
+                writeNodes(n.body);
+                break;
+            }
+            case 62: {
+                argumentsType n = (argumentsType) node;
+                writeNodes(n.args);
+                writeNode(n.vararg);
+                writeNode(n.kwarg);
+                writeNodes(n.defaults);
+                writeNodes(n.kwonlyargs);
+                writeNodes(n.kw_defaults);
+                writeNodes(n.annotation);
+                writeNode(n.varargannotation);
+                writeNode(n.kwargannotation);
+                writeNodes(n.kwonlyargannotation);
+                break;
+            }
+            case 63: {
+                keywordType n = (keywordType) node;
+                writeNode(n.arg);
+                writeNode(n.value);
+                writeBoolean(n.afterstarargs);
+                break;
+            }
+            case 64: {
+                aliasType n = (aliasType) node;
+                writeNode(n.name);
+                writeNode(n.asname);
+                break;
+            }
+            case 65: {
+                decoratorsType n = (decoratorsType) node;
+                writeNode(n.func);
+                writeNodes(n.args);
+                writeNodes(n.keywords);
+                writeNode(n.starargs);
+                writeNode(n.kwargs);
+                writeBoolean(n.isCall);
+                break;
+            }
+            case 66: {
+                commentType n = (commentType) node;
+                writeString(n.id);
+                break;
+            }
+        }
+        writeSpecials(node);
+    }
+
+    @Override
+    public SimpleNode readNode() throws IOException {
+        int nodeId = readInt();
+        if (nodeId == 0) {
+            return null;
+        }
+        int beginLine = readInt();
+        int beginColumn = readInt();
+        SimpleNode node;
+        switch (nodeId) {
+            case 1: {
+                stmtType[] body = readstmtTypeArray();
+                node = new Module(body);
+                break;
+            }
+            case 2: {
+                stmtType[] body = readstmtTypeArray();
+                node = new Interactive(body);
+                break;
+            }
+            case 3: {
+                exprType body = (exprType) readNode();
+                node = new Expression(body);
+                break;
+            }
+            case 4: {
+                String id = readString();
+                int ctx = readInt();
+                node = new NameTok(id, ctx);
+                break;
+            }
+            case 5: {
+                stmtType[] body = readstmtTypeArray();
+                node = new Suite(body);
+                break;
+            }
+            case 6: {
+                exprType context_expr = (exprType) readNode();
+                exprType optional_vars = (exprType) readNode();
+                node = new WithItem(context_expr, optional_vars);
+                break;
+            }
+            case 7: {
+                NameTokType name = (NameTokType) readNode();
+                argumentsType args = (argumentsType) readNode();
+                stmtType[] body = readstmtTypeArray();
+                decoratorsType[] decs = readdecoratorsTypeArray();
+                exprType returns = (exprType) readNode();
+                boolean async = readBoolean();
+                node = new FunctionDef(name, args, body, decs, returns, async);
+                break;
+            }
+            case 8: {
+                NameTokType name = (NameTokType) readNode();
+                exprType[] bases = readexprTypeArray();
+                stmtType[] body = readstmtTypeArray();
+                decoratorsType[] decs = readdecoratorsTypeArray();
+                keywordType[] keywords = readkeywordTypeArray();
+                exprType starargs = (exprType) readNode();
+                exprType kwargs = (exprType) readNode();
+                node = new ClassDef(name, bases, body, decs, keywords, starargs, kwargs);
+                if (body != null) {
+                    for (stmtType b : body) {
+                        if (b instanceof ClassDef) {
+                            ((ClassDef) b).parent = node;
+                        } else if (b instanceof FunctionDef) {
+                            ((FunctionDef) b).parent = node;
+                        }
+                    }
+                }
+                break;
+            }
+            case 9: {
+                exprType value = (exprType) readNode();
+                node = new Return(value);
+                break;
+            }
+            case 10: {
+                exprType[] targets = readexprTypeArray();
+                node = new Delete(targets);
+                break;
+            }
+            case 11: {
+                exprType[] targets = readexprTypeArray();
+                exprType value = (exprType) readNode();
+                exprType type = (exprType) readNode();
+                node = new Assign(targets, value, type);
+                break;
+            }
+            case 12: {
+                exprType target = (exprType) readNode();
+                int op = readInt();
+                exprType value = (exprType) readNode();
+                node = new AugAssign(target, op, value);
+                break;
+            }
+            case 13: {
+                exprType dest = (exprType) readNode();
+                exprType[] values = readexprTypeArray();
+                boolean nl = readBoolean();
+                node = new Print(dest, values, nl);
+                break;
+            }
+            case 14: {
+                exprType target = (exprType) readNode();
+                exprType iter = (exprType) readNode();
+                stmtType[] body = readstmtTypeArray();
+                suiteType orelse = (suiteType) readNode();
+                boolean async = readBoolean();
+                node = new For(target, iter, body, orelse, async);
+                break;
+            }
+            case 15: {
+                exprType test = (exprType) readNode();
+                stmtType[] body = readstmtTypeArray();
+                suiteType orelse = (suiteType) readNode();
+                node = new While(test, body, orelse);
+                break;
+            }
+            case 16: {
+                exprType test = (exprType) readNode();
+                stmtType[] body = readstmtTypeArray();
+                suiteType orelse = (suiteType) readNode();
+                node = new If(test, body, orelse);
+                break;
+            }
+            case 17: {
+                WithItemType[] with_item = readWithItemTypeArray();
+                suiteType body = (suiteType) readNode();
+                boolean async = readBoolean();
+                node = new With(with_item, body, async);
+                break;
+            }
+            case 18: {
+                exprType type = (exprType) readNode();
+                exprType inst = (exprType) readNode();
+                exprType tback = (exprType) readNode();
+                exprType cause = (exprType) readNode();
+                node = new Raise(type, inst, tback, cause);
+                break;
+            }
+            case 19: {
+                stmtType[] body = readstmtTypeArray();
+                excepthandlerType[] handlers = readexcepthandlerTypeArray();
+                suiteType orelse = (suiteType) readNode();
+                node = new TryExcept(body, handlers, orelse);
+                break;
+            }
+            case 20: {
+                stmtType[] body = readstmtTypeArray();
+                suiteType finalbody = (suiteType) readNode();
+                node = new TryFinally(body, finalbody);
+                break;
+            }
+            case 21: {
+                exprType test = (exprType) readNode();
+                exprType msg = (exprType) readNode();
+                node = new Assert(test, msg);
+                break;
+            }
+            case 22: {
+                aliasType[] names = readaliasTypeArray();
+                node = new Import(names);
+                break;
+            }
+            case 23: {
+                NameTokType module = (NameTokType) readNode();
+                aliasType[] names = readaliasTypeArray();
+                int level = readInt();
+                node = new ImportFrom(module, names, level);
+                break;
+            }
+            case 24: {
+                exprType body = (exprType) readNode();
+                exprType globals = (exprType) readNode();
+                exprType locals = (exprType) readNode();
+                node = new Exec(body, globals, locals);
+                break;
+            }
+            case 25: {
+                NameTokType[] names = readNameTokTypeArray();
+                exprType value = (exprType) readNode();
+                node = new Global(names, value);
+                break;
+            }
+            case 26: {
+                NameTokType[] names = readNameTokTypeArray();
+                exprType value = (exprType) readNode();
+                node = new NonLocal(names, value);
+                break;
+            }
+            case 27: {
+                exprType value = (exprType) readNode();
+                node = new Expr(value);
+                break;
+            }
+            case 28: {
+                node = new Pass();
+                break;
+            }
+            case 29: {
+                node = new Break();
+                break;
+            }
+            case 30: {
+                node = new Continue();
+                break;
+            }
+            case 31: {
+                int op = readInt();
+                exprType[] values = readexprTypeArray();
+                node = new BoolOp(op, values);
+                break;
+            }
+            case 32: {
+                exprType left = (exprType) readNode();
+                int op = readInt();
+                exprType right = (exprType) readNode();
+                node = new BinOp(left, op, right);
+                break;
+            }
+            case 33: {
+                int op = readInt();
+                exprType operand = (exprType) readNode();
+                node = new UnaryOp(op, operand);
+                break;
+            }
+            case 34: {
+                argumentsType args = (argumentsType) readNode();
+                exprType body = (exprType) readNode();
+                node = new Lambda(args, body);
+                break;
+            }
+            case 35: {
+                exprType test = (exprType) readNode();
+                exprType body = (exprType) readNode();
+                exprType orelse = (exprType) readNode();
+                node = new IfExp(test, body, orelse);
+                break;
+            }
+            case 36: {
+                exprType[] keys = readexprTypeArray();
+                exprType[] values = readexprTypeArray();
+                node = new Dict(keys, values);
+                break;
+            }
+            case 37: {
+                exprType[] elts = readexprTypeArray();
+                node = new Set(elts);
+                break;
+            }
+            case 38: {
+                exprType elt = (exprType) readNode();
+                comprehensionType[] generators = readcomprehensionTypeArray();
+                int ctx = readInt();
+                node = new ListComp(elt, generators, ctx);
+                break;
+            }
+            case 39: {
+                exprType elt = (exprType) readNode();
+                comprehensionType[] generators = readcomprehensionTypeArray();
+                node = new SetComp(elt, generators);
+                break;
+            }
+            case 40: {
+                exprType key = (exprType) readNode();
+                exprType value = (exprType) readNode();
+                comprehensionType[] generators = readcomprehensionTypeArray();
+                node = new DictComp(key, value, generators);
+                break;
+            }
+            case 41: {
+                exprType elt = (exprType) readNode();
+                comprehensionType[] generators = readcomprehensionTypeArray();
+                node = new GeneratorExp(elt, generators);
+                break;
+            }
+            case 42: {
+                exprType value = (exprType) readNode();
+                boolean yield_from = readBoolean();
+                node = new Yield(value, yield_from);
+                break;
+            }
+            case 43: {
+                exprType value = (exprType) readNode();
+                node = new Await(value);
+                break;
+            }
+            case 44: {
+                exprType left = (exprType) readNode();
+                int[] ops = readInts();
+                exprType[] comparators = readexprTypeArray();
+                node = new Compare(left, ops, comparators);
+                break;
+            }
+            case 45: {
+                exprType func = (exprType) readNode();
+                exprType[] args = readexprTypeArray();
+                keywordType[] keywords = readkeywordTypeArray();
+                exprType starargs = (exprType) readNode();
+                exprType kwargs = (exprType) readNode();
+                node = new Call(func, args, keywords, starargs, kwargs);
+                break;
+            }
+            case 46: {
+                exprType value = (exprType) readNode();
+                node = new Repr(value);
+                break;
+            }
+            case 47: {
+                Object n = readObject();
+                int type = readInt();
+                String num = readString();
+                node = new Num(n, type, num);
+                break;
+            }
+            case 48: {
+                String s = readString();
+                int type = readInt();
+                boolean unicode = readBoolean();
+                boolean raw = readBoolean();
+                boolean binary = readBoolean();
+                boolean fstring = readBoolean();
+                node = new Str(s, type, unicode, raw, binary, fstring);
+                break;
+            }
+            case 49: {
+                exprType[] strs = readexprTypeArray();
+                node = new StrJoin(strs);
+                break;
+            }
+            case 50: {
+                exprType value = (exprType) readNode();
+                NameTokType attr = (NameTokType) readNode();
+                int ctx = readInt();
+                node = new Attribute(value, attr, ctx);
+                break;
+            }
+            case 51: {
+                exprType value = (exprType) readNode();
+                sliceType slice = (sliceType) readNode();
+                int ctx = readInt();
+                node = new Subscript(value, slice, ctx);
+                break;
+            }
+            case 52: {
+                exprType value = (exprType) readNode();
+                int ctx = readInt();
+                node = new Starred(value, ctx);
+                break;
+            }
+            case 53: {
+                String id = readString();
+                int ctx = readInt();
+                boolean reserved = readBoolean();
+                node = new Name(id, ctx, reserved);
+                break;
+            }
+            case 54: {
+                exprType[] elts = readexprTypeArray();
+                int ctx = readInt();
+                node = new List(elts, ctx);
+                break;
+            }
+            case 55: {
+                exprType[] elts = readexprTypeArray();
+                int ctx = readInt();
+                boolean endsWithComma = readBoolean();
+                node = new Tuple(elts, ctx, endsWithComma);
+                break;
+            }
+            case 56: {
+                node = new Ellipsis();
+                break;
+            }
+            case 57: {
+                exprType lower = (exprType) readNode();
+                exprType upper = (exprType) readNode();
+                exprType step = (exprType) readNode();
+                node = new Slice(lower, upper, step);
+                break;
+            }
+            case 58: {
+                sliceType[] dims = readsliceTypeArray();
+                node = new ExtSlice(dims);
+                break;
+            }
+            case 59: {
+                exprType value = (exprType) readNode();
+                node = new Index(value);
+                break;
+            }
+            case 60: {
+                exprType target = (exprType) readNode();
+                exprType iter = (exprType) readNode();
+                exprType[] ifs = readexprTypeArray();
+                node = new Comprehension(target, iter, ifs);
+                break;
+            }
+            case 61: {
+                exprType type = (exprType) readNode();
+                exprType name = (exprType) readNode();
+                stmtType[] body = readstmtTypeArray();
+                node = new excepthandlerType(type, name, body);
+                break;
+            }
+            case 62: {
+                exprType[] args = readexprTypeArray();
+                NameTokType vararg = (NameTokType) readNode();
+                NameTokType kwarg = (NameTokType) readNode();
+                exprType[] defaults = readexprTypeArray();
+                exprType[] kwonlyargs = readexprTypeArray();
+                exprType[] kw_defaults = readexprTypeArray();
+                exprType[] annotation = readexprTypeArray();
+                exprType varargannotation = (exprType) readNode();
+                exprType kwargannotation = (exprType) readNode();
+                exprType[] kwonlyargannotation = readexprTypeArray();
+                node = new argumentsType(args, vararg, kwarg, defaults, kwonlyargs, kw_defaults,
+                annotation, varargannotation, kwargannotation, kwonlyargannotation);
+                break;
+            }
+            case 63: {
+                NameTokType arg = (NameTokType) readNode();
+                exprType value = (exprType) readNode();
+                boolean afterstarargs = readBoolean();
+                node = new keywordType(arg, value, afterstarargs);
+                break;
+            }
+            case 64: {
+                NameTokType name = (NameTokType) readNode();
+                NameTokType asname = (NameTokType) readNode();
+                node = new aliasType(name, asname);
+                break;
+            }
+            case 65: {
+                exprType func = (exprType) readNode();
+                exprType[] args = readexprTypeArray();
+                keywordType[] keywords = readkeywordTypeArray();
+                exprType starargs = (exprType) readNode();
+                exprType kwargs = (exprType) readNode();
+                boolean isCall = readBoolean();
+                node = new decoratorsType(func, args, keywords, starargs, kwargs, isCall);
+                break;
+            }
+            case 66: {
+                String id = readString();
+                node = new commentType(id);
+                break;
+            }
+            default:
+                throw new IOException("Unexpected node id: " + nodeId);
+        }
+        node.beginLine = beginLine;
+        node.beginColumn = beginColumn;
+        readSpecials(node);
+        return node;
+    }
+
+    private stmtType[] readstmtTypeArray() throws IOException {
+        int len = readArrayLength();
+        if (len < 0) {
+            return null;
+        }
+        stmtType[] ret = new stmtType[len];
+        for (int i = 0; i < len; i++) {
+            ret[i] = (stmtType) readNode();
+        }
+        return ret;
+    }
+
+    private decoratorsType[] readdecoratorsTypeArray() throws IOException {
+        int len = readArrayLength();
+        if (len < 0) {
+            return null;
+        }
+        decoratorsType[] ret = new decoratorsType[len];
+        for (int i = 0; i < len; i++) {
+            ret[i] = (decoratorsType) readNode();
+        }
+        return ret;
+    }
+
+    private exprType[] readexprTypeArray() throws IOException {
+        int len = readArrayLength();
+        if (len < 0) {
+            return null;
+        }
+        exprType[] ret = new exprType[len];
+        for (int i = 0; i < len; i++) {
+            ret[i] = (exprType) readNode();
+        }
+        return ret;
+    }
+
+    private keywordType[] readkeywordTypeArray() throws IOException {
+        int len = readArrayLength();
+        if (len < 0) {
+            return null;
+        }
+        keywordType[] ret = new keywordType[len];
+        for (int i = 0; i < len; i++) {
+            ret[i] = (keywordType) readNode();
+        }
+        return ret;
+    }
+
+    private WithItemType[] readWithItemTypeArray() throws IOException {
+        int len = readArrayLength();
+        if (len < 0) {
+            return null;
+        }
+        WithItemType[] ret = new WithItemType[len];
+        for (int i = 0; i < len; i++) {
+            ret[i] = (WithItemType) readNode();
+        }
+        return ret;
+    }
+
+    private excepthandlerType[] readexcepthandlerTypeArray() throws IOException {
+        int len = readArrayLength();
+        if (len < 0) {
+            return null;
+        }
+        excepthandlerType[] ret = new excepthandlerType[len];
+        for (int i = 0; i < len; i++) {
+            ret[i] = (excepthandlerType) readNode();
+        }
+        return ret;
+    }
+
+    private aliasType[] readaliasTypeArray() throws IOException {
+        int len = readArrayLength();
+        if (len < 0) {
+            return null;
+        }
+        aliasType[] ret = new aliasType[len];
+        for (int i = 0; i < len; i++) {
+            ret[i] = (aliasType) readNode();
+        }
+        return ret;
+    }
+
+    private NameTokType[] readNameTokTypeArray() throws IOException {
+        int len = readArrayLength();
+        if (len < 0) {
+            return null;
+        }
+        NameTokType[] ret = new NameTokType[len];
+        for (int i = 0; i < len; i++) {
+            ret[i] = (NameTokType) readNode();
+        }
+        return ret;
+    }
+
+    private comprehensionType[] readcomprehensionTypeArray() throws IOException {
+        int len = readArrayLength();
+        if (len < 0) {
+            return null;
+        }
+        comprehensionType[] ret = new comprehensionType[len];
+        for (int i = 0; i < len; i++) {
+            ret[i] = (comprehensionType) readNode();
+        }
+        return ret;
+    }
+
+    private sliceType[] readsliceTypeArray() throws IOException {
+        int len = readArrayLength();
+        if (len < 0) {
+            return null;
+        }
+        sliceType[] ret = new sliceType[len];
+        for (int i = 0; i < len; i++) {
+            ret[i] = (sliceType) readNode();
+        }
+        return ret;
+    }
+}
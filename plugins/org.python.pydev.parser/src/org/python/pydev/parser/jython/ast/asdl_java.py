@@ -3,7 +3,7 @@
 # TO DO
 # handle fields that have a type but no name
 
-import os, sys, traceback
+import os, sys, traceback, zlib
 
 import asdl
 
@@ -519,6 +519,197 @@ class VisitorVisitor(EmitVisitor):
 
 
 
+class SerializerVisitor(JavaVisitor):
+    """Generates the SimpleNodeSerializer (which writes/reads the nodes in a binary format)."""
+
+    def __init__(self):
+        JavaVisitor.__init__(self)
+        self.ctors = []
+
+    def visitModule(self, mod):
+        for dfn in mod.dfns:
+            self.visit(dfn)
+
+        signature = []
+        for clsname, fields in self.ctors:
+            signature.append("%s(%s)" % (clsname, ",".join(["%s%s" % (self.fieldDef(f), f.opt and "?" or "") for f in fields])))
+        version = zlib.crc32(";".join(signature).encode("utf-8")) & 0x7fffffff
+
+        self.open("SimpleNodeSerializer", refersToSimpleNode=0)
+        self.emit("import java.io.DataInput;", 0)
+        self.emit("import java.io.DataOutput;", 0)
+        self.emit("import java.io.IOException;", 0)
+        self.emit("import java.util.HashMap;", 0)
+        self.emit("import java.util.Map;", 0)
+        self.emit("", 0)
+        self.emit("import org.python.pydev.parser.jython.AbstractSimpleNodeSerializer;", 0)
+        self.emit("import org.python.pydev.parser.jython.SimpleNode;", 0)
+        self.emit("", 0)
+        self.emit("public final class SimpleNodeSerializer extends AbstractSimpleNodeSerializer {", 0)
+        self.emit("", 0)
+        self.emit("/**", 1)
+        self.emit(" * Changes whenever the nodes change (contents written with another version must not be read).", 1)
+        self.emit(" */", 1)
+        self.emit("public static final int FORMAT_VERSION = %d;" % version, 1)
+        self.emit("", 0)
+        self.emit("private static final Map<Class<?>, Integer> ids = new HashMap<Class<?>, Integer>();", 1)
+        self.emit("", 0)
+        self.emit("static {", 1)
+        for i, (clsname, fields) in enumerate(self.ctors):
+            self.emit("ids.put(%s.class, %d);" % (clsname, i + 1), 2)
+        self.emit("}", 1)
+        self.emit("", 0)
+        self.emit("public SimpleNodeSerializer(DataOutput out) {", 1)
+        self.emit("super(out);", 2)
+        self.emit("}", 1)
+        self.emit("", 0)
+        self.emit("public SimpleNodeSerializer(DataInput in) {", 1)
+        self.emit("super(in);", 2)
+        self.emit("}", 1)
+        self.emit("", 0)
+
+        # writeNode
+        self.emit("@Override", 1)
+        self.emit("public void writeNode(SimpleNode node) throws IOException {", 1)
+        self.emit("if (node == null) {", 2)
+        self.emit("writeInt(0);", 3)
+        self.emit("return;", 3)
+        self.emit("}", 2)
+        self.emit("Integer id = ids.get(node.getClass());", 2)
+        self.emit("if (id == null) {", 2)
+        self.emit('throw new IOException("Unable to serialize: " + node.getClass());', 3)
+        self.emit("}", 2)
+        self.emit("writeInt(id);", 2)
+        self.emit("writeInt(node.beginLine);", 2)
+        self.emit("writeInt(node.beginColumn);", 2)
+        self.emit("switch (id) {", 2)
+        for i, (clsname, fields) in enumerate(self.ctors):
+            self.emit("case %d: {" % (i + 1), 3)
+            if fields:
+                self.emit("%s n = (%s) node;" % (clsname, clsname), 4)
+            for f in fields:
+                self.emit(self.writeField(f), 4)
+            self.emit("break;", 4)
+            self.emit("}", 3)
+        self.emit("}", 2)
+        self.emit("writeSpecials(node);", 2)
+        self.emit("}", 1)
+        self.emit("", 0)
+
+        # readNode
+        self.emit("@Override", 1)
+        self.emit("public SimpleNode readNode() throws IOException {", 1)
+        self.emit("int nodeId = readInt();", 2)
+        self.emit("if (nodeId == 0) {", 2)
+        self.emit("return null;", 3)
+        self.emit("}", 2)
+        self.emit("int beginLine = readInt();", 2)
+        self.emit("int beginColumn = readInt();", 2)
+        self.emit("SimpleNode node;", 2)
+        self.emit("switch (nodeId) {", 2)
+        for i, (clsname, fields) in enumerate(self.ctors):
+            self.emit("case %d: {" % (i + 1), 3)
+            for f in fields:
+                self.emit("%s = %s;" % (self.fieldDef(f), self.readField(f)), 4)
+            self.emit("node = new %s(%s);" % (clsname, ", ".join([str(f.name) for f in fields])), 4)
+
+            #fabioz: HACK WARNING: the parent of the methods/classes in a class is set by the tree builder.
+            if str(clsname) == 'ClassDef':
+                self.emit("if (body != null) {", 4)
+                self.emit("for (stmtType b : body) {", 5)
+                self.emit("if (b instanceof ClassDef) {", 6)
+                self.emit("((ClassDef) b).parent = node;", 7)
+                self.emit("} else if (b instanceof FunctionDef) {", 6)
+                self.emit("((FunctionDef) b).parent = node;", 7)
+                self.emit("}", 6)
+                self.emit("}", 5)
+                self.emit("}", 4)
+            #HACK WARNING: the parent of the methods/classes in a class is set by the tree builder.
+
+            self.emit("break;", 4)
+            self.emit("}", 3)
+        self.emit("default:", 3)
+        self.emit('throw new IOException("Unexpected node id: " + nodeId);', 4)
+        self.emit("}", 2)
+        self.emit("node.beginLine = beginLine;", 2)
+        self.emit("node.beginColumn = beginColumn;", 2)
+        self.emit("readSpecials(node);", 2)
+        self.emit("return node;", 2)
+        self.emit("}", 1)
+
+        # helpers to read the arrays of nodes
+        arrays = []
+        for clsname, fields in self.ctors:
+            for f in fields:
+                jType = self.jType(f)
+                if f.seq and jType not in ('int', 'boolean', 'String', 'Object') and jType not in arrays:
+                    arrays.append(jType)
+        for jType in arrays:
+            self.emit("", 0)
+            self.emit("private %s[] read%sArray() throws IOException {" % (jType, jType), 1)
+            self.emit("int len = readArrayLength();", 2)
+            self.emit("if (len < 0) {", 2)
+            self.emit("return null;", 3)
+            self.emit("}", 2)
+            self.emit("%s[] ret = new %s[len];" % (jType, jType), 2)
+            self.emit("for (int i = 0; i < len; i++) {", 2)
+            self.emit("ret[i] = (%s) readNode();" % (jType,), 3)
+            self.emit("}", 2)
+            self.emit("return ret;", 2)
+            self.emit("}", 1)
+
+        self.emit("}", 0)
+        self.close()
+
+    def writeField(self, f):
+        jType = self.jType(f)
+        if f.seq:
+            assert jType not in ('boolean', 'String', 'Object'), "Unsupported: %s" % (f,)
+            if jType == 'int':
+                return "writeInts(n.%s);" % (f.name,)
+            return "writeNodes(n.%s);" % (f.name,)
+        if jType == 'int':
+            return "writeInt(n.%s);" % (f.name,)
+        if jType == 'boolean':
+            return "writeBoolean(n.%s);" % (f.name,)
+        if jType == 'String':
+            return "writeString(n.%s);" % (f.name,)
+        if jType == 'Object':
+            return "writeObject(n.%s);" % (f.name,)
+        return "writeNode(n.%s);" % (f.name,)
+
+    def readField(self, f):
+        jType = self.jType(f)
+        if f.seq:
+            if jType == 'int':
+                return "readInts()"
+            return "read%sArray()" % (jType,)
+        if jType == 'int':
+            return "readInt()"
+        if jType == 'boolean':
+            return "readBoolean()"
+        if jType == 'String':
+            return "readString()"
+        if jType == 'Object':
+            return "readObject()"
+        return "(%s) readNode()" % (jType,)
+
+    def visitType(self, type, depth=0):
+        self.visit(type.value, type.name, depth)
+
+    def visitSum(self, sum, name, depth):
+        if not sum.simple:
+            for t in sum.types:
+                self.visit(t, name, depth)
+
+    def visitProduct(self, product, name, depth):
+        self.ctors.append(("%sType" % name, product.fields))
+
+    def visitConstructor(self, cons, name, depth):
+        self.ctors.append((cons.name, cons.fields))
+
+
+
 class ChainOfVisitors:
     def __init__(self, *visitors):
         self.visitors = visitors
@@ -535,5 +726,6 @@ if __name__ == "__main__":
         sys.exit(1)
     c = ChainOfVisitors(AnalyzeVisitor(),
                         JavaVisitor(),
-                        VisitorVisitor())
+                        VisitorVisitor(),
+                        SerializerVisitor())
     c.visit(mod)
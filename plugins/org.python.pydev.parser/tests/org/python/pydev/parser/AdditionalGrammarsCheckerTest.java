@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jface.text.Document;
+import org.python.pydev.core.IGrammarVersionProvider;
+import org.python.pydev.core.IGrammarVersionProvider.AdditionalGrammarVersionsToCheck;
+import org.python.pydev.parser.jython.ParseException;
+import org.python.pydev.shared_core.callbacks.ICallback;
+import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
+
+import junit.framework.TestCase;
+
+public class AdditionalGrammarsCheckerTest extends TestCase {
+
+    private AdditionalGrammarVersionsToCheck additionalGrammars;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        additionalGrammars = new AdditionalGrammarVersionsToCheck();
+        additionalGrammars.add(IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_6);
+    }
+
+    public void testCheckGrammars() throws Exception {
+        Set<Integer> parsed = new HashSet<Integer>();
+        parsed.add(IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7);
+        Throwable error = AdditionalGrammarsChecker.checkGrammars(
+                PyParser.createCharArrayToParse("print 'a'\n"), parsed, additionalGrammars);
+        assertTrue("Found: " + error, error instanceof ParseException);
+        assertTrue(parsed.contains(IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_6));
+
+        parsed = new HashSet<Integer>();
+        parsed.add(IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7);
+        assertNull(AdditionalGrammarsChecker.checkGrammars(PyParser.createCharArrayToParse("print('a')\n"), parsed,
+                additionalGrammars));
+    }
+
+    public void testSyncParseStillChecksAdditionalGrammars() throws Exception {
+        ParseOutput output = PyParser.reparseDocument(new PyParser.ParserInfo(new Document("print 'a'\n"),
+                IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7, additionalGrammars));
+        assertNotNull(output.ast);
+        assertTrue("Found: " + output.error, output.error instanceof ParseException);
+    }
+
+    public void testSameContentsNotCheckedAgain() throws Exception {
+        Throwable error = AdditionalGrammarsChecker.check("print 'a'\n",
+                IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7, additionalGrammars);
+        assertNotNull(error);
+        assertSame(error, AdditionalGrammarsChecker.check("print 'a'\n",
+                IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7, additionalGrammars));
+
+        //The results of the last contents checked are kept.
+        assertNull(AdditionalGrammarsChecker.check("print('a')\n", IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7,
+                additionalGrammars));
+        assertSame(error, AdditionalGrammarsChecker.check("print 'a'\n",
+                IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7, additionalGrammars));
+
+        //Other grammars
+        AdditionalGrammarVersionsToCheck otherGrammars = new AdditionalGrammarVersionsToCheck();
+        otherGrammars.add(IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7);
+        assertNull(AdditionalGrammarsChecker.check("print 'a'\n", IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_6,
+                otherGrammars));
+    }
+
+    public void testSyncParseSharesOutputOfMainGrammar() throws Exception {
+        if (ParseOutputCache.get() == null) {
+            return;
+        }
+        Document doc = new Document("print 'a'\n");
+        ParseOutput mainOutput = PyParser.reparseDocument(new PyParser.ParserInfo(doc,
+                IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7, null));
+        assertNull(mainOutput.error);
+
+        //i.e.: the builder uses the same ast parsed for the editor (only checking the additional grammars).
+        ParseOutput output = PyParser.reparseDocument(new PyParser.ParserInfo(doc,
+                IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7, additionalGrammars));
+        assertSame(mainOutput.ast, output.ast);
+        assertTrue("Found: " + output.error, output.error instanceof ParseException);
+        assertNull(mainOutput.error);
+    }
+
+    public void testCheckLater() throws Exception {
+        AdditionalGrammarsChecker checker = new AdditionalGrammarsChecker();
+        Document doc = new Document("print 'a'\n");
+        final CountDownLatch errorFound = new CountDownLatch(1);
+        final Throwable[] found = new Throwable[1];
+        checker.checkLater(doc, doc.getModificationStamp(), IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7,
+                additionalGrammars, new ICallback<Object, Throwable>() {
+
+                    @Override
+                    public Object call(Throwable error) {
+                        found[0] = error;
+                        errorFound.countDown();
+                        return null;
+                    }
+                });
+        assertTrue(errorFound.await(5, TimeUnit.SECONDS));
+        assertTrue("Found: " + found[0], found[0] instanceof ParseException);
+    }
+}
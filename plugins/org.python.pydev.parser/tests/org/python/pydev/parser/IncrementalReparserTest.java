@@ -0,0 +1,199 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import java.util.List;
+
+import org.eclipse.jface.text.Document;
+import org.python.pydev.core.IGrammarVersionProvider;
+import org.python.pydev.parser.jython.ISpecialStr;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.Call;
+import org.python.pydev.parser.jython.ast.Expr;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.VisitorBase;
+import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+import junit.framework.TestCase;
+
+public class IncrementalReparserTest extends TestCase {
+
+    private static final int GRAMMAR_VERSION = IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_6;
+
+    private IncrementalReparser reparser;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        reparser = new IncrementalReparser();
+    }
+
+    private static String createContents(int functions) {
+        FastStringBuffer buf = new FastStringBuffer();
+        buf.append("import os\n\n");
+        for (int i = 0; i < functions; i++) {
+            buf.append("@decorator\n");
+            buf.append("def method").append(i).append("(a, b=None):\n");
+            buf.append("    # comment ").append(i).append('\n');
+            buf.append("    if b is not None:\n        return [x for x in (a, b)]\n");
+            buf.append("    return os.path.join(a, '''\n").append(i).append("''')\n\n");
+        }
+        buf.append("class Foo(object):\n\n    def m1(self):\n        pass\n");
+        return buf.toString();
+    }
+
+    private Module fullParse(String contents) {
+        return fullParse(contents, GRAMMAR_VERSION);
+    }
+
+    private Module fullParse(String contents, int grammarVersion) {
+        ParseOutput output = PyParser.reparseDocument(new PyParser.ParserInfo(new Document(contents),
+                grammarVersion, null));
+        assertNull(output.error);
+        return (Module) output.ast;
+    }
+
+    private Module setLastParse(String contents) {
+        Module ast = fullParse(contents);
+        reparser.setLastParse(contents, ast, GRAMMAR_VERSION);
+        return ast;
+    }
+
+    /**
+     * @return a representation with the class, position and specials of all the nodes.
+     */
+    private static String dump(SimpleNode ast) throws Exception {
+        final FastStringBuffer buf = new FastStringBuffer();
+        ast.accept(new VisitorBase() {
+
+            @Override
+            protected Object unhandled_node(SimpleNode node) throws Exception {
+                return null;
+            }
+
+            @Override
+            public void traverse(SimpleNode node) throws Exception {
+                buf.append(node.getClass().getSimpleName()).append(' ').append(node.beginLine).append(':')
+                        .append(node.beginColumn);
+                appendSpecials(buf, node.specialsBefore);
+                appendSpecials(buf, node.specialsAfter);
+                buf.append('\n');
+                node.traverse(this);
+            }
+        });
+        return buf.toString();
+    }
+
+    private static void appendSpecials(FastStringBuffer buf, List<Object> specials) {
+        if (specials != null) {
+            for (Object special : specials) {
+                buf.append(' ').append(special.toString());
+                if (special instanceof SimpleNode) {
+                    buf.append('@').append(((SimpleNode) special).beginLine);
+                } else if (special instanceof ISpecialStr) {
+                    buf.append('@').append(((ISpecialStr) special).getBeginLine());
+                }
+            }
+        }
+    }
+
+    private void checkIncremental(String contents) throws Exception {
+        Module ast = reparser.reparse(contents, GRAMMAR_VERSION);
+        assertNotNull("Expected incremental parse for:\n" + contents, ast);
+        assertEquals(dump(fullParse(contents)), dump(ast));
+    }
+
+    public void testEditInsideStatement() throws Exception {
+        String contents = createContents(20);
+        Module previous = setLastParse(contents);
+        String previousDump = dump(previous);
+
+        String newContents = contents.replace("def method10(a, b=None):", "def method10(a, bb=None):");
+        checkIncremental(newContents);
+        Module ast = reparser.reparse(newContents, GRAMMAR_VERSION);
+
+        //Same lines: all the other statements are reused.
+        assertEquals(previous.body.length, ast.body.length);
+        for (int i = 0; i < previous.body.length; i++) {
+            if (i != 11) {
+                assertSame(previous.body[i], ast.body[i]);
+            }
+        }
+        assertNotSame(previous.body[11], ast.body[11]);
+        assertEquals(previousDump, dump(previous));
+    }
+
+    public void testLinesAddedAndRemoved() throws Exception {
+        String contents = createContents(20);
+        Module previous = setLastParse(contents);
+        String previousDump = dump(previous);
+
+        String newContents = contents.replace("    # comment 5\n", "    # comment 5\n    a = 10\n\n    b = 20\n");
+        checkIncremental(newContents);
+        assertEquals(previousDump, dump(previous)); //the previous ast must not be changed
+
+        newContents = newContents.replace("    # comment 3\n", "");
+        checkIncremental(newContents);
+
+        //new statements between existing ones
+        newContents = newContents.replace("def method7", "CONSTANT = 1\n\ndef method7");
+        checkIncremental(newContents);
+
+        //change at the last statement
+        newContents = newContents.replace("    def m1(self):\n", "    def m1(self):\n        '''doc'''\n");
+        checkIncremental(newContents);
+    }
+
+    public void testFullParseNeeded() throws Exception {
+        String contents = createContents(10);
+        setLastParse(contents);
+
+        //indentation changed (the statement is now part of the previous one)
+        assertNull(reparser.reparse(contents.replace("@decorator\ndef method5", "    @decorator\n    def method5"),
+                GRAMMAR_VERSION));
+
+        //brackets/strings opened and not closed in the region
+        assertNull(reparser.reparse(contents.replace("return [x for x in (a, b)]\n", "return [x for x in (a, b\n"),
+                GRAMMAR_VERSION));
+        assertNull(reparser.reparse(contents.replace("return os.path.join(a, '''\n3", "return os.path.join(a, \n3"),
+                GRAMMAR_VERSION));
+
+        //__future__ imports may change the module
+        assertNull(reparser.reparse(contents.replace("import os\n", "from __future__ import print_function\n"),
+                GRAMMAR_VERSION));
+
+        //no previous ast for another grammar
+        assertNull(reparser.reparse(contents, IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7));
+
+        reparser.clear();
+        assertNull(reparser.reparse(contents, GRAMMAR_VERSION));
+    }
+
+    public void testErrorKeepsLastParse() throws Exception {
+        String contents = createContents(10);
+        setLastParse(contents);
+
+        assertNull(reparser.reparse(contents.replace("def method5(a, b=None):", "def method5(a, b=None:"),
+                GRAMMAR_VERSION));
+        //fixed: compared to the last ast without errors
+        checkIncremental(contents.replace("def method5(a, b=None):", "def method5(a, c=None):"));
+    }
+
+    public void testFutureImportOutsideRegion() throws Exception {
+        int grammarVersion = IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7;
+        String contents = "from __future__ import print_function\n\ndef method():\n    pass\n\nx = 1\n";
+        reparser.setLastParse(contents, fullParse(contents, grammarVersion), grammarVersion);
+
+        //The region alone would be parsed without print_function (so, as a print statement).
+        String newContents = contents.replace("x = 1\n", "print(a, b)\n");
+        assertNull(reparser.reparse(newContents, grammarVersion));
+
+        Module ast = fullParse(newContents, grammarVersion);
+        assertTrue(((Expr) ast.body[2]).value instanceof Call);
+    }
+}
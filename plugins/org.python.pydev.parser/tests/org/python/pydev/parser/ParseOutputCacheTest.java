@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.python.pydev.core.IGrammarVersionProvider;
+import org.python.pydev.core.IGrammarVersionProvider.AdditionalGrammarVersionsToCheck;
+import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
+
+import junit.framework.TestCase;
+
+public class ParseOutputCacheTest extends TestCase {
+
+    private ParseOutputCache cache;
+    private AtomicInteger parses;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        cache = new ParseOutputCache(2);
+        parses = new AtomicInteger();
+    }
+
+    private ParseOutput parse(final IDocument doc, int grammarVersion) {
+        return parse(new PyParser.ParserInfo(doc, grammarVersion, null), null);
+    }
+
+    private ParseOutput parse(final PyParser.ParserInfo info, final CountDownLatch waitBeforeParsing) {
+        return cache.getParseOutput(info, new Callable<ParseOutput>() {
+
+            @Override
+            public ParseOutput call() throws Exception {
+                parses.incrementAndGet();
+                if (waitBeforeParsing != null) {
+                    waitBeforeParsing.await(5, TimeUnit.SECONDS);
+                }
+                return new ParseOutput(null, null, 0);
+            }
+        });
+    }
+
+    public void testSameVersionParsedOnce() throws Exception {
+        Document doc = new Document("a = 10\n");
+        ParseOutput output = parse(doc, IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_6);
+        assertSame(output, parse(doc, IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_6));
+        assertEquals(1, parses.get());
+
+        //other grammar
+        assertNotSame(output, parse(doc, IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7));
+        assertEquals(2, parses.get());
+
+        //document changed
+        doc.set("a = 20\n");
+        assertNotSame(output, parse(doc, IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_6));
+        assertEquals(3, parses.get());
+
+        //other document with the same contents
+        parse(new Document("a = 20\n"), IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_6);
+        assertEquals(4, parses.get());
+        assertEquals(2, cache.size());
+    }
+
+    public void testAdditionalGrammarsNotInKey() throws Exception {
+        Document doc = new Document("a = 10\n");
+        ParseOutput output = parse(doc, IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7);
+        AdditionalGrammarVersionsToCheck additionalGrammars = new AdditionalGrammarVersionsToCheck();
+        additionalGrammars.add(IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_6);
+        assertSame(output, parse(new PyParser.ParserInfo(doc, IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_2_7,
+                additionalGrammars), null));
+        assertEquals(1, parses.get());
+    }
+
+    public void testConcurrentRequestsJoinParse() throws Exception {
+        final Document doc = new Document("a = 10\n");
+        final CountDownLatch waitBeforeParsing = new CountDownLatch(1);
+        final ParseOutput[] outputs = new ParseOutput[2];
+        Thread[] threads = new Thread[2];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    outputs[index] = parse(
+                            new PyParser.ParserInfo(doc, IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_6, null),
+                            waitBeforeParsing);
+                }
+            };
+            threads[i].start();
+        }
+        Thread.sleep(100);
+        waitBeforeParsing.countDown();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+        assertEquals(1, parses.get());
+        assertNotNull(outputs[0]);
+        assertSame(outputs[0], outputs[1]);
+    }
+
+    public void testErrorNotKept() throws Exception {
+        Document doc = new Document("a = 10\n");
+        PyParser.ParserInfo info = new PyParser.ParserInfo(doc, IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_6,
+                null);
+        try {
+            cache.getParseOutput(info, new Callable<ParseOutput>() {
+
+                @Override
+                public ParseOutput call() throws Exception {
+                    throw new RuntimeException("Unexpected error");
+                }
+            });
+            fail("Expected error to be rethrown.");
+        } catch (RuntimeException e) {
+            assertEquals("Unexpected error", e.getMessage());
+        }
+        assertEquals(0, cache.size());
+        parse(doc, IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_6);
+        assertEquals(1, parses.get());
+    }
+}
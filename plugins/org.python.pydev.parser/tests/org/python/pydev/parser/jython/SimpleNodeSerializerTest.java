@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.parser.jython;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.TestDependent;
+import org.python.pydev.parser.PyParserTestBase;
+import org.python.pydev.parser.jython.ast.ClassDef;
+import org.python.pydev.parser.jython.ast.FunctionDef;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.SimpleNodeSerializer;
+import org.python.pydev.parser.jython.ast.VisitorBase;
+import org.python.pydev.parser.jython.ast.commentType;
+import org.python.pydev.shared_core.io.FileUtils;
+
+public class SimpleNodeSerializerTest extends PyParserTestBase {
+
+    public static void main(String[] args) {
+        try {
+            SimpleNodeSerializerTest test = new SimpleNodeSerializerTest();
+            test.setUp();
+            test.testSerializeGrammar36();
+            test.tearDown();
+            junit.textui.TestRunner.run(SimpleNodeSerializerTest.class);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        setDefaultVersion(IPythonNature.GRAMMAR_PYTHON_VERSION_3_6);
+    }
+
+    private SimpleNode serializeAndRead(SimpleNode node) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new SimpleNodeSerializer(new DataOutputStream(out)).writeNode(node);
+        SimpleNode read = new SimpleNodeSerializer(new DataInputStream(new ByteArrayInputStream(out.toByteArray())))
+                .readNode();
+        assertEquals(node, read);
+        assertEquals(node.toString(), read.toString());
+        return read;
+    }
+
+    /**
+     * @return the specials (comments and strings) of all the nodes in the tree.
+     */
+    private List<String> getSpecials(SimpleNode node) throws Exception {
+        final List<String> specials = new ArrayList<String>();
+        node.accept(new VisitorBase() {
+
+            @Override
+            protected Object unhandled_node(SimpleNode node) throws Exception {
+                addSpecials(node.specialsBefore);
+                addSpecials(node.specialsAfter);
+                return null;
+            }
+
+            private void addSpecials(List<Object> lst) {
+                if (lst != null) {
+                    for (Object o : lst) {
+                        specials.add(o instanceof commentType ? ((commentType) o).id : o.toString());
+                    }
+                }
+            }
+
+            @Override
+            public void traverse(SimpleNode node) throws Exception {
+                node.traverse(this);
+            }
+        });
+        return specials;
+    }
+
+    public void testSerializeGrammar36() throws Exception {
+        String contents = FileUtils.getFileContents(new File(TestDependent.TEST_PYDEV_PARSER_PLUGIN_LOC +
+                "/tests/org/python/pydev/parser/python_test_grammar_36.py"));
+        serializeAndRead(parseLegalDocStr(contents));
+    }
+
+    public void testSerializeGrammar27() throws Exception {
+        setDefaultVersion(IPythonNature.GRAMMAR_PYTHON_VERSION_2_7);
+        String s = "" +
+                "print >> sys.stderr, 'a', 10L, 0x10, 1.5, 2j\n" +
+                "exec 'a' in {}, {}\n" +
+                "x = `a`\n" +
+                "";
+        serializeAndRead(parseLegalDocStr(s));
+    }
+
+    public void testSerializeSpecialsAndParents() throws Exception {
+        String s = "" +
+                "#comment 1\n" +
+                "class A(object): #comment 2\n" +
+                "    '''Docstring'''\n" +
+                "    def m(self, a=(1,), *args, **kwargs):\n" +
+                "        return a[1:2, ...]\n" +
+                "\n" +
+                "    class B:\n" +
+                "        pass\n" +
+                "";
+        Module original = (Module) parseLegalDocStr(s);
+        Module read = (Module) serializeAndRead(original);
+
+        List<String> specials = getSpecials(original);
+        assertEquals(specials, getSpecials(read));
+        assertTrue(specials.toString(), specials.toString().contains("comment 1"));
+        assertTrue(specials.toString(), specials.toString().contains("comment 2"));
+
+        ClassDef classDef = (ClassDef) read.body[0];
+        FunctionDef functionDef = (FunctionDef) classDef.body[1];
+        assertSame(classDef, functionDef.parent);
+        assertSame(classDef, classDef.body[2].parent);
+        assertEquals(original.body[0].beginLine, classDef.beginLine);
+        assertEquals(((FunctionDef) ((ClassDef) original.body[0]).body[1]).name.beginColumn,
+                functionDef.name.beginColumn);
+    }
+}
@@ -21,15 +21,26 @@ import org.apache.lucene.analysis.core.LowerCaseFilter;
 import org.apache.lucene.analysis.core.StopFilter;
 import org.apache.lucene.analysis.util.CharArraySet;
 import org.apache.lucene.analysis.util.CharTokenizer;
+import org.python.pydev.shared_core.callbacks.ICallback0;
 
 /**
  * The tokenizers are registered externally for this analyzer.
+ *
+ * Note: the analyzer reuses the components per-thread, so, when documents may be indexed from
+ * multiple threads, the tokenizers must be registered with a factory (so that each thread gets
+ * its own components).
  */
 public class CodeAnalyzer extends Analyzer {
 
     public CodeAnalyzer() {
         super();
-        fieldNameToStreamComponents.put("__default__", createDefaultComponents());
+        fieldNameToStreamComponentsFactory.put("__default__", new ICallback0<TokenStreamComponents>() {
+
+            @Override
+            public TokenStreamComponents call() {
+                return createDefaultComponents();
+            }
+        });
     }
 
     @Override
@@ -38,15 +49,32 @@ public class CodeAnalyzer extends Analyzer {
         if (streamComponents != null) {
             return streamComponents;
         }
-        return fieldNameToStreamComponents.get("__default__");
+        ICallback0<TokenStreamComponents> factory = fieldNameToStreamComponentsFactory.get(fieldName);
+        if (factory == null) {
+            factory = fieldNameToStreamComponentsFactory.get("__default__");
+        }
+        return factory.call();
     }
 
     Map<String, TokenStreamComponents> fieldNameToStreamComponents = new HashMap<>();
+    Map<String, ICallback0<TokenStreamComponents>> fieldNameToStreamComponentsFactory = new HashMap<>();
 
+    /**
+     * Registers a tokenizer which is shared by all threads (only usable if the documents with that field
+     * are indexed from a single thread).
+     */
     public void registerTokenizer(String fieldName, TokenStreamComponents tokenStream) {
         fieldNameToStreamComponents.put(fieldName, tokenStream);
     }
 
+    /**
+     * Registers a factory which creates the tokenizer for the given field (called once for each thread
+     * indexing documents with that field).
+     */
+    public void registerTokenizer(String fieldName, ICallback0<TokenStreamComponents> tokenStreamFactory) {
+        fieldNameToStreamComponentsFactory.put(fieldName, tokenStreamFactory);
+    }
+
     // Code in general
     public static TokenStreamComponents createDefaultComponents(String... ignoreWords) {
         Tokenizer src = new CharTokenizer() {
@@ -22,14 +22,19 @@ import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.lucene.analysis.Analyzer.TokenStreamComponents;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.DocumentStoredFieldVisitor;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.DirectoryReader;
@@ -37,10 +42,16 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.BooleanQuery.Builder;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
@@ -48,14 +59,19 @@ import org.apache.lucene.search.RegexpQuery;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.SimpleCollector;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.WildcardQuery;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.automaton.CharacterRunAutomaton;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.python.pydev.shared_core.callbacks.ICallback;
+import org.python.pydev.shared_core.callbacks.ICallback0;
 import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.log.Log;
 import org.python.pydev.shared_core.partitioner.IContentsScanner;
@@ -72,6 +88,19 @@ public class IndexApi {
 
     private static final String lucene6dot1Suffix = "L6dot1";
 
+    /**
+     * Analyzed contents which are also stored and have the term offsets (so that matches can be gotten
+     * directly from the index).
+     */
+    private static final FieldType TEXT_STORED_WITH_OFFSETS = new FieldType(TextField.TYPE_STORED);
+
+    static {
+        TEXT_STORED_WITH_OFFSETS.setStoreTermVectors(true);
+        TEXT_STORED_WITH_OFFSETS.setStoreTermVectorPositions(true);
+        TEXT_STORED_WITH_OFFSETS.setStoreTermVectorOffsets(true);
+        TEXT_STORED_WITH_OFFSETS.freeze();
+    }
+
     private final Directory indexDir;
     private IndexWriter writer;
     private SearcherManager searchManager;
@@ -79,6 +108,27 @@ public class IndexApi {
     private int maxMatches = Integer.MAX_VALUE;
     private CodeAnalyzer analyzer;
     private final Object lock = new Object();
+    private boolean applyAllDeletes;
+
+    /**
+     * Set whenever the writer is changed (so that the searcher is only refreshed when actually needed).
+     */
+    private volatile boolean changedSinceRefresh = false;
+
+    /**
+     * Number of documents added/removed since the last commit.
+     */
+    private final AtomicInteger uncommittedChanges = new AtomicInteger();
+
+    /**
+     * Commits are done in a background thread (based on the time since the first uncommitted
+     * change or on the number of uncommitted changes) -- searches use a near-real-time reader
+     * and don't need to commit to see the changes (volatile as the policy may be changed from
+     * any thread while the commit thread is running).
+     */
+    private volatile long commitIntervalMillis = 30 * 1000;
+    private volatile int maxUncommittedChanges = 5000;
+    private CommitThread commitThread;
 
     protected IndexApi(Object /*Directory*/ indexDirObj, boolean applyAllDeletes) throws IOException {
         // Note; indexDirOjb must actually be a org.apache.lucene.store.Directory (but we don't export it
@@ -113,6 +163,7 @@ public class IndexApi {
     }
 
     public void init(boolean applyAllDeletes) throws IOException {
+        this.applyAllDeletes = applyAllDeletes;
         this.analyzer = new CodeAnalyzer();
         IndexWriterConfig config = new IndexWriterConfig(analyzer);
         config.setCommitOnClose(true);
@@ -132,16 +183,169 @@ public class IndexApi {
         this.analyzer.registerTokenizer(fieldName, tokenStream);
     }
 
+    public void registerTokenizer(String fieldName, ICallback0<TokenStreamComponents> tokenStreamFactory) {
+        this.analyzer.registerTokenizer(fieldName, tokenStreamFactory);
+    }
+
+    /**
+     * Listener which may add user data to each commit (and is notified when the commit is done).
+     */
+    public static interface ICommitListener {
+
+        /**
+         * @return the user data to be saved with the commit (or null to keep the current user data).
+         */
+        Map<String, String> beforeCommit();
+
+        void afterCommit(Map<String, String> commitData);
+    }
+
+    private volatile ICommitListener commitListener;
+    private final Object commitInProgressLock = new Object();
+
+    public void setCommitListener(ICommitListener commitListener) {
+        this.commitListener = commitListener;
+    }
+
+    /**
+     * @return the user data of the last commit (or the user data set for the next commit).
+     */
+    public Map<String, String> getCommitData() {
+        IndexWriter w = this.writer;
+        if (w == null) {
+            return null;
+        }
+        return w.getCommitData();
+    }
+
     public void commit() throws IOException {
-        if (this.writer != null) {
-            this.writer.commit();
+        synchronized (commitInProgressLock) {
+            IndexWriter w = this.writer;
+            if (w != null) {
+                int changes = uncommittedChanges.getAndSet(0);
+                ICommitListener listener = this.commitListener;
+                Map<String, String> commitData = null;
+                try {
+                    if (listener != null) {
+                        commitData = listener.beforeCommit();
+                        if (commitData != null) {
+                            w.setCommitData(commitData);
+                        }
+                    }
+                    w.commit();
+                } catch (IOException | RuntimeException e) {
+                    uncommittedChanges.addAndGet(changes);
+                    throw e;
+                }
+                if (listener != null) {
+                    listener.afterCommit(commitData);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the policy used to commit in the background: a commit is done when there are
+     * uncommitted changes for more than commitIntervalMillis or when the number of uncommitted
+     * changes reaches maxUncommittedChanges (note that a commit is always done on dispose()).
+     */
+    public void setCommitPolicy(long commitIntervalMillis, int maxUncommittedChanges) {
+        this.commitIntervalMillis = commitIntervalMillis;
+        this.maxUncommittedChanges = maxUncommittedChanges;
+    }
+
+    /**
+     * @return the number of changes which still weren't committed.
+     */
+    public int getUncommittedChanges() {
+        return uncommittedChanges.get();
+    }
+
+    private void markChanged(int changes) {
+        changedSinceRefresh = true;
+        int total = uncommittedChanges.addAndGet(changes);
+
+        CommitThread t;
+        synchronized (lock) {
+            if (commitThread == null) {
+                commitThread = new CommitThread();
+                commitThread.start();
+            }
+            t = commitThread;
+        }
+        if (total >= maxUncommittedChanges) {
+            t.commitNow();
+        }
+    }
+
+    private class CommitThread extends Thread {
+
+        private final Object commitLock = new Object();
+
+        /**
+         * Only accessed while holding commitLock.
+         */
+        private boolean commitRequested = false;
+        private volatile boolean disposed = false;
+
+        public CommitThread() {
+            super("IndexApi commit");
+            this.setDaemon(true);
+            this.setPriority(Thread.MIN_PRIORITY + 1); //Just a bit above minimum.
+        }
+
+        public void commitNow() {
+            synchronized (commitLock) {
+                commitRequested = true;
+                commitLock.notifyAll();
+            }
+        }
+
+        public void dispose() {
+            disposed = true;
+            commitNow();
+        }
+
+        @Override
+        public void run() {
+            while (!disposed) {
+                synchronized (commitLock) {
+                    if (!commitRequested) {
+                        try {
+                            commitLock.wait(commitIntervalMillis);
+                        } catch (InterruptedException e) {
+                            // Just check again.
+                        }
+                    }
+                    commitRequested = false;
+                }
+                if (disposed) {
+                    return; // dispose() does the final commit.
+                }
+                if (uncommittedChanges.get() > 0) {
+                    try {
+                        commit();
+                    } catch (Exception e) {
+                        Log.log(e);
+                    }
+                }
+            }
         }
     }
 
     public void dispose() {
+        CommitThread t;
+        synchronized (lock) {
+            t = commitThread;
+            commitThread = null;
+        }
+        if (t != null) {
+            t.dispose();
+        }
+
         if (this.writer != null) {
             try {
-                this.writer.commit();
+                this.commit();
             } catch (IOException e) {
                 Log.log(e);
             }
@@ -221,6 +425,7 @@ public class IndexApi {
         doc.add(new TextField(fieldName, general, Field.Store.NO));
 
         this.writer.addDocument(doc);
+        markChanged(1);
     }
 
     public void index(Map<String, String> fieldsToIndex, Reader reader, String fieldName) throws IOException {
@@ -233,6 +438,49 @@ public class IndexApi {
         doc.add(new TextField(fieldName, reader));
 
         this.writer.addDocument(doc);
+        markChanged(1);
+    }
+
+    /**
+     * Indexes a batch of documents at once (note that the writer is thread-safe, so, different
+     * batches may be indexed concurrently from different threads).
+     *
+     * @param fieldsToIndex the (not analyzed) fields for each document.
+     * @param contents the contents to be analyzed for each document (same size as fieldsToIndex).
+     */
+    public void index(List<Map<String, String>> fieldsToIndex, List<String> contents, String fieldName)
+            throws IOException {
+        index(fieldsToIndex, contents, fieldName, false);
+    }
+
+    /**
+     * @param storeContentsWithOffsets if true, the contents are stored in the index along with the offsets
+     * of each term (see: DocumentInfo.getTermOffsets).
+     */
+    public void index(List<Map<String, String>> fieldsToIndex, List<String> contents, String fieldName,
+            boolean storeContentsWithOffsets) throws IOException {
+        if (this.writer == null) {
+            return;
+        }
+        int size = fieldsToIndex.size();
+        if (size == 0) {
+            return;
+        }
+        List<Document> docs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Document doc = createDocument(fieldsToIndex.get(i));
+
+            //Note: TextField should be analyzed/normalized in Analyzer.createComponents(String)
+            if (storeContentsWithOffsets) {
+                doc.add(new Field(fieldName, contents.get(i), TEXT_STORED_WITH_OFFSETS));
+            } else {
+                doc.add(new TextField(fieldName, contents.get(i), Field.Store.NO));
+            }
+            docs.add(doc);
+        }
+
+        this.writer.addDocuments(docs);
+        markChanged(size);
     }
 
     public void index(IPath filepath, long modifiedTime, Reader reader, String fieldName) throws IOException {
@@ -245,6 +493,7 @@ public class IndexApi {
         doc.add(new TextField(fieldName, reader));
 
         this.writer.addDocument(doc);
+        markChanged(1);
     }
 
     /**
@@ -283,6 +532,7 @@ public class IndexApi {
         }
 
         this.writer.addDocument(doc);
+        markChanged(1);
     }
 
     public SearchResult searchExact(String string, String fieldName, boolean applyAllDeletes) throws IOException {
@@ -312,6 +562,22 @@ public class IndexApi {
     public SearchResult searchWildcard(OrderedMap<String, Set<String>> fieldNameToValues, boolean applyAllDeletes,
             IDocumentsVisitor visitor, Map<String, String> translateFields, String... fieldsToLoad)
             throws IOException {
+        return search(createWildcardQuery(fieldNameToValues, translateFields), applyAllDeletes, visitor,
+                fieldsToLoad);
+    }
+
+    /**
+     * Same as searchWildcard, but the visitor is called as the hits are collected (see searchStreaming).
+     */
+    public SearchResult searchWildcardStreaming(OrderedMap<String, Set<String>> fieldNameToValues,
+            boolean applyAllDeletes, IDocumentsVisitor visitor, Map<String, String> translateFields,
+            int maxResults, IProgressMonitor monitor, String... fieldsToLoad) throws IOException {
+        return searchStreaming(createWildcardQuery(fieldNameToValues, translateFields), applyAllDeletes, visitor,
+                maxResults, monitor, fieldsToLoad);
+    }
+
+    private BooleanQuery createWildcardQuery(OrderedMap<String, Set<String>> fieldNameToValues,
+            Map<String, String> translateFields) {
         Builder booleanQueryBuilder = new BooleanQuery.Builder();
         Set<Entry<String, Set<String>>> entrySet = fieldNameToValues.entrySet();
         for (Entry<String, Set<String>> entry : entrySet) {
@@ -369,7 +635,7 @@ public class IndexApi {
         if (DEBUG) {
             System.out.println("Searching: " + booleanQuery);
         }
-        return search(booleanQuery, applyAllDeletes, visitor, fieldsToLoad);
+        return booleanQuery;
     }
 
     public SearchResult searchRegexp(String string, String fieldName, boolean applyAllDeletes) throws IOException {
@@ -382,16 +648,48 @@ public class IndexApi {
         return search(query, applyAllDeletes, visitor, fieldsToLoad);
     }
 
+    /**
+     * Matches terms against wildcard patterns (the patterns are compiled when it's created, so, the same instance
+     * should be used for all the documents visited in a search).
+     */
+    public static final class WildcardTermsMatcher {
+
+        private final CharacterRunAutomaton[] automata;
+
+        public WildcardTermsMatcher(Collection<String> wildcardPatterns) {
+            automata = new CharacterRunAutomaton[wildcardPatterns.size()];
+            int i = 0;
+            for (String pattern : wildcardPatterns) {
+                automata[i++] = new CharacterRunAutomaton(WildcardQuery.toAutomaton(new Term("", pattern)));
+            }
+        }
+
+        public boolean matches(String term) {
+            for (CharacterRunAutomaton automaton : automata) {
+                if (automaton.run(term)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
     public static class DocumentInfo {
 
         private Document document;
         private int documentId;
+        private IndexReader reader;
 
         public DocumentInfo(Document document, int doc) {
             this.document = document;
             this.documentId = doc;
         }
 
+        private DocumentInfo(Document document, int doc, IndexReader reader) {
+            this(document, doc);
+            this.reader = reader;
+        }
+
         public String get(String field) {
             return this.document.get(field);
         }
@@ -400,6 +698,56 @@ public class IndexApi {
             return this.documentId;
         }
 
+        /**
+         * Provides the offsets of the terms accepted by the given matcher (only available for fields indexed
+         * with offsets and only while the document is being visited).
+         *
+         * @return an array with the start (inclusive) and end (exclusive) offsets in pairs, sorted by the
+         * start offset or null if the offsets aren't available for the field.
+         */
+        public int[] getTermOffsets(String fieldName, WildcardTermsMatcher matcher) throws IOException {
+            if (reader == null) {
+                return null;
+            }
+            Terms termVector = reader.getTermVector(documentId, fieldName);
+            if (termVector == null || !termVector.hasOffsets()) {
+                return null;
+            }
+
+            List<int[]> found = new ArrayList<>();
+            TermsEnum termsEnum = termVector.iterator();
+            PostingsEnum postings = null;
+            BytesRef term;
+            while ((term = termsEnum.next()) != null) {
+                if (!matcher.matches(term.utf8ToString())) {
+                    continue;
+                }
+                postings = termsEnum.postings(postings, PostingsEnum.OFFSETS);
+                if (postings.nextDoc() == DocIdSetIterator.NO_MORE_DOCS) {
+                    continue;
+                }
+                int freq = postings.freq();
+                for (int i = 0; i < freq; i++) {
+                    postings.nextPosition();
+                    found.add(new int[] { postings.startOffset(), postings.endOffset() });
+                }
+            }
+            Collections.sort(found, new Comparator<int[]>() {
+
+                @Override
+                public int compare(int[] o1, int[] o2) {
+                    return Integer.compare(o1[0], o2[0]);
+                }
+            });
+            int[] ret = new int[found.size() * 2];
+            int i = 0;
+            for (int[] offsets : found) {
+                ret[i++] = offsets[0];
+                ret[i++] = offsets[1];
+            }
+            return ret;
+        }
+
     }
 
     public static interface IDocumentsVisitor {
@@ -408,37 +756,129 @@ public class IndexApi {
 
     }
 
+    /**
+     * A visitor which may stop a streaming search before all the hits are visited.
+     */
+    public static interface IStoppableDocumentsVisitor extends IDocumentsVisitor {
+
+        /**
+         * @return false to stop the search (checked after each visit).
+         */
+        boolean shouldContinue();
+
+    }
+
     /**
      * @param fields the fields to be loaded.
      */
     public void visitAllDocs(IDocumentsVisitor visitor, String... fields) throws IOException {
-        boolean applyAllDeletes = true;
-        try (IndexReader reader = DirectoryReader.open(writer, applyAllDeletes, false);) {
-
-            IndexSearcher searcher = searcherFactory.newSearcher(reader, null);
-            Query query = new MatchAllDocsQuery();
-            TopDocs docs = searcher.search(query, Integer.MAX_VALUE);
-            ScoreDoc[] scoreDocs = docs.scoreDocs;
-            int length = scoreDocs.length;
-            for (int i = 0; i < length; i++) {
-                ScoreDoc scoreDoc = scoreDocs[i];
+        searchStreaming(new MatchAllDocsQuery(), true, visitor, Integer.MAX_VALUE, null, fields);
+    }
+
+    /**
+     * Used to stop the collection of hits (stackless as it's just used for flow control).
+     */
+    private static final class StopCollectingException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    private static final StopCollectingException STOP_COLLECTING = new StopCollectingException();
+
+    /**
+     * Collector which visits each document as it's collected (no scoring and no hits kept in memory).
+     */
+    private static final class StreamingCollector extends SimpleCollector {
+
+        private final IndexReader topReader;
+        private final IDocumentsVisitor visitor;
+        private final int maxResults;
+        private final IProgressMonitor monitor;
+        private final String[] fields;
+
+        private LeafReader leafReader;
+        private int docBase;
+        private int visited;
+        private boolean stopped;
+
+        private StreamingCollector(IndexReader topReader, IDocumentsVisitor visitor, int maxResults,
+                IProgressMonitor monitor, String[] fields) {
+            this.topReader = topReader;
+            this.visitor = visitor;
+            this.maxResults = maxResults;
+            this.monitor = monitor;
+            this.fields = fields;
+        }
+
+        @Override
+        protected void doSetNextReader(LeafReaderContext context) throws IOException {
+            this.leafReader = context.reader();
+            this.docBase = context.docBase;
+        }
+
+        @Override
+        public boolean needsScores() {
+            return false;
+        }
+
+        @Override
+        public void collect(int doc) throws IOException {
+            if (visited >= maxResults || (monitor != null && monitor.isCanceled())) {
+                stopped = true;
+                throw STOP_COLLECTING;
+            }
+            visited++;
+            if (visitor != null) {
                 DocumentStoredFieldVisitor fieldVisitor = new DocumentStoredFieldVisitor(fields);
-                reader.document(scoreDoc.doc, fieldVisitor);
-                Document document = fieldVisitor.getDocument();
-                visitor.visit(new DocumentInfo(document, scoreDoc.doc));
+                leafReader.document(doc, fieldVisitor);
+                visitor.visit(new DocumentInfo(fieldVisitor.getDocument(), docBase + doc, topReader));
+                if (visitor instanceof IStoppableDocumentsVisitor
+                        && !((IStoppableDocumentsVisitor) visitor).shouldContinue()) {
+                    stopped = true;
+                    throw STOP_COLLECTING;
+                }
             }
         }
     }
 
+    /**
+     * Searches calling the visitor as the hits are collected (in index order, without computing scores
+     * nor keeping the hits in memory), so, the first results are available right away even if there are
+     * many matches.
+     *
+     * @param maxResults the search stops after this number of documents is visited.
+     * @param monitor if cancelled the search stops (may be null).
+     * @param fields the fields to be loaded.
+     * @return the number of documents visited (SearchResult.isComplete() is false if the search was stopped
+     * before visiting all the matches).
+     */
+    public SearchResult searchStreaming(Query query, boolean applyAllDeletes, IDocumentsVisitor visitor,
+            int maxResults, IProgressMonitor monitor, String... fields) throws IOException {
+        IndexSearcher searcher = acquireSearcher(applyAllDeletes);
+        StreamingCollector collector;
+        try {
+            collector = new StreamingCollector(searcher.getIndexReader(), visitor, maxResults, monitor, fields);
+            try {
+                searcher.search(query, collector);
+            } catch (StopCollectingException e) {
+                // Stopped early: that's Ok.
+            }
+        } finally {
+            releaseSearcher(searcher, applyAllDeletes);
+        }
+        return new SearchResult(collector.visited, !collector.stopped);
+    }
+
     public SearchResult search(Query query, boolean applyAllDeletes, IDocumentsVisitor visitor, String... fields)
             throws IOException {
+        IndexSearcher searcher = acquireSearcher(applyAllDeletes);
         try {
-            this.writer.commit();
-        } catch (Exception e) {
-            Log.log(e);
-        }
-        try (IndexReader reader = DirectoryReader.open(writer, applyAllDeletes, false);) {
-            IndexSearcher searcher = searcherFactory.newSearcher(reader, null);
+            IndexReader reader = searcher.getIndexReader();
 
             TopDocs search = searcher.search(query, maxMatches);
             ScoreDoc[] scoreDocs = search.scoreDocs;
@@ -450,11 +890,43 @@ public class IndexApi {
                     DocumentStoredFieldVisitor fieldVisitor = new DocumentStoredFieldVisitor(fields);
                     reader.document(scoreDoc.doc, fieldVisitor);
                     Document document = fieldVisitor.getDocument();
-                    visitor.visit(new DocumentInfo(document, scoreDoc.doc));
+                    visitor.visit(new DocumentInfo(document, scoreDoc.doc, reader));
                 }
             }
 
             return new SearchResult(scoreDocs);
+        } finally {
+            releaseSearcher(searcher, applyAllDeletes);
+        }
+    }
+
+    /**
+     * Provides a near-real-time searcher (which is only refreshed if the writer changed since the
+     * last refresh).
+     *
+     * Note: if deletes must be applied but the shared searcher was created without applying
+     * all deletes, a new reader is opened just for this request.
+     *
+     * The searcher must be released with releaseSearcher.
+     */
+    private IndexSearcher acquireSearcher(boolean applyAllDeletes) throws IOException {
+        if (applyAllDeletes && !this.applyAllDeletes) {
+            IndexReader reader = DirectoryReader.open(writer, applyAllDeletes, false);
+            return searcherFactory.newSearcher(reader, null);
+        }
+        if (changedSinceRefresh) {
+            // Reset before refreshing so that any change done concurrently is seen in the next request.
+            changedSinceRefresh = false;
+            searchManager.maybeRefreshBlocking();
+        }
+        return searchManager.acquire();
+    }
+
+    private void releaseSearcher(IndexSearcher searcher, boolean applyAllDeletes) throws IOException {
+        if (applyAllDeletes && !this.applyAllDeletes) {
+            searcher.getIndexReader().close();
+        } else {
+            searchManager.release(searcher);
         }
     }
 
@@ -477,6 +949,7 @@ public class IndexApi {
 
         Term[] queries = lst.toArray(new Term[0]);
         this.writer.deleteDocuments(queries);
+        markChanged(queries.length);
     }
 
     public void setMaxMatches(int maxMatches) {
@@ -16,6 +16,7 @@ import org.apache.lucene.search.ScoreDoc;
 public class SearchResult {
 
     private int numberOfDocumentMatches;
+    private boolean complete = true;
 
     public SearchResult() {
         //Empty result
@@ -25,8 +26,24 @@ public class SearchResult {
         this.numberOfDocumentMatches = scoreDocs.length;
     }
 
+    /**
+     * @param complete false if the search was stopped before all the matches were visited.
+     */
+    public SearchResult(int numberOfDocumentMatches, boolean complete) {
+        this.numberOfDocumentMatches = numberOfDocumentMatches;
+        this.complete = complete;
+    }
+
     public int getNumberOfDocumentMatches() {
         return numberOfDocumentMatches;
     }
 
+    /**
+     * @return false if the search was stopped early (cancelled or max number of results reached), in which case
+     * the number of document matches is the number of documents visited until then.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
 }
@@ -0,0 +1,92 @@
+/******************************************************************************
+* Copyright (C) 2015  Fabio Zadrozny and others
+*
+* All rights reserved. This program and the accompanying materials
+* are made available under the terms of the Eclipse Public License v1.0
+* which accompanies this distribution, and is available at
+* http://www.eclipse.org/legal/epl-v10.html
+*
+* Contributors:
+*     Fabio Zadrozny <fabiofz@gmail.com>    - initial API and implementation
+******************************************************************************/
+package org.python.pydev.shared_core.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+/**
+ * Benchmark comparing the queries/second when each search commits and opens a new reader
+ * (the previous approach) with the near-real-time searcher kept by the IndexApi.
+ *
+ * Run as a java application (args: [number of modules] [number of queries]).
+ */
+public class IndexApiBenchmark {
+
+    private static final String FIELD_MODULE = "module";
+
+    public static void main(String[] args) throws IOException {
+        int modules = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        File baseDir = Files.createTempDirectory("index_api_benchmark").toFile();
+        try {
+            // Created without applying all deletes so that applyAllDeletes=true in the search
+            // goes through a new reader for each search (as was done before).
+            IndexApi perQueryReaderApi = createIndex(new File(baseDir, "per_query"), modules, false);
+            try {
+                double before = runQueries(perQueryReaderApi, queries, true);
+                System.out.println("Commit + new reader per query: " + before + " queries/second");
+            } finally {
+                perQueryReaderApi.dispose();
+            }
+
+            IndexApi nrtApi = createIndex(new File(baseDir, "nrt"), modules, true);
+            try {
+                double after = runQueries(nrtApi, queries, false);
+                System.out.println("Near-real-time searcher: " + after + " queries/second");
+            } finally {
+                nrtApi.dispose();
+            }
+        } finally {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+    }
+
+    private static IndexApi createIndex(File dir, int modules, boolean applyAllDeletes) throws IOException {
+        IndexApi indexApi = new IndexApi(dir, applyAllDeletes);
+        indexApi.registerTokenizer(IFields.PYTHON, CodeAnalyzer.createPythonStreamComponents());
+        FastStringBuffer buf = new FastStringBuffer();
+        for (int i = 0; i < modules; i++) {
+            buf.clear();
+            buf.append("import os\nclass Class").append(i).append(":\n    def method").append(i % 100)
+                    .append("(self):\n        return token").append(i % 1000).append('\n');
+            Map<String, String> fields = new HashMap<>();
+            fields.put(FIELD_MODULE, "pkg" + (i % 50) + ".mod" + i);
+            indexApi.index(fields, new StringReader(buf.toString()), IFields.PYTHON);
+        }
+        indexApi.commit();
+        return indexApi;
+    }
+
+    private static double runQueries(IndexApi indexApi, int queries, boolean commitAndReopen) throws IOException {
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < queries; i++) {
+            if (commitAndReopen) {
+                indexApi.commit();
+            }
+            indexApi.searchWildcard(new HashSet<>(Arrays.asList("token" + (i % 1000))), IFields.PYTHON,
+                    true, null, null, FIELD_MODULE);
+        }
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        return queries * 1000.0 / elapsed;
+    }
+}
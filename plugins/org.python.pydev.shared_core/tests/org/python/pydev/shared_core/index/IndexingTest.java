@@ -11,22 +11,27 @@
 ******************************************************************************/
 package org.python.pydev.shared_core.index;
 
+import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.apache.lucene.analysis.Analyzer.TokenStreamComponents;
 import org.apache.lucene.store.RAMDirectory;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.IDocument;
 import org.python.pydev.shared_core.index.IndexApi.DocumentInfo;
 import org.python.pydev.shared_core.index.IndexApi.IDocumentsVisitor;
+import org.python.pydev.shared_core.index.IndexApi.IStoppableDocumentsVisitor;
 import org.python.pydev.shared_core.partitioner.CustomRuleBasedPartitionScanner;
 import org.python.pydev.shared_core.partitioner.IToken;
 import org.python.pydev.shared_core.partitioner.ITokenScanner;
@@ -218,4 +223,176 @@ public class IndexingTest extends TestCase {
         result = indexApi.searchWildcard(fieldNameToValues, true, visitor, null, IFields.FILENAME);
         assertEquals(2, result.getNumberOfDocumentMatches());
     }
+
+    public void testSearchWithoutCommit() throws Exception {
+        indexApi.setCommitPolicy(Long.MAX_VALUE, Integer.MAX_VALUE);
+        indexApi.index(new Path("a.py"), 0L, "aabbcc");
+
+        SearchResult result = indexApi.searchExact("aabbcc", IFields.GENERAL_CONTENTS, true);
+        assertEquals(1, result.getNumberOfDocumentMatches());
+        assertEquals(1, indexApi.getUncommittedChanges());
+
+        indexApi.index(new Path("b.py"), 0L, "aabbcc");
+        result = indexApi.searchExact("aabbcc", IFields.GENERAL_CONTENTS, true);
+        assertEquals(2, result.getNumberOfDocumentMatches());
+
+        HashMap<String, Collection<String>> map = new HashMap<>();
+        map.put(IFields.FILEPATH, Arrays.asList("a.py"));
+        indexApi.removeDocs(map);
+        result = indexApi.searchExact("aabbcc", IFields.GENERAL_CONTENTS, true);
+        assertEquals(1, result.getNumberOfDocumentMatches());
+        assertEquals(3, indexApi.getUncommittedChanges());
+
+        indexApi.commit();
+        assertEquals(0, indexApi.getUncommittedChanges());
+    }
+
+    public void testCommitInBackground() throws Exception {
+        indexApi.setCommitPolicy(Long.MAX_VALUE, 2);
+        indexApi.index(new Path("a.py"), 0L, "aabbcc");
+        indexApi.index(new Path("b.py"), 0L, "aabbcc");
+
+        for (int i = 0; i < 50 && indexApi.getUncommittedChanges() != 0; i++) {
+            synchronized (this) {
+                this.wait(100);
+            }
+        }
+        assertEquals(0, indexApi.getUncommittedChanges());
+    }
+
+    public void testBatchIndexingFromThreads() throws Exception {
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            final int threadIndex = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    List<Map<String, String>> fields = new ArrayList<>();
+                    List<String> contents = new ArrayList<>();
+                    for (int j = 0; j < 50; j++) {
+                        Map<String, String> map = new HashMap<>();
+                        map.put(IFields.FILENAME, "mod" + threadIndex + "_" + j);
+                        fields.add(map);
+                        contents.add("common token" + threadIndex);
+                    }
+                    try {
+                        indexApi.index(fields, contents, IFields.GENERAL_CONTENTS);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        SearchResult result = indexApi.searchExact("common", IFields.GENERAL_CONTENTS, true);
+        assertEquals(200, result.getNumberOfDocumentMatches());
+
+        result = indexApi.searchExact("token2", IFields.GENERAL_CONTENTS, true);
+        assertEquals(50, result.getNumberOfDocumentMatches());
+    }
+
+    public void testTermOffsets() throws Exception {
+        List<Map<String, String>> fields = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Map<String, String> map = new HashMap<>();
+            map.put(IFields.FILENAME, "mod" + i);
+            fields.add(map);
+            contents.add("common x common2 y");
+        }
+        indexApi.index(fields, contents, IFields.GENERAL_CONTENTS, true);
+
+        Set<String> patterns = new HashSet<>(Arrays.asList("comm*"));
+        OrderedMap<String, Set<String>> fieldNameToValues = new OrderedMap<>();
+        fieldNameToValues.put(IFields.GENERAL_CONTENTS, patterns);
+
+        // The same matcher is used for all the documents.
+        final IndexApi.WildcardTermsMatcher matcher = new IndexApi.WildcardTermsMatcher(patterns);
+        assertTrue(matcher.matches("common2"));
+        assertFalse(matcher.matches("x"));
+        final List<int[]> found = new ArrayList<>();
+        IDocumentsVisitor visitor = new IDocumentsVisitor() {
+
+            @Override
+            public void visit(DocumentInfo documentInfo) {
+                try {
+                    found.add(documentInfo.getTermOffsets(IFields.GENERAL_CONTENTS, matcher));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        indexApi.searchWildcardStreaming(fieldNameToValues, true, visitor, null, Integer.MAX_VALUE, null,
+                IFields.FILENAME);
+        assertEquals(3, found.size());
+        for (int[] offsets : found) {
+            assertEquals(Arrays.toString(new int[] { 0, 6, 9, 16 }), Arrays.toString(offsets));
+        }
+    }
+
+    public void testSearchStreaming() throws Exception {
+        List<Map<String, String>> fields = new ArrayList<>();
+        List<String> contents = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Map<String, String> map = new HashMap<>();
+            map.put(IFields.FILENAME, "mod" + i);
+            fields.add(map);
+            contents.add("common token" + i);
+        }
+        indexApi.index(fields, contents, IFields.GENERAL_CONTENTS);
+
+        OrderedMap<String, Set<String>> fieldNameToValues = new OrderedMap<>();
+        fieldNameToValues.put(IFields.GENERAL_CONTENTS, new HashSet<>(Arrays.asList("comm*")));
+
+        final List<String> found = new ArrayList<>();
+        IDocumentsVisitor visitor = new IDocumentsVisitor() {
+
+            @Override
+            public void visit(DocumentInfo documentInfo) {
+                found.add(documentInfo.get(IFields.FILENAME));
+            }
+        };
+        SearchResult result = indexApi.searchWildcardStreaming(fieldNameToValues, true, visitor, null,
+                Integer.MAX_VALUE, null, IFields.FILENAME);
+        assertEquals(20, result.getNumberOfDocumentMatches());
+        assertTrue(result.isComplete());
+        assertEquals(20, found.size());
+
+        found.clear();
+        result = indexApi.searchWildcardStreaming(fieldNameToValues, true, visitor, null, 5, null,
+                IFields.FILENAME);
+        assertEquals(5, result.getNumberOfDocumentMatches());
+        assertFalse(result.isComplete());
+        assertEquals(5, found.size());
+
+        found.clear();
+        IStoppableDocumentsVisitor stoppable = new IStoppableDocumentsVisitor() {
+
+            @Override
+            public void visit(DocumentInfo documentInfo) {
+                found.add(documentInfo.get(IFields.FILENAME));
+            }
+
+            @Override
+            public boolean shouldContinue() {
+                return found.size() < 3;
+            }
+        };
+        result = indexApi.searchWildcardStreaming(fieldNameToValues, true, stoppable, null, Integer.MAX_VALUE,
+                null, IFields.FILENAME);
+        assertEquals(3, found.size());
+        assertFalse(result.isComplete());
+
+        found.clear();
+        NullProgressMonitor monitor = new NullProgressMonitor();
+        monitor.setCanceled(true);
+        result = indexApi.searchWildcardStreaming(fieldNameToValues, true, visitor, null, Integer.MAX_VALUE,
+                monitor, IFields.FILENAME);
+        assertEquals(0, found.size());
+        assertFalse(result.isComplete());
+    }
 }
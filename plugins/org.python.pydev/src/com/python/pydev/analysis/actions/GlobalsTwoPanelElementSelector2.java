@@ -69,6 +69,7 @@ import com.python.pydev.analysis.additionalinfo.AdditionalProjectInterpreterInfo
 import com.python.pydev.analysis.additionalinfo.AdditionalSystemInterpreterInfo;
 import com.python.pydev.analysis.additionalinfo.InfoFactory;
 import com.python.pydev.analysis.additionalinfo.ModInfo;
+import com.python.pydev.analysis.additionalinfo.TokenMatcher;
 
 /**
  * Let us choose from a list of IInfo (and the related additional info)
@@ -478,6 +479,11 @@ public class GlobalsTwoPanelElementSelector2 extends FilteredItemsSelectionDialo
 
         private String initialPattern;
 
+        /**
+         * Names are also matched fuzzy (null if the pattern has scopes or wildcards).
+         */
+        private TokenMatcher fuzzyMatcher;
+
         public InfoFilter() {
             super();
             //We have to get the actual text from the control, because the
@@ -487,6 +493,7 @@ public class GlobalsTwoPanelElementSelector2 extends FilteredItemsSelectionDialo
                 stringPattern = pattern.getText();
             }
             this.initialPattern = stringPattern;
+            this.fuzzyMatcher = MatchHelper.createFuzzyMatcher(stringPattern);
         }
 
         /**
@@ -513,8 +520,13 @@ public class GlobalsTwoPanelElementSelector2 extends FilteredItemsSelectionDialo
             if (!(filter instanceof InfoFilter)) {
                 return false;
             }
+            InfoFilter other = (InfoFilter) filter;
+            if (other.fuzzyMatcher != null
+                    && (this.fuzzyMatcher == null || !other.initialPattern.startsWith(this.initialPattern))) {
+                return false; //the fuzzy matches are only a subset if the pattern is just extended.
+            }
 
-            return MatchHelper.isSubFilter(this.initialPattern, ((InfoFilter) filter).initialPattern);
+            return MatchHelper.isSubFilter(this.initialPattern, other.initialPattern);
         }
 
         /**
@@ -537,7 +549,7 @@ public class GlobalsTwoPanelElementSelector2 extends FilteredItemsSelectionDialo
                 return false;
             }
             AdditionalInfoAndIInfo info = (AdditionalInfoAndIInfo) item;
-            return MatchHelper.matchItem(patternMatcher, info.info);
+            return MatchHelper.matchItem(patternMatcher, fuzzyMatcher, info.info);
         }
 
     }
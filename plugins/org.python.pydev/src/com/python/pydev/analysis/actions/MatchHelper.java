@@ -13,6 +13,8 @@ import org.python.pydev.core.IInfo;
 import org.python.pydev.shared_core.callbacks.ICallback2;
 import org.python.pydev.shared_core.string.StringUtils;
 
+import com.python.pydev.analysis.additionalinfo.TokenMatcher;
+
 /**
  * Helper matching scopes vs declaring module names and the actual name of the token.
  */
@@ -60,6 +62,36 @@ public class MatchHelper {
         return tailPattern.matches(info.getName());
     }
 
+    /**
+     * Same as matchItem(SearchPattern, IInfo), but also accepts the names matched by the given fuzzy matcher (i.e.:
+     * 'DFR' matches 'DataFrameReader' and 'np_arr' matches 'numpy_array_utils').
+     *
+     * @param fuzzyMatcher may be null (see: createFuzzyMatcher).
+     */
+    public static boolean matchItem(SearchPattern patternMatcher, TokenMatcher fuzzyMatcher, IInfo info) {
+        if (matchItem(patternMatcher, info)) {
+            return true;
+        }
+        return fuzzyMatcher != null && fuzzyMatcher.score(info.getName()) != TokenMatcher.NO_MATCH;
+    }
+
+    /**
+     * @return a fuzzy matcher for the given pattern or null if it's empty or has scopes, wildcards or the exact
+     * match markers (in which case only the SearchPattern is used).
+     */
+    public static TokenMatcher createFuzzyMatcher(String pattern) {
+        if (pattern.length() == 0) {
+            return null;
+        }
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '.' || c == '*' || c == '?' || c == ' ' || c == '<') {
+                return null;
+            }
+        }
+        return new TokenMatcher(pattern, TokenMatcher.FUZZY);
+    }
+
     /**
      * Checks if equals considering scopes.
      */
@@ -7,9 +7,11 @@
 package com.python.pydev.analysis.search_index;
 
 import java.io.File;
+import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Set;
 
+import org.eclipse.core.filebuffers.ITextFileBuffer;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -26,6 +28,8 @@ import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.ModulesKey;
 import org.python.pydev.core.docutils.PySelection;
 import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.callbacks.ICallback;
+import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.string.StringUtils;
 import org.python.pydev.shared_core.structure.OrderedMap;
 import org.python.pydev.shared_ui.search.AbstractSearchIndexQuery;
@@ -37,6 +41,8 @@ import org.python.pydev.shared_ui.search.StringMatcherWithIndexSemantics;
 import com.python.pydev.analysis.additionalinfo.AbstractAdditionalDependencyInfo;
 import com.python.pydev.analysis.additionalinfo.AdditionalProjectInterpreterInfo;
 import com.python.pydev.analysis.additionalinfo.IReferenceSearches;
+import com.python.pydev.analysis.additionalinfo.IndexedModuleMatch;
+import com.python.pydev.analysis.additionalinfo.ReferenceSearchesLuceneIndexer;
 
 /**
  * Searches the internal indexes from PyDev.
@@ -55,11 +61,11 @@ public class PySearchIndexQuery extends AbstractSearchIndexQuery {
 
     @Override
     public IStatus run(IProgressMonitor monitor) throws OperationCanceledException {
-        SearchIndexResult searchResult = (SearchIndexResult) getSearchResult();
+        final SearchIndexResult searchResult = (SearchIndexResult) getSearchResult();
         //Remove all so that we don't get duplicates on a search refresh.
         searchResult.removeAll();
 
-        StringMatcherWithIndexSemantics stringMatcher = createStringMatcher();
+        final StringMatcherWithIndexSemantics stringMatcher = createStringMatcher();
 
         Set<String> moduleNamesFilter = scopeAndData.getModuleNamesFilter();
         OrderedMap<String, Set<String>> fieldNameToValues = new OrderedMap<>();
@@ -68,6 +74,7 @@ public class PySearchIndexQuery extends AbstractSearchIndexQuery {
         }
         Set<String> split = makeTextFieldPatternsToSearchFromText();
         fieldNameToValues.put(IReferenceSearches.FIELD_CONTENTS, split);
+        final boolean canUseTokenOffsets = isSingleIdentifierSearch();
 
         final List<IPythonNature> pythonNatures = PyScopeAndData.getPythonNatures(scopeAndData);
         monitor.beginTask("Search indexes", pythonNatures.size());
@@ -81,27 +88,20 @@ public class PySearchIndexQuery extends AbstractSearchIndexQuery {
                     continue;
                 }
                 IReferenceSearches referenceSearches = info.getReferenceSearches();
-                List<ModulesKey> search = referenceSearches.search(nature.getProject(), fieldNameToValues,
-                        new SubProgressMonitor(monitor, 1));
-
-                IFile workspaceFile;
-                for (ModulesKey modulesKey : search) {
-                    File file = modulesKey.file;
-                    if (file == null || !file.exists()) {
-                        Log.logInfo(StringUtils.format("Ignoring: %s. File no longer exists.", file));
-                    }
+                final IPythonNature currentNature = nature;
+                final IProgressMonitor searchMonitor = new SubProgressMonitor(monitor, 1);
 
-                    workspaceFile = FindWorkspaceFiles.getWorkspaceFile(file, nature.getProject());
-                    if (workspaceFile == null) {
-                        Log.logInfo(StringUtils
-                                .format("Ignoring: %s. Unable to resolve to a file in the Eclipse workspace.", file));
-                        continue;
-                    }
+                // Matches are created as the modules are found (so, the first results are shown right away).
+                referenceSearches.searchWithContents(nature.getProject(), fieldNameToValues, searchMonitor, true,
+                        new ICallback<Boolean, IndexedModuleMatch>() {
 
-                    IDocument doc = FileUtilsFileBuffer.getDocFromResource(workspaceFile);
-                    String text = doc.get();
-                    createMatches(doc, text, stringMatcher, workspaceFile, searchResult, modulesKey);
-                }
+                            @Override
+                            public Boolean call(IndexedModuleMatch indexedModuleMatch) {
+                                createMatches(indexedModuleMatch, currentNature, canUseTokenOffsets,
+                                        stringMatcher, searchResult);
+                                return !searchMonitor.isCanceled();
+                            }
+                        });
             }
         } finally {
             monitor.done();
@@ -110,6 +110,215 @@ public class PySearchIndexQuery extends AbstractSearchIndexQuery {
         return Status.OK_STATUS;
     }
 
+    private void createMatches(IndexedModuleMatch indexedModuleMatch, IPythonNature nature,
+            boolean canUseTokenOffsets, StringMatcherWithIndexSemantics stringMatcher,
+            SearchIndexResult searchResult) {
+        ModulesKey modulesKey = indexedModuleMatch.key;
+        File file = modulesKey.file;
+        if (file == null || !file.exists()) {
+            Log.logInfo(StringUtils.format("Ignoring: %s. File no longer exists.", file));
+        }
+
+        IFile workspaceFile = FindWorkspaceFiles.getWorkspaceFile(file, nature.getProject());
+        if (workspaceFile == null) {
+            Log.logInfo(StringUtils
+                    .format("Ignoring: %s. Unable to resolve to a file in the Eclipse workspace.", file));
+            return;
+        }
+
+        if (indexedModuleMatch.contents != null
+                && isIndexedContentsCurrent(indexedModuleMatch, file, workspaceFile)) {
+            // Use what's in the index (no need to read the file again).
+            createMatchesFromIndex(indexedModuleMatch, canUseTokenOffsets, stringMatcher, workspaceFile,
+                    searchResult);
+            return;
+        }
+
+        IDocument doc = FileUtilsFileBuffer.getDocFromResource(workspaceFile);
+        String text = doc.get();
+        createMatches(doc, text, stringMatcher, workspaceFile, searchResult, modulesKey);
+    }
+
+    /**
+     * @return whether the text searched is a single identifier (optionally with a leading or trailing '*'),
+     * in which case each match must start inside one of the tokens matched in the index (so, only those
+     * tokens need to be checked).
+     */
+    private boolean isSingleIdentifierSearch() {
+        String text = this.text;
+        int len = text.length();
+        if (len > 0 && text.charAt(0) == '*') {
+            text = text.substring(1);
+            len--;
+        }
+        if (len > 0 && text.charAt(len - 1) == '*') {
+            text = text.substring(0, len - 1);
+            len--;
+        }
+        if (len == 0) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (!Character.isJavaIdentifierPart(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the contents in the index are the same contents the user sees (i.e.: the file wasn't
+     * changed since it was indexed, there's no unsaved editor for it and it's opened with the same encoding
+     * used to index it).
+     */
+    private boolean isIndexedContentsCurrent(IndexedModuleMatch indexedModuleMatch, File file,
+            IFile workspaceFile) {
+        if (FileUtils.lastModified(file) != indexedModuleMatch.indexedModifiedTime) {
+            return false;
+        }
+        ITextFileBuffer buffer = FileUtilsFileBuffer.getBufferFromPath(workspaceFile.getFullPath());
+        if (buffer != null && buffer.isDirty()) {
+            return false;
+        }
+        try {
+            String indexedEncoding = ReferenceSearchesLuceneIndexer.getPythonEncoding(indexedModuleMatch.contents,
+                    file.toString());
+            return Charset.forName(indexedEncoding).equals(Charset.forName(workspaceFile.getCharset()));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates the matches based on the contents stored in the index (and on the offsets of the matched tokens
+     * if available), so, the file doesn't need to be read nor a document created for it.
+     */
+    public void createMatchesFromIndex(IndexedModuleMatch indexedModuleMatch, boolean canUseTokenOffsets,
+            StringMatcherWithIndexSemantics stringMatcher, IFile workspaceFile,
+            AbstractTextSearchResult searchResult) {
+        String text = indexedModuleMatch.contents;
+        LineStarts lineStarts = new LineStarts(text);
+        int[] tokenOffsets = indexedModuleMatch.tokenOffsets;
+
+        if (canUseTokenOffsets && tokenOffsets != null) {
+            int lastEnd = 0;
+            for (int i = 0; i + 1 < tokenOffsets.length; i += 2) {
+                int tokenStart = tokenOffsets[i];
+                int tokenEnd = tokenOffsets[i + 1];
+                int pos = Math.max(tokenStart, lastEnd);
+                while (pos < tokenEnd) {
+                    StringMatcherWithIndexSemantics.Position find = stringMatcher.find(text, pos);
+                    if (find == null || find.getStart() >= tokenEnd) {
+                        break;
+                    }
+                    addMatch(lineStarts, text, find, workspaceFile, searchResult, indexedModuleMatch.key);
+                    lastEnd = find.getEnd();
+                    if (lastEnd <= pos) {
+                        break;
+                    }
+                    pos = lastEnd;
+                }
+            }
+            return;
+        }
+
+        StringMatcherWithIndexSemantics.Position find = stringMatcher.find(text, 0);
+        while (find != null) {
+            addMatch(lineStarts, text, find, workspaceFile, searchResult, indexedModuleMatch.key);
+            find = stringMatcher.find(text, find.getEnd());
+        }
+    }
+
+    private void addMatch(LineStarts lineStarts, String text, StringMatcherWithIndexSemantics.Position find,
+            IFile workspaceFile, AbstractTextSearchResult searchResult, ModulesKey modulesKey) {
+        int offset = find.getStart();
+        int length = find.getEnd() - offset;
+
+        int lineNumber = lineStarts.getLineOfOffset(offset);
+        int lineStartOffset = lineStarts.getLineStart(lineNumber);
+        String lineContents = text.substring(lineStartOffset, lineStarts.getLineEnd(lineNumber));
+
+        PyModuleLineElement element = new PyModuleLineElement(workspaceFile, lineNumber, lineStartOffset,
+                lineContents, modulesKey);
+        searchResult.addMatch(new PyModuleMatch(workspaceFile, offset, length, element, modulesKey));
+    }
+
+    /**
+     * Offsets where each line starts in a text (0-based lines, as in PySelection).
+     */
+    private static final class LineStarts {
+
+        private final String text;
+        private int[] starts;
+        private int size;
+
+        private LineStarts(String text) {
+            this.text = text;
+        }
+
+        private void compute() {
+            if (starts != null) {
+                return;
+            }
+            int[] s = new int[64];
+            int n = 0;
+            s[n++] = 0;
+            int len = text.length();
+            for (int i = 0; i < len; i++) {
+                char c = text.charAt(i);
+                if (c == '\r' || c == '\n') {
+                    if (c == '\r' && i + 1 < len && text.charAt(i + 1) == '\n') {
+                        i++;
+                    }
+                    if (n == s.length) {
+                        int[] newS = new int[s.length * 2];
+                        System.arraycopy(s, 0, newS, 0, n);
+                        s = newS;
+                    }
+                    s[n++] = i + 1;
+                }
+            }
+            starts = s;
+            size = n;
+        }
+
+        public int getLineOfOffset(int offset) {
+            compute();
+            int low = 0;
+            int high = size - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (starts[mid] <= offset) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return low;
+        }
+
+        public int getLineStart(int line) {
+            compute();
+            return starts[line];
+        }
+
+        /**
+         * @return the end of the line (without the line delimiter).
+         */
+        public int getLineEnd(int line) {
+            compute();
+            int end = line + 1 < size ? starts[line + 1] : text.length();
+            while (end > starts[line]) {
+                char c = text.charAt(end - 1);
+                if (c != '\r' && c != '\n') {
+                    break;
+                }
+                end--;
+            }
+            return end;
+        }
+    }
+
     public void createMatches(IDocument doc, String text, StringMatcherWithIndexSemantics stringMatcher,
             IFile workspaceFile,
             AbstractTextSearchResult searchResult, ModulesKey modulesKey) {
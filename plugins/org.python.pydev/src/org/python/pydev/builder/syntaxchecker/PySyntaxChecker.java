@@ -28,6 +28,11 @@ import org.python.pydev.shared_ui.log.ToLogFile;
  */
 public class PySyntaxChecker extends PyDevBuilderVisitor {
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     public void visitChangedResource(IResource resource, ICallback0<IDocument> document, IProgressMonitor monitor) {
         PythonNature nature = getPythonNature(resource);
@@ -35,6 +35,11 @@ import org.python.pydev.shared_core.markers.PyMarkerUtils.MarkerInfo;
  */
 public class PyTodoVisitor extends PyDevBuilderVisitor {
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.builder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.python.pydev.ast.codecompletion.revisited.modules.AbstractModule;
+import org.python.pydev.core.IModule;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.parser.PyParser;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.shared_core.callbacks.ICallback2;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.string.TextSelectionUtils;
+
+/**
+ * Benchmark comparing the time of a full build over a generated project visiting the files sequentially (one thread)
+ * and with the ParallelBuildRunner used in PyDevBuilder.buildResources.
+ *
+ * The work done for each file mimics the visitors of a full build without requiring a workspace: the document is read,
+ * parsed once (the module is kept in the memo of the file, as done in PyDevBuilderVisitor.getSourceModule), and the
+ * syntax-check/indexing/todo visitors get what they need from it.
+ *
+ * Run as a java application (args: [number of modules] [number of threads]).
+ */
+public class ParallelBuildBenchmark {
+
+    private static final String MODULE_CACHE = "MODULE_CACHE";
+
+    public static void main(String[] args) throws Exception {
+        int modules = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : ParallelBuildRunner.BUILD_THREADS;
+
+        File projectDir = Files.createTempDirectory("parallel_build_benchmark").toFile();
+        try {
+            List<File> files = createProject(projectDir, modules);
+            System.out.println("Modules: " + files.size() + " Threads: " + threads);
+
+            for (int i = 0; i < 3; i++) {
+                AtomicLong sequentialTokens = new AtomicLong();
+                long initial = System.nanoTime();
+                build(files, 1, sequentialTokens);
+                long sequentialTime = System.nanoTime() - initial;
+
+                AtomicLong parallelTokens = new AtomicLong();
+                initial = System.nanoTime();
+                build(files, threads, parallelTokens);
+                long parallelTime = System.nanoTime() - initial;
+
+                if (sequentialTokens.get() != parallelTokens.get()) {
+                    throw new AssertionError("Expected same number of tokens: " + sequentialTokens + " != "
+                            + parallelTokens);
+                }
+                System.out.println("Sequential: " + (sequentialTime / 1000000) + "ms ("
+                        + (files.size() * 1000000000L / sequentialTime) + " modules/s)");
+                System.out.println("Parallel: " + (parallelTime / 1000000) + "ms ("
+                        + (files.size() * 1000000000L / parallelTime) + " modules/s)");
+            }
+        } finally {
+            FileUtils.deleteDirectoryTree(projectDir);
+        }
+    }
+
+    private static void build(List<File> files, int threads, final AtomicLong tokens) {
+        new ParallelBuildRunner<File>(threads).run(files, new ICallback2<Object, File, IProgressMonitor>() {
+
+            @Override
+            public Object call(File f, IProgressMonitor monitor) {
+                VisitorMemo memo = new VisitorMemo();
+                IDocument doc = new Document(FileUtils.getFileContents(f));
+
+                //syntax checker
+                IModule module = getModule(memo, f, doc);
+
+                //code completion/analysis (indexing)
+                tokens.addAndGet(getModule(memo, f, doc).getGlobalTokens().size());
+
+                //todo
+                int todos = 0;
+                int numberOfLines = doc.getNumberOfLines();
+                for (int i = 0; i < numberOfLines; i++) {
+                    if (TextSelectionUtils.getLine(doc, i).contains("TODO")) {
+                        todos++;
+                    }
+                }
+                tokens.addAndGet(todos);
+                return module;
+            }
+        }, new ICallback2<Object, Integer, File>() {
+
+            @Override
+            public Object call(Integer visited, File lastVisited) {
+                return null;
+            }
+        }, new NullProgressMonitor());
+    }
+
+    private static IModule getModule(VisitorMemo memo, File f, IDocument doc) {
+        IModule module = (IModule) memo.get(MODULE_CACHE);
+        if (module == null) {
+            ParseOutput output = PyParser.reparseDocument(new PyParser.ParserInfo(doc,
+                    IPythonNature.GRAMMAR_PYTHON_VERSION_3_6, null));
+            module = AbstractModule.createModule((SimpleNode) output.ast, f, f.getName(), null);
+            memo.put(MODULE_CACHE, module);
+        }
+        return module;
+    }
+
+    private static List<File> createProject(File projectDir, int modules) {
+        List<File> files = new ArrayList<>(modules);
+        FastStringBuffer buf = new FastStringBuffer();
+        for (int i = 0; i < modules; i++) {
+            File pkgDir = new File(projectDir, "pkg" + (i % 100));
+            pkgDir.mkdirs();
+            File f = new File(pkgDir, "mod" + i + ".py");
+
+            buf.clear();
+            buf.append("import os\nimport sys\n\nCONSTANT_").append(i).append(" = 10\n\n");
+            for (int c = 0; c < 5; c++) {
+                buf.append("class Class").append(i).append('_').append(c).append("(object):\n");
+                buf.append("    attr = 1\n\n");
+                for (int m = 0; m < 8; m++) {
+                    buf.append("    def method").append(m).append("(self, a, b=None):\n");
+                    buf.append("        # TODO: check b\n");
+                    buf.append("        self.value").append(m).append(" = a\n");
+                    buf.append("        if b is not None:\n            return [x for x in range(10)]\n");
+                    buf.append("        return os.path.join(str(a), str(b))\n\n");
+                }
+            }
+            for (int fn = 0; fn < 10; fn++) {
+                buf.append("def function").append(i).append('_').append(fn).append("(*args, **kwargs):\n");
+                buf.append("    '''Docstring for the function.'''\n");
+                buf.append("    return sys.version, args, kwargs\n\n");
+            }
+            FileUtils.writeStrToFile(buf.toString(), f);
+            files.add(f);
+        }
+        return files;
+    }
+}
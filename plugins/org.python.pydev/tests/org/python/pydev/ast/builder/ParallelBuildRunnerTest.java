@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.builder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.python.pydev.shared_core.callbacks.ICallback2;
+
+import junit.framework.TestCase;
+
+public class ParallelBuildRunnerTest extends TestCase {
+
+    private List<Integer> createItems(int size) {
+        List<Integer> items = new ArrayList<Integer>(size);
+        for (int i = 0; i < size; i++) {
+            items.add(i);
+        }
+        return items;
+    }
+
+    public void testVisitAll() throws Exception {
+        List<Integer> items = createItems(1000);
+        final ConcurrentHashMap<Integer, Integer> visits = new ConcurrentHashMap<Integer, Integer>();
+        final AtomicInteger totalVisits = new AtomicInteger();
+        final ConcurrentHashMap<String, String> threads = new ConcurrentHashMap<String, String>();
+        final int[] lastProgress = new int[] { 0 };
+
+        boolean finished = new ParallelBuildRunner<Integer>(4).run(items,
+                new ICallback2<Object, Integer, IProgressMonitor>() {
+
+                    @Override
+                    public Object call(Integer item, IProgressMonitor monitor) {
+                        threads.put(Thread.currentThread().getName(), "");
+                        visits.put(item, item);
+                        totalVisits.incrementAndGet();
+                        if (item % 100 == 0) {
+                            throw new RuntimeException("Errors are logged and don't stop the build.");
+                        }
+                        return null;
+                    }
+                }, new ICallback2<Object, Integer, Integer>() {
+
+                    @Override
+                    public Object call(Integer visited, Integer lastVisited) {
+                        assertTrue(visited >= lastProgress[0]);
+                        lastProgress[0] = visited;
+                        return null;
+                    }
+                }, new NullProgressMonitor());
+
+        assertTrue(finished);
+        assertEquals(1000, visits.size());
+        assertEquals(1000, totalVisits.get());
+        assertEquals(1000, lastProgress[0]);
+        assertTrue(threads.size() <= 4);
+        assertFalse(threads.containsKey(Thread.currentThread().getName()));
+    }
+
+    public void testCancel() throws Exception {
+        List<Integer> items = createItems(1000);
+        final NullProgressMonitor monitor = new NullProgressMonitor();
+        final AtomicInteger visited = new AtomicInteger();
+
+        boolean finished = new ParallelBuildRunner<Integer>(2).run(items,
+                new ICallback2<Object, Integer, IProgressMonitor>() {
+
+                    @Override
+                    public Object call(Integer item, IProgressMonitor workerMonitor) {
+                        if (visited.incrementAndGet() == 50) {
+                            monitor.setCanceled(true);
+                        }
+                        try {
+                            Thread.sleep(5);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return null;
+                    }
+                }, new ICallback2<Object, Integer, Integer>() {
+
+                    @Override
+                    public Object call(Integer arg, Integer arg2) {
+                        return null;
+                    }
+                }, monitor);
+
+        assertFalse(finished);
+        int visitedWhenFinished = visited.get();
+        assertTrue(visitedWhenFinished < 1000);
+        //no visits after returning
+        Thread.sleep(50);
+        assertEquals(visitedWhenFinished, visited.get());
+    }
+}
@@ -9,6 +9,7 @@ package com.python.pydev.analysis.actions;
 import org.eclipse.ui.dialogs.SearchPattern;
 
 import com.python.pydev.analysis.additionalinfo.ClassInfo;
+import com.python.pydev.analysis.additionalinfo.TokenMatcher;
 
 import junit.framework.TestCase;
 
@@ -59,6 +60,24 @@ public class GlobalsTwoPanelElementSelector2Test extends TestCase {
                 new ClassInfo("Intersection", "coilib50.basic.native", null, null, null, 0, 0)));
     }
 
+    public void testFuzzyMatch() throws Exception {
+        SearchPattern patternMatcher = new SearchPattern();
+        patternMatcher.setPattern("np_arr");
+        TokenMatcher fuzzyMatcher = MatchHelper.createFuzzyMatcher("np_arr");
+
+        assertTrue(MatchHelper.matchItem(patternMatcher, fuzzyMatcher,
+                new ClassInfo("numpy_array_utils", null, null, null, null, 0, 0)));
+        assertFalse(MatchHelper.matchItem(patternMatcher, new ClassInfo("numpy_array_utils", null, null, null, null,
+                0, 0)));
+        assertFalse(MatchHelper.matchItem(patternMatcher, fuzzyMatcher,
+                new ClassInfo("numpy_utils", null, null, null, null, 0, 0)));
+
+        //scopes and wildcards are only handled by the SearchPattern
+        assertNull(MatchHelper.createFuzzyMatcher("xx.aa"));
+        assertNull(MatchHelper.createFuzzyMatcher("a*b"));
+        assertNull(MatchHelper.createFuzzyMatcher(""));
+    }
+
     public void testPatternSubAndEquals() throws Exception {
         assertFalse(MatchHelper.equalsFilter("aa", "aa "));
 
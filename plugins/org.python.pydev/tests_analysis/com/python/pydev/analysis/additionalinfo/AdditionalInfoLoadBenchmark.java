@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+import org.python.pydev.core.FastBufferedReader;
+import org.python.pydev.core.IInfo;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.ObjectsInternPool.ObjectsPoolMap;
+import org.python.pydev.shared_core.callbacks.ICallback0;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+import com.python.pydev.analysis.additionalinfo.AbstractAdditionalTokensInfo.Filter;
+
+/**
+ * Benchmark comparing the time to load the tokens of the additional info (until the first query is answered)
+ * from the text trees (version 5) and from the memory-mapped binary tokens file.
+ *
+ * Run as a java application (args: [number of modules]).
+ */
+public class AdditionalInfoLoadBenchmark {
+
+    private static final Filter STARTING_WITH = new Filter() {
+
+        @Override
+        public boolean doCompare(String lowerCaseQual, IInfo info) {
+            return doCompare(lowerCaseQual, info.getName());
+        }
+
+        @Override
+        public boolean doCompare(String lowerCaseQual, String infoName) {
+            return infoName.toLowerCase().startsWith(lowerCaseQual);
+        }
+    };
+
+    public static void main(String[] args) throws IOException {
+        int modules = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+
+        TreeMapTokensStorage storage = new TreeMapTokensStorage();
+        for (int i = 0; i < modules; i++) {
+            String module = "pkg" + (i % 50) + ".mod" + i;
+            String file = "/usr/lib/python/pkg" + (i % 50) + "/mod" + i + ".py";
+            storage.add(new ClassInfo("Class" + i, module, null, null, file, 1, 1),
+                    AbstractAdditionalTokensInfo.TOP_LEVEL);
+            storage.add(new FuncInfo("func" + i, module, null, null, file, 10, 1),
+                    AbstractAdditionalTokensInfo.TOP_LEVEL);
+            for (int j = 0; j < 5; j++) {
+                storage.add(new FuncInfo("method" + j, module, "Class" + i, null, file, 2 + j, 5),
+                        AbstractAdditionalTokensInfo.INNER);
+            }
+        }
+        System.out.println("Tokens: " + storage.size());
+
+        File baseDir = Files.createTempDirectory("additional_info_load_benchmark").toFile();
+        try {
+            File textFile = new File(baseDir, "info.txt");
+            writeTextTrees(storage, textFile);
+            File tokensFile = new File(baseDir, "info.tokens");
+            TokensFileIO.save(tokensFile, 1, storage.toSegment(AbstractAdditionalTokensInfo.TOP_LEVEL),
+                    storage.toSegment(AbstractAdditionalTokensInfo.INNER));
+            System.out.println("Text trees file size: " + textFile.length());
+            System.out.println("Tokens file size: " + tokensFile.length());
+
+            for (int i = 0; i < 3; i++) {
+                long initial = System.nanoTime();
+                int found = loadTextTrees(textFile);
+                long textTime = System.nanoTime() - initial;
+
+                initial = System.nanoTime();
+                int found2 = loadTokensFile(tokensFile);
+                long binaryTime = System.nanoTime() - initial;
+
+                if (found != found2) {
+                    throw new AssertionError("Expected same number of tokens found: " + found + " != " + found2);
+                }
+                System.out.println("Load + first query (text trees): " + (textTime / 1000000) + "ms");
+                System.out.println("Load + first query (mapped tokens file): " + (binaryTime / 1000000) + "ms");
+            }
+        } finally {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+    }
+
+    private static void writeTextTrees(TreeMapTokensStorage storage, File file) {
+        Map<String, Integer> dictionary = new HashMap<>();
+        FastStringBuffer trees = new FastStringBuffer();
+        trees.append("-- START TREE 1\n");
+        TreeIO.dumpTreeToBuffer(storage.toTree(AbstractAdditionalTokensInfo.TOP_LEVEL), trees, dictionary);
+        trees.append("-- START TREE 2\n");
+        TreeIO.dumpTreeToBuffer(storage.toTree(AbstractAdditionalTokensInfo.INNER), trees, dictionary);
+        FastStringBuffer buf = new FastStringBuffer();
+        buf.append("-- START DICTIONARY\n");
+        TreeIO.dumpDictToBuffer(dictionary, buf);
+        buf.append(trees);
+        FileUtils.writeStrToFile(buf.toString(), file);
+    }
+
+    private static int loadTextTrees(File file) throws IOException {
+        SortedMap<String, Set<IInfo>> topLevel = null;
+        SortedMap<String, Set<IInfo>> inner = null;
+        FastBufferedReader reader = new FastBufferedReader(new InputStreamReader(new FileInputStream(file)));
+        try {
+            ObjectsPoolMap objectsPoolMap = new ObjectsPoolMap();
+            FastStringBuffer tempBuf = new FastStringBuffer(1024);
+            Map<Integer, String> dictionary = null;
+            FastStringBuffer line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("-- START DICTIONARY")) {
+                    dictionary = TreeIO.loadDictFrom(reader, tempBuf.clear(), objectsPoolMap);
+                } else if (line.startsWith("-- START TREE 1")) {
+                    topLevel = TreeIO.loadTreeFrom(reader, dictionary, tempBuf.clear(), objectsPoolMap, null);
+                } else if (line.startsWith("-- START TREE 2")) {
+                    inner = TreeIO.loadTreeFrom(reader, dictionary, tempBuf.clear(), objectsPoolMap, null);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        TreeMapTokensStorage storage = new TreeMapTokensStorage();
+        storage.restore(topLevel, inner);
+        return query(storage);
+    }
+
+    private static int loadTokensFile(File file) throws IOException {
+        TokensSegment[] segments = TokensFileIO.load(file, 1);
+        SegmentTokensStorage storage = new SegmentTokensStorage(new ICallback0<IPythonNature>() {
+
+            @Override
+            public IPythonNature call() {
+                return null;
+            }
+        });
+        storage.restore(segments[0], segments[1], null);
+        return query(storage);
+    }
+
+    private static int query(ITokensStorage storage) {
+        List<IInfo> result = new ArrayList<>();
+        storage.getWithFilter("class1", AbstractAdditionalTokensInfo.TOP_LEVEL, STARTING_WITH, true, result);
+        return result.size();
+    }
+}
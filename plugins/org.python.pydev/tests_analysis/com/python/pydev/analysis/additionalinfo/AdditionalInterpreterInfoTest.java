@@ -13,8 +13,11 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.runtime.NullProgressMonitor;
@@ -27,11 +30,13 @@ import org.python.pydev.core.IInfo;
 import org.python.pydev.core.IInterpreterManager;
 import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.ModulesKey;
+import org.python.pydev.core.cache.CompleteIndexKey;
 import org.python.pydev.parser.jython.ast.ClassDef;
 import org.python.pydev.parser.jython.ast.FunctionDef;
 import org.python.pydev.parser.jython.ast.NameTok;
 import org.python.pydev.shared_core.callbacks.ICallbackListener;
 import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.python.pydev.shared_core.structure.Tuple;
 
 import com.python.pydev.analysis.system_info_builder.InterpreterInfoBuilder;
@@ -57,12 +62,23 @@ public class AdditionalInterpreterInfoTest extends AdditionalInfoTestsBase {
     @Override
     public void setUp() throws Exception {
         super.setUp();
+        info = createInfo(null);
+
+        baseDir = FileUtils.getTempFileAt(new File("."), "data_temp_additional_info_test");
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        baseDir.mkdir();
+    }
+
+    private AdditionalProjectInterpreterInfo createInfo(final File persistingLocation)
+            throws MisconfigurationException {
         AdditionalInfoProjectStub project = new AdditionalInfoProjectStub("empty");
-        info = new AdditionalProjectInterpreterInfo(project) {
+        return new AdditionalProjectInterpreterInfo(project) {
 
             @Override
             protected File getPersistingLocation() {
-                return null;
+                return persistingLocation;
             }
 
             @Override
@@ -86,12 +102,6 @@ public class AdditionalInterpreterInfoTest extends AdditionalInfoTestsBase {
             }
 
         };
-
-        baseDir = FileUtils.getTempFileAt(new File("."), "data_temp_additional_info_test");
-        if (baseDir.exists()) {
-            FileUtils.deleteDirectoryTree(baseDir);
-        }
-        baseDir.mkdir();
     }
 
     @Override
@@ -333,6 +343,146 @@ public class AdditionalInterpreterInfoTest extends AdditionalInfoTestsBase {
     //        }
     //    }
 
+    public void testMigrateTextTreesToTokensFile() throws Exception {
+        File location = new File(baseDir, "info.pydevinfo");
+        AdditionalProjectInterpreterInfo oldInfo = createInfo(location);
+        oldInfo.add(new FuncInfo("met1", "mod1", null, null, "mod1.py", 1, 1), AbstractAdditionalTokensInfo.TOP_LEVEL);
+        oldInfo.add(new ClassInfo("Cls1", "mod1", null, null, "mod1.py", 2, 1), AbstractAdditionalTokensInfo.TOP_LEVEL);
+        oldInfo.add(new FuncInfo("met2", "mod1", "Cls1", null, "mod1.py", 3, 5), AbstractAdditionalTokensInfo.INNER);
+
+        //Write it as it was written in the version with the text trees.
+        FastStringBuffer buf = new FastStringBuffer();
+        buf.append("-- VERSION_").append(AbstractAdditionalTokensInfo.TEXT_TREES_VERSION).append('\n');
+        oldInfo.completeIndex.writeTo(buf);
+        Map<String, Integer> dictionary = new HashMap<>();
+        FastStringBuffer trees = new FastStringBuffer();
+        trees.append("-- START TREE 1\n");
+        TreeIO.dumpTreeToBuffer(oldInfo.tokensStorage.toTree(AbstractAdditionalTokensInfo.TOP_LEVEL), trees,
+                dictionary);
+        trees.append("-- START TREE 2\n");
+        TreeIO.dumpTreeToBuffer(oldInfo.tokensStorage.toTree(AbstractAdditionalTokensInfo.INNER), trees, dictionary);
+        TreeIO.dumpDictToBuffer(dictionary, buf);
+        buf.append(trees);
+        FileUtils.writeStrToFile(buf.toString(), location);
+
+        AdditionalProjectInterpreterInfo migratedInfo = createInfo(location);
+        assertTrue(migratedInfo.load());
+        checkMigratedTokens(migratedInfo);
+
+        //Loading it must have saved it in the new format (referencing the binary tokens file).
+        String contents = FileUtils.getFileContents(location);
+        assertTrue(contents.startsWith("-- VERSION_" + AbstractAdditionalTokensInfo.version + "\n"));
+        assertTrue(contents.contains("-- START TOKENS_FILE "));
+        assertEquals(1, listTokensFiles().size());
+
+        AdditionalProjectInterpreterInfo loadedInfo = createInfo(location);
+        assertTrue(loadedInfo.load());
+        checkMigratedTokens(loadedInfo);
+
+        //A new save removes the previous tokens file.
+        loadedInfo.save();
+        assertEquals(1, listTokensFiles().size());
+        AdditionalProjectInterpreterInfo reloadedInfo = createInfo(location);
+        assertTrue(reloadedInfo.load());
+        checkMigratedTokens(reloadedInfo);
+    }
+
+    private void checkMigratedTokens(AbstractAdditionalDependencyInfo additionalInfo) {
+        assertEquals(2, additionalInfo.getTokensStartingWith("met",
+                AbstractAdditionalTokensInfo.TOP_LEVEL | AbstractAdditionalTokensInfo.INNER).size());
+        assertEquals(1, additionalInfo.getTokensEqualTo("Cls1", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+
+        Collection<IInfo> found = additionalInfo.getTokensEqualTo("met2", AbstractAdditionalTokensInfo.INNER);
+        assertEquals(1, found.size());
+        IInfo met2 = found.iterator().next();
+        assertEquals("Cls1", met2.getPath());
+        assertEquals("mod1.py", met2.getFile());
+        assertEquals(3, met2.getLine());
+        assertEquals(5, met2.getCol());
+    }
+
+    public void testParallelIndexing() throws Exception {
+        List<ModulesKey> keys = new ArrayList<>();
+        for (int i = 0; i < ParallelModulesIndexer.BATCH_SIZE + 10; i++) {
+            File f = new File(baseDir, "mod" + i + ".py");
+            FileUtils.writeStrToFile("class Cls" + i + ":\n    def met" + i + "(self):\n        pass\n"
+                    + "def func" + i + "():\n    pass\n", f);
+            keys.add(new ModulesKey("mod" + i, f));
+        }
+        File broken = new File(baseDir, "broken.py");
+        FileUtils.writeStrToFile("class (\n", broken);
+        keys.add(new ModulesKey("broken", broken));
+
+        ParallelModulesIndexer indexer = new ParallelModulesIndexer(info, 4);
+        assertTrue(indexer.index(keys, new ArrayList<ModulesKey>(), null, new NullProgressMonitor()));
+
+        assertEquals(ParallelModulesIndexer.BATCH_SIZE + 10,
+                info.getTokensStartingWith("Cls", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+        assertEquals(ParallelModulesIndexer.BATCH_SIZE + 10,
+                info.getTokensStartingWith("func", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+        Collection<IInfo> found = info.getTokensEqualTo("met7", AbstractAdditionalTokensInfo.INNER);
+        assertEquals(1, found.size());
+        assertEquals("Cls7", found.iterator().next().getPath());
+        assertEquals("mod7", found.iterator().next().getDeclaringModuleName());
+        CompleteIndexKey indexKey = info.completeIndex.keys().get(new CompleteIndexKey("mod7"));
+        assertNotNull(indexKey);
+        assertEquals(FileUtils.lastModified(new File(baseDir, "mod7.py")), indexKey.lastModified);
+
+        NullProgressMonitor cancelledMonitor = new NullProgressMonitor();
+        cancelledMonitor.setCanceled(true);
+        info.clearAllInfo();
+        assertFalse(new ParallelModulesIndexer(info, 4).index(keys, new ArrayList<ModulesKey>(), null,
+                cancelledMonitor));
+    }
+
+    public void testTokensPublishedWithCompleteIndex() throws Exception {
+        final List<ModulesKey> keys = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            File f = new File(baseDir, "mod" + i + ".py");
+            FileUtils.writeStrToFile("class Cls" + i + ":\n    pass\n", f);
+            keys.add(new ModulesKey("mod" + i, f));
+        }
+        final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int j = 0; j < 50; j++) {
+                        for (ModulesKey key : keys) {
+                            info.addAstInfo(key, false);
+                        }
+                        for (ModulesKey key : keys) {
+                            info.removeInfoFromModule(key.name, false);
+                        }
+                    }
+                } catch (Exception e) {
+                    errors.add(e.toString());
+                }
+            }
+        };
+        writer.start();
+        while (writer.isAlive()) {
+            for (IInfo found : info.getTokensStartingWith("Cls", AbstractAdditionalTokensInfo.TOP_LEVEL)) {
+                // Whenever the tokens of a module are visible, the module must be in the complete index.
+                if (!info.completeIndex.keys().containsKey(new CompleteIndexKey(found.getDeclaringModuleName()))) {
+                    errors.add("Not in complete index: " + found.getDeclaringModuleName());
+                }
+            }
+        }
+        writer.join();
+        assertEquals(new ArrayList<String>(), errors);
+    }
+
+    private List<File> listTokensFiles() {
+        List<File> ret = new ArrayList<>();
+        for (File f : baseDir.listFiles()) {
+            if (f.getName().endsWith(".tokens")) {
+                ret.add(f);
+            }
+        }
+        return ret;
+    }
+
     @SuppressWarnings("unchecked")
     public void testForcedBuiltinsInAdditionalInfo() throws Exception {
         IInterpreterManager interpreterManager = getInterpreterManager();
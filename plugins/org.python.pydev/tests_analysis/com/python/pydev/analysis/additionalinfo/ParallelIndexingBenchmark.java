@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.python.pydev.core.DeltaSaver;
+import org.python.pydev.core.MisconfigurationException;
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+/**
+ * Benchmark comparing the throughput of indexing a synthetic site-packages tree sequentially (as done in
+ * AbstractAdditionalDependencyInfo.updateKeysIfNeededAndSave with a single thread) and with the
+ * ParallelModulesIndexer.
+ *
+ * Run as a java application (args: [number of modules] [number of threads]).
+ */
+public class ParallelIndexingBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int modules = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : AbstractAdditionalDependencyInfo.INDEXING_THREADS;
+
+        File sitePackages = Files.createTempDirectory("parallel_indexing_benchmark").toFile();
+        try {
+            List<ModulesKey> keys = createSitePackages(sitePackages, modules);
+            System.out.println("Modules: " + keys.size() + " Threads: " + threads);
+
+            for (int i = 0; i < 3; i++) {
+                AbstractAdditionalDependencyInfo info = createInfo(sitePackages);
+                long initial = System.nanoTime();
+                for (ModulesKey key : keys) {
+                    info.addAstInfo(key, false);
+                }
+                long sequentialTime = System.nanoTime() - initial;
+                int sequentialTokens = info.getAllTokens().size();
+
+                info = createInfo(sitePackages);
+                initial = System.nanoTime();
+                new ParallelModulesIndexer(info, threads).index(keys, new ArrayList<ModulesKey>(), null,
+                        new NullProgressMonitor());
+                long parallelTime = System.nanoTime() - initial;
+                int parallelTokens = info.getAllTokens().size();
+
+                if (sequentialTokens != parallelTokens) {
+                    throw new AssertionError("Expected same number of tokens: " + sequentialTokens + " != "
+                            + parallelTokens);
+                }
+                System.out.println("Sequential: " + (sequentialTime / 1000000) + "ms ("
+                        + (keys.size() * 1000000000L / sequentialTime) + " modules/s)");
+                System.out.println("Parallel: " + (parallelTime / 1000000) + "ms ("
+                        + (keys.size() * 1000000000L / parallelTime) + " modules/s)");
+            }
+        } finally {
+            FileUtils.deleteDirectoryTree(sitePackages);
+        }
+    }
+
+    private static List<ModulesKey> createSitePackages(File sitePackages, int modules) {
+        List<ModulesKey> keys = new ArrayList<>(modules);
+        FastStringBuffer buf = new FastStringBuffer();
+        for (int i = 0; i < modules; i++) {
+            String pkg = "pkg" + (i % 100);
+            File pkgDir = new File(sitePackages, pkg);
+            pkgDir.mkdirs();
+            File f = new File(pkgDir, "mod" + i + ".py");
+
+            buf.clear();
+            buf.append("import os\nimport sys\n\nCONSTANT_").append(i).append(" = 10\n\n");
+            for (int c = 0; c < 5; c++) {
+                buf.append("class Class").append(i).append('_').append(c).append("(object):\n");
+                buf.append("    attr = 1\n\n");
+                for (int m = 0; m < 8; m++) {
+                    buf.append("    def method").append(m).append("(self, a, b=None):\n");
+                    buf.append("        self.value").append(m).append(" = a\n");
+                    buf.append("        if b is not None:\n            return [x for x in range(10)]\n");
+                    buf.append("        return os.path.join(str(a), str(b))\n\n");
+                }
+            }
+            for (int fn = 0; fn < 10; fn++) {
+                buf.append("def function").append(i).append('_').append(fn).append("(*args, **kwargs):\n");
+                buf.append("    '''Docstring for the function.'''\n");
+                buf.append("    return sys.version, args, kwargs\n\n");
+            }
+            FileUtils.writeStrToFile(buf.toString(), f);
+            keys.add(new ModulesKey(pkg + ".mod" + i, f));
+        }
+        return keys;
+    }
+
+    private static AbstractAdditionalDependencyInfo createInfo(final File sitePackages)
+            throws MisconfigurationException {
+        return new AdditionalProjectInterpreterInfo(new AdditionalInfoProjectStub("benchmark")) {
+
+            @Override
+            protected File getPersistingLocation() {
+                return null;
+            }
+
+            @Override
+            protected File getPersistingFolder() {
+                return null;
+            }
+
+            @Override
+            protected Set<String> getPythonPathFolders() {
+                return Collections.singleton(sitePackages.getAbsolutePath());
+            }
+
+            @Override
+            protected String getUIRepresentation() {
+                return "Benchmark for: " + sitePackages;
+            }
+
+            @Override
+            protected DeltaSaver<Object> createDeltaSaver() {
+                return null;
+            }
+        };
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.core.cache.CompleteIndexKey;
+import org.python.pydev.shared_core.index.IndexApi;
+import org.python.pydev.shared_core.io.FileUtils;
+
+import com.python.pydev.analysis.additionalinfo.ReferenceSearchesLuceneIndexer.IndexingBatches;
+
+import junit.framework.TestCase;
+
+public class ReferenceSearchesLuceneTest extends TestCase {
+
+    private File baseDir;
+    private IndexApi indexApi;
+    private ReferenceSearchesLuceneIndexer indexer;
+    private ReferenceSearchesLucene referenceSearches;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = Files.createTempDirectory("reference_searches_lucene").toFile();
+        indexApi = new IndexApi(new File(baseDir, "lc2"), true);
+        indexer = new ReferenceSearchesLuceneIndexer(indexApi,
+                new IndexedModulesManifest(indexApi, new File(baseDir, "lc2_manifest")));
+        referenceSearches = new ReferenceSearchesLucene(null);
+        referenceSearches.setIndex(indexApi, indexer);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        indexApi.dispose();
+        FileUtils.deleteDirectoryTree(baseDir);
+        super.tearDown();
+    }
+
+    private Map<CompleteIndexKey, CompleteIndexKey> createModules(int modules) {
+        File srcDir = new File(baseDir, "src");
+        srcDir.mkdirs();
+        Map<CompleteIndexKey, CompleteIndexKey> keys = new HashMap<>();
+        for (int i = 0; i < modules; i++) {
+            File f = new File(srcDir, "mod" + i + ".py");
+            FileUtils.writeStrToFile("def method" + i + "():\n    return " + i + "\n", f);
+            CompleteIndexKey key = new CompleteIndexKey(new ModulesKey("mod" + i, f), f.lastModified());
+            keys.put(key, key);
+        }
+        return keys;
+    }
+
+    public void testSearchWithoutWaitingForIndexing() throws Exception {
+        Map<CompleteIndexKey, CompleteIndexKey> keys = createModules(ReferenceSearchesLuceneIndexer.BATCH_SIZE * 3);
+        NullProgressMonitor monitor = new NullProgressMonitor();
+
+        IndexingBatches running = referenceSearches.updateIndexIfNeeded(1, keys, false, monitor);
+        assertNotNull(running);
+        // While it's indexing, a search which doesn't wait doesn't schedule anything.
+        IndexingBatches again = referenceSearches.updateIndexIfNeeded(1, keys, false, monitor);
+        assertTrue(again == null || again == running);
+
+        assertTrue(running.waitForCompletion(monitor));
+        assertTrue(running.isSuccessful());
+        assertEquals(keys.size(), indexer.getManifest().getIndexedModules().size());
+
+        // Same stamp after a successful indexing: nothing to do.
+        assertNull(referenceSearches.updateIndexIfNeeded(1, keys, false, monitor));
+        assertNull(indexer.getCurrent());
+    }
+
+    public void testCancelledIndexingIsScheduledAgain() throws Exception {
+        Map<CompleteIndexKey, CompleteIndexKey> keys = createModules(ReferenceSearchesLuceneIndexer.BATCH_SIZE * 10);
+        NullProgressMonitor monitor = new NullProgressMonitor();
+
+        IndexingBatches running = referenceSearches.updateIndexIfNeeded(1, keys, false, monitor);
+        assertNotNull(running);
+        running.cancel();
+        assertTrue(running.waitForCompletion(monitor));
+        assertFalse(running.isSuccessful());
+
+        // Same stamp, but as the indexing was cancelled the missing modules must be indexed now.
+        assertNull(referenceSearches.updateIndexIfNeeded(1, keys, true, monitor));
+        assertNull(indexer.getCurrent());
+        assertEquals(keys.size(), indexer.getManifest().getIndexedModules().size());
+    }
+
+    public void testDecodeWithDeclaredEncoding() throws Exception {
+        String contents = "# -*- coding: latin-1 -*-\nname = '\u00e1\u00e9'\n";
+        assertEquals(contents, ReferenceSearchesLuceneIndexer
+                .decodePythonContents(contents.getBytes(StandardCharsets.ISO_8859_1), "mod.py"));
+
+        // No declared encoding: utf-8 (regardless of the platform encoding).
+        contents = "name = '\u00e1\u00e9'\n";
+        assertEquals(contents, ReferenceSearchesLuceneIndexer
+                .decodePythonContents(contents.getBytes(StandardCharsets.UTF_8), "mod.py"));
+        assertEquals("utf-8", ReferenceSearchesLuceneIndexer.getPythonEncoding(contents, "mod.py"));
+    }
+}
@@ -0,0 +1,265 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.python.pydev.core.IInfo;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.shared_core.callbacks.ICallback0;
+
+import com.python.pydev.analysis.additionalinfo.AbstractAdditionalTokensInfo.Filter;
+
+import junit.framework.TestCase;
+
+public class SegmentTokensStorageTest extends TestCase {
+
+    private static final Filter STARTING_WITH = new Filter() {
+
+        @Override
+        public boolean doCompare(String lowerCaseQual, IInfo info) {
+            return doCompare(lowerCaseQual, info.getName());
+        }
+
+        @Override
+        public boolean doCompare(String lowerCaseQual, String infoName) {
+            return infoName.toLowerCase().startsWith(lowerCaseQual);
+        }
+    };
+
+    private static final Filter EQUALS = new Filter() {
+
+        @Override
+        public boolean doCompare(String qualifier, IInfo info) {
+            return doCompare(qualifier, info.getName());
+        }
+
+        @Override
+        public boolean doCompare(String qualifier, String infoName) {
+            return infoName.equals(qualifier);
+        }
+    };
+
+    private SegmentTokensStorage storage;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        storage = new SegmentTokensStorage(new ICallback0<IPythonNature>() {
+
+            @Override
+            public IPythonNature call() {
+                return null;
+            }
+        });
+    }
+
+    private List<IInfo> startingWith(String qualifier, int getWhat) {
+        List<IInfo> ret = new ArrayList<>();
+        storage.getWithFilter(qualifier, getWhat, STARTING_WITH, true, ret);
+        return ret;
+    }
+
+    private List<IInfo> equalTo(String qualifier, int getWhat) {
+        List<IInfo> ret = new ArrayList<>();
+        storage.getWithFilter(qualifier, getWhat, EQUALS, false, ret);
+        return ret;
+    }
+
+    private void fillDelta() {
+        storage.add(new FuncInfo("metz", "mod1", null, null, "mod1.py", 1, 1), AbstractAdditionalTokensInfo.TOP_LEVEL);
+        storage.add(new FuncInfo("metZ", "mod1", null, null, "mod1.py", 2, 1), AbstractAdditionalTokensInfo.TOP_LEVEL);
+        storage.add(new ClassInfo("Meta", "mod2", null, null, "mod2.py", 1, 1), AbstractAdditionalTokensInfo.TOP_LEVEL);
+        storage.add(new FuncInfo("method", "mod2", "Meta", null, "mod2.py", 2, 5), AbstractAdditionalTokensInfo.INNER);
+        storage.add(new ClassInfo("Other", "mod3", null, null, "mod3.py", 1, 1),
+                AbstractAdditionalTokensInfo.TOP_LEVEL);
+    }
+
+    public void testQueriesInSegments() throws Exception {
+        for (boolean mapped : new boolean[] { true, false }) {
+            storage.clear();
+            storage.setUseMappedFiles(mapped);
+            fillDelta();
+            storage.merge(true);
+            assertEquals(0, storage.getDeltaSize());
+
+            assertEquals(3, startingWith("met", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+            assertEquals(3, startingWith("MET", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+            assertEquals(4, startingWith("met",
+                    AbstractAdditionalTokensInfo.TOP_LEVEL | AbstractAdditionalTokensInfo.INNER).size());
+            assertEquals(1, startingWith("metho", AbstractAdditionalTokensInfo.INNER).size());
+            assertEquals(0, startingWith("xxx", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+
+            List<IInfo> found = equalTo("metz", AbstractAdditionalTokensInfo.TOP_LEVEL);
+            assertEquals(1, found.size());
+            IInfo info = found.get(0);
+            assertEquals("metz", info.getName());
+            assertEquals("mod1", info.getDeclaringModuleName());
+            assertEquals("mod1.py", info.getFile());
+            assertEquals(1, info.getLine());
+            assertEquals(IInfo.METHOD_WITH_IMPORT_TYPE, info.getType());
+
+            found = equalTo("method", AbstractAdditionalTokensInfo.INNER);
+            assertEquals(1, found.size());
+            assertEquals("Meta", found.get(0).getPath());
+            assertEquals(5, found.get(0).getCol());
+        }
+    }
+
+    public void testRemoveAndMergeDelta() throws Exception {
+        fillDelta();
+        storage.merge(true);
+
+        storage.removeInfoFromModule("mod1");
+        assertEquals(1, startingWith("met", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+
+        // Changed module goes to the delta.
+        storage.add(new FuncInfo("metNew", "mod1", null, null, "mod1.py", 1, 1),
+                AbstractAdditionalTokensInfo.TOP_LEVEL);
+        assertEquals(1, storage.getDeltaSize());
+        assertEquals(2, startingWith("met", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+        assertEquals(0, equalTo("metz", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+
+        Set<String> modules = new HashSet<>();
+        storage.getAllModulesWithTokens(modules);
+        assertEquals(3, modules.size());
+
+        storage.merge(true);
+        assertEquals(0, storage.getDeltaSize());
+        assertFalse(storage.isMerging());
+        assertEquals(2, startingWith("met", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+        assertEquals(1, equalTo("metNew", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+
+        List<IInfo> all = new ArrayList<>();
+        storage.getAllTokens(all);
+        assertEquals(4, all.size());
+
+        assertEquals(2, storage.toTree(AbstractAdditionalTokensInfo.TOP_LEVEL).size()); // "met" and "oth"
+    }
+
+    private List<String> bestMatches(String query, int mode, int maxResults) {
+        TopMatches<IInfo> result = new TopMatches<IInfo>(maxResults);
+        storage.getBestMatches(new TokenMatcher(query, mode), AbstractAdditionalTokensInfo.TOP_LEVEL
+                | AbstractAdditionalTokensInfo.INNER, result);
+        List<String> ret = new ArrayList<>();
+        for (IInfo info : result.getItems()) {
+            ret.add(info.getName() + "@" + info.getDeclaringModuleName());
+        }
+        return ret;
+    }
+
+    public void testBestMatches() throws Exception {
+        storage.add(new ClassInfo("DataFrameReader", "mod1", null, null, "mod1.py", 1, 1),
+                AbstractAdditionalTokensInfo.TOP_LEVEL);
+        storage.add(new ClassInfo("DataFrameReader", "mod2", null, null, "mod2.py", 1, 1),
+                AbstractAdditionalTokensInfo.TOP_LEVEL);
+        storage.add(new FuncInfo("numpy_array_utils", "mod2", null, null, "mod2.py", 5, 1),
+                AbstractAdditionalTokensInfo.TOP_LEVEL);
+        storage.add(new FuncInfo("read_frame", "mod3", "Reader", null, "mod3.py", 2, 5),
+                AbstractAdditionalTokensInfo.INNER);
+        storage.merge(true);
+        storage.add(new ClassInfo("DefaultFormatReader", "mod4", null, null, "mod4.py", 1, 1),
+                AbstractAdditionalTokensInfo.TOP_LEVEL);
+
+        // Segments (same name in 2 modules) and delta.
+        List<String> found = bestMatches("DFR", TokenMatcher.FUZZY, 10);
+        assertEquals(3, found.size());
+        assertTrue(found.toString(), found.get(0).startsWith("DataFrameReader@"));
+        assertTrue(found.toString(), found.get(1).startsWith("DataFrameReader@"));
+        assertEquals("DefaultFormatReader@mod4", found.get(2));
+
+        assertEquals(1, bestMatches("DFR", TokenMatcher.FUZZY, 1).size());
+        assertEquals("[numpy_array_utils@mod2]", bestMatches("np_arr", TokenMatcher.FUZZY, 10).toString());
+        assertEquals("[read_frame@mod3]", bestMatches("d_fra", TokenMatcher.SUBSTRING, 10).toString());
+
+        // Removed modules are not returned.
+        storage.removeInfoFromModule("mod1");
+        storage.removeInfoFromModule("mod4");
+        assertEquals("[DataFrameReader@mod2]", bestMatches("DFR", TokenMatcher.FUZZY, 10).toString());
+
+        // The names index is kept for the new segments after a merge.
+        storage.merge(true);
+        assertEquals("[DataFrameReader@mod2]", bestMatches("DFR", TokenMatcher.FUZZY, 10).toString());
+    }
+
+    public void testMergeInBackground() throws Exception {
+        for (int i = 0; i < SegmentTokensStorage.MERGE_THRESHOLD; i++) {
+            storage.add(new NameInfo("name" + i, "mod" + (i % 100), null, null, null, 1, 1),
+                    AbstractAdditionalTokensInfo.TOP_LEVEL);
+        }
+        for (int i = 0; i < 50 && storage.isMerging(); i++) {
+            synchronized (this) {
+                this.wait(100);
+            }
+        }
+        assertFalse(storage.isMerging());
+        assertEquals(0, storage.getDeltaSize());
+        assertEquals(SegmentTokensStorage.MERGE_THRESHOLD,
+                startingWith("nam", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+        assertEquals(1, equalTo("name10", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+    }
+
+    public void testReadersSeeWholeChanges() throws Exception {
+        final int modules = 10;
+        final int tokensPerModule = 5;
+        final List<String> errors = new ArrayList<>();
+        final boolean[] finished = new boolean[1];
+
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                while (true) {
+                    synchronized (finished) {
+                        if (finished[0]) {
+                            return;
+                        }
+                    }
+                    Map<String, Integer> moduleToCount = new HashMap<>();
+                    for (IInfo info : startingWith("tok", AbstractAdditionalTokensInfo.TOP_LEVEL)) {
+                        Integer count = moduleToCount.get(info.getDeclaringModuleName());
+                        moduleToCount.put(info.getDeclaringModuleName(), count == null ? 1 : count + 1);
+                    }
+                    for (Map.Entry<String, Integer> entry : moduleToCount.entrySet()) {
+                        if (entry.getValue() != tokensPerModule) {
+                            synchronized (errors) {
+                                errors.add(entry.getKey() + " has " + entry.getValue() + " tokens");
+                            }
+                        }
+                    }
+                }
+            }
+        };
+        reader.start();
+        try {
+            // Goes through the merge threshold some times.
+            for (int i = 0; i < (SegmentTokensStorage.MERGE_THRESHOLD * 3) / (modules * tokensPerModule); i++) {
+                for (int m = 0; m < modules; m++) {
+                    storage.removeInfoFromModule("mod" + m);
+                    List<IInfo> topLevel = new ArrayList<>();
+                    for (int j = 0; j < tokensPerModule; j++) {
+                        topLevel.add(new NameInfo("tok" + j + "_" + i, "mod" + m, null, null, null, 1, 1));
+                    }
+                    storage.addAll(topLevel, new ArrayList<IInfo>());
+                }
+            }
+        } finally {
+            synchronized (finished) {
+                finished[0] = true;
+            }
+            reader.join();
+        }
+        synchronized (errors) {
+            assertEquals(new ArrayList<String>(), errors);
+        }
+        assertEquals(modules * tokensPerModule, startingWith("tok", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.python.pydev.core.IInfo;
+
+import junit.framework.TestCase;
+
+public class TokenMatcherTest extends TestCase {
+
+    public void testFuzzyMatch() throws Exception {
+        TokenMatcher matcher = new TokenMatcher("DFR", TokenMatcher.FUZZY);
+        assertTrue(matcher.score("DataFrameReader") != TokenMatcher.NO_MATCH);
+        assertTrue(matcher.score("dataframe_reader") != TokenMatcher.NO_MATCH);
+        assertEquals(TokenMatcher.NO_MATCH, matcher.score("DataReader"));
+        assertEquals(TokenMatcher.NO_MATCH, matcher.score("FrameDataReader"));
+
+        matcher = new TokenMatcher("np_arr", TokenMatcher.FUZZY);
+        assertTrue(matcher.score("numpy_array_utils") != TokenMatcher.NO_MATCH);
+        assertEquals(TokenMatcher.NO_MATCH, matcher.score("numpy_utils"));
+
+        // The first char must be at the start of a word.
+        matcher = new TokenMatcher("rr", TokenMatcher.FUZZY);
+        assertEquals(TokenMatcher.NO_MATCH, matcher.score("array"));
+
+        matcher = new TokenMatcher("Server", TokenMatcher.FUZZY);
+        assertTrue(matcher.score("HTTPServer") != TokenMatcher.NO_MATCH);
+    }
+
+    public void testFuzzyRanking() throws Exception {
+        TokenMatcher matcher = new TokenMatcher("DFR", TokenMatcher.FUZZY);
+        // Matches at word starts are better.
+        assertTrue(matcher.score("DataFrameReader") > matcher.score("DefaultFormatter"));
+
+        matcher = new TokenMatcher("data", TokenMatcher.FUZZY);
+        // Exact > prefix > others.
+        assertTrue(matcher.score("data") > matcher.score("Data"));
+        assertTrue(matcher.score("Data") > matcher.score("DataFrame"));
+        assertTrue(matcher.score("DataFrame") > matcher.score("MyDataFrame"));
+        assertTrue(matcher.score("DataFrame") > matcher.score("DataFrameReader"));
+    }
+
+    public void testSubstringMatch() throws Exception {
+        TokenMatcher matcher = new TokenMatcher("rray", TokenMatcher.SUBSTRING);
+        assertTrue(matcher.score("numpy_array_utils") != TokenMatcher.NO_MATCH);
+        assertEquals(TokenMatcher.NO_MATCH, matcher.score("numpy_ar_ray"));
+
+        matcher = new TokenMatcher("array", TokenMatcher.SUBSTRING);
+        assertTrue(matcher.score("Array") > matcher.score("ArrayUtils"));
+        assertTrue(matcher.score("ArrayUtils") > matcher.score("numpy_array"));
+        assertTrue(matcher.score("numpy_array") > matcher.score("numpyarray"));
+    }
+
+    public void testSubstringOrFuzzyMatch() throws Exception {
+        TokenMatcher matcher = new TokenMatcher("rray", TokenMatcher.SUBSTRING_OR_FUZZY);
+        assertTrue(matcher.score("numpy_array_utils") != TokenMatcher.NO_MATCH);
+
+        matcher = new TokenMatcher("DFR", TokenMatcher.SUBSTRING_OR_FUZZY);
+        assertTrue(matcher.score("DataFrameReader") != TokenMatcher.NO_MATCH);
+        assertEquals(TokenMatcher.NO_MATCH, matcher.score("DataReader"));
+        assertEquals(new TokenMatcher("DFR", TokenMatcher.FUZZY).score("DataFrameReader"),
+                matcher.score("DataFrameReader"));
+    }
+
+    public void testMasks() throws Exception {
+        TokenMatcher matcher = new TokenMatcher("DFR", TokenMatcher.FUZZY);
+        String name = "DataFrameReader";
+        long wordStarts = 0;
+        for (int i = 0; i < name.length(); i++) {
+            if (TokenMatcher.isWordStart(name, i)) {
+                wordStarts |= TokenMatcher.getCharMask(Character.toLowerCase(name.charAt(i)));
+            }
+        }
+        assertEquals(TokenMatcher.getCharsMask("dfr"), wordStarts);
+        assertTrue(matcher.mayMatch(TokenMatcher.getCharsMask(name.toLowerCase()), wordStarts));
+        assertFalse(matcher.mayMatch(TokenMatcher.getCharsMask("datareader"), TokenMatcher.getCharsMask("dr")));
+    }
+
+    public void testTopMatches() throws Exception {
+        TopMatches<String> top = new TopMatches<String>(3);
+        List<String> names = Arrays.asList("a", "b", "c", "d", "e");
+        int[] scores = new int[] { 10, 50, 30, 50, 20 };
+        for (int i = 0; i < names.size(); i++) {
+            top.add(scores[i], names.get(i), names.get(i));
+        }
+        assertEquals(3, top.size());
+        assertEquals(Arrays.asList("b", "d", "c"), top.getItems());
+        assertFalse(top.isCompetitive(29));
+        assertTrue(top.isCompetitive(30));
+    }
+
+    public void testBestMatchesFromStorages() throws Exception {
+        List<IInfo> infos = new ArrayList<IInfo>();
+        infos.add(new ClassInfo("DataFrameReader", "pandas.io", null, null, "io.py", 1, 1));
+        infos.add(new ClassInfo("DataFrame", "pandas.core", null, null, "core.py", 1, 1));
+        infos.add(new FuncInfo("numpy_array_utils", "np_utils", null, null, "np_utils.py", 1, 1));
+        infos.add(new FuncInfo("default_format_reader", "fmt", null, null, "fmt.py", 1, 1));
+        infos.add(new FuncInfo("other", "fmt", null, null, "fmt.py", 5, 1));
+
+        TreeMapTokensStorage treeMapStorage = new TreeMapTokensStorage();
+        treeMapStorage.addAll(infos, new ArrayList<IInfo>());
+
+        TopMatches<IInfo> result = new TopMatches<IInfo>(10);
+        treeMapStorage.getBestMatches(new TokenMatcher("DFR", TokenMatcher.FUZZY),
+                AbstractAdditionalTokensInfo.TOP_LEVEL, result);
+        List<IInfo> items = result.getItems();
+        assertEquals(3, items.size());
+        assertEquals("DataFrameReader", items.get(0).getName());
+        assertEquals("DataFrame", items.get(1).getName()); // 'r' in 'Frame'
+        assertEquals("default_format_reader", items.get(2).getName());
+
+        result = new TopMatches<IInfo>(1);
+        treeMapStorage.getBestMatches(new TokenMatcher("np_arr", TokenMatcher.FUZZY),
+                AbstractAdditionalTokensInfo.TOP_LEVEL, result);
+        assertEquals("numpy_array_utils", result.getItems().get(0).getName());
+    }
+}
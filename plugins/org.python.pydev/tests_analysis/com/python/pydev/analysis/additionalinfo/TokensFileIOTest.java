@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2015 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.python.pydev.core.IInfo;
+import org.python.pydev.shared_core.io.FileUtils;
+
+import junit.framework.TestCase;
+
+public class TokensFileIOTest extends TestCase {
+
+    private File baseDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = FileUtils.getTempFileAt(new File("."), "data_temp_tokens_file_io_test");
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        baseDir.mkdir();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        super.tearDown();
+    }
+
+    public void testSaveAndLoad() throws Exception {
+        TokensSegment topLevel = new TokensSegment.Builder()
+                .add(new ClassInfo("Cls1", "mod1", null, null, "mod1.py", 1, 1))
+                .add(new FuncInfo("func1", "mod1", null, null, "mod1.py", 5, 1))
+                .build(null);
+        TokensSegment inner = new TokensSegment.Builder()
+                .add(new FuncInfo("method", "mod1", "Cls1", null, "mod1.py", 2, 5))
+                .build(null);
+
+        File location = new File(baseDir, "info.pydevinfo");
+        File tokensFile = TokensFileIO.getTokensFile(location, 10);
+        TokensFileIO.save(tokensFile, 10, topLevel, inner);
+
+        TokensSegment[] loaded = TokensFileIO.load(tokensFile, 10);
+        assertEquals(2, loaded[0].size());
+        assertEquals(1, loaded[1].size());
+
+        int i = loaded[0].lowerBound("func");
+        IInfo info = loaded[0].createInfo(i, null);
+        assertEquals("func1", info.getName());
+        assertEquals("mod1", info.getDeclaringModuleName());
+        assertEquals(5, info.getLine());
+
+        info = loaded[1].createInfo(0, null);
+        assertEquals("method", info.getName());
+        assertEquals("Cls1", info.getPath());
+        assertEquals(5, info.getCol());
+
+        try {
+            TokensFileIO.load(tokensFile, 11);
+            fail("Expected the stamp not to match.");
+        } catch (IOException e) {
+            //expected
+        }
+    }
+
+    public void testRemoveOldTokensFiles() throws Exception {
+        File location = new File(baseDir, "info.pydevinfo");
+        for (long stamp = 1; stamp <= 3; stamp++) {
+            TokensFileIO.save(TokensFileIO.getTokensFile(location, stamp), stamp, TokensSegment.EMPTY,
+                    TokensSegment.EMPTY);
+        }
+        File other = new File(baseDir, "other.pydevinfo_1.tokens");
+        FileUtils.writeStrToFile("", other);
+
+        TokensFileIO.removeOldTokensFiles(location, 3);
+        assertFalse(TokensFileIO.getTokensFile(location, 1).exists());
+        assertFalse(TokensFileIO.getTokensFile(location, 2).exists());
+        assertTrue(TokensFileIO.getTokensFile(location, 3).exists());
+        assertTrue(other.exists());
+
+        TokensSegment[] loaded = TokensFileIO.load(TokensFileIO.getTokensFile(location, 3), 3);
+        assertEquals(0, loaded[0].size());
+        assertEquals(0, loaded[1].size());
+    }
+}
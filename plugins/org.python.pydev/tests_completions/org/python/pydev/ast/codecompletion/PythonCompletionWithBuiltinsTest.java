@@ -22,6 +22,7 @@ import org.python.pydev.ast.codecompletion.revisited.CompletionCache;
 import org.python.pydev.ast.codecompletion.revisited.CompletionStateFactory;
 import org.python.pydev.ast.codecompletion.revisited.modules.AbstractModule;
 import org.python.pydev.ast.codecompletion.revisited.modules.CompiledModule;
+import org.python.pydev.ast.codecompletion.revisited.modules.CompiledModulesCache;
 import org.python.pydev.ast.codecompletion.revisited.visitors.Definition;
 import org.python.pydev.ast.codecompletion.shell.AbstractShell;
 import org.python.pydev.ast.codecompletion.shell.PythonShell;
@@ -32,6 +33,7 @@ import org.python.pydev.core.IInterpreterManager;
 import org.python.pydev.core.IModule;
 import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.ISystemModulesManager;
+import org.python.pydev.core.IToken;
 import org.python.pydev.core.MisconfigurationException;
 import org.python.pydev.core.TestDependent;
 import org.python.pydev.core.concurrency.RunnableAsJobsPoolThread;
@@ -41,6 +43,7 @@ import org.python.pydev.plugin.nature.PythonNature;
 import org.python.pydev.shared_core.SharedCorePlugin;
 import org.python.pydev.shared_core.code_completion.ICompletionProposalHandle;
 import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.structure.Tuple;
 
 public class PythonCompletionWithBuiltinsTest extends CodeCompletionTestsBase {
 
@@ -604,8 +607,12 @@ public class PythonCompletionWithBuiltinsTest extends CodeCompletionTestsBase {
         ISystemModulesManager systemModulesManager = nature.getAstManager().getModulesManager()
                 .getSystemModulesManager();
         RunnableAsJobsPoolThread.getSingleton().waitToFinishCurrent();
-        File file = systemModulesManager.getCompiledModuleCacheFile(module.getName());
-        assertTrue(file.exists());
+        CompiledModulesCache cache = CompiledModulesCache.get(systemModulesManager.getCompiledModulesCacheDir());
+        assertTrue(cache.contains(module.getName()));
+
+        cache.flush();
+        Tuple<File, IToken[]> cached = cache.get(module.getName(), nature);
+        assertTrue(cached.o2.length > 10);
     }
 
     public void testAssignToFuncCompletion() throws Exception {
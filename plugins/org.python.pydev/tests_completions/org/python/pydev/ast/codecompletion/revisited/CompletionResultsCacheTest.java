@@ -0,0 +1,175 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.revisited;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.python.pydev.ast.codecompletion.revisited.CompletionResultsCache.Recording;
+import org.python.pydev.ast.codecompletion.revisited.modules.SourceModule;
+import org.python.pydev.core.TokensList;
+
+import junit.framework.TestCase;
+
+public class CompletionResultsCacheTest extends TestCase {
+
+    private CompletionResultsCache cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        cache = new CompletionResultsCache(3);
+    }
+
+    /**
+     * Adds a result which depends on the given modules.
+     */
+    private void addResult(String key, String... dependencies) {
+        Recording recording = cache.startRecording();
+        try {
+            for (String dependency : dependencies) {
+                CompletionResultsCache.recordDependency(dependency);
+            }
+        } finally {
+            cache.stopRecording(recording);
+        }
+        cache.add(key, new TokensList(), recording);
+    }
+
+    public void testInvalidateOnlyDependents() throws Exception {
+        addResult("a", "mod1", "mod2");
+        addResult("b", "mod2");
+        addResult("c", "pack.__init__");
+        assertEquals(3, cache.size());
+
+        cache.invalidate("mod1");
+        assertNull(cache.getObj("a"));
+        assertNotNull(cache.getObj("b"));
+
+        //the package is changed when its __init__ is changed
+        cache.invalidate("pack.__init__");
+        assertNull(cache.getObj("c"));
+        assertNotNull(cache.getObj("b"));
+        assertEquals(1, cache.size());
+    }
+
+    public void testNestedRecordings() throws Exception {
+        Recording outer = cache.startRecording();
+        try {
+            CompletionResultsCache.recordDependency("mod1");
+            addResult("inner", "mod2");
+        } finally {
+            cache.stopRecording(outer);
+        }
+        cache.add("outer", new TokensList(), outer);
+        assertEquals(new HashSet<String>(Arrays.asList("mod1", "mod2")),
+                new HashSet<String>(Arrays.asList(outer.getDependencies())));
+
+        //getting a cached result adds its dependencies to the current recording
+        Recording other = cache.startRecording();
+        try {
+            assertNotNull(cache.getObj("inner"));
+        } finally {
+            cache.stopRecording(other);
+        }
+        assertEquals(Arrays.asList("mod2"), Arrays.asList(other.getDependencies()));
+
+        cache.invalidate("mod2");
+        assertNull(cache.getObj("outer"));
+        assertNull(cache.getObj("inner"));
+    }
+
+    public void testIncompleteNotAdded() throws Exception {
+        Recording outer = cache.startRecording();
+        try {
+            Recording inner = cache.startRecording();
+            try {
+                CompletionResultsCache.markIncomplete();
+            } finally {
+                cache.stopRecording(inner);
+            }
+            cache.add("inner", new TokensList(), inner);
+        } finally {
+            cache.stopRecording(outer);
+        }
+        cache.add("outer", new TokensList(), outer);
+        assertNull(cache.getObj("inner"));
+        assertNull(cache.getObj("outer"));
+        assertNull(outer.getDependencies());
+    }
+
+    public void testInvalidatedWhileComputing() throws Exception {
+        Recording recording = cache.startRecording();
+        try {
+            CompletionResultsCache.recordDependency("mod1");
+            cache.invalidate("mod2");
+        } finally {
+            cache.stopRecording(recording);
+        }
+        cache.add("a", new TokensList(), recording);
+        assertNull(cache.getObj("a"));
+    }
+
+    public void testMaxSize() throws Exception {
+        addResult("a", "mod1");
+        addResult("b", "mod1");
+        addResult("c", "mod1");
+        assertNotNull(cache.getObj("a")); //a is now the most recently used
+        addResult("d", "mod1");
+        assertEquals(3, cache.size());
+        assertNull(cache.getObj("b"));
+        assertNotNull(cache.getObj("a"));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    public void testFileChangedOutsideOfManager() throws Exception {
+        File file = File.createTempFile("mod1", ".py");
+        try {
+            file.setLastModified(System.currentTimeMillis() - 10000);
+            SourceModule module = new SourceModule("mod1", file, null, null, null);
+            Recording recording = cache.startRecording();
+            try {
+                CompletionResultsCache.recordDependency("mod1");
+                CompletionResultsCache.recordModuleVersion(module);
+            } finally {
+                cache.stopRecording(recording);
+            }
+            cache.add("a", new TokensList(), recording);
+            assertNotNull(cache.getObj("a"));
+
+            //i.e.: changed in site-packages (so, not invalidated by the builder).
+            file.setLastModified(System.currentTimeMillis());
+            assertNull(cache.getObj("a"));
+            assertEquals(0, cache.size());
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testEvicted() throws Exception {
+        addResult("a", "mod1");
+        addResult("b", "pack");
+
+        Recording recording = cache.startRecording();
+        try {
+            CompletionResultsCache.recordDependency("mod2");
+            cache.evicted("mod1");
+            cache.evicted("pack.__init__");
+        } finally {
+            cache.stopRecording(recording);
+        }
+        assertNull(cache.getObj("a"));
+        assertNull(cache.getObj("b"));
+
+        //an eviction doesn't mean that the results being computed are stale.
+        cache.add("c", new TokensList(), recording);
+        assertNotNull(cache.getObj("c"));
+    }
+}
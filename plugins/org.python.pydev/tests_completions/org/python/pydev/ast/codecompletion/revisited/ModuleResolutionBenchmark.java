@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.revisited;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.python.pydev.core.ModulesKey;
+
+/**
+ * Benchmark comparing the latency of resolving in which manager (project, referenced projects, interpreter)
+ * a module is available through the keys of each manager (as done before with the modulesKeysLock held) and
+ * through the index by name of the keys.
+ *
+ * Run as a java application (args: [number of modules in the interpreter] [number of threads]).
+ */
+public class ModuleResolutionBenchmark {
+
+    private static final int LOOKUPS = 200000;
+
+    public static void main(String[] args) throws Exception {
+        int modules = args.length > 0 ? Integer.parseInt(args[0]) : 30000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        //project, referenced project and interpreter.
+        final ModulesManager[] managers = new ModulesManager[] { createManager("proj", modules / 10),
+                createManager("ref", modules / 10), createManager("lib", modules) };
+
+        final List<String> names = new ArrayList<String>();
+        for (int i = 0; i < 1000; i++) {
+            names.add("lib" + (i % 100) + ".mod" + i);
+            names.add("proj" + (i % 100));
+            names.add("unresolved" + i);
+        }
+        System.out.println("Modules: " + (modules + 2 * (modules / 10)) + " Threads: " + threads);
+
+        for (int i = 0; i < 5; i++) {
+            long keysTime = run(threads, new Runnable() {
+
+                @Override
+                public void run() {
+                    ModulesKey key = new ModulesKey(null, null);
+                    for (int j = 0; j < LOOKUPS; j++) {
+                        String name = names.get(j % names.size());
+                        for (ModulesManager m : managers) {
+                            key.name = name + ".__init__";
+                            if (m.hasModule(key)) {
+                                break;
+                            }
+                            key.name = name;
+                            if (m.hasModule(key)) {
+                                break;
+                            }
+                        }
+                    }
+                }
+            });
+
+            long indexTime = run(threads, new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < LOOKUPS; j++) {
+                        String name = names.get(j % names.size());
+                        for (ModulesManager m : managers) {
+                            if (m.mayHaveModule(name, false)) {
+                                break;
+                            }
+                        }
+                    }
+                }
+            });
+
+            final AtomicInteger found = new AtomicInteger();
+            long prefixKeysTime = run(threads, new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < LOOKUPS / 100; j++) {
+                        SortedMap<ModulesKey, ModulesKey> ret = new TreeMap<ModulesKey, ModulesKey>();
+                        for (ModulesManager m : managers) {
+                            ret.putAll(m.getAllDirectModulesStartingWith("lib" + (j % 100) + "."));
+                        }
+                        found.addAndGet(ret.size());
+                    }
+                }
+            });
+
+            long prefixIndexTime = run(threads, new Runnable() {
+
+                @Override
+                public void run() {
+                    for (int j = 0; j < LOOKUPS / 100; j++) {
+                        SortedMap<ModulesKey, ModulesKey> ret = new TreeMap<ModulesKey, ModulesKey>();
+                        for (ModulesManager m : managers) {
+                            m.fillModulesStartingWith("lib" + (j % 100) + ".", ret);
+                        }
+                        found.addAndGet(-ret.size());
+                    }
+                }
+            });
+            if (found.get() != 0) {
+                throw new AssertionError("Expected the same modules to be found in both cases.");
+            }
+
+            long totalLookups = (long) LOOKUPS * threads;
+            System.out.println("Resolve (keys): " + (keysTime / totalLookups) + "ns/lookup");
+            System.out.println("Resolve (index): " + (indexTime / totalLookups) + "ns/lookup");
+            System.out.println("Starting with (keys): " + (prefixKeysTime * 100 / totalLookups / 1000) + "us/lookup");
+            System.out.println("Starting with (index): " + (prefixIndexTime * 100 / totalLookups / 1000)
+                    + "us/lookup");
+        }
+        ModulesManager.clearCache();
+    }
+
+    private static ModulesManager createManager(String prefix, int modules) {
+        ProjectModulesManager manager = new ProjectModulesManager();
+        for (int i = 0; i < modules; i++) {
+            manager.addModule(new ModulesKey(prefix + (i % 100) + ".mod" + i, null));
+            if (i < 100) {
+                manager.addModule(new ModulesKey(prefix + i + ".__init__", null));
+            }
+        }
+        return manager;
+    }
+
+    /**
+     * @return the time (in nanos) to run the runnable in the given number of threads.
+     */
+    private static long run(int threads, Runnable runnable) throws InterruptedException {
+        Thread[] running = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            running[i] = new Thread(runnable);
+        }
+        long initial = System.nanoTime();
+        for (Thread thread : running) {
+            thread.start();
+        }
+        for (Thread thread : running) {
+            thread.join();
+        }
+        return (System.nanoTime() - initial) * threads;
+    }
+}
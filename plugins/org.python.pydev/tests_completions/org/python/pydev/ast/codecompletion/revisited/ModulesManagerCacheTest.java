@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.revisited;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.python.pydev.ast.codecompletion.revisited.modules.AbstractModule;
+import org.python.pydev.ast.codecompletion.revisited.modules.EmptyModule;
+import org.python.pydev.core.ModulesKey;
+
+import junit.framework.TestCase;
+
+public class ModulesManagerCacheTest extends TestCase {
+
+    private static final long EMPTY_WEIGHT = ModulesManagerCache
+            .estimateWeight(AbstractModule.createEmptyModule(new ModulesKey("a", null)));
+
+    public void testHitsAndMisses() throws Exception {
+        ModulesManagerCache cache = new ModulesManagerCache(EMPTY_WEIGHT * 100, 4, 100);
+        ProjectModulesManager manager = new ProjectModulesManager();
+        manager.addModule(new ModulesKey("mod1", null));
+
+        ModulesKey keyForCacheAccess = new ModulesKey("mod1", null);
+        AbstractModule module = cache.getObj(keyForCacheAccess, manager);
+        assertTrue(module instanceof EmptyModule);
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        //the key for the cache access may be changed afterwards
+        keyForCacheAccess.name = "mod2";
+        assertNull(cache.getObj(keyForCacheAccess, manager));
+        keyForCacheAccess.name = "mod1";
+        assertSame(module, cache.getObj(keyForCacheAccess, manager));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(EMPTY_WEIGHT, cache.getWeight(manager));
+
+        cache.remove(keyForCacheAccess, manager);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+        assertEquals(0, cache.getWeight(manager));
+    }
+
+    public void testEvictionByWeight() throws Exception {
+        ModulesManagerCache cache = new ModulesManagerCache(EMPTY_WEIGHT * 10, 1, 100);
+        ProjectModulesManager manager = new ProjectModulesManager();
+        for (int i = 0; i < 20; i++) {
+            ModulesKey key = new ModulesKey("mod" + i, null);
+            cache.add(key, AbstractModule.createEmptyModule(key), manager);
+        }
+        assertEquals(10, cache.size());
+        assertEquals(10, cache.getEvictions());
+        assertEquals(EMPTY_WEIGHT * 10, cache.getWeight());
+
+        //the least recently used are evicted
+        for (int i = 0; i < 10; i++) {
+            assertNull(cache.getObj(new ModulesKey("mod" + i, null), manager));
+        }
+        for (int i = 10; i < 20; i++) {
+            assertNotNull(cache.getObj(new ModulesKey("mod" + i, null), manager));
+        }
+    }
+
+    public void testManagerQuota() throws Exception {
+        ModulesManagerCache cache = new ModulesManagerCache(EMPTY_WEIGHT * 10, 1, 50);
+        ProjectModulesManager manager1 = new ProjectModulesManager();
+        ProjectModulesManager manager2 = new ProjectModulesManager();
+        for (int i = 0; i < 5; i++) {
+            ModulesKey key = new ModulesKey("m1_" + i, null);
+            cache.add(key, AbstractModule.createEmptyModule(key), manager1);
+        }
+        for (int i = 0; i < 20; i++) {
+            ModulesKey key = new ModulesKey("m2_" + i, null);
+            cache.add(key, AbstractModule.createEmptyModule(key), manager2);
+        }
+        //manager2 can't evict the modules from manager1
+        assertEquals(EMPTY_WEIGHT * 5, cache.getWeight(manager1));
+        assertEquals(EMPTY_WEIGHT * 5, cache.getWeight(manager2));
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(cache.getObj(new ModulesKey("m1_" + i, null), manager1));
+        }
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight(manager1));
+        assertEquals(0, cache.getWeight(manager2));
+    }
+
+    public void testManagerWithoutEntriesNotKept() throws Exception {
+        ModulesManagerCache cache = new ModulesManagerCache(EMPTY_WEIGHT * 10, 4, 50);
+        ProjectModulesManager manager = new ProjectModulesManager();
+        ModulesKey key = new ModulesKey("mod1", null);
+        cache.add(key, AbstractModule.createEmptyModule(key), manager);
+        assertEquals(1, cache.getManagersCount());
+
+        cache.remove(key, manager);
+        assertEquals(0, cache.getManagersCount());
+    }
+
+    public void testConcurrentAccess() throws Exception {
+        final ModulesManagerCache cache = new ModulesManagerCache(EMPTY_WEIGHT * 50, 8, 100);
+        final ProjectModulesManager manager = new ProjectModulesManager();
+        for (int i = 0; i < 200; i++) {
+            manager.addModule(new ModulesKey("mod" + i, null));
+        }
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            final int seed = t;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        ModulesKey keyForCacheAccess = new ModulesKey(null, null);
+                        for (int i = 0; i < 5000; i++) {
+                            keyForCacheAccess.name = "mod" + ((i * 31 + seed) % 200);
+                            if (cache.getObj(keyForCacheAccess, manager) == null) {
+                                throw new AssertionError("Module not found: " + keyForCacheAccess.name);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(errors.toString(), 0, errors.size());
+        assertEquals(8 * 5000, cache.getHits() + cache.getMisses());
+        assertTrue(cache.getWeight() <= EMPTY_WEIGHT * 50);
+        assertEquals(cache.getWeight(), cache.getWeight(manager));
+        assertEquals(cache.size() * EMPTY_WEIGHT, cache.getWeight());
+    }
+}
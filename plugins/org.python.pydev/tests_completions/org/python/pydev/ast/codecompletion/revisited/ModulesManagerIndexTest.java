@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.revisited;
+
+import java.util.Arrays;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.python.pydev.ast.codecompletion.revisited.modules.AbstractModule;
+import org.python.pydev.core.ModulesKey;
+
+import junit.framework.TestCase;
+
+public class ModulesManagerIndexTest extends TestCase {
+
+    private ProjectModulesManager manager;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        manager = new ProjectModulesManager();
+        for (String name : new String[] { "pack.__init__", "pack.mod1", "pack.mod2", "pack2.mod1", "other" }) {
+            manager.addModule(new ModulesKey(name, null));
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ModulesManager.clearCache();
+        super.tearDown();
+    }
+
+    public void testMayHaveModule() throws Exception {
+        assertTrue(manager.mayHaveModule("pack.mod1", true));
+        assertTrue(manager.mayHaveModule("pack", false));
+        assertFalse(manager.mayHaveModule("pack", true));
+        assertFalse(manager.mayHaveModule("pack.mod3", false));
+
+        manager.removeModules(Arrays.asList(new ModulesKey("pack.mod1", null)));
+        assertFalse(manager.mayHaveModule("pack.mod1", true));
+        assertNull(manager.getModulesKeyByName("pack.mod1"));
+
+        ModulesKey key = new ModulesKey("pack.mod3", null);
+        manager.doAddSingleModule(key, AbstractModule.createEmptyModule(key));
+        assertTrue(manager.mayHaveModule("pack.mod3", true));
+        assertSame(key, manager.getModulesKeyByName("pack.mod3"));
+    }
+
+    public void testMayHaveTemporaryModule() throws Exception {
+        assertFalse(manager.mayHaveModule("temp", true));
+        int handle = manager.pushTemporaryModule("temp",
+                AbstractModule.createEmptyModule(new ModulesKey("temp", null)));
+        assertTrue(manager.mayHaveModule("temp", true));
+        manager.popTemporaryModule("temp", handle);
+        assertFalse(manager.mayHaveModule("temp", true));
+    }
+
+    public void testFillModulesStartingWith() throws Exception {
+        checkStartingWith("pack");
+        checkStartingWith("pack.");
+        checkStartingWith("pack2");
+        checkStartingWith("");
+        checkStartingWith("zzz");
+
+        //the snapshot must be updated when the keys change
+        manager.addModule(new ModulesKey("pack.mod0", null));
+        checkStartingWith("pack.");
+        manager.removeModules(Arrays.asList(new ModulesKey("pack.mod2", null)));
+        checkStartingWith("pack.");
+    }
+
+    private void checkStartingWith(String startingWith) {
+        SortedMap<ModulesKey, ModulesKey> found = new TreeMap<ModulesKey, ModulesKey>();
+        manager.fillModulesStartingWith(startingWith, found);
+        assertEquals(manager.getAllDirectModulesStartingWith(startingWith).keySet(), found.keySet());
+    }
+}
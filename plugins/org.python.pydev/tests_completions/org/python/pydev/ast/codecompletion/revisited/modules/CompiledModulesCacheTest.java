@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.revisited.modules;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.python.pydev.core.IToken;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.structure.Tuple;
+
+import junit.framework.TestCase;
+
+public class CompiledModulesCacheTest extends TestCase {
+
+    private File baseDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = Files.createTempDirectory("compiled_modules_cache_test").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectoryTree(baseDir);
+        super.tearDown();
+    }
+
+    private IToken[] createTokens(String prefix, String docStr) {
+        return new IToken[] {
+                new CompiledToken(prefix + "Class", docStr, "", "mod", IToken.TYPE_CLASS, null),
+                new CompiledToken(prefix + "method", "", "(a, b)", "mod", IToken.TYPE_FUNCTION, null),
+        };
+    }
+
+    private void put(CompiledModulesCache cache, String name, String docStr) {
+        cache.put(name, new File(baseDir, name + ".pyd"), createTokens(name, docStr));
+        cache.flush();
+    }
+
+    private void checkCached(CompiledModulesCache cache, String name, String docStr) {
+        Tuple<File, IToken[]> cached = cache.get(name, null);
+        assertNotNull("Expected " + name + " to be cached.", cached);
+        assertEquals(new File(baseDir, name + ".pyd"), cached.o1);
+        assertEquals(2, cached.o2.length);
+        assertEquals(name + "Class", cached.o2[0].getRepresentation());
+        assertEquals(IToken.TYPE_CLASS, cached.o2[0].getType());
+        assertEquals(docStr, cached.o2[0].getDocStr());
+        assertEquals("(a, b)", cached.o2[1].getArgs());
+    }
+
+    private List<File> listCacheFiles() {
+        List<File> ret = new ArrayList<>();
+        for (File f : baseDir.listFiles()) {
+            if (f.getName().endsWith(".cache")) {
+                ret.add(f);
+            }
+        }
+        return ret;
+    }
+
+    public void testTruncatedRecord() throws Exception {
+        CompiledModulesCache cache = new CompiledModulesCache(baseDir);
+        put(cache, "mod1", "doc1");
+        put(cache, "mod2", "doc2");
+        List<File> files = listCacheFiles();
+        assertEquals(1, files.size());
+
+        // i.e.: the process was killed while writing the last record.
+        try (RandomAccessFile f = new RandomAccessFile(files.get(0), "rw")) {
+            f.setLength(f.length() - 5);
+        }
+
+        CompiledModulesCache reopened = new CompiledModulesCache(baseDir);
+        checkCached(reopened, "mod1", "doc1");
+        assertNull(reopened.get("mod2", null));
+        assertFalse(reopened.contains("mod2"));
+        // The valid records are written to a new file.
+        files = listCacheFiles();
+        assertEquals(1, files.size());
+        assertEquals("compiled_modules_1.cache", files.get(0).getName());
+
+        put(reopened, "mod2", "doc2");
+        CompiledModulesCache reopened2 = new CompiledModulesCache(baseDir);
+        checkCached(reopened2, "mod1", "doc1");
+        checkCached(reopened2, "mod2", "doc2");
+    }
+
+    public void testCompactWhenMostlyUnused() throws Exception {
+        // Big docstrings so that the replaced records are over the compact threshold (1MB).
+        StringBuilder buf = new StringBuilder();
+        while (buf.length() < 600 * 1024) {
+            buf.append("Some docstring. ");
+        }
+        String bigDoc = buf.toString();
+
+        CompiledModulesCache cache = new CompiledModulesCache(baseDir);
+        put(cache, "small", "doc");
+        put(cache, "big", bigDoc);
+        put(cache, "big", bigDoc + "2");
+        assertEquals(1, listCacheFiles().size());
+        long sizeOneReplaced = listCacheFiles().get(0).length();
+
+        // Only ~600KB unused (below the threshold): not compacted.
+        CompiledModulesCache reopened = new CompiledModulesCache(baseDir);
+        checkCached(reopened, "big", bigDoc + "2");
+        assertEquals("compiled_modules_0.cache", listCacheFiles().get(0).getName());
+
+        put(cache, "big", bigDoc + "3");
+        // ~1.2MB unused and more than the ~600KB used: compacted.
+        reopened = new CompiledModulesCache(baseDir);
+        checkCached(reopened, "small", "doc");
+        checkCached(reopened, "big", bigDoc + "3");
+        List<File> files = listCacheFiles();
+        assertEquals(1, files.size());
+        assertEquals("compiled_modules_1.cache", files.get(0).getName());
+        assertTrue(files.get(0).length() < sizeOneReplaced);
+
+        reopened = new CompiledModulesCache(baseDir);
+        checkCached(reopened, "small", "doc");
+        checkCached(reopened, "big", bigDoc + "3");
+    }
+
+    public void testReopenAfterClear() throws Exception {
+        CompiledModulesCache cache = new CompiledModulesCache(baseDir);
+        put(cache, "mod1", "doc1");
+        cache.clear();
+        assertFalse(cache.contains("mod1"));
+        assertTrue(listCacheFiles().isEmpty());
+
+        CompiledModulesCache reopened = new CompiledModulesCache(baseDir);
+        assertFalse(reopened.contains("mod1"));
+        assertNull(reopened.get("mod1", null));
+
+        // The cleared cache may still be used (the contents go to a new generation).
+        put(cache, "mod2", "doc2");
+        checkCached(cache, "mod2", "doc2");
+        reopened = new CompiledModulesCache(baseDir);
+        assertFalse(reopened.contains("mod1"));
+        checkCached(reopened, "mod2", "doc2");
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (c) 2017 by Brainwy Software Ltda. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license.txt included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package org.python.pydev.ast.codecompletion.revisited.modules;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.FunctionDef;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.Name;
+import org.python.pydev.parser.jython.ast.NameTok;
+import org.python.pydev.parser.jython.ast.Pass;
+import org.python.pydev.parser.jython.ast.argumentsType;
+import org.python.pydev.parser.jython.ast.exprType;
+import org.python.pydev.parser.jython.ast.stmtType;
+import org.python.pydev.shared_core.io.FileUtils;
+
+import junit.framework.TestCase;
+
+public class SourceModulesAstCacheTest extends TestCase {
+
+    private File baseDir;
+    private SourceModulesAstCache cache;
+    private File sourceFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = Files.createTempDirectory("ast_cache_test").toFile();
+        cache = new SourceModulesAstCache(new File(baseDir, "cache"));
+        sourceFile = new File(baseDir, "mod.py");
+        FileUtils.writeStrToFile("def method(a):\n    pass\n", sourceFile);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectoryTree(baseDir);
+        super.tearDown();
+    }
+
+    private SimpleNode createAst() {
+        argumentsType args = new argumentsType(new exprType[] { new Name("a", Name.Param, false) }, null, null,
+                null, null, null, null, null, null, null);
+        FunctionDef functionDef = new FunctionDef(new NameTok("method", NameTok.FunctionName), args,
+                new stmtType[] { new Pass() }, null, null, false);
+        functionDef.beginLine = 1;
+        functionDef.beginColumn = 1;
+        return new Module(new stmtType[] { functionDef });
+    }
+
+    public void testCache() throws Exception {
+        SimpleNode ast = createAst();
+        assertNull(cache.get(sourceFile, 36));
+
+        cache.put(sourceFile, 36, FileUtils.lastModified(sourceFile), sourceFile.length(), ast);
+        SimpleNode cached = cache.get(sourceFile, 36);
+        assertEquals(ast, cached);
+        assertNotSame(ast, cached);
+        assertEquals(1, ((Module) cached).body[0].beginLine);
+
+        //different grammar
+        assertNull(cache.get(sourceFile, 27));
+
+        //different file
+        File other = new File(baseDir, "other.py");
+        FileUtils.writeStrToFile("def method(a):\n    pass\n", other);
+        assertNull(cache.get(other, 36));
+
+        //file changed
+        FileUtils.writeStrToFile("def method(a, b):\n    pass\n", sourceFile);
+        assertNull(cache.get(sourceFile, 36));
+    }
+
+    public void testCacheChangedWhileParsing() throws Exception {
+        long lastModified = FileUtils.lastModified(sourceFile);
+        long size = sourceFile.length();
+        FileUtils.writeStrToFile("def method(a, b, c):\n    pass\n", sourceFile);
+
+        //the time/size from before the change is saved, so, it's not valid.
+        cache.put(sourceFile, 36, lastModified, size, createAst());
+        assertNull(cache.get(sourceFile, 36));
+    }
+
+    public void testPruneLeastRecentlyUsed() throws Exception {
+        File[] sources = new File[3];
+        long totalSize = 0;
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = new File(baseDir, "mod" + i + ".py");
+            FileUtils.writeStrToFile("def method(a):\n    pass\n", sources[i]);
+            cache.put(sources[i], 36, FileUtils.lastModified(sources[i]), sources[i].length(), createAst());
+            File cacheFile = cache.getCacheFile(sources[i].getAbsolutePath());
+            assertTrue(cacheFile.setLastModified(10000L * (i + 1)));
+            totalSize += cacheFile.length();
+        }
+        // Reading mod0 makes mod1 the least recently used.
+        assertNotNull(cache.get(sources[0], 36));
+
+        SourceModulesAstCache smallCache = new SourceModulesAstCache(new File(baseDir, "cache"), totalSize - 1);
+        smallCache.prune();
+        assertNotNull(cache.get(sources[0], 36));
+        assertNull(cache.get(sources[1], 36));
+        assertNotNull(cache.get(sources[2], 36));
+
+        // Within the max size: nothing is removed.
+        cache.prune();
+        assertNotNull(cache.get(sources[0], 36));
+        assertNotNull(cache.get(sources[2], 36));
+
+        cache.clear();
+        assertNull(cache.get(sources[0], 36));
+    }
+}
@@ -12,6 +12,7 @@
 package org.python.pydev.ast.codecompletion.shell;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.core.runtime.CoreException;
@@ -106,6 +107,77 @@ public class PythonShellTest extends CodeCompletionTestsBase {
         //don't show completion errors!
     }
 
+    public void testPipelinedRequests() throws Exception {
+        final String[][] moduleAndToken = new String[][] { { "os", "getcwd" }, { "sys", "exit" },
+                { "math", "sqrt" }, { "string", "digits" } };
+        final List<String> pythonpath = getPythonpath();
+        final List<String> errors = new ArrayList<String>();
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (final String[] modAndTok : moduleAndToken) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 20; i++) {
+                        try {
+                            List<String[]> list = shell.getImportCompletions(modAndTok[0], pythonpath).o2;
+                            if (!contains(list, modAndTok[1])) {
+                                synchronized (errors) {
+                                    errors.add(modAndTok[0] + ": did not find " + modAndTok[1]);
+                                }
+                            }
+                        } catch (Exception e) {
+                            synchronized (errors) {
+                                errors.add(modAndTok[0] + ": " + e);
+                            }
+                        }
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(new ArrayList<String>(), errors);
+        assertEquals(0, shell.getPendingRequestsCount());
+    }
+
+    public void testShellsPool() throws Exception {
+        ShellsPool pool = new ShellsPool(nature.getProjectInterpreter(), IPythonNature.INTERPRETER_TYPE_PYTHON, 2);
+        try {
+            pool.warmUp();
+            AbstractShell first = pool.getShell(null);
+            assertTrue(first.isAvailable());
+            AbstractShell[] shells = pool.getShells();
+            for (int i = 0; i < 100 && !shells[1].isAvailable(); i++) {
+                synchronized (this) {
+                    this.wait(100);
+                }
+            }
+            assertTrue(shells[1].isAvailable());
+
+            // The shell which already has the pythonpath is preferred.
+            List<String> pythonpath = getPythonpath();
+            assertTrue(contains(shells[1].getImportCompletions("math", pythonpath).o2, "sqrt"));
+            assertSame(shells[1], pool.getShell(AbstractShell.getPythonPathKey(pythonpath)));
+            assertSame(shells[0], pool.getShell("other"));
+        } finally {
+            pool.dispose();
+        }
+        assertFalse(pool.getShells()[0].isAvailable());
+    }
+
+    private static boolean contains(List<String[]> list, String token) {
+        for (String[] o : list) {
+            if (o[0].equals(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * @return
      */